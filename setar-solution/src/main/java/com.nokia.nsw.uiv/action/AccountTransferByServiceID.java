@@ -28,8 +28,6 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 import static com.nokia.nsw.uiv.utils.Validations.getCurrentTimestamp;
 
@@ -68,9 +66,7 @@ public class AccountTransferByServiceID implements HttpAction {
             String oldSubscriberName = req.getSubscriberNameOld();
             String subscriberName = req.getSubscriberName();
             // Step 2: Search for CFS containing old subscriber and service ID
-            List<Service> serviceList = StreamSupport
-                    .stream(serviceRepository.findAll().spliterator(), false).filter(service->service.getDiscoveredName().contains(Constants.CFS))
-                    .collect(Collectors.toList());
+            List<Service> serviceList = serviceRepository.findAllByKind(Constants.SETAR_KIND_SETAR_CFS);
             List<Service> cfsList = new ArrayList<>();
             for(Service cfs:serviceList)
             {
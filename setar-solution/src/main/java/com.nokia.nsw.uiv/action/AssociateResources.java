@@ -6,6 +6,7 @@ import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
 import com.nokia.nsw.uiv.model.resource.Resource;
 import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.LogicalDeviceCustomRepository;
 import com.nokia.nsw.uiv.repository.ServiceCustomRepository;
 import com.nokia.nsw.uiv.request.AssociateResourcesRequest;
@@ -27,6 +28,7 @@ import java.util.*;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder
 public class AssociateResources implements HttpAction {
     protected static final String ACTION_LABEL = Constants.ASSOCIATE_RESOURCES;
     private static final String ERROR_PREFIX = "UIV action AssociateResources execution failed - ";
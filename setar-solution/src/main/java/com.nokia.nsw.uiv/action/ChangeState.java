@@ -14,6 +14,7 @@ import com.nokia.nsw.uiv.model.service.SubscriptionRepository;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDeviceRepository;
 
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.CustomerCustomRepository;
 import com.nokia.nsw.uiv.repository.LogicalDeviceCustomRepository;
 import com.nokia.nsw.uiv.repository.ServiceCustomRepository;
@@ -28,13 +29,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.Iterator;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Component
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder("fxOrderId")
 public class ChangeState implements HttpAction {
     private static final String ACTION_LABEL = "ChangeState";
     private static final String ERROR_PREFIX = "UIV action ChangeState execution failed - ";
@@ -136,13 +138,12 @@ public class ChangeState implements HttpAction {
 
             if (!isEmpty(req.getCbmMac())) {
                 // attempt find by GDN "CBM" + Constants.UNDER_SCORE +mac (as per naming in your system)
-                Iterable<LogicalDevice> devices = logicalDeviceRepository.findAll();
-                Iterator<LogicalDevice> deviceIterator = devices.iterator();
-
-                while(deviceIterator.hasNext()){
-                    LogicalDevice d = deviceIterator.next();
-                    if(d.getProperties().get("macAddress")!=null && d.getProperties().get("macAddress").toString().contains(req.getCbmMac())){
-                        optCbm = Optional.of(d);
+                try (Stream<LogicalDevice> devices = logicalDeviceCustomRepository.stream(
+                        d -> d.getProperties().get("macAddress")!=null && d.getProperties().get("macAddress").toString().contains(req.getCbmMac()),
+                        Constants.STREAM_PAGE_SIZE)) {
+                    Optional<LogicalDevice> lastMatch = devices.reduce((first, second) -> second);
+                    if (lastMatch.isPresent()) {
+                        optCbm = lastMatch;
                         cbmName = optCbm.get().getDiscoveredName();
                     }
                 }
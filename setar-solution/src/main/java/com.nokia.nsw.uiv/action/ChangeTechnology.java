@@ -11,6 +11,7 @@ import com.nokia.nsw.uiv.model.resource.OperationalState;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalInterfaceRepository;
 import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.AssociateResourcesRequest;
 import com.nokia.nsw.uiv.request.ChangeTechnologyRequest;
@@ -38,6 +39,7 @@ import java.util.stream.StreamSupport;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder("fxOrderId")
 public class ChangeTechnology implements HttpAction {
     protected static final String ACTION_LABEL = Constants.CHANGE_TECHNOLOGY;
     private static final String ERROR_PREFIX = "UIV action ChangeTechnology execution failed - ";
@@ -4,6 +4,7 @@ import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
 import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.ChangeTechnologyVoiceRequest;
 import com.nokia.nsw.uiv.response.ChangeTechnologyVoiceResponse;
@@ -30,6 +31,7 @@ import java.util.Optional;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder("fxOrderId")
 public class ChangeTechnologyVoice implements HttpAction {
     protected static final String ACTION_LABEL = Constants.CHANGE_TECHNOLOGY_VOICE;
     private static final String ERROR_PREFIX = "UIV action ChangeTechnologyVoice execution failed - ";
@@ -6,6 +6,7 @@ import com.nokia.nsw.uiv.exception.ModificationNotAllowedException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
+import com.nokia.nsw.uiv.lock.SubscriberLocked;
 import com.nokia.nsw.uiv.model.common.party.Customer;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
@@ -30,6 +31,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @RestController
 @Action
 @Slf4j
+@SubscriberLocked
 public class CreateProductSubscription implements HttpAction {
 
     protected static final String ACTION_LABEL = "CreateProductSubscription";
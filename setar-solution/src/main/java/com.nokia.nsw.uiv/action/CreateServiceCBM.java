@@ -4,11 +4,13 @@ import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
+import com.nokia.nsw.uiv.lock.SubscriberLocked;
 import com.nokia.nsw.uiv.model.common.party.Customer;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.CreateServiceCBMRequest;
 import com.nokia.nsw.uiv.response.CreateServiceCBMResponse;
@@ -25,6 +27,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Component
 @Action
 @Slf4j
+@SubscriberLocked
+@IdempotentOrder
 public class CreateServiceCBM implements HttpAction {
     protected static final String ACTION_LABEL = Constants.CREATE_SERVICE_CBM;
     private static final String ERROR_PREFIX = "UIV action CreateServiceCBM execution failed - ";
@@ -10,6 +10,7 @@ import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.CreateServiceCbmVoiceRequest;
 import com.nokia.nsw.uiv.response.CreateServiceCbmVoiceResponse;
@@ -26,6 +27,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Component
 @Action
 @Slf4j
+@IdempotentOrder
 public class CreateServiceCbmVoice implements HttpAction {
     protected static final String ACTION_LABEL = Constants.CREATE_SERVICE_CBM_VOICE;
     // Error code mappings (adjust if you use different codes)
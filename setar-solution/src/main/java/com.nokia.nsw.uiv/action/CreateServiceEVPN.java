@@ -1,13 +1,16 @@
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.allocation.SingleTaggedSlotAllocator;
 import com.nokia.nsw.uiv.exception.ModificationNotAllowedException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
+import com.nokia.nsw.uiv.lock.SubscriberLocked;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalInterfaceRepository;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.CreateServiceEVPNRequest;
 import com.nokia.nsw.uiv.response.CreateServiceCBMResponse;
@@ -37,6 +40,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @RestController
 @Action
 @Slf4j
+@SubscriberLocked
+@IdempotentOrder
 public class CreateServiceEVPN implements HttpAction {
 
     private static final String ERROR_PREFIX = "UIV action CreateServiceEVPN execution failed - ";
@@ -60,6 +65,8 @@ public class CreateServiceEVPN implements HttpAction {
     @Autowired
     private ServiceCustomRepository serviceCustomRepository;
 
+    @Autowired
+    private SingleTaggedSlotAllocator slotAllocator;
 
     @Override
     public Class<?> getActionClass() {
@@ -618,25 +625,30 @@ public class CreateServiceEVPN implements HttpAction {
                     if (req.getTemplateNameVlan() != null){
                         if (req.getTemplateNameVlan().endsWith(freeTemp)) {
                             String singleName = req.getOntSN() + "_P" + selectedPort + "_SINGLETAGGED_" + idx;
-                            if (!vlanRepo.findByDiscoveredName(singleName).isPresent()) {
+                            if (slotAllocator.claim(req.getOntSN(), selectedPort, idx)) {
                                 LogicalInterface singleVlan = new LogicalInterface();
-                                singleVlan.setLocalName(singleName);
-                                singleVlan.setDiscoveredName(singleName);
-                                singleVlan.setContext("Setar");
-                                singleVlan.setKind("VLANInterface");
-                                Map<String, Object> svProps = new HashMap<>();
-                                putIfNotNull(svProps, "vlanId", req.getVlanId());
-                                putIfNotNull(svProps, "mgmtTemplate", req.getTemplateNameVlanMgmnt());
-                                putIfNotNull(svProps, "configuredOntSN", req.getOntSN());
-                                putIfNotNull(svProps, "configuredPort", selectedPort);
-                                putIfNotNull(svProps, "vlanTemplate", req.getTemplateNameVlan());
-                                putIfNotNull(svProps, "serviceId", req.getServiceId());
-                                putIfNotNull(svProps, "vlanCreateTemplate", req.getTemplateNameVlanCreate());
-
-                                svProps.put("OperationalState", "Active");
-                                svProps.put("linkedOnt", ont.getDiscoveredName());
-                                singleVlan.setProperties(svProps);
-                                vlanRepo.save(singleVlan);
+                                try {
+                                    singleVlan.setLocalName(singleName);
+                                    singleVlan.setDiscoveredName(singleName);
+                                    singleVlan.setContext("Setar");
+                                    singleVlan.setKind("VLANInterface");
+                                    Map<String, Object> svProps = new HashMap<>();
+                                    putIfNotNull(svProps, "vlanId", req.getVlanId());
+                                    putIfNotNull(svProps, "mgmtTemplate", req.getTemplateNameVlanMgmnt());
+                                    putIfNotNull(svProps, "configuredOntSN", req.getOntSN());
+                                    putIfNotNull(svProps, "configuredPort", selectedPort);
+                                    putIfNotNull(svProps, "vlanTemplate", req.getTemplateNameVlan());
+                                    putIfNotNull(svProps, "serviceId", req.getServiceId());
+                                    putIfNotNull(svProps, "vlanCreateTemplate", req.getTemplateNameVlanCreate());
+
+                                    svProps.put("OperationalState", "Active");
+                                    svProps.put("linkedOnt", ont.getDiscoveredName());
+                                    singleVlan.setProperties(svProps);
+                                    vlanRepo.save(singleVlan);
+                                } catch (RuntimeException e) {
+                                    slotAllocator.release(req.getOntSN(), selectedPort, idx);
+                                    throw e;
+                                }
                                 ont = logicalDeviceRepo.findByDiscoveredName(ont.getDiscoveredName()).get();
                                 ont.setContained(new HashSet<>(List.of(singleVlan)));
                                 logicalDeviceRepo.save(ont);
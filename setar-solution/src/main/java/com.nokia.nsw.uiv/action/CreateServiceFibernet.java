@@ -4,12 +4,14 @@ import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
+import com.nokia.nsw.uiv.lock.SubscriberLocked;
 import com.nokia.nsw.uiv.model.common.party.Customer;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.CreateServiceFibernetRequest;
 import com.nokia.nsw.uiv.response.CreateServiceFibernetResponse;
@@ -26,6 +28,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Component
 @Action
 @Slf4j
+@SubscriberLocked
+@IdempotentOrder
 public class CreateServiceFibernet implements HttpAction {
 
     private static final String ACTION_LABEL = "CreateServiceFibernet";
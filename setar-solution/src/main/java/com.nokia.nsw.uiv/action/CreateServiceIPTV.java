@@ -6,12 +6,14 @@ import com.nokia.nsw.uiv.exception.ModificationNotAllowedException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
+import com.nokia.nsw.uiv.lock.SubscriberLocked;
 import com.nokia.nsw.uiv.model.common.party.Customer;
 import com.nokia.nsw.uiv.model.common.party.CustomerRepository;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
 import com.nokia.nsw.uiv.model.service.SubscriptionRepository;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.response.CreateServiceFibernetResponse;
 import com.nokia.nsw.uiv.response.CreateServiceVoIPResponse;
@@ -36,6 +38,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @RestController
 @Action
 @Slf4j
+@SubscriberLocked
+@IdempotentOrder
 public class CreateServiceIPTV implements HttpAction {
 
     protected static final String ACTION_LABEL = Constants.CREATE_SERVICE_IPTV;
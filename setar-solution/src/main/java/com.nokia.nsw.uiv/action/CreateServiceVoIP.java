@@ -1,5 +1,6 @@
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.allocation.PotsLineAllocator;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
@@ -9,6 +10,7 @@ import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.CreateServiceVoIPRequest;
 import com.nokia.nsw.uiv.response.CreateServiceVoIPResponse;
@@ -27,6 +29,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder
 public class CreateServiceVoIP implements HttpAction {
     protected static final String ACTION_LABEL = Constants.CREATE_SERVICE_VOIP;
     private static final String ERROR_PREFIX = "UIV action CreateServiceVoIP execution failed - ";
@@ -36,6 +39,7 @@ public class CreateServiceVoIP implements HttpAction {
     @Autowired private ProductCustomRepository productRepo;
     @Autowired private LogicalDeviceCustomRepository logicalDeviceRepo;
     @Autowired private ServiceCustomRepository serviceCustomRepository;
+    @Autowired private PotsLineAllocator potsLineAllocator;
 
     @Override
     public Class<?> getActionClass() {
@@ -47,6 +51,10 @@ public class CreateServiceVoIP implements HttpAction {
         log.error("Executing CreateServiceVoIP action...");
         log.error(Constants.EXECUTING_ACTION, ACTION_LABEL);
         CreateServiceVoIPRequest req = (CreateServiceVoIPRequest) actionContext.getObject();
+        // devices whose POTS line this order booked, given back if the order stops before the service exists
+        LogicalDevice bookedOnt = null;
+        LogicalDevice bookedCpe = null;
+        int potsLine = "1".equals(req.getOntPort()) ? 1 : 2;
 
         try {
             // Step 1: Validate mandatory params
@@ -91,10 +99,6 @@ public class CreateServiceVoIP implements HttpAction {
                         null
                 );
             }
-            AtomicBoolean isSubscriberExist = new AtomicBoolean(true);
-            AtomicBoolean isSubscriptionExist = new AtomicBoolean(true);
-            AtomicBoolean isProductExist = new AtomicBoolean(true);
-            // Step 2 & 3: Subscriber
             String subscriberNameStr = req.getSubscriberName() + Constants.UNDER_SCORE  + req.getOntSN();
             if (subscriberNameStr.length() > 100) {
                 return new CreateServiceVoIPResponse(
@@ -105,6 +109,59 @@ public class CreateServiceVoIP implements HttpAction {
                         null
                 );
             }
+            String subscriptionName = req.getSubscriberName() + Constants.UNDER_SCORE  + req.getServiceId() + Constants.UNDER_SCORE  + req.getOntSN();
+            if (subscriptionName.length() > 100) {
+                return new CreateServiceVoIPResponse(
+                        "400",
+                        ERROR_PREFIX + "Subscription name too long",
+                        Instant.now().toString(),
+                        null,
+                        null
+                );
+            }
+            String productNameStr = req.getSubscriberName() +Constants.UNDER_SCORE + req.getProductSubtype() +Constants.UNDER_SCORE + req.getServiceId();
+            if (productNameStr.length() > 100) {
+                return new CreateServiceVoIPResponse(
+                        "400",
+                        ERROR_PREFIX + "Product name too long",
+                        Instant.now().toString(),
+                        null,
+                        null
+                );
+            }
+
+            // POTS line and CPE port are booked together before anything is created, so a line held by another
+            // number ends the order without leaving subscriber, services or devices behind
+            LogicalDevice cpeDevice = null;
+            Optional<LogicalDevice> optCpeDevice = logicalDeviceRepo.findByDiscoveredName("ONT" + Constants.UNDER_SCORE + req.getOntSN());
+            if (optCpeDevice.isPresent()) {
+                cpeDevice = optCpeDevice.get();
+            } else {
+                throw new RuntimeException("Could not found CPE device: " + "ONT" + Constants.UNDER_SCORE + req.getOntSN());
+            }
+            // a new ONT is created below with the line already set
+            LogicalDevice existingOnt = logicalDeviceRepo.findByDiscoveredName(ontName).orElse(null);
+            boolean ontLineHeld = existingOnt != null && req.getVoipNumber1().equals(
+                    String.valueOf(existingOnt.getProperties() == null ? null
+                            : existingOnt.getProperties().get(PotsLineAllocator.ontLineKey(potsLine))));
+            boolean cpePortHeld = cpeDevice.getProperties() != null && req.getVoipNumber1().equals(
+                    String.valueOf(cpeDevice.getProperties().get(PotsLineAllocator.cpePortKey(potsLine))));
+            if (!potsLineAllocator.allocate(existingOnt, cpeDevice, potsLine, req.getVoipNumber1())) {
+                return new CreateServiceVoIPResponse(
+                        "409",
+                        ERROR_PREFIX + "POTS port " + potsLine + " on " + ontName + " is already allocated",
+                        Instant.now().toString(),
+                        null,
+                        null
+                );
+            }
+            if (!ontLineHeld) bookedOnt = existingOnt;
+            if (!cpePortHeld) bookedCpe = cpeDevice;
+
+            AtomicBoolean isSubscriberExist = new AtomicBoolean(true);
+            AtomicBoolean isSubscriptionExist = new AtomicBoolean(true);
+            AtomicBoolean isProductExist = new AtomicBoolean(true);
+            // Step 2 & 3: Subscriber
             Customer subscriber = null;
             Optional<Customer> subscriberOpt = customerRepo.findByDiscoveredName(subscriberNameStr);
             if(subscriberOpt.isPresent()){
@@ -131,16 +188,6 @@ public class CreateServiceVoIP implements HttpAction {
                 customerRepo.save(newSub);
             }
             // Step 4: Subscription
-            String subscriptionName = req.getSubscriberName() + Constants.UNDER_SCORE  + req.getServiceId() + Constants.UNDER_SCORE  + req.getOntSN();
-            if (subscriptionName.length() > 100) {
-                return new CreateServiceVoIPResponse(
-                        "400",
-                        ERROR_PREFIX + "Subscription name too long",
-                        Instant.now().toString(),
-                        null,
-                        null
-                );
-            }
             Subscription subscription = null;
             Optional<Subscription> subscriptionOpt = subscriptionRepo.findByDiscoveredName(subscriptionName);
             if(subscriptionOpt.isPresent()){
@@ -198,16 +245,6 @@ public class CreateServiceVoIP implements HttpAction {
                 subscriptionRepo.save(subscription);
             }
             // Step 7: Product
-            String productNameStr = req.getSubscriberName() +Constants.UNDER_SCORE + req.getProductSubtype() +Constants.UNDER_SCORE + req.getServiceId();
-            if (productNameStr.length() > 100) {
-                return new CreateServiceVoIPResponse(
-                        "400",
-                        ERROR_PREFIX + "Product name too long",
-                        Instant.now().toString(),
-                        null,
-                        null
-                );
-            }
             Product product = null;
             Optional<Product> productOpt = productRepo.findByDiscoveredName(productNameStr);
             if(productOpt.isPresent()){
@@ -234,6 +271,7 @@ public class CreateServiceVoIP implements HttpAction {
             }
             if(isSubscriberExist.get() && isSubscriptionExist.get() && isProductExist.get()){
                 log.error("createServiceVOIP service already exist");
+                releasePots(bookedOnt, bookedCpe, potsLine, req.getVoipNumber1());
                 return new CreateServiceVoIPResponse("409","Service already exist/Duplicate entry",Instant.now().toString(),subscriptionName,"ONT" + req.getOntSN());
             }
             if(isSubscriptionExist.get()){
@@ -328,6 +366,10 @@ public class CreateServiceVoIP implements HttpAction {
             if(ontOpt.isPresent()){
                 ont = ontOpt.get();
                 log.error("ONTDevice is already exist with ontName: "+ontName);
+                // created by another order after the booking above, book its line now
+                if (existingOnt == null && !potsLineAllocator.allocate(ont, null, potsLine, req.getVoipNumber1())) {
+                    throw new RuntimeException("POTS port " + potsLine + " on " + ontName + " is already allocated");
+                }
             }else {
                 LogicalDevice dev = new LogicalDevice();
                 try {
@@ -344,6 +386,7 @@ public class CreateServiceVoIP implements HttpAction {
                 ontProps.put("deviceModel", req.getOntModel());
                 ontProps.put("oltPosition", req.getOltName());
                 ontProps.put("ontTemplate", req.getTemplateNameOnt());
+                ontProps.put(PotsLineAllocator.ontLineKey(potsLine), req.getVoipNumber1());
                 dev.setProperties(ontProps);
                 dev.setUsedResource(new HashSet<>(List.of(olt)));
                 dev.setUsingService(new HashSet<>(List.of(rfs)));
@@ -354,33 +397,19 @@ public class CreateServiceVoIP implements HttpAction {
             // Step 12: Configure VoIP ports
             Map<String, Object> ontProps = ont.getProperties();
             Map<String, Object> oltProps = olt.getProperties();
-            LogicalDevice cpeDevice = null;
-            Optional<LogicalDevice> optCpeDevice = logicalDeviceRepo.findByDiscoveredName("ONT" + Constants.UNDER_SCORE + req.getOntSN());
-            if (optCpeDevice.isPresent()) {
-                cpeDevice = optCpeDevice.get();
-            } else {
-                throw new RuntimeException("Could not found CPE device: " + "ONT" + Constants.UNDER_SCORE + req.getOntSN());
-            }
-
-
-            if ("1".equals(req.getOntPort())) {
-                ontProps.put("potsPort1Number", req.getVoipNumber1());
+            if (potsLine == 1) {
                 oltProps.put("voipPots1Template", req.getTemplateNamePots1());
-                cpeDevice.getProperties().put("voipPort1",req.getVoipNumber1());
             } else {
-                ontProps.put("potsPort2Number", req.getVoipNumber1());
                 oltProps.put("voipPots2Template", req.getTemplateNamePots2());
-                cpeDevice.getProperties().put("voipPort2",req.getVoipNumber1());
             }
             oltProps.put("voipServiceTemplate", req.getVoipServiceTemplate());
 
             ont.setProperties(ontProps);
             olt.setProperties(oltProps);
 
-            logicalDeviceRepo.save(cpeDevice);
-            ont = logicalDeviceRepo.findByDiscoveredName(ont.getDiscoveredName()).orElseThrow(()->new RuntimeException("OLTDevice not found: "+ontName));
-            ont.setProperties(ontProps);
-            logicalDeviceRepo.save(ont);
+            // The line keys were written by the allocator; a full save would put back the values read before booking
+            potsLineAllocator.saveOtherProperties(cpeDevice);
+            potsLineAllocator.saveOtherProperties(ont);
             olt = logicalDeviceRepo.findByDiscoveredName(olt.getDiscoveredName()).orElseThrow(()->new RuntimeException("OLTDevice not found: "+oltName));
             olt.setProperties(oltProps);
             logicalDeviceRepo.save(olt);
@@ -395,6 +424,7 @@ public class CreateServiceVoIP implements HttpAction {
 
         } catch (Exception ex) {
             log.error("Exception in CreateServiceVoIP", ex);
+            releasePots(bookedOnt, bookedCpe, potsLine, req.getVoipNumber1());
             return new CreateServiceVoIPResponse(
                     "500",
                     ERROR_PREFIX + "Error occurred while creating service VOIP - " + ex.getMessage(),
@@ -404,4 +434,16 @@ public class CreateServiceVoIP implements HttpAction {
             );
         }
     }
+
+    /**
+     * Give back the ONT line and CPE port this order booked; values that held the number before the order are kept.
+     */
+    private void releasePots(LogicalDevice ont, LogicalDevice cpe, int line, String number) {
+        try {
+            if (ont != null) potsLineAllocator.release(ont, line, number);
+            if (cpe != null) potsLineAllocator.releaseCpePort(cpe, line, number);
+        } catch (Exception e) {
+            log.error("Could not release POTS line {} booked for {}", line, number, e);
+        }
+    }
 }
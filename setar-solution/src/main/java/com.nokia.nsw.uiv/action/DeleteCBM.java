@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import com.nokia.nsw.uiv.allocation.PotsLineAllocator;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.exception.InternalServerErrorException;
 import com.nokia.nsw.uiv.framework.action.Action;
@@ -56,6 +57,12 @@ public class DeleteCBM implements HttpAction {
     @Autowired
     private ServiceCustomRepository serviceCustomRepository;
 
+    @Autowired
+    private NameBundleResolver nameBundleResolver;
+
+    @Autowired
+    private PotsLineAllocator potsLineAllocator;
+
     @Override
     public Class getActionClass() {
         return DeleteCBMRequest.class;
@@ -105,10 +112,19 @@ public class DeleteCBM implements HttpAction {
             Optional<Service> optRfs = Optional.empty();
             int subscriptionCount = 0;
 
+            // Resolve everything whose name is known up front in one round trip; the non-IPTV subscriber
+            // name depends on the CBM MAC and is looked up on its own below.
+            NameBundleResolver.Bundle bundle = nameBundleResolver.resolve(NameBundleResolver.names()
+                    .device(cbmName)
+                    .subscriber(subscriberName)
+                    .subscription(subscriptionName)
+                    .product(productName)
+                    .cfs(cfsName)
+                    .rfs(rfsName));
 
             // --- 3. Fetch CBM Device ---
             try {
-                optCbmDevice = cbmDeviceRepository.findByDiscoveredName(cbmName);
+                optCbmDevice = bundle.getDevice(cbmName);
                 if (!optCbmDevice.isPresent()) {
                     log.error("CBM device {} not found", cbmName);
                 }
@@ -119,7 +135,7 @@ public class DeleteCBM implements HttpAction {
             // If IPTV: direct subscriber name, else add MAC
             try {
                 if ("IPTV".equalsIgnoreCase(request.getProductType())) {
-                    Optional<Customer> subOpt = subscriberRepository.findByDiscoveredName(subscriberName);
+                    Optional<Customer> subOpt = bundle.getSubscriber();
                     if (subOpt.isPresent()) {
                         Customer setarSubscriber = subOpt.get();
                         if (setarSubscriber.getSubscription() != null) {
@@ -175,25 +191,25 @@ public class DeleteCBM implements HttpAction {
 
             // --- 4. Retrieve Associated Entities ---
             try {
-                optSubscription = subscriptionRepository.findByDiscoveredName(subscriptionName);
+                optSubscription = bundle.getSubscription();
             } catch (Exception e) {
                 log.error("Error fetching subscription {}", subscriptionName, e);
             }
 
             try {
-                optProduct = productRepository.findByDiscoveredName(productName);
+                optProduct = bundle.getProduct();
             } catch (Exception e) {
                 log.error("Error fetching product {}", productName, e);
             }
 
             try {
-                optCfs = serviceCustomRepository.findByDiscoveredName(cfsName);
+                optCfs = bundle.getCfs();
             } catch (Exception e) {
                 log.error("Error fetching CFS {}", cfsName, e);
             }
 
             try {
-                optRfs = serviceCustomRepository.findByDiscoveredName(rfsName);
+                optRfs = bundle.getRfs();
                 if (!optRfs.isPresent()) {
                     log.error("RFS {} not found; continuing but skipping RFS-specific updates", rfsName);
                 }
@@ -423,28 +439,18 @@ public class DeleteCBM implements HttpAction {
                 cpeDevice.setProperties(devProps);
             }
 
-            Object port1 = devProps.get("voipPort1");
-            Object port2 = devProps.get("voipPort2");
-
             boolean updated = false;
 
-            // Compare subscription VOIP number with CPE ports
-            if (voipNumber.equals(port1)) {
-                devProps.put("voipPort1", "Available");
-                updated = true;
-                log.error("Reset voipPort1 to Available on CPE {}", cpeDevice.getDiscoveredName());
-            }
-
-            if (voipNumber.equals(port2)) {
-                devProps.put("voipPort2", "Available");
-                updated = true;
-                log.error("Reset voipPort2 to Available on CPE {}", cpeDevice.getDiscoveredName());
+            // Compare subscription VOIP number with CPE ports, a port rebooked in between is left alone
+            for (int line = 1; line <= 2; line++) {
+                if (voipNumber.equals(devProps.get(PotsLineAllocator.cpePortKey(line)))
+                        && potsLineAllocator.releaseCpePort(cpeDevice, line, voipNumber.toString())) {
+                    updated = true;
+                    log.error("Reset voipPort{} to Available on CPE {}", line, cpeDevice.getDiscoveredName());
+                }
             }
 
-            if (updated) {
-                cbmDeviceRepository.save(cpeDevice, 2);
-                log.error("Saved updated CPE device {}", cpeDevice.getDiscoveredName());
-            } else {
+            if (!updated) {
                 log.error("No matching VOIP ports found on CPE {} - no reset performed",
                         cpeDevice.getDiscoveredName());
             }
@@ -24,6 +24,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Component
 @RestController
@@ -38,6 +39,7 @@ public class DeleteIPTV implements HttpAction {
     @Autowired private ProductCustomRepository productRepository;
     @Autowired private ServiceCustomRepository serviceCustomRepository;
     @Autowired private LogicalDeviceCustomRepository deviceRepository;
+    @Autowired private NameBundleResolver nameBundleResolver;
 
     @Override
     public Class getActionClass() {
@@ -90,12 +92,19 @@ public class DeleteIPTV implements HttpAction {
             }
 
             // Step 3: Retrieve entities
-            Optional<Customer> optCust = customerRepository.findByDiscoveredName(subscriberName);
-            Optional<Subscription> optSub = subscriptionRepository.findByDiscoveredName(subscriptionName);
-            Optional<Product> optProd = productRepository.findByDiscoveredName(productName);
-            Optional<Service> optCfs = serviceCustomRepository.findByDiscoveredName(cfsName);
-            Optional<Service> optRfs = serviceCustomRepository.findByDiscoveredName(rfsName);
-            Optional<LogicalDevice> optOnt = deviceRepository.findByDiscoveredName(ontName);
+            NameBundleResolver.Bundle bundle = nameBundleResolver.resolve(NameBundleResolver.names()
+                    .subscriber(subscriberName)
+                    .subscription(subscriptionName)
+                    .product(productName)
+                    .cfs(cfsName)
+                    .rfs(rfsName)
+                    .device(ontName));
+            Optional<Customer> optCust = bundle.getSubscriber();
+            Optional<Subscription> optSub = bundle.getSubscription();
+            Optional<Product> optProd = bundle.getProduct();
+            Optional<Service> optCfs = bundle.getCfs();
+            Optional<Service> optRfs = bundle.getRfs();
+            Optional<LogicalDevice> optOnt = bundle.getDevice(ontName);
 
             if (optCust.isEmpty() || optSub.isEmpty()) {
                 return successResponse(subscriptionName, ontName, "No entry found for Delete.");
@@ -146,17 +155,17 @@ public class DeleteIPTV implements HttpAction {
                 if (olt != null) {
 
                     // Check if ANY RFS is associated with this OLT
-                    List<Service> allServices = (List<Service>) serviceCustomRepository.findAll();
-
-                    boolean oltHasAssociatedRfs = allServices.stream()
-                            .filter(s -> s.getDiscoveredName().startsWith("RFS") ||
-                                    s.getDiscoveredName().startsWith("RFS_"))
-                            .anyMatch(s ->
-                                    s.getUsedResource().stream()
-                                            .anyMatch(res ->
-                                                    res.getDiscoveredName()
-                                                            .equalsIgnoreCase(olt.getDiscoveredName()))
-                            );
+                    boolean oltHasAssociatedRfs;
+                    try (Stream<Service> rfsServices = serviceCustomRepository.streamByKind(Constants.SETAR_KIND_SETAR_RFS)
+                            .filter(s -> s.getDiscoveredName().startsWith("RFS"))) {
+                        oltHasAssociatedRfs = rfsServices
+                                .anyMatch(s ->
+                                        s.getUsedResource().stream()
+                                                .anyMatch(res ->
+                                                        res.getDiscoveredName()
+                                                                .equalsIgnoreCase(olt.getDiscoveredName()))
+                                );
+                    }
 
                     // === Required Business Logic ===
                     if (!oltHasAssociatedRfs) {
@@ -179,9 +188,11 @@ public class DeleteIPTV implements HttpAction {
             // Step 8: Conditional deletion of Subscriber & Subscription
             if (optCust.isPresent() && optSub.isPresent()) {
                 Customer cust = optCust.get();
-                List<Subscription> subs = new ArrayList<>();
-                subscriptionRepository.findAll().forEach(subs::add);
-                if (subs.size() <= 1) {
+                long subs;
+                try (Stream<Subscription> subscriptions = subscriptionRepository.stream(s -> true, Constants.STREAM_PAGE_SIZE)) {
+                    subs = subscriptions.limit(2).count();
+                }
+                if (subs <= 1) {
                     subscriptionRepository.delete(optSub.get());
                     customerRepository.delete(cust);
                 } else {
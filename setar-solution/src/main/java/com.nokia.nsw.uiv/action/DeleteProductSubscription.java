@@ -8,6 +8,7 @@ import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.ProductCustomRepository;
 import com.nokia.nsw.uiv.repository.ServiceCustomRepository;
 import com.nokia.nsw.uiv.request.DeleteProductSubscriptionRequest;
@@ -26,6 +27,7 @@ import java.util.Optional;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder
 public class DeleteProductSubscription implements HttpAction {
 
     protected static final String ACTION_LABEL = "DeleteProductSubscription";
@@ -15,6 +15,9 @@
 
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.allocation.EvpnPortTemplates;
+import com.nokia.nsw.uiv.allocation.PotsLineAllocator;
+import com.nokia.nsw.uiv.allocation.SingleTaggedSlotAllocator;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.exception.InternalServerErrorException;
 import com.nokia.nsw.uiv.framework.action.Action;
@@ -61,6 +64,9 @@ public class DeleteSPR implements HttpAction {
     @Autowired private LogicalDeviceCustomRepository logicalDeviceRepository;
     @Autowired private LogicalInterfaceCustomRepository logicalInterfaceRepository;
     @Autowired private ServiceCustomRepository serviceCustomRepository;
+    @Autowired private NameBundleResolver nameBundleResolver;
+    @Autowired private SingleTaggedSlotAllocator slotAllocator;
+    @Autowired private PotsLineAllocator potsLineAllocator;
 
     @Override
     public Class<?> getActionClass() {
@@ -118,7 +124,16 @@ public class DeleteSPR implements HttpAction {
             // -----------------------------
             // 3) Retrieve Subscriber & determine "last service"
             // -----------------------------
-            Optional<Customer> optSubscriber = customerRepository.findByDiscoveredName(subscriberNameWithOnt);
+            String optCpeName="ONT" +Constants.UNDER_SCORE+ req.getOntSN();
+            NameBundleResolver.Bundle bundle = nameBundleResolver.resolve(NameBundleResolver.names()
+                    .subscriber(subscriberNameWithOnt)
+                    .subscription(subscriptionName)
+                    .product(productName)
+                    .cfs(cfsName)
+                    .rfs(rfsName)
+                    .device(ontName)
+                    .device(optCpeName));
+            Optional<Customer> optSubscriber = bundle.getSubscriber();
             boolean lastServiceForSubscriber = false;
             if (optSubscriber.isPresent()) {
                 Customer sub = optSubscriber.get();
@@ -135,11 +150,11 @@ public class DeleteSPR implements HttpAction {
             // -----------------------------
             // 4) Retrieve Objects
             // -----------------------------
-            Optional<Subscription> optSubscription = subscriptionRepository.findByDiscoveredName(subscriptionName);
-            Optional<Product> optProduct = productRepository.findByDiscoveredName(productName);
-            Optional<Service> optCfs = serviceCustomRepository.findByDiscoveredName(cfsName);
-            Optional<Service> optRfs = serviceCustomRepository.findByDiscoveredName(rfsName);
-            Optional<LogicalDevice> optOnt = logicalDeviceRepository.findByDiscoveredName(ontName);
+            Optional<Subscription> optSubscription = bundle.getSubscription();
+            Optional<Product> optProduct = bundle.getProduct();
+            Optional<Service> optCfs = bundle.getCfs();
+            Optional<Service> optRfs = bundle.getRfs();
+            Optional<LogicalDevice> optOnt = bundle.getDevice(ontName);
 
             // From ONT, try to retrieve parent OLT (if your data model links it via "parent" or property)
             Optional<LogicalDevice> optOlt = Optional.empty();
@@ -148,8 +163,7 @@ public class DeleteSPR implements HttpAction {
                 optOlt = ont.getUsedResource().stream().map(r->(LogicalDevice)r).findFirst();
             }
             // Attempt to retrieve a CPE device named"ONT" + ontSN (optional)
-            String optCpeName="ONT" +Constants.UNDER_SCORE+ req.getOntSN();
-            Optional<LogicalDevice> optCpe = logicalDeviceRepository.findByDiscoveredName(optCpeName);
+            Optional<LogicalDevice> optCpe = bundle.getDevice(optCpeName);
 
             // -----------------------------
             // 5) Delete Fibernet/Broadband Services
@@ -168,12 +182,16 @@ public class DeleteSPR implements HttpAction {
             if ("Bridged".equalsIgnoreCase(req.getProductSubtype())) {
                 String ontPort = nullSafe(req.getOntPort());
                 // Clear EVPN template on that port in both OLT and ONT
-                optOlt.ifPresent(olt -> clearEvpnsOnPort(olt, ontPort));
+                // If all EVPN card port templates (2..4) on the OLT are now empty -> clear EVPN card template, one OLT save
+                optOlt.ifPresent(olt -> {
+                    clearEvpnsOnPort(olt, ontPort);
+                    if (EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_CARD_PORT)) {
+                        clearOntCardTemplateAndRelease(olt);
+                    }
+                    safeSaveLogicalDevice(olt);
+                });
                 optOnt.ifPresent(ont -> clearEvpnsOnOntPort(ont, ontPort));
 
-                // If all EVPN port templates on OLT cleared -> clear EVPN card template
-                optOlt.ifPresent(this::maybeClearOntCardTemplateIfAllPortsEmpty);
-
                 // Remove RFS/CFS/Product/Subscription
                 cleanupServiceObjects(optRfs, optCfs, optProduct, optSubscription);
             }
@@ -193,20 +211,21 @@ public class DeleteSPR implements HttpAction {
                 removePossibleVlanInterfaces(req.getOntSN(), ontPort);
 
                 if ("1".equals(currentEvpnTemplateVal)) {
-                    optOlt.ifPresent(olt -> clearEvpnsOnPort(olt, ontPort));
+                    // all EVPN port templates (2..5) empty on the OLT after this one is cleared
+                    boolean lastEvpnPort = optOlt.map(olt -> {
+                        clearEvpnsOnPort(olt, ontPort);
+                        return EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_PORT);
+                    }).orElse(true);
+                    optOlt.ifPresent(olt -> {
+                        if (lastEvpnPort) clearOntCardTemplate(olt);
+                        safeSaveLogicalDevice(olt);
+                    });
                     optOnt.ifPresent(ont -> {
                         clearEvpnsOnOntPort(ont, ontPort);
                         clearOntCreateTemplate(ont);
+                        if (lastEvpnPort) clearOntMgmtTemplates(ont);
                         safeSaveLogicalDevice(ont);
                     });
-                    optOlt.ifPresent(this::safeSaveLogicalDevice);
-
-                    if (allEvpnPortsEmpty(optOlt)) {
-                        optOlt.ifPresent(this::clearOntCardTemplate);
-                        optOnt.ifPresent(this::clearOntMgmtTemplates);
-                        optOlt.ifPresent(this::safeSaveLogicalDevice);
-                        optOnt.ifPresent(this::safeSaveLogicalDevice);
-                    }
                 }
 
                 if (!"0".equals(currentEvpnTemplateVal)) {
@@ -248,10 +267,7 @@ public class DeleteSPR implements HttpAction {
                 boolean matchP2 = voipNumber1 != null && !voipNumber1.isEmpty() && voipNumber1.equals(pots2);
 
                 if (matchP2) {
-                    optOnt.ifPresent(ont -> {
-                        ont.getProperties().put("potsPort2Number", "");
-                        safeSaveLogicalDevice(ont);
-                    });
+                    optOnt.ifPresent(ont -> potsLineAllocator.release(ont, 2, pots2));
                     optOlt.ifPresent(olt -> {
                         olt.getProperties().put("voipPots2Template", "");
                         safeSaveLogicalDevice(olt);
@@ -259,10 +275,7 @@ public class DeleteSPR implements HttpAction {
                     // CPE port2 → Available (if present)
                     setCpePortStateAvailable(optCpe, "POTS_2");
                 } else {
-                    optOnt.ifPresent(ont -> {
-                        ont.getProperties().put("potsPort1Number", "");
-                        safeSaveLogicalDevice(ont);
-                    });
+                    optOnt.ifPresent(ont -> potsLineAllocator.release(ont, 1, pots1));
                     optOlt.ifPresent(olt -> {
                         olt.getProperties().put("voipPots1Template", "");
                         safeSaveLogicalDevice(olt);
@@ -400,13 +413,15 @@ public class DeleteSPR implements HttpAction {
         ont.setProperties(p);
     }
 
+    /**
+     * Clears the port template on the OLT; saved by the caller.
+     */
     private void clearEvpnsOnPort(LogicalDevice olt, String port) {
         if (isEmpty(port)) return;
         Map<String, Object> p = ensureProps(olt);
         // Map common EVPN OLT port templates (2..5)
         p.put("evpnEthPort" + port + "Template", "");
         olt.setProperties(p);
-        safeSaveLogicalDevice(olt);
     }
 
     private void clearEvpnsOnOntPort(LogicalDevice ont, String port) {
@@ -419,17 +434,6 @@ public class DeleteSPR implements HttpAction {
         safeSaveLogicalDevice(ont);
     }
 
-    private boolean allEvpnPortsEmpty(Optional<LogicalDevice> optOlt) {
-        if (!optOlt.isPresent()) return true;
-        Map<String, Object> p = ensureProps(optOlt.get());
-        // Check ports 2..5 known in your model
-        for (String k : Arrays.asList("evpnEthPort2Template","evpnEthPort3Template","evpnEthPort4Template","evpnEthPort5Template")) {
-            String v = stringProp(p, k);
-            if (!isEmpty(v)) return false;
-        }
-        return true;
-    }
-
     private void clearOntCardTemplate(LogicalDevice olt) {
         ensureProps(olt).put("evpnOntCardTemplate", "");
     }
@@ -471,8 +475,10 @@ public class DeleteSPR implements HttpAction {
 
     private void removePossibleVlanInterfaces(String ontSN, String ontPort) {
         if (isEmpty(ontSN) || isEmpty(ontPort)) return;
-        for (int suffix = 2; suffix <= 8; suffix++) {
-            String vlanName = ontSN + "_P" + ontPort + "_SINGLETAGGED_" + suffix;
+        // the interfaces of the port as they are in the store, not this instance's slot mask
+        for (int slot : slotAllocator.occupiedInStore(ontSN, ontPort)) {
+            if (slot > SingleTaggedSlotAllocator.LAST_VLAN_SLOT) break;
+            String vlanName = SingleTaggedSlotAllocator.interfaceName(ontSN, ontPort, slot);
             Optional<LogicalInterface> optVlan = logicalInterfaceRepository.findByDiscoveredName(vlanName);
             if (optVlan.isPresent()) {
                 logicalInterfaceRepository.delete(optVlan.get());
@@ -486,9 +492,8 @@ public class DeleteSPR implements HttpAction {
         LogicalDevice cpe = optCpe.get();
         // In many deployments, CPE port state is recorded on contained components.
         // If they’re on properties of device itself, adapt keys accordingly.
-        String key = "voipPort" + ("POTS_2".equals(portType) ? "2" : "1");
-        cpe.getProperties().put(key,"Available");
-        logicalDeviceRepository.save(cpe);
+        int line = "POTS_2".equals(portType) ? 2 : 1;
+        potsLineAllocator.releaseCpePort(cpe, line, stringProp(cpe.getProperties(), PotsLineAllocator.cpePortKey(line)));
     }
 
     private void cleanupServiceObjects(Optional<Service> optRfs,
@@ -522,31 +527,12 @@ public class DeleteSPR implements HttpAction {
         } catch (Exception ignore) {}
         return 1;
     }
-    private void maybeClearOntCardTemplateIfAllPortsEmpty(LogicalDevice oltDevice) {
-        // Fetch all logical interfaces linked to the OLT
-        String port4temp = oltDevice.getProperties().get("evpnEthPort4Template")!=null?oltDevice.getProperties().get("evpnEthPort4Template").toString():"";
-        String port3temp = oltDevice.getProperties().get("evpnEthPort3Template")!=null?oltDevice.getProperties().get("evpnEthPort3Template").toString():"";
-        String port2temp = oltDevice.getProperties().get("evpnEthPort2Template")!=null?oltDevice.getProperties().get("evpnEthPort2Template").toString():"";
-        boolean allPortsCleared=false;
-
-        if ((port4temp == null || port4temp == "") && (port3temp == null || port3temp == "") && (port2temp == null || port2temp == "") ) {
-            oltDevice = logicalDeviceRepository.findByDiscoveredName(oltDevice.getDiscoveredName()).get();
-            oltDevice.getProperties().put("evpnOntCardTemplate","");
-            allPortsCleared=true;
-            logicalDeviceRepository.save(oltDevice);
-        }
-
-        if (allPortsCleared) {
-            Map<String,Object> oltProps = oltDevice.getProperties();
-            oltDevice = logicalDeviceRepository.findByDiscoveredName(oltDevice.getDiscoveredName()).get();
-            // Clear the EVPN card template (reset description/properties, etc.)
-            oltProps.put("description","EVPN card template cleared");
-            oltProps.put("AdministrativeState", "Available");
-            oltDevice.setProperties(oltProps);
-
-            logicalDeviceRepository.save(oltDevice, 2);
-            log.error("Cleared EVPN card template for OLT {}", oltDevice.getDiscoveredName());
-        }
+    private void clearOntCardTemplateAndRelease(LogicalDevice olt) {
+        Map<String, Object> oltProps = ensureProps(olt);
+        // Clear the EVPN card template (reset description/properties, etc.)
+        oltProps.put("evpnOntCardTemplate", "");
+        oltProps.put("description", "EVPN card template cleared");
+        oltProps.put("AdministrativeState", "Available");
+        log.error("Cleared EVPN card template for OLT {}", olt.getDiscoveredName());
     }
 }
-
@@ -15,6 +15,7 @@ import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
 import com.nokia.nsw.uiv.model.service.SubscriptionRepository;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.DetachResourcesRequest;
 import com.nokia.nsw.uiv.response.DetachResourcesResponse;
@@ -32,6 +33,7 @@ import java.util.*;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder("fxOrderId")
 public class DetachResources implements HttpAction {
 
     protected static final String ACTION_LABEL = Constants.DETACH_RESOURCES;
@@ -47,6 +49,8 @@ public class DetachResources implements HttpAction {
     private ServiceCustomRepository serviceCustomRepository;
     @Autowired
     private LogicalDeviceCustomRepository deviceRepository;
+    @Autowired
+    private NameBundleResolver nameBundleResolver;
 
     @Override
     public Class<?> getActionClass() {
@@ -81,11 +85,17 @@ public class DetachResources implements HttpAction {
             Validations.validateMandatoryParams(request.getApSN4(), "ApSN4");
             Validations.validateMandatoryParams(request.getApSN5(), "ApSN5");
             // 2. Fetch entities
-            Optional<Customer> subscriber = subscriberRepository.findByDiscoveredName(request.getSubscriberName());
-            Optional<Subscription> subscription = subscriptionRepository.findByDiscoveredName(subscriptionName);
-            Optional<Product> product = productRepository.findByDiscoveredName(productName);
-            Optional<Service> cfs = serviceCustomRepository.findByDiscoveredName(cfsName);
-            Optional<Service> rfs = serviceCustomRepository.findByDiscoveredName(rfsName);
+            NameBundleResolver.Bundle bundle = nameBundleResolver.resolve(NameBundleResolver.names()
+                    .subscriber(request.getSubscriberName())
+                    .subscription(subscriptionName)
+                    .product(productName)
+                    .cfs(cfsName)
+                    .rfs(rfsName));
+            Optional<Customer> subscriber = bundle.getSubscriber();
+            Optional<Subscription> subscription = bundle.getSubscription();
+            Optional<Product> product = bundle.getProduct();
+            Optional<Service> cfs = bundle.getCfs();
+            Optional<Service> rfs = bundle.getRfs();
 
             if (!subscriber.isPresent() || !subscription.isPresent() || !product.isPresent() || !cfs.isPresent() || !rfs.isPresent()) {
                 return new DetachResourcesResponse("404", ERROR_PREFIX + "No entry found for Delete.",
@@ -1,5 +1,6 @@
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.config.CpeModelCatalog;
 import com.nokia.nsw.uiv.exception.AccessForbiddenException;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.exception.ModificationNotAllowedException;
@@ -42,6 +43,9 @@ public class ImportCPEDevice implements HttpAction {
     @Autowired
     private LogicalInterfaceCustomRepository logicalInterfaceRepository;
 
+    @Autowired
+    private CpeModelCatalog cpeModelCatalog;
+
     @Override
     public Class getActionClass() {
         return ImportCPEDeviceRequest.class;
@@ -109,18 +113,67 @@ public class ImportCPEDevice implements HttpAction {
                 log.error("Saved new CPE device: {}", devName);
             }
 
+            // Port names are keyed by serial only and some delete flows remove the device but leave its ports, so
+            // a re-import can find them: plan the tree from the model layout, look up the planned names once per
+            // kind, skip the ones that exist and write the rest in one batch per kind
+            String serialNo = request.getCpeSerialNo();
+            CpeModelCatalog.Layout layout = cpeModelCatalog.layoutOf(request.getCpeType(), request.getCpeModel());
+            List<String> portNames = new ArrayList<>();
+            for (int i = 1; i <= layout.getPotsPorts(); i++) {
+                portNames.add(portName(serialNo, "POTS_" + i));
+            }
+            for (int i = 1; i <= layout.getEthPorts(); i++) {
+                portNames.add(portName(serialNo, "ETH_" + i));
+            }
+            Set<String> existingPorts = new HashSet<>();
+            for (LogicalComponent port : componentRepository.findAllByDiscoveredNames(portNames)) {
+                existingPorts.add(port.getDiscoveredName());
+            }
+            List<String> vlanNames = new ArrayList<>();
+            for (int i = 1; i <= layout.getEthPorts(); i++) {
+                String ethPortName = portName(serialNo, "ETH_" + i);
+                if (existingPorts.contains(ethPortName)) continue;
+                for (int vlanIndex = 1; vlanIndex <= layout.vlansOn(i); vlanIndex++) {
+                    vlanNames.add(ethPortName + "_" + vlanIndex);
+                }
+            }
+            Set<String> existingVlans = new HashSet<>();
+            if (!vlanNames.isEmpty()) {
+                for (LogicalInterface vlan : logicalInterfaceRepository.findAllByDiscoveredNames(vlanNames)) {
+                    existingVlans.add(vlan.getDiscoveredName());
+                }
+            }
+            List<LogicalComponent> ports = new ArrayList<>();
+            List<LogicalInterface> vlans = new ArrayList<>();
+
             // Create POTS ports
             log.error("-----------------Create POTS ports------------------");
-            createPotsPort(request.getCpeSerialNo(), "POTS_1", cpeDevice);
-            createPotsPort(request.getCpeSerialNo(), "POTS_2", cpeDevice);
+            for (int i = 1; i <= layout.getPotsPorts(); i++) {
+                if (existingPorts.contains(portName(serialNo, "POTS_" + i))) {
+                    log.error("POTS port already exists: {}", portName(serialNo, "POTS_" + i));
+                    continue;
+                }
+                ports.add(newPotsPort(serialNo, "POTS_" + i));
+            }
 
             // Create Ethernet ports
             log.error("-----------------Create Ethernet ports------------------");
-            int noOfPorts = determineNumberOfEthernetPorts(request.getCpeType(), request.getCpeModel());
-            for (int i = 1; i <= noOfPorts; i++) {
-                createEthernetPort(request.getCpeSerialNo(), "ETH_" + i, cpeDevice);
+            for (int i = 1; i <= layout.getEthPorts(); i++) {
+                if (existingPorts.contains(portName(serialNo, "ETH_" + i))) {
+                    log.error("Ethernet port already exists: {}", portName(serialNo, "ETH_" + i));
+                    continue;
+                }
+                ports.add(newEthernetPort(serialNo, "ETH_" + i, layout.vlansOn(i), existingVlans, vlans));
             }
 
+            if (!ports.isEmpty()) {
+                componentRepository.saveAll(ports);
+            }
+            if (!vlans.isEmpty()) {
+                logicalInterfaceRepository.saveAll(vlans);
+            }
+            log.error("Created {} ports and {} VLAN interfaces for CPE device {}", ports.size(), vlans.size(), devName);
+
             log.error(Constants.ACTION_COMPLETED);
             return new ImportCPEDeviceResponse("201", "CPE Device created: "+cpeDevice.getDiscoveredName(), getCurrentTimestamp());
 
@@ -139,127 +192,75 @@ public class ImportCPEDevice implements HttpAction {
         }
     }
 
-    private void createPotsPort(String serialNo, String portType, LogicalDevice cpeDevice)
+    private LogicalComponent newPotsPort(String serialNo, String portType)
             throws BadRequestException, AccessForbiddenException, ModificationNotAllowedException {
-        log.error("-----------------Create POTS ports-Started------------------");
-        String portName = serialNo + Constants.UNDER_SCORE + portType;
-        Optional<LogicalComponent> optPort = componentRepository.findByDiscoveredName(portName);
-
-        if (!optPort.isPresent()) {
-            log.error("Creating POTS port: {}", portName);
-            LogicalComponent potsPort = new LogicalComponent();
-            potsPort.setLocalName(Validations.encryptName(portName));
-            potsPort.setDiscoveredName(portName);
-            potsPort.setKind(Constants.SETAR_KIND_CPE_PORT);
-            potsPort.setContext(Constants.SETAR);
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("portName", portName);
-            properties.put("serialNumber", serialNo);
-            properties.put("portStatus", "Available");
-            properties.put("portType", portType);
-            properties.put("serviceCount", "0");
-            properties.put("description","Voice Port");
-            potsPort.setProperties(properties);
-
-            componentRepository.save(potsPort, 2);
-//            cpeDevice.setContained(new HashSet<>(List.of(potsPort)));
-            cpeDeviceRepository.save(cpeDevice, 2);
-            log.error("POTS port created and associated: {}", portName);
-        } else {
-            log.error("POTS port already exists: {}", portName);
-        }
-        log.error("-----------------Create POTS ports-Completed------------------");
+        String portName = portName(serialNo, portType);
+        LogicalComponent potsPort = new LogicalComponent();
+        potsPort.setLocalName(Validations.encryptName(portName));
+        potsPort.setDiscoveredName(portName);
+        potsPort.setKind(Constants.SETAR_KIND_CPE_PORT);
+        potsPort.setContext(Constants.SETAR);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("portName", portName);
+        properties.put("serialNumber", serialNo);
+        properties.put("portStatus", "Available");
+        properties.put("portType", portType);
+        properties.put("serviceCount", "0");
+        properties.put("description","Voice Port");
+        potsPort.setProperties(properties);
+        return potsPort;
     }
 
-    private void createEthernetPort(String serialNo, String portType, LogicalDevice cpeDevice)
+    /**
+     * Builds the Ethernet port and adds its VLAN interfaces that do not exist yet to the given list; a port that
+     * got VLANs is Allocated.
+     */
+    private LogicalComponent newEthernetPort(String serialNo, String portType, int vlanCount, Set<String> existingVlans,
+                                             List<LogicalInterface> vlans)
             throws BadRequestException, AccessForbiddenException, ModificationNotAllowedException {
-
-        String portName = serialNo + Constants.UNDER_SCORE + portType;
-        Optional<LogicalComponent> optPort = componentRepository.findByDiscoveredName(portName);
-        if (!optPort.isPresent()) {
-            log.error("Creating Ethernet port: {}", portName);
-            LogicalComponent ethPort = new LogicalComponent();
-            ethPort.setLocalName(Validations.encryptName(portName));
-            ethPort.setDiscoveredName(portName);
-            ethPort.setKind(Constants.SETAR_KIND_CPE_PORT);
-            ethPort.setContext(Constants.SETAR);
-            Map<String, Object> properties = new HashMap<>();
-            properties.put("portName", portName);
-            properties.put("serialNumber", serialNo);
-            properties.put("portType", portType);
-            properties.put("serviceCount", "0");
-            properties.put("portStatus", "Available");
-            properties.put("description","Data Port");
-
-            ethPort.setProperties(properties);
-            componentRepository.save(ethPort, 2);
-//            cpeDevice.setContained(new HashSet<>(List.of(ethPort)));
-            cpeDeviceRepository.save(cpeDevice, 2);
-            log.error("Ethernet port created and associated: {}", portName);
-
-            // VLAN interfaces (LogicalInterface)
-            if (!portType.equalsIgnoreCase("ETH_1") && !portType.equalsIgnoreCase("ETH_2")) {
-
-                boolean vlanCreated = false;
-
-                for (int vlanIndex = 1; vlanIndex <= 7; vlanIndex++) {
-
-                    String vlanName = portName + "_" + vlanIndex;
-                    Optional<LogicalInterface> optVlan = logicalInterfaceRepository.findByDiscoveredName(vlanName);
-
-                    if (!optVlan.isPresent()) {
-
-                        vlanCreated = true;
-
-                        LogicalInterface vlan = new LogicalInterface();
-                        vlan.setLocalName(Validations.encryptName(vlanName));
-                        vlan.setDiscoveredName(vlanName);
-                        vlan.setKind(Constants.SETAR_KIND_VLAN_INTERFACE);
-                        vlan.setContext(Constants.SETAR);
-
-                        Map<String, Object> vlanProps = new HashMap<>();
-                        vlanProps.put("name", vlanName);
-                        vlanProps.put("linkedEthPort", portName);
-                        vlanProps.put("serviceId", "");
-                        vlanProps.put("serviceType", "");
-                        vlanProps.put("vlanId", "");
-                        vlanProps.put("vlanStatus", "Available");
-                        vlanProps.put("description","VLAN Interface for " + portName);
-                        vlan.setProperties(vlanProps);
-                        logicalInterfaceRepository.save(vlan, 2);
-//                        ethPort.setContainedinterface(new HashSet<>(List.of(vlan)));
-                    }
-                }
-                try {
-                    Map<String, Object> props = ethPort.getProperties();
-                    if (vlanCreated) {
-                        props.put("portStatus", "Allocated");
-                        log.error("Port status updated to Allocated for: {}", portName);
-                    } else {
-                        props.put("portStatus", "Available");
-                        log.error("No VLAN created. Port status updated to Available for: {}", portName);
-                    }
-                    componentRepository.save(ethPort);
-                } catch (Exception e) {
-                    Map<String, Object> props = ethPort.getProperties();
-                    props.put("portStatus", "Available");
-                    componentRepository.save(ethPort);
-                }
-
-            } else {
-                componentRepository.save(ethPort);
-            }
+        String portName = portName(serialNo, portType);
+        LogicalComponent ethPort = new LogicalComponent();
+        ethPort.setLocalName(Validations.encryptName(portName));
+        ethPort.setDiscoveredName(portName);
+        ethPort.setKind(Constants.SETAR_KIND_CPE_PORT);
+        ethPort.setContext(Constants.SETAR);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("portName", portName);
+        properties.put("serialNumber", serialNo);
+        properties.put("portType", portType);
+        properties.put("serviceCount", "0");
+        properties.put("description","Data Port");
+        ethPort.setProperties(properties);
+
+        // VLAN interfaces (LogicalInterface)
+        boolean vlanCreated = false;
+        for (int vlanIndex = 1; vlanIndex <= vlanCount; vlanIndex++) {
+            String vlanName = portName + "_" + vlanIndex;
+            if (existingVlans.contains(vlanName)) continue;
+            vlanCreated = true;
+            LogicalInterface vlan = new LogicalInterface();
+            vlan.setLocalName(Validations.encryptName(vlanName));
+            vlan.setDiscoveredName(vlanName);
+            vlan.setKind(Constants.SETAR_KIND_VLAN_INTERFACE);
+            vlan.setContext(Constants.SETAR);
+
+            Map<String, Object> vlanProps = new HashMap<>();
+            vlanProps.put("name", vlanName);
+            vlanProps.put("linkedEthPort", portName);
+            vlanProps.put("serviceId", "");
+            vlanProps.put("serviceType", "");
+            vlanProps.put("vlanId", "");
+            vlanProps.put("vlanStatus", "Available");
+            vlanProps.put("description","VLAN Interface for " + portName);
+            vlan.setProperties(vlanProps);
+            vlans.add(vlan);
         }
+        properties.put("portStatus", vlanCreated ? "Allocated" : "Available");
+        return ethPort;
     }
 
-    private int determineNumberOfEthernetPorts(String cpeType, String cpeModel) {
-        if ("ONT".equalsIgnoreCase(cpeType)) {
-            if ("XS-250WX-A".equalsIgnoreCase(cpeModel) || "XS-250X-A".equalsIgnoreCase(cpeModel)) {
-                return 5;
-            }
-            return 4;
-        }
-        return 0;
+    private static String portName(String serialNo, String portType) {
+        return serialNo + Constants.UNDER_SCORE + portType;
     }
 
     private String getCurrentTimestamp() {
@@ -9,6 +9,7 @@ import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.ModifyCBMRequest;
 import com.nokia.nsw.uiv.response.ModifyCBMResponse;
@@ -26,6 +27,7 @@ import java.util.*;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder("fxOrderId")
 public class ModifyCBM implements HttpAction {
 
     protected static final String ACTION_LABEL = Constants.MODIFY_CBM;
@@ -10,6 +10,7 @@ import com.nokia.nsw.uiv.model.service.Product;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
 import com.nokia.nsw.uiv.model.service.SubscriptionRepository;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDeviceRepository;
@@ -32,6 +33,7 @@ import java.util.Optional;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder
 public class ModifyIPTV implements HttpAction {
 
     protected static final String ACTION_LABEL = "ModifyIPTV";
@@ -58,6 +60,9 @@ public class ModifyIPTV implements HttpAction {
     @Autowired
     private LogicalInterfaceCustomRepository logicalInterfaceRepository;
 
+    @Autowired
+    private NameBundleResolver nameBundleResolver;
+
     @Override
     public Class getActionClass() {
         return ModifyIPTVRequest.class;
@@ -122,11 +127,17 @@ public class ModifyIPTV implements HttpAction {
                 );
             }
             // -------------------- Fetch entities --------------------
-            Optional<Customer> optSubscriber = customerRepository.findByDiscoveredName(subscriberName);
-            Optional<Subscription> optSubscription = subscriptionRepository.findByDiscoveredName(subscriptionName);
-            Optional<Product> optProduct = productRepository.findByDiscoveredName(productName);
-            Optional<Service> optCFS = serviceCustomRepository.findByDiscoveredName(cfsName);
-            Optional<Service> optRFS = serviceCustomRepository.findByDiscoveredName(rfsName);
+            NameBundleResolver.Bundle bundle = nameBundleResolver.resolve(NameBundleResolver.names()
+                    .subscriber(subscriberName)
+                    .subscription(subscriptionName)
+                    .product(productName)
+                    .cfs(cfsName)
+                    .rfs(rfsName));
+            Optional<Customer> optSubscriber = bundle.getSubscriber();
+            Optional<Subscription> optSubscription = bundle.getSubscription();
+            Optional<Product> optProduct = bundle.getProduct();
+            Optional<Service> optCFS = bundle.getCfs();
+            Optional<Service> optRFS = bundle.getRfs();
 
             if (optSubscriber.isEmpty() || optSubscription.isEmpty() || optProduct.isEmpty() || optCFS.isEmpty() || optRFS.isEmpty()) {
                 return new ModifyIPTVResponse(
@@ -17,6 +17,7 @@ import com.nokia.nsw.uiv.model.resource.logical.*;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.Subscription;
 import com.nokia.nsw.uiv.model.service.SubscriptionRepository;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
 import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.ModifySPRRequest;
 import com.nokia.nsw.uiv.response.CreateServiceIPTVResponse;
@@ -34,6 +35,7 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Action
 @Slf4j
+@IdempotentOrder("fxOrderId")
 public class ModifySPR implements HttpAction {
 
     protected static final String ACTION_LABEL = Constants.MODIFY_SPR;
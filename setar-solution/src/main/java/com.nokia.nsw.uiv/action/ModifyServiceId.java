@@ -35,6 +35,9 @@ public class ModifyServiceId implements HttpAction {
     @Autowired
     private ServiceCustomRepository serviceCustomRepository;
 
+    @Autowired
+    private ServiceIdIndex serviceIdIndex;
+
     @Autowired
     private ProductCustomRepository productRepo;
 
@@ -86,69 +89,53 @@ public class ModifyServiceId implements HttpAction {
             String oldServiceId = req.getServiceId();
             String newServiceId = req.getServiceIdNew();
 
-            boolean updatesApplied = false;
-
             log.error("------------Test Trace # 3--------------- old=" + oldServiceId + ", new=" + newServiceId);
 
             // 2. Locate CFS candidates
-            List<Service> cfsList1 = (List<Service>) serviceCustomRepository.findAll();
-            List<Service> cfsList = new ArrayList<>();
-            for(Service cfs:cfsList1)
-            {
-                if(cfs.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_CFS)) {
-                    if (cfs.getDiscoveredName().contains(oldServiceId)) {
-                        cfsList.add(cfs);
-                    }
-                }
-            }
-            log.error("------------Test Trace # 4--------------- Found CFS candidates: " + cfsList.size());
-
-            for (Service cfs : cfsList) {
+            // Matching Rule A/B is applied by the serviceId index, which also returns the products,
+            // subscriptions and RFS carrying the serviceId in the same batch
+            ServiceIdIndex.Group group = serviceIdIndex.load(oldServiceId);
+            log.error("------------Test Trace # 4--------------- Found CFS candidates: " + group.getCfs().size());
+
+            // 3. Collect the renames; each entity is updated once even when several CFS share it
+            Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+            Map<String, Product> products = new LinkedHashMap<>();
+            Set<String> customerNames = new LinkedHashSet<>();
+            Map<String, LogicalDevice> devices = new LinkedHashMap<>();
+            Map<String, Service> services = new LinkedHashMap<>();
+
+            for (Service cfs : group.getCfs()) {
                 String cfsName = cfs.getDiscoveredName();
-
-                // Matching Rule A/B
-                boolean matches = false;
-                if (oldServiceId.contains(Constants.UNDER_SCORE )) {
-                    int first = cfsName.indexOf(Constants.UNDER_SCORE );
-                    int last = cfsName.lastIndexOf(Constants.UNDER_SCORE );
-                    if (first >= 0 && last > first) {
-                        String between = cfsName.substring(first + 1, last);
-                        if (between.equalsIgnoreCase(oldServiceId)) {
-                            matches = true;
-                        }
-                    }
-                } else {
-                    String[] tokens = cfsName.split(Constants.UNDER_SCORE );
-                    if (tokens.length >= 3 && tokens[2].equalsIgnoreCase(oldServiceId)) {
-                        matches = true;
-                    }
-                }
-
-                if (!matches) continue;
                 log.error("Customer Facing Service match found: "+cfsName);
                 log.error("------------Test Trace # 5--------------- Processing CFS: " + cfsName);
 
                 // Locate RFS
                 String rfsName = cfsName.replace("CFS", "RFS");
-                Optional<Service> rfsOpt = serviceCustomRepository.findByDiscoveredName(rfsName);
+                Optional<Service> rfsOpt = group.findService(rfsName);
+                if (!rfsOpt.isPresent()) {
+                    rfsOpt = serviceCustomRepository.findByDiscoveredName(rfsName);
+                }
 
                 // Retrieve product
                 String productDiscoveredName = cfs.getUsingService().stream().filter(ser->ser.getKind().equals(Constants.SETAR_KIND_SETAR_PRODUCT)).findFirst().get().getDiscoveredName();
-                Optional<Product> productOpt =productRepo.findByDiscoveredName(productDiscoveredName); // adjust association
+                Optional<Product> productOpt = group.findProduct(productDiscoveredName);
+                if (!productOpt.isPresent()) {
+                    productOpt = productRepo.findByDiscoveredName(productDiscoveredName);
+                }
                 Optional<Subscription> subsOpt = Optional.empty();
-                Optional<Customer> custOpt = Optional.empty();
 
                 if (productOpt.isPresent()) {
-                    Product prod = productOpt.get();
-                    subsOpt = prod.getSubscription().stream().findFirst();
-                    subsOpt = subscriptionRepo.findByDiscoveredName(subsOpt.get().getDiscoveredName());
-                            // adjust association
-                    custOpt = Optional.of(subsOpt.get().getCustomer()); // adjust association
+                    String subsName = productOpt.get().getSubscription().stream().findFirst().get().getDiscoveredName();
+                    subsOpt = group.findSubscription(subsName);
+                    if (!subsOpt.isPresent()) {
+                        subsOpt = subscriptionRepo.findByDiscoveredName(subsName);
+                    }
+                    customerNames.add(subsOpt.get().getCustomer().getDiscoveredName());
                 }
 
                 // Update subscription
-                if (subsOpt.isPresent()) {
-                    Subscription subs = subscriptionRepo.findByDiscoveredName(subsOpt.get().getDiscoveredName()).get();
+                if (subsOpt.isPresent() && subscriptions.putIfAbsent(subsOpt.get().getDiscoveredName(), subsOpt.get()) == null) {
+                    Subscription subs = subsOpt.get();
                     String newName = subs.getDiscoveredName().replace(oldServiceId, newServiceId);
                     subs.setDiscoveredName(newName);
 
@@ -156,40 +143,21 @@ public class ModifyServiceId implements HttpAction {
                     props.put("serviceID", newServiceId);
                     subs.setProperties(props);
                     log.error("Subscription updated successfully with the updated name: "+newName);
-                    subscriptionRepo.save(subs);
-                    updatesApplied = true;
                     log.error("------------Test Trace # 6--------------- Subscription updated: " + newName);
                 }
 
                 // Update product
-                if (productOpt.isPresent()) {
-                    Product prod = productRepo.findByDiscoveredName(productOpt.get().getDiscoveredName()).get();
+                if (productOpt.isPresent() && products.putIfAbsent(productOpt.get().getDiscoveredName(), productOpt.get()) == null) {
+                    Product prod = productOpt.get();
                     String newName = prod.getDiscoveredName().replace(oldServiceId, newServiceId);
                     prod.setDiscoveredName(newName);
                     log.error("Product updated successfully with the updated name: "+newName);
-                    productRepo.save(prod);
-                    updatesApplied = true;
                     log.error("------------Test Trace # 7--------------- Product updated: " + newName);
                 }
 
-                // Update subscriber
-                if (custOpt.isPresent()) {
-                    Customer cust = customerRepo.findByDiscoveredName(custOpt.get().getDiscoveredName()).get();
-                    String newName = cust.getDiscoveredName().replace(oldServiceId, newServiceId);
-                    cust.setDiscoveredName(newName);
-
-                    Map<String, Object> custProps = cust.getProperties() == null ? new HashMap<>() : new HashMap<>(cust.getProperties());
-                    custProps.put("accountNumber", newServiceId);
-                    cust.setProperties(custProps);
-                    log.error("Subscriber updated successfully with the updated name: "+newName);
-                    customerRepo.save(cust);
-                    updatesApplied = true;
-                    log.error("------------Test Trace # 8--------------- Subscriber updated: " + newName);
-                }
-
                 // Update RFS + resources
-                if (rfsOpt.isPresent()) {
-                    Service rfs = serviceCustomRepository.findByDiscoveredName(rfsOpt.get().getDiscoveredName()).get();
+                if (rfsOpt.isPresent() && services.putIfAbsent(rfsOpt.get().getDiscoveredName(), rfsOpt.get()) == null) {
+                    Service rfs = rfsOpt.get();
 
                     rfs.getUsedResource().forEach(res -> {
                         if (res instanceof LogicalDevice) {
@@ -205,9 +173,9 @@ public class ModifyServiceId implements HttpAction {
                                     props.put("potsPort2Number",newServiceId);
                                 }
 
-                                logicalDeviceRepository.save(ont);
+                                devices.putIfAbsent(ont.getDiscoveredName(), ont);
                                 log.error("------------Test Trace # 9--------------- ONT updated: " + ont.getDiscoveredName());
-                            }else if(ont.getDiscoveredName().contains("CBM")){
+                            }else if(ont.getDiscoveredName().contains("CBM") && devices.putIfAbsent(ont.getDiscoveredName(), ont) == null){
                                 LogicalDevice cbm = (LogicalDevice) res;
                                 Map<String,Object> prop = res.getProperties();
                                 String newDevName = cbm.getDiscoveredName().replace(oldServiceId, newServiceId);
@@ -215,7 +183,6 @@ public class ModifyServiceId implements HttpAction {
                                 cbm.setDiscoveredName(newDevName);
                                 prop.put("serialNo",newServiceId);
                                 cbm.setProperties(prop);
-                                logicalDeviceRepository.save(cbm);
                                 log.error("------------Test Trace # 10--------------- CBM updated: " + cbm.getDiscoveredName());
                             }
                         }
@@ -223,23 +190,40 @@ public class ModifyServiceId implements HttpAction {
 
                     String newRfsName = rfs.getDiscoveredName().replace(oldServiceId, newServiceId);
                     rfs.setDiscoveredName(newRfsName);
-                    serviceCustomRepository.save(rfs);
-                    updatesApplied = true;
                     log.error("------------Test Trace # 11--------------- RFS updated: " + newRfsName);
                 }
 
                 // Update CFS
-                cfs = serviceCustomRepository.findByDiscoveredName(cfs.getDiscoveredName()).get();
-                String newCfsName = cfs.getDiscoveredName().replace(oldServiceId, newServiceId);
-                cfs.setDiscoveredName(newCfsName);
-                log.error("CFS updated successfully with the updated name: "+newCfsName);
-                serviceCustomRepository.save(cfs);
-                if(cfs!=null){
-                    updatesApplied = true;
+                if (services.putIfAbsent(cfsName, cfs) == null) {
+                    String newCfsName = cfsName.replace(oldServiceId, newServiceId);
+                    cfs.setDiscoveredName(newCfsName);
+                    log.error("CFS updated successfully with the updated name: "+newCfsName);
+                    log.error("------------Test Trace # 12--------------- CFS updated: " + newCfsName);
                 }
-                log.error("------------Test Trace # 12--------------- CFS updated: " + newCfsName);
             }
 
+            // Update subscriber
+            List<Customer> customers = customerNames.isEmpty() ? new ArrayList<>() : customerRepo.findAllByDiscoveredNames(customerNames);
+            for (Customer cust : customers) {
+                String newName = cust.getDiscoveredName().replace(oldServiceId, newServiceId);
+                cust.setDiscoveredName(newName);
+
+                Map<String, Object> custProps = cust.getProperties() == null ? new HashMap<>() : new HashMap<>(cust.getProperties());
+                custProps.put("accountNumber", newServiceId);
+                cust.setProperties(custProps);
+                log.error("Subscriber updated successfully with the updated name: "+newName);
+                log.error("------------Test Trace # 8--------------- Subscriber updated: " + newName);
+            }
+
+            // 4. Apply every rename as one batch per repository
+            if (!subscriptions.isEmpty()) subscriptionRepo.saveAll(subscriptions.values());
+            if (!products.isEmpty()) productRepo.saveAll(products.values());
+            if (!customers.isEmpty()) customerRepo.saveAll(customers);
+            if (!devices.isEmpty()) logicalDeviceRepository.saveAll(devices.values());
+            if (!services.isEmpty()) serviceCustomRepository.saveAll(services.values());
+            boolean updatesApplied = !subscriptions.isEmpty() || !products.isEmpty() || !customers.isEmpty()
+                    || !services.isEmpty();
+
             // 5. Generate response
             if (updatesApplied) {
                 log.error(Constants.ACTION_COMPLETED);
@@ -23,6 +23,8 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 @RestController
@@ -87,15 +89,10 @@ public class ModifySubscriber implements HttpAction {
             boolean updatesApplied = false;
 
             // 3. Locate CFS containing old subscriber
-            List<Service> cfsList1 = (List<Service>) serviceCustomRepository.findAll();
-            List<Service> cfsList = new ArrayList<>();
-            for(Service cfs:cfsList1)
-            {
-                if(cfs.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_CFS)) {
-                    if (cfs.getDiscoveredName().contains(oldSubscriberName)) {
-                        cfsList.add(cfs);
-                    }
-                }
+            List<Service> cfsList;
+            try (Stream<Service> cfsCandidates = serviceCustomRepository.streamByKind(Constants.SETAR_KIND_SETAR_CFS)) {
+                cfsList = cfsCandidates.filter(cfs -> cfs.getDiscoveredName().contains(oldSubscriberName))
+                        .collect(Collectors.toList());
             }
             log.error("------------Test Trace # 4--------------- CFS candidates found: " + cfsList.size());
 
@@ -23,7 +23,9 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -75,21 +77,17 @@ public class QueryAccountCPE implements HttpAction {
             String pattern;
 
             List<Subscription> subscriptionList = new ArrayList<>();
-            List<Subscription> subscriptions= (List<Subscription>) subscriptionRepo.findAll();
-            for(Subscription s:subscriptions) {
-                if (accountNumber != null && serviceId != null) {
-                    pattern = accountNumber + Constants.UNDER_SCORE + serviceId;
-                    if(s.getDiscoveredName().equalsIgnoreCase(pattern))
-                    {
-                      subscriptionList.add(s);
-                    } else if (s.getDiscoveredName().contains("-"+serviceId))
-                    {
-                        subscriptionList.add(s);
-                    } else if(s.getDiscoveredName().contains(accountNumber))
-                    {
-                        subscriptionList.add(s);
-                    }
+            if (accountNumber != null && serviceId != null) {
+                pattern = accountNumber + Constants.UNDER_SCORE + serviceId;
+                Map<String, Subscription> candidates = new LinkedHashMap<>();
+                subscriptionRepo.findByDiscoveredName(pattern).ifPresent(s -> candidates.put(s.getDiscoveredName(), s));
+                for (Subscription s : subscriptionRepo.findByDiscoveredNameContaining("-" + serviceId)) {
+                    candidates.putIfAbsent(s.getDiscoveredName(), s);
+                }
+                for (Subscription s : subscriptionRepo.findByDiscoveredNameContaining(accountNumber)) {
+                    candidates.putIfAbsent(s.getDiscoveredName(), s);
                 }
+                subscriptionList.addAll(candidates.values());
             }
 
             // Step 3: Select matching subscription
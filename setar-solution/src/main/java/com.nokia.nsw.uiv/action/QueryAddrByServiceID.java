@@ -22,7 +22,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.StreamSupport;
 
 @Component
 @Action
@@ -35,6 +34,9 @@ public class QueryAddrByServiceID implements HttpAction {
     @Autowired
     private ServiceCustomRepository serviceCustomRepository;
 
+    @Autowired
+    private ServiceIdIndex serviceIdIndex;
+
     @Autowired
     private CustomerCustomRepository customerRepository;
 
@@ -69,24 +71,18 @@ public class QueryAddrByServiceID implements HttpAction {
             log.error("Looking up RFS entries containing service id '{}'", serviceId);
 
             // 2) Locate the target service (RFS) using SERVICE_ID
-            List<Service> rfsListAll = StreamSupport.stream(serviceCustomRepository.findAll().spliterator(),false).filter(service -> service.getDiscoveredName().contains(Constants.RFS)).toList();
-            List<Service> rfsList =new ArrayList<>();
-            rfsListAll.forEach(rFS -> {
-                if (rFS.getDiscoveredName().contains(serviceId) && rFS.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_RFS)) {
-                    rfsList.add(rFS);
-                }});
-            if (rfsList == null || rfsList.isEmpty()) {
+            ServiceIdIndex.Group group = serviceIdIndex.load(serviceId);
+            if (group.getRfs().isEmpty()) {
                 log.error("No RFS entries found containing '{}'", serviceId);
                 return createErrorResponse("404", ERROR_PREFIX + "No Service Details Found");
             }
 
             Service matchedRfs = null;
-            for (Service rfs : rfsList) {
-                String name = rfs.getDiscoveredName() == null ? "" : rfs.getDiscoveredName();
-                String[] tokens = name.split(Constants.UNDER_SCORE , -1);
-                if (tokens.length >= 3 && serviceId.equals(tokens[2])) {
-                    matchedRfs = serviceCustomRepository.findByDiscoveredName(rfs.getDiscoveredName()).get();
-                    log.error("Matched RFS by token check: {}", name);
+            for (Service rfs : group.getRfs()) {
+                ServiceNameTokenIndex.Tokens tokens = ServiceNameTokenIndex.parse(rfs.getKind(), rfs.getDiscoveredName());
+                if (tokens != null && serviceId.equals(tokens.getServiceId())) {
+                    matchedRfs = rfs;
+                    log.error("Matched RFS by token check: {}", rfs.getDiscoveredName());
                     break;
                 }
             }
@@ -97,10 +93,8 @@ public class QueryAddrByServiceID implements HttpAction {
             }
 
             // 3) Resolve related data: product <- cfs <- rfs ; subscription <- product ; subscriber <- subscription
-            Service cfs = serviceCustomRepository.findByDiscoveredName(matchedRfs.getDiscoveredName().replace("RFS","CFS")).get(); // assume this getter exists (as used in CreateServiceFibernet)
-            if(cfs!=null){
-                cfs = serviceCustomRepository.findByDiscoveredName(cfs.getDiscoveredName()).get();
-            }
+            String cfsName = matchedRfs.getDiscoveredName().replace("RFS","CFS");
+            Service cfs = group.findService(cfsName).orElseGet(() -> serviceCustomRepository.findByDiscoveredName(cfsName).get());
             if (cfs == null) {
                 log.error("Matched RFS does not reference a CustomerFacingService");
                 return createErrorResponse("404", ERROR_PREFIX + "No Service Details Found");
@@ -108,7 +102,8 @@ public class QueryAddrByServiceID implements HttpAction {
 
             // From CFS to Product
             String productDiscoveredName = cfs.getUsingService().stream().filter(ser->ser.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_PRODUCT)).findFirst().get().getDiscoveredName();
-            Product product = productRepository.findByDiscoveredName(productDiscoveredName).get();
+            Product product = group.findProduct(productDiscoveredName)
+                    .orElseGet(() -> productRepository.findByDiscoveredName(productDiscoveredName).get());
             if (product == null) {
                 log.error("CustomerFacingService does not reference Product");
                 return createErrorResponse("404", ERROR_PREFIX + "No Service Details Found");
@@ -133,7 +128,9 @@ public class QueryAddrByServiceID implements HttpAction {
             // Subscription: try typed getter, fallback to product.properties
             Subscription subscription = product.getSubscription().stream().findFirst().get();
             if(subscription!=null){
-                subscription = subscriptionRepository.findByDiscoveredName(subscription.getDiscoveredName()).get();
+                String subscriptionName = subscription.getDiscoveredName();
+                subscription = group.findSubscription(subscriptionName)
+                        .orElseGet(() -> subscriptionRepository.findByDiscoveredName(subscriptionName).get());
             }
             if (subscription == null) {
                 // fallback: maybe product.properties contains subscription id or link - but per spec this is required
@@ -1,20 +1,15 @@
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.coalesce.CoalescedRead;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
-import com.nokia.nsw.uiv.model.common.party.Customer;
-import com.nokia.nsw.uiv.model.resource.Resource;
-import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
-import com.nokia.nsw.uiv.model.service.Product;
-import com.nokia.nsw.uiv.model.service.Service;
-import com.nokia.nsw.uiv.model.service.Subscription;
-import com.nokia.nsw.uiv.repository.*;
 import com.nokia.nsw.uiv.request.QueryAllServicesByCPERequest;
 import com.nokia.nsw.uiv.response.QueryAllServicesByCPEResponse;
 import com.nokia.nsw.uiv.utils.Constants;
 import com.nokia.nsw.uiv.utils.Validations;
+import com.nokia.nsw.uiv.view.OntServicesView;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -27,24 +22,13 @@ import java.util.*;
 @RestController
 @Action
 @Slf4j
+@CoalescedRead
 public class QueryAllServicesByCPE implements HttpAction {
     protected static final String ACTION_LABEL = Constants.QUERY_ALL_SERVICES_BY_CPE;
     private static final String ERROR_PREFIX = "UIV action QueryAllServicesByCPE execution failed - ";
 
     @Autowired
-    private LogicalDeviceCustomRepository logicalDeviceRepo;
-
-    @Autowired
-    private SubscriptionCustomRepository subscriptionRepo;
-
-    @Autowired
-    private ProductCustomRepository productRepo;
-
-    @Autowired
-    private CustomerCustomRepository subscriberRepo;
-
-    @Autowired
-    private ServiceCustomRepository serviceCustomRepository;
+    private OntServicesView ontServicesView;
 
     @Override
     public Class<?> getActionClass() {
@@ -74,120 +58,21 @@ public class QueryAllServicesByCPE implements HttpAction {
                         null);
             }
 
-            // Step 2: Identify the ONT
-            Optional<LogicalDevice> ontOpt = logicalDeviceRepo.findByDiscoveredName(ontName);
-            if (!ontOpt.isPresent()) {
+            // Step 2: Services of the ONT, from the per-ONT view
+            Optional<OntServicesView.Entry> entry = ontServicesView.get(req.getOntSn());
+            if (!entry.isPresent()) {
                 return errorResponse("404", "CPE/ONT not found");
             }
-            LogicalDevice ont = ontOpt.get();
             log.info("ONT located: {}", ontName);
 
-            // Find parent OLT (ONT -> managingDevices)
-            LogicalDevice olt = null;
-            Set<Resource> managingDevices = ont.getUsedResource();
-            if (managingDevices != null && !managingDevices.isEmpty()) {
-                olt = (LogicalDevice) managingDevices.iterator().next();
-            }
-
-            // Collect linked RFS entries from ONT
-            Set<Service> linkedServiceList = ont.getUsingService();
-            List<Service> linkedRfsList = new ArrayList<>();
-            if (linkedServiceList != null) {
-                for (Service s : linkedServiceList) {
-                    if (s.getKind() != null && s.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_RFS)) {
-                        linkedRfsList.add(s);
-                    }
-                }
-            }
-
-            if (linkedRfsList.isEmpty()) {
+            if (!entry.get().hasServices()) {
                 return errorResponse("404", "No services linked to CPE");
             }
 
-            // Step 3: Initialize counters and output map
-            int bbCount = 0, voiceCount = 0, entCount = 0, iptvCount = 0;
-            Map<String, Object> output = new LinkedHashMap<>();
-
-            // Step 4: Traverse services linked to ONT
-            for (Service rfs : linkedRfsList) {
-//                String rfsType1 = (String) rfs.getProperties().get("serviceType");
-//                if (rfsType1 == null)
-//                    continue;
-
-                // Derive CFS name: replace RFS_ with CFS_
-                String rfsName = rfs.getDiscoveredName();
-                String cfsName = rfsName != null ? rfsName.replaceFirst("^RFS_", "CFS_") : null;
-
-                // Find CFS, Product, Subscription, Customer
-                Service cfs = null;
-                Product product = null;
-                Subscription subscription = null;
-                Customer customer = null;
-
-                if (cfsName != null) {
-                    Optional<Service> cfsOpt = serviceCustomRepository.findByDiscoveredName(cfsName);
-                    if (cfsOpt.isPresent()) {
-                        cfs = cfsOpt.get();
-                        // CFS -> Product (via usingService with kind SetarProduct)
-                        if (cfs.getUsingService() != null) {
-                            for (Service svc : cfs.getUsingService()) {
-                                if (svc.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_PRODUCT)) {
-                                    String productName = svc.getDiscoveredName();
-                                    Optional<Product> prodOpt = productRepo.findByDiscoveredName(productName);
-                                    if (prodOpt.isPresent()) {
-                                        product = prodOpt.get();
-                                        // Product -> Subscription
-                                        if (product.getSubscription() != null && !product.getSubscription().isEmpty()) {
-                                            subscription = product.getSubscription().iterator().next();
-                                        }
-                                        // Product -> Customer
-                                        customer = product.getCustomer();
-                                    }
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                String rfsType = (String) product.getProperties().get("productType");
-                switch (rfsType) {
-                    case "Broadband":
-                    case "Fiber":
-                        bbCount++;
-                        String bbPrefix = "Broadband_" + bbCount + "_";
-                        populateBroadband(output, bbPrefix, rfs, subscription, customer, olt, ont);
-                        break;
+            // Step 3: Broadband_n_ / Voice_n_ / Enterprise_n_ / IPTV_n_ fields and the counts
+            Map<String, Object> output = entry.get().toOutput();
 
-                    case "Voice":
-                    case "VoIP":
-                        voiceCount++;
-                        String voicePrefix = "Voice_" + voiceCount + "_";
-                        populateVoice(output, voicePrefix, rfs, subscription, customer, olt, ont);
-                        break;
-
-                    case "Enterprise":
-                    case "EVPN":
-                        entCount++;
-                        String entPrefix = "Enterprise_" + entCount + "_";
-                        populateEnterprise(output, entPrefix, rfs, subscription, customer, olt, ont);
-                        break;
-
-                    case "IPTV":
-                        iptvCount++;
-                        String iptvPrefix = "IPTV_" + iptvCount + "_";
-                        populateIptv(output, iptvPrefix, iptvCount, rfs, subscription, customer, olt, ont);
-                        break;
-                }
-            }
-
-            // Step 5: Aggregate counts
-            output.put("BB_COUNT", String.valueOf(bbCount));
-            output.put("VOICE_COUNT", String.valueOf(voiceCount));
-            output.put("ENT_COUNT", String.valueOf(entCount));
-            output.put("IPTV_COUNT", String.valueOf(iptvCount));
-
-            // Step 6: Success response
+            // Step 4: Success response
             log.info("QueryAllServicesByCPE completed successfully.");
             return new QueryAllServicesByCPEResponse(
                     "200",
@@ -201,209 +86,6 @@ public class QueryAllServicesByCPE implements HttpAction {
         }
     }
 
-    // --- Broadband / Fiber ---
-    private void populateBroadband(Map<String, Object> out, String prefix, Service rfs,
-                                   Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
-        Map<String, Object> rfsProps = rfs.getProperties();
-        putIfNotNull(out, prefix + "SERVICE_ID", sub != null ? sub.getProperties().get("serviceID") : null);
-        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", sub != null ? sub.getProperties().get("serviceSubType") : null);
-        out.put(prefix + "SERVICE_TYPE", "Broadband");
-        putIfNotNull(out, prefix + "QOS_PROFILE", sub.getProperties().get("veipQosSessionProfile"));
-        putIfNotNull(out, prefix + "KENAN_SUBS_ID", sub.getProperties().get("kenanSubscriberId"));
-
-        populateSubscriberDetails(out, prefix, cust);
-        putIfNotNull(out, prefix + "Email", cust.getProperties().get("email"));
-        putIfNotNull(out, prefix + "Email_Password", cust.getProperties().get("emailPassword"));
-
-        // Templates from OLT
-        if (olt != null && ont != null) {
-            Map<String, Object> ontProps = ont.getProperties();
-            Map<String, Object> oltProps = olt.getProperties();
-            putIfNotNull(out, prefix + "ONT_TEMPLATE", ontProps.get("ontTemplate"));
-            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_VEIP", oltProps.get("veipServiceTemplate"));
-            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_HSI", oltProps.get("veipHsiTemplate"));
-        }
-    }
-
-    // --- Voice / VoIP ---
-    private void populateVoice(Map<String, Object> out, String prefix, Service rfs,
-                               Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
-        Map<String, Object> subProps = sub != null ? sub.getProperties() : Collections.emptyMap();
-        putIfNotNull(out, prefix + "SERVICE_ID", subProps.get("serviceID"));
-        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", subProps.get("serviceSubType"));
-        out.put(prefix + "SERVICE_TYPE", "Voice");
-        putIfNotNull(out, prefix + "CUSTOMER_ID", subProps.get("simaCustId"));
-        putIfNotNull(out, prefix + "SIMA_SUBS_ID", subProps.get("simaSubsId"));
-        putIfNotNull(out, prefix + "SIMA_ENDPOINT_ID", subProps.get("simaEndpointId"));
-        putIfNotNull(out, prefix + "VOIP_NUMBER_1", subProps.get("voipNumber1"));
-        putIfNotNull(out, prefix + "VOIP_CODE_1", subProps.get("voipServiceCode"));
-        putIfNotNull(out, prefix + "QOS_PROFILE", subProps.get("voipPackage"));
-
-        populateSubscriberDetails(out, prefix, cust);
-
-        // Templates from OLT
-        if (olt != null) {
-            Map<String, Object> oltProps = olt.getProperties();
-            putIfNotNull(out, prefix + "ONT_TEMPLATE", oltProps.get("ontTemplate"));
-            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_VOIP", oltProps.get("voipServiceTemplate"));
-            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_POTS1", oltProps.get("voipPots1Template"));
-            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_POTS2", oltProps.get("voipPots2Template"));
-        }
-    }
-
-    // --- Enterprise / EVPN ---
-    private void populateEnterprise(Map<String, Object> out, String prefix, Service rfs,
-                                    Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
-        Map<String, Object> rfsProps = rfs.getProperties();
-        Map<String, Object> subProps = sub != null ? sub.getProperties() : Collections.emptyMap();
-
-        putIfNotNull(out, prefix + "SERVICE_ID", subProps.get("serviceID"));
-        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", subProps.get("serviceSubType"));
-        out.put(prefix + "SERVICE_TYPE", "Enterprise");
-        putIfNotNull(out, prefix + "QOS_PROFILE", subProps.get("evpnQosSessionProfile"));
-        putIfNotNull(out, prefix + "KENAN_SUBS_ID", subProps.get("kenanSubscriberId"));
-        putIfNotNull(out, prefix + "PORT", subProps.get("evpnPort"));
-        putIfNotNull(out, prefix + "VLAN", subProps.get("evpnVLAN"));
-
-        // EVPN templates from RFS properties
-        putIfNotNull(out, prefix + "TEMPLATE_NAME_VLAN", subProps.get("evpnTemplateVLAN"));
-        putIfNotNull(out, prefix + "TEMPLATE_NAME_VLAN_CREATE", subProps.get("evpnTemplateCreateVLAN"));
-        putIfNotNull(out, prefix + "TEMPLATE_NAME_VPLS", subProps.get("evpnTemplateVPLS"));
-
-        populateSubscriberDetails(out, prefix, cust);
-
-        // OLT templates
-        if (olt != null) {
-            Map<String, Object> ontProps = ont.getProperties();
-            Map<String, Object> oltProps = olt.getProperties();
-            putIfNotNull(out, prefix + "ONT_TEMPLATE", oltProps.get("ontTemplate"));
-            putIfNotNull(out, prefix + "TEMPLATE_NAME_CARD", oltProps.get("evpnOntCardTemplate"));
-            putIfNotNull(out, prefix + "TEMPLATE_NAME_PORT", ontProps.get("evpnEthPortTemplate"));
-            putIfNotNull(out, prefix + "TEMPLATE_NAME_PORT_CREATE", ontProps.get("createTemplate"));
-        }
-    }
-
-    // --- IPTV ---
-    private void populateIptv(Map<String, Object> out, String prefix, int iptvCount, Service rfs,
-                              Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
-        Map<String, Object> subProps = sub != null ? sub.getProperties() : Collections.emptyMap();
-
-        putIfNotNull(out, prefix + "SERVICE_ID", subProps.get("serviceID"));
-        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", subProps.get("serviceSubType"));
-        out.put(prefix + "SERVICE_TYPE", "IPTV");
-        putIfNotNull(out, prefix + "QOS_PROFILE", subProps.get("iptvQosSessionProfile"));
-        putIfNotNull(out, prefix + "KENAN_SUBS_ID", subProps.get("kenanSubscriberId"));
-        putIfNotNull(out, prefix + "CUSTOMER_GROUP_ID", subProps.get("customerGroupId"));
-
-        populateSubscriberDetails(out, prefix, cust);
-
-        // VLAN from ONT
-        if (ont != null) {
-            putIfNotNull(out, prefix + "VLAN", ont.getProperties().get("iptvVlan"));
-        }
-
-        // Templates from OLT
-        if (olt != null) {
-            Map<String, Object> oltProps = olt.getProperties();
-            putIfNotNull(out, prefix + "TEMPLATE_NAME_IPTV", oltProps.get("veipIptvTemplate"));
-            putIfNotNull(out, prefix + "TEMPLATE_NAME_IGMP", oltProps.get("igmpTemplate"));
-        }
-
-        // Process STB and AP devices linked to RFS
-        int stbIndex = 1;
-        int apIndex = 1;
-        Set<Resource> usedResources = rfs.getUsedResource();
-        if (usedResources != null) {
-            for (Resource res : usedResources) {
-                if (res instanceof LogicalDevice) {
-                    LogicalDevice device = (LogicalDevice) res;
-                    String kind = device.getKind();
-                    Map<String, Object> devProps = device.getProperties() != null ? device.getProperties()
-                            : Collections.emptyMap();
-
-                    if ("StbApCmDevice".equalsIgnoreCase(kind)) {
-                        String deviceType = (String) devProps.get("deviceType");
-                        if ("STB".equalsIgnoreCase(deviceType)) {
-                            String stbPre = prefix + "STB_";
-                            putIfNotNull(out, stbPre + "SN_" + stbIndex, devProps.get("serialNo"));
-                            putIfNotNull(out, stbPre + "MAC_" + stbIndex, devProps.get("macAddress"));
-                            putIfNotNull(out, stbPre + "MODEL_" + stbIndex, devProps.get("deviceModel"));
-                            putIfNotNull(out, stbPre + "MANUFACTURER_" + stbIndex, devProps.get("manufacturer"));
-                            putIfNotNull(out, stbPre + "GID_" + stbIndex, devProps.get("customerGroupId"));
-                            putIfNotNull(out, stbPre + "MDLSBTYPE_" + stbIndex, devProps.get("modelSubType"));
-                            putIfNotNull(out, stbPre + "PKEY_" + stbIndex, devProps.get("preSharedKey"));
-                            stbIndex++;
-                        } else if ("AP".equalsIgnoreCase(deviceType)) {
-                            String apPre = prefix + "AP_";
-                            putIfNotNull(out, apPre + "SN_" + apIndex, devProps.get("serialNo"));
-                            putIfNotNull(out, apPre + "MAC_" + apIndex, devProps.get("macAddress"));
-                            putIfNotNull(out, apPre + "MODEL_" + apIndex, devProps.get("deviceModel"));
-                            putIfNotNull(out, apPre + "MANUFACTURER_" + apIndex, devProps.get("manufacturer"));
-                            putIfNotNull(out, apPre + "GID_" + apIndex, devProps.get("customerGroupId"));
-                            putIfNotNull(out, apPre + "MDLSBTYPE_" + apIndex, devProps.get("modelSubType"));
-                            putIfNotNull(out, apPre + "PKEY_" + apIndex, devProps.get("preSharedKey"));
-                            apIndex++;
-                        }
-                    }
-                }
-            }
-        }
-
-        // Process IPTV products from Subscription properties
-        // Note: IPTV catalog items may be stored in subscription properties as
-        // prodName1, prodVariant1, etc.
-        int prodIndex = 1;
-
-        if (sub != null) {
-            Set<Service> products = sub.getService();
-            if (products != null && !products.isEmpty()) {
-                for (Service product : products) {
-
-                    Map<String, Object> props = product.getProperties();
-                    if (props == null) {
-                        continue;
-                    }
-
-                    String prodName = props.get("catalogItemName") != null
-                            ? props.get("catalogItemName").toString()
-                            : null;
-
-                    String prodVariant = props.get("catalogItemVersion") != null
-                            ? props.get("catalogItemVersion").toString()
-                            : null;
-
-                    putIfNotNull(out, prefix + "PROD_NAME_" + prodIndex, prodName);
-                    putIfNotNull(out, prefix + "PROD_VARIANT_" + prodIndex, prodVariant);
-
-                    prodIndex++;
-                }
-            }
-        }
-
-    }
-
-    // --- Subscriber Details ---
-    private void populateSubscriberDetails(Map<String, Object> out, String prefix, Customer cust) {
-        if (cust == null)
-            return;
-        Map<String, Object> custProps = cust.getProperties() != null ? cust.getProperties() : Collections.emptyMap();
-        putIfNotNull(out, prefix + "HHID", custProps.get("houseHoldId"));
-        putIfNotNull(out, prefix + "ACCOUNT_NUMBER", custProps.get("accountNumber"));
-        putIfNotNull(out, prefix + "FIRST_NAME", custProps.get("subscriberFirstName"));
-        putIfNotNull(out, prefix + "LAST_NAME", custProps.get("subscriberLastName"));
-        putIfNotNull(out, prefix + "COMPANY_NAME", custProps.get("companyName"));
-        putIfNotNull(out, prefix + "CONTACT_PHONE", custProps.get("contactPhoneNumber"));
-        putIfNotNull(out, prefix + "SUBS_ADDRESS", custProps.get("subscriberAddress"));
-    }
-
-    private void putIfNotNull(Map<String, Object> map, String key, Object value) {
-        if (value != null) {
-            map.put(key, value);
-        } else {
-            map.put(key, "");
-        }
-    }
-
     private QueryAllServicesByCPEResponse errorResponse(String status, String msg) {
         return new QueryAllServicesByCPEResponse(
                 status,
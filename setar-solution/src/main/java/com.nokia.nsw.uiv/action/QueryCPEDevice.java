@@ -1,14 +1,13 @@
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.allocation.PortVlanCounters;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDeviceRepository;
-import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
 import com.nokia.nsw.uiv.repository.LogicalDeviceCustomRepository;
-import com.nokia.nsw.uiv.repository.LogicalInterfaceCustomRepository;
 import com.nokia.nsw.uiv.request.QueryCPEDeviceRequest;
 import com.nokia.nsw.uiv.response.ChangeStateResponse;
 import com.nokia.nsw.uiv.response.QueryCPEDeviceResponse;
@@ -18,8 +17,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 
 @Component
@@ -31,7 +28,7 @@ public class QueryCPEDevice implements HttpAction {
     private LogicalDeviceCustomRepository cpeDeviceRepository;
 
     @Autowired
-    private LogicalInterfaceCustomRepository lanRepository;
+    private PortVlanCounters portVlanCounters;
     protected static final String ACTION_LABEL = Constants.QUERY_CPE_DEVICE;
     private static final String ERROR_PREFIX = "UIV action QueryDevice execution failed - ";
 
@@ -97,17 +94,10 @@ public class QueryCPEDevice implements HttpAction {
         } else if ("ONT".equalsIgnoreCase(resourceType)) {
             response.setResourceModelSubtype("GPON");
 
-            Iterable<LogicalInterface> interfaceIterable = lanRepository.findAll();
-            List<LogicalInterface> interfaceList = new ArrayList<>();
-            interfaceIterable.forEach(interfaceList::add);
-
             for (int portNumber = 1; portNumber <= 5; portNumber++) {
-                String portName = request.getResourceSN() + "_P" + portNumber + "_SINGLETAGGED";
 //                String portName = request.getResourceSN() + Constants.UNDER_SCORE+ "ETH_" + portNumber;
 
-                long vlanCount = interfaceList.stream()
-                        .filter(in -> in.getDiscoveredName().contains(portName))
-                        .count();
+                int vlanCount = portVlanCounters.count(request.getResourceSN(), String.valueOf(portNumber));
 
                 String dataPortStatus = vlanCount < 7 ? "Available" : "Allocated";
                 response.setDataPortStatus(portNumber, dataPortStatus);
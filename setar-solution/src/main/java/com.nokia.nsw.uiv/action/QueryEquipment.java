@@ -51,6 +51,9 @@ public class QueryEquipment implements HttpAction {
     @Autowired
     private ProductCustomRepository productRepository;
 
+    @Autowired
+    private NameBundleResolver nameBundleResolver;
+
 
     @Override
     public Class<?> getActionClass() {
@@ -97,8 +100,13 @@ public class QueryEquipment implements HttpAction {
         try {
             // 3️⃣ Locate entities
 // Locate Subscriber
-            Optional<Customer> subscriberOpt =
-                    subscriberRepository.findByDiscoveredName(request.getSubscriberName());
+            NameBundleResolver.Bundle bundle = nameBundleResolver.resolve(NameBundleResolver.names()
+                    .subscriber(request.getSubscriberName())
+                    .subscription(subscriptionName)
+                    .product(productName)
+                    .cfs(cfsName)
+                    .rfs(rfsName));
+            Optional<Customer> subscriberOpt = bundle.getSubscriber();
 
             if (subscriberOpt.isEmpty()) {
                 return createErrorResponse(CODE_NO_ENTRY,
@@ -107,23 +115,23 @@ public class QueryEquipment implements HttpAction {
             Customer subscriber = subscriberOpt.get();
 
             // 3️⃣ Locate entities
-            Optional<Subscription> subscriptionOpt = subscriptionRepository.findByDiscoveredName(subscriptionName);
+            Optional<Subscription> subscriptionOpt = bundle.getSubscription();
             if (subscriptionOpt.isEmpty()) {
                 return createErrorResponse(CODE_NO_ENTRY, "No entry found for delete");
             }
 
-            Optional<Service> cfsOpt = serviceCustomRepository.findByDiscoveredName(cfsName);
+            Optional<Service> cfsOpt = bundle.getCfs();
             if (cfsOpt.isEmpty()) {
                 log.error("CFS not found: {}", cfsName);
             }
 
             String rfsGdn = Validations.getGlobalName(rfsName);
-            Service rfs = serviceCustomRepository.findByDiscoveredName(rfsName).orElse(null);
+            Service rfs = bundle.getRfs().orElse(null);
             if (rfs == null) {
                 return createErrorResponse(CODE_NO_ENTRY, "No entry found for delete");
             }
 
-            Optional<Product> productOpt = productRepository.findByDiscoveredName(productName);
+            Optional<Product> productOpt = bundle.getProduct();
             if (productOpt.isEmpty()) {
                 log.error("Product not found: {}", productName);
             }
@@ -23,6 +23,7 @@ import org.springframework.web.bind.annotation.RestController;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Component
@@ -75,14 +76,9 @@ public class QueryIPTVByServiceID implements HttpAction {
 
             // 2. Identify target CFS names
             Set<String> matchingCfsNames = new TreeSet<>();
-            List<Service> allCFS = (List<Service>) serviceCustomRepository.findAll();
-            List<Service> cfsServices=new ArrayList<>();
-            for(Service s:allCFS)
-            {
-                if(s.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_CFS))
-                {
-                    cfsServices.add(s);
-                }
+            List<Service> cfsServices;
+            try (Stream<Service> cfsStream = serviceCustomRepository.streamByKind(Constants.SETAR_KIND_SETAR_CFS)) {
+                cfsServices = cfsStream.collect(Collectors.toList());
             }
             for (Service cfs : cfsServices) {
                 String cfsName = cfs.getDiscoveredName();
@@ -434,17 +430,15 @@ public class QueryIPTVByServiceID implements HttpAction {
     // -------------------------
 
     private Optional<Service> findCfsByNameFromAll(String name) {
-        for (Service cfs : serviceCustomRepository.findAll()) {
-            if (name.equals(cfs.getName())) return Optional.of(cfs);
+        try (Stream<Service> services = serviceCustomRepository.stream(cfs -> name.equals(cfs.getName()), Constants.STREAM_PAGE_SIZE)) {
+            return services.findFirst();
         }
-        return Optional.empty();
     }
 
     private Optional<Service> findRfsByNameFromAll(String name) {
-        for (Service rfs : serviceCustomRepository.findAll()) {
-            if (name.equals(rfs.getName())) return Optional.of(rfs);
+        try (Stream<Service> services = serviceCustomRepository.stream(rfs -> name.equals(rfs.getName()), Constants.STREAM_PAGE_SIZE)) {
+            return services.findFirst();
         }
-        return Optional.empty();
     }
 
     /**
@@ -39,6 +39,8 @@ public class QueryService implements HttpAction {
     @Autowired
     private ServiceCustomRepository serviceCustomRepository;
     @Autowired
+    private ServiceIdIndex serviceIdIndex;
+    @Autowired
     private LogicalDeviceCustomRepository logicalDeviceRepository;
 
     @Override
@@ -65,41 +67,18 @@ public class QueryService implements HttpAction {
             String serviceId = request.getServiceId().trim();
             log.error("Processing QueryService for SERVICE_ID: {}", serviceId);
 
-            // Step 2: Find Candidate CFS Names
-            List<Service> cfsList = (List<Service>) serviceCustomRepository.findAll();
-            Set<String> cfsNameSet = new LinkedHashSet<>();
-
-            for (Service cfs : cfsList) {
-                if (cfs.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_CFS)) {
+            // Step 2: Find Candidate CFS, with their RFS, products and subscriptions, from the serviceId index
+            ServiceIdIndex.Group group = serviceIdIndex.load(serviceId);
 
-                    if (cfs.getDiscoveredName().contains(serviceId)) {
-                        String cfsName = cfs.getDiscoveredName();
-                        if (cfsName == null) continue;
-                        if(request.getServiceId().contains("_")){
-                            String finalValue=cfsName.substring(cfsName.indexOf("_")+1, cfsName.lastIndexOf("_"));
-                            if(finalValue!=null&&finalValue.equalsIgnoreCase(request.getServiceId())){
-                                cfsNameSet.add(cfsName);
-                            }
-                        }
-                        String[] parts = cfsName.split(Constants.UNDER_SCORE);
-                        if (parts.length > 2 && parts[2].equalsIgnoreCase(serviceId)) {
-                            cfsNameSet.add(cfsName);
-                        }
-                    }
-                }
-            }
-
-            if (cfsNameSet.isEmpty()) {
+            if (group.getCfs().isEmpty()) {
                 log.error("No matching CFS found for serviceId {}", serviceId);
                 return new QueryServiceResponse("404", "No IPTV Service Details Found.",
                         Instant.now().toString(), false, "No CFS match found");
             }
 
             // Step 3: For each CFS, fetch linked data
-            for (String cfsName : cfsNameSet) {
-                Optional<Service> optCfs = serviceCustomRepository.findByDiscoveredName(cfsName);
-                if (!optCfs.isPresent()) continue;
-                Service cfs = optCfs.get();
+            for (Service cfs : group.getCfs()) {
+                String cfsName = cfs.getDiscoveredName();
 
                 String productName = "";
                 try{
@@ -109,8 +88,14 @@ public class QueryService implements HttpAction {
                     productName = "";
                 }
                 String rfsName = cfsName.replace("CFS", "RFS");
-                Optional<Service> optRfs = serviceCustomRepository.findByDiscoveredName(rfsName);
-                Optional<Product> optProd = productRepository.findByDiscoveredName(productName);
+                Optional<Service> optRfs = group.findService(rfsName);
+                if (!optRfs.isPresent()) {
+                    optRfs = serviceCustomRepository.findByDiscoveredName(rfsName);
+                }
+                Optional<Product> optProd = group.findProduct(productName);
+                if (!optProd.isPresent()) {
+                    optProd = productRepository.findByDiscoveredName(productName);
+                }
                 Optional<Subscription> optSub = Optional.empty();
                 Optional<Customer> optCust = Optional.empty();
 
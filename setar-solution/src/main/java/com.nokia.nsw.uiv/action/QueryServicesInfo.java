@@ -23,7 +23,6 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component
 @Action
@@ -34,16 +33,7 @@ public class QueryServicesInfo implements HttpAction {
     private static final String ERROR_PREFIX = "UIV action QueryServicesInfo execution failed - ";
 
     @Autowired
-    private CustomerCustomRepository customerRepository;
-
-    @Autowired
-    private SubscriptionCustomRepository subscriptionRepository;
-
-    @Autowired
-    private ProductCustomRepository productRepository;
-
-    @Autowired
-    private ServiceCustomRepository cfsRepository;
+    private SubscriberServiceGraph serviceGraph;
 
     @Autowired
     private LogicalDeviceCustomRepository logicalDeviceRepository;
@@ -51,9 +41,6 @@ public class QueryServicesInfo implements HttpAction {
     @Autowired
     private LogicalInterfaceCustomRepository logicalInterfaceRepository;
 
-    @Autowired
-    private ServiceCustomRepository serviceCustomRepository;
-
     @Override
     public Class<?> getActionClass() {
         return QueryServicesInfoRequest.class;
@@ -81,78 +68,23 @@ public class QueryServicesInfo implements HttpAction {
 
             log.error("QueryServicesInfo start: subscriberName='{}', ontSN='{}'", accno, ontSN);
 
-            // 2) Find initial candidate services
-            List<Service> setarsRFS = new ArrayList<>();
-            boolean isAccno = false;
-            Service iptvrfsname = null; // candidate to add later
-
+            // 2) Walk the services hanging off the subscriber's Customer nodes, or off the ONT
+            List<SubscriberServiceGraph.ServiceChain> chains;
             if (accno != null && !accno.trim().isEmpty()) {
-                log.debug("Searching RFS by subscriber/account number '{}'", accno);
-                List<Service> resourceFacingServices = (List<Service>) serviceCustomRepository.findAll();
-                if (!resourceFacingServices.isEmpty()) {
-                    for (Service rfs : resourceFacingServices) {
-                        if (rfs.getDiscoveredName().contains(accno) && rfs.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_RFS)) {
-                            setarsRFS = Collections.singletonList(rfs);
-                            isAccno = true;
-                        }
-                    }
-                }
-
+                log.debug("Walking services of subscriber/account number '{}'", accno);
+                chains = serviceGraph.fromCustomer(accno);
             } else {
-                // ontSN branch
-                log.debug("Searching RFS by ontSN '{}'", ontSN);
-                List<Service> rfsByOnt = new ArrayList<>();
-                List<Service> resourceFacingServicesONT = (List<Service>) serviceCustomRepository.findAll();
-                if (!resourceFacingServicesONT.isEmpty()) {
-                    for (Service rfs : resourceFacingServicesONT) {
-                        if (rfs.getDiscoveredName().contains(ontSN) && rfs.getKind().equalsIgnoreCase(Constants.SETAR_KIND_SETAR_RFS)) {
-                            rfsByOnt = Collections.singletonList(rfs);
-                        }
-                    }
-                }
-
-                if (rfsByOnt != null && !rfsByOnt.isEmpty()) {
-                    setarsRFS.addAll(rfsByOnt);
-                    if (rfsByOnt.size() >= 2) {
-                        String rfsName2 = rfsByOnt.get(1).getDiscoveredName();
-                        if (rfsName2 != null) {
-                            String[] parts = rfsName2.split(Constants.UNDER_SCORE, -1);
-                            if (parts.length >= 2) {
-                                String anchorAccNo = parts[1];
-                                List<Service> candidates = new ArrayList<>();
-                                List<Service> resourceFacingServicesCand = (List<Service>) serviceCustomRepository.findAll();
-                                if (!resourceFacingServicesCand.isEmpty()) {
-                                    for (Service rfs : resourceFacingServicesCand) {
-                                        if (rfs.getDiscoveredName().contains(anchorAccNo)) {
-                                            rfsByOnt = Collections.singletonList(rfs);
-                                        }
-                                    }
-                                }
-                                if (candidates != null && !candidates.isEmpty()) {
-                                    // iptvrfsname = last candidate whose Name does NOT contain ontSN
-                                    for (int i = candidates.size() - 1; i >= 0; i--) {
-                                        Service c = candidates.get(i);
-                                        if (c.getDiscoveredName() == null || !c.getDiscoveredName().contains(ontSN)) {
-                                            iptvrfsname = c;
-                                            break;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+                log.debug("Walking services of ontSN '{}'", ontSN);
+                chains = serviceGraph.fromOnt(ontSN);
             }
 
-            // 3) Decide which services to process
-            List<Service> setarRFSs = new ArrayList<>();
-            if (setarsRFS != null && !setarsRFS.isEmpty()) setarRFSs.addAll(setarsRFS);
-            if (iptvrfsname != null) setarRFSs.add(iptvrfsname);
-
-            if (setarRFSs.isEmpty()) {
+            // 3) Nothing reachable -> no details
+            if (chains.isEmpty()) {
                 log.error("No candidate RFS found for inputs subscriber='{}' ontSN='{}'", accno, ontSN);
                 return createErrorResponse("404", ERROR_PREFIX + "Error, No Service Details Available.");
             }
+            // the response carries one service: the last matching RFS, as the name scan returned it
+            chains = chains.subList(chains.size() - 1, chains.size());
 
             // 4) Prepare working space (collectors & flags)
             boolean success = true;
@@ -160,213 +92,65 @@ public class QueryServicesInfo implements HttpAction {
             Map<String, Object> allvalues = new LinkedHashMap<>();
 
             // 5) For each service
-            for (Service rfs : setarRFSs) {
+            for (SubscriberServiceGraph.ServiceChain chain : chains) {
+                Service rfs = chain.getRfs();
                 try {
                     String rfsnameget = rfs.getDiscoveredName() == null ? "" : rfs.getDiscoveredName();
                     String serviceType = rfs.getProperties().get("serviceType") == null ? "" : rfs.getProperties().get("serviceType").toString();
                     log.error("Processing RFS '{}' with serviceType='{}'", rfsnameget, serviceType);
 
-                    // initialize per-service vars
-                    String subscriber = "";
-                    String serviceID = "";
-                    String setarSubscribername = null;
-                    String ontSno = "";
-                    String cbmSubscriberID = "";
-                    boolean isIptvCandidate = serviceType.equalsIgnoreCase("IPTV");
-
                     // resources and components collectors
                     List<String> resourcesAP = new ArrayList<>();
                     List<String> resourcesSTB = new ArrayList<>();
                     List<String> listOfComponents = new ArrayList<>();
 
-                    // 5.1 Derive subscriber, serviceID, subscriptionName
-                    String subscriptionName = "";
-                    if (isIptvCandidate) {
-                        String[] rfsnames = rfsnameget.split(Constants.UNDER_SCORE, -1);
-                        if (rfsnames.length >= 3) {
-                            subscriber = rfsnames[1];
-                            serviceID = rfsnames[2];
-                            subscriptionName = subscriber + Constants.UNDER_SCORE + serviceID;
-                        } else {
-                            log.debug("IPTV rfs name not parsable: {}", rfsnameget);
-                        }
-                    } else {
-                        String fiberrfsname = rfsnameget;
-                        if (fiberrfsname.contains("ALC")) {
-                            // tokens: ... _ACC_NO_..._ONT_SNO
-                            String[] tokens = fiberrfsname.split(Constants.UNDER_SCORE, -1);
-                            if (tokens.length >= 3) {
-                                String accNo = tokens[1];
-                                String ontLast = tokens[tokens.length - 1];
-                                // SID = middle tokens joined by Constants.UNDER_SCORE 
-                                StringBuilder sidBuilder = new StringBuilder();
-                                for (int i = 2; i < tokens.length - 1; i++) {
-                                    if (sidBuilder.length() > 0) sidBuilder.append(Constants.UNDER_SCORE);
-                                    sidBuilder.append(tokens[i]);
-                                }
-                                String sid = sidBuilder.toString();
-                                subscriber = accNo;
-                                serviceID = sid;
-                                ontSno = ontLast;
-                                subscriptionName = subscriber + Constants.UNDER_SCORE + serviceID + Constants.UNDER_SCORE + ontSno;
-                                setarSubscribername = subscriber + Constants.UNDER_SCORE + ontSno;
-                            } else {
-                                log.debug("ALC-format rfs name not parsable: {}", fiberrfsname);
-                            }
-                        } else {
-                            String[] fibesubname = fiberrfsname.split(Constants.UNDER_SCORE, -1);
-                            if (fibesubname.length >= 3) {
-                                subscriber = fibesubname[1];
-                                // serviceID is token[2] plus remaining tokens
-                                StringBuilder sidBuilder = new StringBuilder();
-                                sidBuilder.append(fibesubname[2]);
-                                for (int i = 3; i < fibesubname.length; i++) {
-                                    sidBuilder.append(Constants.UNDER_SCORE).append(fibesubname[i]);
-                                }
-                                serviceID = sidBuilder.toString();
-                                subscriptionName = subscriber + Constants.UNDER_SCORE + serviceID;
-                            } else {
-                                log.debug("Generic format rfs name not parsable: {}", fiberrfsname);
-                            }
-                        }
-                    }
-
-                    log.debug("Derived subscriber='{}' serviceID='{}' subscriptionName='{}' ontSno='{}' setarSubscribername='{}'",
-                            subscriber, serviceID, subscriptionName, ontSno, setarSubscribername);
-
-                    // 5.2 Resolve subscription and linked entities
-                    Subscription setarSubscription = null;
-                    if (subscriptionName != null && !subscriptionName.isEmpty()) {
-                        Optional<Subscription> optSub = subscriptionRepository.findByDiscoveredName(subscriptionName);
-                        if (optSub.isPresent()) setarSubscription = optSub.get();
-                    }
-
+                    // 5.1 Subscription, subscriber and product reached from the RFS
+                    Subscription setarSubscription = chain.getSubscription();
+                    Customer setarSubscriber = chain.getCustomer();
+                    Product setarProduct = chain.getProduct();
+                    Map<String, Object> subProps = (setarSubscription == null || setarSubscription.getProperties() == null)
+                            ? Collections.emptyMap() : setarSubscription.getProperties();
+                    String serviceID = subProps.get("serviceID") == null ? "" : subProps.get("serviceID").toString();
                     if (setarSubscription == null) {
-                        // Try alternative: sometimes subscriptionName may be subscriber_serviceId only (no ONT)
-                        String altSubName = subscriber + Constants.UNDER_SCORE + serviceID;
-                        Optional<Subscription> optSubAlt = subscriptionRepository.findByDiscoveredName(altSubName);
-                        if (optSubAlt.isPresent()) setarSubscription = optSubAlt.get();
-                    }
-
-                    if (setarSubscription != null) {
-                        // if ServiceLink equals ONT (case-insensitive) and ServiceSN present then ontSno override
-                        Object slObj = setarSubscription.getProperties() == null ? null : setarSubscription.getProperties().get("serviceLink");
-                        String serviceLink = slObj == null ? (setarSubscription.getProperties().get("serviceLink") == null ? "" : setarSubscription.getProperties().get("serviceLink").toString()) : slObj.toString();
-                        Object ssn = setarSubscription.getProperties() == null ? null : setarSubscription.getProperties().get("serviceSN");
-                        if ((serviceLink != null && serviceLink.equalsIgnoreCase("ONT")) && (ssn != null && !ssn.toString().isEmpty())) {
-                            ontSno = ssn.toString();
-                        }
-
-                        Object cbm = setarSubscription.getProperties() == null ? null : setarSubscription.getProperties().get("subscriberId_CableModem");
-                        if (cbm != null && (serviceLink == null || !serviceLink.equalsIgnoreCase("ONT"))) {
-                            cbmSubscriberID = cbm.toString();
-                            // setarSubscribername then from subscription's subscriber
-                            if (setarSubscription.getCustomer() != null) {
-                                setarSubscribername = setarSubscription.getCustomer().getDiscoveredName();
-                            }
-                        }
-                    } else {
-                        log.debug("Subscription '{}' not found for RFS '{}'", subscriptionName, rfsnameget);
-                    }
-
-                    // Resolve setarSubscriber
-                    Customer setarSubscriber = null;
-                    if (serviceType != null && serviceType.toUpperCase().contains("IPTV") && setarSubscription != null) {
-                        setarSubscriber = setarSubscription.getCustomer();
-                    } else if (setarSubscribername != null) {
-                        Optional<Customer> optCust = customerRepository.findByDiscoveredName(setarSubscribername);
-                        if (optCust.isPresent()) setarSubscriber = optCust.get();
-                    } else if (subscriber != null && !subscriber.isEmpty() && ontSno != null && !ontSno.isEmpty()) {
-                        // fallback subscriber + ont
-                        String name = subscriber + Constants.UNDER_SCORE + ontSno;
-                        Optional<Customer> optCust = customerRepository.findByDiscoveredName(name);
-                        if (optCust.isPresent()) setarSubscriber = optCust.get();
+                        log.debug("No subscription reachable from RFS '{}'", rfsnameget);
                     }
 
-                    // productName and product lookup
-                    String productName = "";
-                    Product setarProduct = null;
-                    if (serviceID != null && !serviceID.isEmpty() && setarSubscription != null) {
-                        String serviceSubType = (setarSubscription.getProperties() == null) ? "" : String.valueOf(setarSubscription.getProperties().getOrDefault("serviceSubType", ""));
-                        productName = subscriber + Constants.UNDER_SCORE + serviceSubType + Constants.UNDER_SCORE + serviceID;
-                        if (productName != null && !productName.isEmpty()) {
-                            Optional<Product> optProd = productRepository.findByDiscoveredName(productName);
-                            if (optProd.isPresent()) setarProduct = optProd.get();
-                        }
-                    }
+                    log.debug("Resolved subscription='{}' subscriber='{}' product='{}' serviceID='{}'",
+                            setarSubscription == null ? "" : setarSubscription.getDiscoveredName(),
+                            setarSubscriber == null ? "" : setarSubscriber.getDiscoveredName(),
+                            setarProduct == null ? "" : setarProduct.getDiscoveredName(), serviceID);
 
-                    // If serviceLink is ONT: resolve ONT and OLT
+                    // 5.2 If serviceLink is ONT: the ONT the RFS uses and the OLT behind it
                     LogicalDevice nameONT = null;
                     LogicalDevice oltDevice = null;
-                    if (setarSubscription != null) {
-                        String serviceLink = setarSubscription.getProperties().get("serviceLink").toString();
-                        if (serviceLink != null && serviceLink.equalsIgnoreCase("ONT")) {
-                            // ensure ontSno present
-                            if (ontSno == null || ontSno.trim().isEmpty()) {
-                                // attempt read from subscription properties
-                                Object ssn = setarSubscription.getProperties() == null ? null : setarSubscription.getProperties().get("serviceSN");
-                                if (ssn != null) ontSno = ssn.toString();
-                            }
-                            if (ontSno != null && !ontSno.isEmpty()) {
-                                String ontName = "ONT" + ontSno;
-                                Optional<LogicalDevice> optOnt = logicalDeviceRepository.findByDiscoveredName(ontName);
-                                if (optOnt.isPresent()) {
-                                    nameONT = optOnt.get();
-                                    // try retrieving the OLT device via containing/managing relationships
-                                    // assume nameONT.getManagingDevices() returns list or properties contain oltPosition
-                                    Set<LogicalDevice> mng = nameONT.getUsedResource().stream().map(res -> (LogicalDevice) res).collect(Collectors.toSet());
-                                    if (mng != null && !mng.isEmpty()) {
-                                        for (LogicalDevice device : mng) {
-                                            oltDevice = device;
-                                            break;
-                                        }
-                                    } else {
-                                        // fallback to property oltPosition on RFS or ONT
-                                        Object oltPos = (rfs.getProperties() == null) ? null : rfs.getProperties().get("oltPosition");
-                                        if (oltPos != null) {
-                                            Optional<LogicalDevice> optOlt = logicalDeviceRepository.findByDiscoveredName(oltPos.toString());
-                                            if (optOlt.isPresent()) oltDevice = optOlt.get();
-                                        }
-                                    }
+                    if (setarSubscription != null && "ONT".equalsIgnoreCase(String.valueOf(subProps.get("serviceLink")))) {
+                        nameONT = chain.getOnt();
+                        if (nameONT != null) {
+                            oltDevice = chain.getOlt();
+                            if (oltDevice == null) {
+                                // fallback to property oltPosition on RFS
+                                Object oltPos = (rfs.getProperties() == null) ? null : rfs.getProperties().get("oltPosition");
+                                if (oltPos != null) {
+                                    Optional<LogicalDevice> optOlt = logicalDeviceRepository.findByDiscoveredName(oltPos.toString());
+                                    if (optOlt.isPresent()) oltDevice = optOlt.get();
                                 }
                             }
                         }
                     }
 
                     // 5.3 Read resources attached to this RFS
-                    Set<Resource> resources = rfs.getUsedResource();
-                    if (resources != null && !resources.isEmpty()) {
-                        for (Resource dev : resources) {
-                            String resName = dev.getDiscoveredName() == null ? "" : dev.getDiscoveredName();
-                            String serial = (dev.getProperties() == null) ? null : String.valueOf(dev.getProperties().get("serialNo"));
-                            if (resName.startsWith("AP")) {
-                                if (serial != null) resourcesAP.add(serial);
-                            } else if (resName.startsWith("STB")) {
-                                if (serial != null) resourcesSTB.add(serial);
-                            }
-                        }
+                    for (Resource dev : chain.resources("AP")) {
+                        if (dev.getProperties() != null) resourcesAP.add(String.valueOf(dev.getProperties().get("serialNo")));
                     }
-
-                    // Components: products whose name begins with serviceID
-                    List<Product> products = (List<Product>) productRepository.findAll();
-                    List<Product> compos = new ArrayList<>();
-
-                    for (Product pds : products) {
-                        if (pds.getDiscoveredName().contains(serviceID)) {
-
-                            compos.add(pds);
-                        }
+                    for (Resource dev : chain.resources("STB")) {
+                        if (dev.getProperties() != null) resourcesSTB.add(String.valueOf(dev.getProperties().get("serialNo")));
                     }
 
-                    if (compos != null && !compos.isEmpty()) {
-                        for (Product prod : compos) {
-                            String pname = prod.getDiscoveredName();
-                            if (pname != null) {
-                                String[] parts = pname.split(Constants.UNDER_SCORE, -1);
-                                if (parts.length >= 2) {
-                                    listOfComponents.add(parts[1]);
-                                }
-                            }
+                    // Components: products attached to the subscription
+                    for (Service prod : chain.products()) {
+                        String[] parts = prod.getDiscoveredName().split(Constants.UNDER_SCORE, -1);
+                        if (parts.length >= 2) {
+                            listOfComponents.add(parts[1]);
                         }
                     }
 
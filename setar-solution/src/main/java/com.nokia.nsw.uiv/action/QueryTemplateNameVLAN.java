@@ -1,13 +1,12 @@
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.allocation.SingleTaggedSlotAllocator;
+import com.nokia.nsw.uiv.allocation.VlanAllocator;
+import com.nokia.nsw.uiv.allocation.VplsTemplateSlots;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
 import com.nokia.nsw.uiv.framework.action.HttpAction;
-import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
-import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
-import com.nokia.nsw.uiv.repository.LogicalDeviceCustomRepository;
-import com.nokia.nsw.uiv.repository.LogicalInterfaceCustomRepository;
 import com.nokia.nsw.uiv.request.QueryTemplateNameVLANRequest;
 import com.nokia.nsw.uiv.response.QueryTemplateNameVLANResponse;
 import com.nokia.nsw.uiv.utils.Constants;
@@ -18,7 +17,6 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component
 @Action
@@ -29,10 +27,13 @@ public class    QueryTemplateNameVLAN implements HttpAction {
     private static final String ERROR_PREFIX = "UIV action QueryTemplateNameVLAN execution failed - ";
 
     @Autowired
-    private LogicalDeviceCustomRepository logicalDeviceRepository;
+    private VlanAllocator vlanAllocator;
 
     @Autowired
-    private LogicalInterfaceCustomRepository logicalInterfaceRepository;
+    private SingleTaggedSlotAllocator slotAllocator;
+
+    @Autowired
+    private VplsTemplateSlots vplsTemplateSlots;
 
     @Override
     public Class<?> getActionClass() {
@@ -65,63 +66,14 @@ public class    QueryTemplateNameVLAN implements HttpAction {
                 return createErrorResponse("400", ERROR_PREFIX + "Identifier exceeds allowed character length");
             }
 
-            // 2a) Collect VPLS templates already used on this ONT
-            List<String> vplsList = new ArrayList<>();
-            Optional<LogicalDevice> optOnt = logicalDeviceRepository.findByDiscoveredName(ontName);
-            if (optOnt.isPresent()) {
-                // NOTE: replace method below with your actual repo method if different.
-                LogicalDevice ldn=optOnt.get();
-                List<LogicalInterface> ifaceSet = ldn.getContained().stream()
-                        .filter(res -> res instanceof LogicalInterface)
-                        .map(res -> (LogicalInterface) res)
-                        .collect(Collectors.toList());
-                if (ifaceSet != null && !ifaceSet.isEmpty()) {
-                    for (LogicalInterface iface : ifaceSet) {
-                        String ifaceName = iface.getDiscoveredName() == null ? "" : iface.getDiscoveredName();
-                        if (!ifaceName.contains("ALCL") && !ifaceName.isEmpty()) {
-                            if (!vplsList.contains(ifaceName)) vplsList.add(ifaceName);
-                        }
-                    }
-                }
-            } else {
-                // ONT not found is not fatal — continue with empty vpls list
-                log.error("ONT {} not present in repository, proceeding.", ontName);
-            }
-
-            // Resolve configuredVPLSTemplate from each VLAN/iface collected
-            List<String> vplsFinalList = new ArrayList<>();
-            for (String name : vplsList) {
-                Optional<LogicalInterface> optIf = logicalInterfaceRepository.findByDiscoveredName(name);
-                if (optIf.isPresent()) {
-                    LogicalInterface li = optIf.get();
-                    Map<String, Object> props = li.getProperties();
-                    if (props != null) {
-                        Object cfg = props.get("configuredVplsTemplate");
-                        if (cfg != null) {
-                            String tmpl = cfg.toString();
-                            if (!vplsFinalList.contains(tmpl)) vplsFinalList.add(tmpl);
-                        }
-                    }
-                }
-            }
-
-            // 3) Build candidate VPLS template names (2..22), exclude existing and log
-            List<String> vplsFinalReturnList = new ArrayList<>();
-            Set<String> vplsFinalReturnListExist = new LinkedHashSet<>();
+            // 3) Pick the first VPLS template "<base> 2..22" not yet used on this ONT
             String baseVpls = request.getTemplateNameVpls() == null ? "" : request.getTemplateNameVpls();
+            String templateVpls = "";
             if (!baseVpls.isEmpty()) {
-                for (int i = 2; i <= 22; i++) {
-                    String vplsName = baseVpls + " " + i;
-                    vplsFinalReturnList.add(vplsName);
-                    if (vplsFinalList.contains(vplsName)) vplsFinalReturnListExist.add(vplsName);
-                }
-                if (!vplsFinalReturnListExist.isEmpty()) {
-                    vplsFinalReturnList.removeAll(vplsFinalReturnListExist);
-                }
-                for (String n : vplsFinalReturnList) log.debug(" the vpls here {}", n);
-                for (String n : vplsFinalReturnListExist) log.debug(" the from service {}", n);
+                OptionalInt vplsIndex = vplsTemplateSlots.firstFree(ontName, baseVpls);
+                if (vplsIndex.isPresent()) templateVpls = baseVpls + " " + vplsIndex.getAsInt();
+                log.debug(" the vpls here {}", templateVpls);
             }
-            String templateVpls = vplsFinalReturnList.isEmpty() ? "" : vplsFinalReturnList.get(0);
 
             // 4) Determine VLAN search range (default 1000..4000 exclusive)
             int rangeStart = (request.getVlanRangeStart() == null || request.getVlanRangeStart() == 0)
@@ -132,16 +84,9 @@ public class    QueryTemplateNameVLAN implements HttpAction {
 //                return createErrorResponse("400", ERROR_PREFIX + "Invalid VLAN range");
 //            }
 
-            // 5) Find next free VLAN ID for this MENM prefix
-            String freeVLAN = "";
-            for (int v = rangeStart; v < rangeEnd; v++) {
-                String vlanName = request.getMenm() + Constants.UNDER_SCORE  + v;
-                Optional<LogicalInterface> optVlanIf = logicalInterfaceRepository.findByDiscoveredName(vlanName);
-                if (!optVlanIf.isPresent()) {
-                    freeVLAN = String.valueOf(v);
-                    break;
-                }
-            }
+            // 5) Reserve next free VLAN ID for this MENM prefix until the VLAN interface is created
+            OptionalInt reservedVlan = vlanAllocator.reserve(request.getMenm(), rangeStart, rangeEnd);
+            String freeVLAN = reservedVlan.isPresent() ? String.valueOf(reservedVlan.getAsInt()) : "";
             if (freeVLAN.isEmpty()) {
                 // Code8 -> No free VLAN found
                 return createErrorResponse("404", ERROR_PREFIX + "No free VLAN found in the specified range");
@@ -150,24 +95,21 @@ public class    QueryTemplateNameVLAN implements HttpAction {
             // 6) Choose per-port EVPN template suffix (2..9), max usable 2..8 (8 templates)
             String templateName = "";
             String templateCreate = "";
-            String perPortBase = request.getOntSN() + "_P" + request.getOntPort() + "_SINGLETAGGED_";
             String success = "false";
-            for (int n = 2; n <= 9; n++) {
-                String tempName = perPortBase + n;
-                Optional<LogicalInterface> optTempIf = logicalInterfaceRepository.findByDiscoveredName(tempName);
-                if (!optTempIf.isPresent()) {
-                    if (n == 9) {
-                        success = "full"; // indicates >8 VLANs already present
-                    } else {
-                        templateName = request.getTemplateNameVlan() + " " + n;
-                        templateCreate = request.getTemplateNameVlanCreate() + " " + n;
-                        success = "true";
-                    }
-                    break;
+            OptionalInt freeSlot = slotAllocator.firstFree(request.getOntSN(), request.getOntPort());
+            if (freeSlot.isPresent()) {
+                int n = freeSlot.getAsInt();
+                if (n == SingleTaggedSlotAllocator.FULL_SLOT) {
+                    success = "full"; // indicates >8 VLANs already present
+                } else {
+                    templateName = request.getTemplateNameVlan() + " " + n;
+                    templateCreate = request.getTemplateNameVlanCreate() + " " + n;
+                    success = "true";
                 }
             }
 
             if ("full".equals(success)) {
+                vlanAllocator.release(request.getMenm(), reservedVlan.getAsInt());
                 // Code7 -> More than 8 Vlans not allowed on port
                 return createErrorResponse("400", ERROR_PREFIX + "More than 8 Vlans not allowed on port.");
             }
@@ -1,5 +1,6 @@
 package com.nokia.nsw.uiv.action;
 
+import com.nokia.nsw.uiv.coalesce.CoalescedRead;
 import com.nokia.nsw.uiv.exception.BadRequestException;
 import com.nokia.nsw.uiv.framework.action.Action;
 import com.nokia.nsw.uiv.framework.action.ActionContext;
@@ -23,12 +24,14 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Component
 @RestController
 @Action
 @Slf4j
+@CoalescedRead
 public class QueryVoipNumber implements HttpAction {
 
     private static final String ERROR_PREFIX = "UIV action QueryVoipNumber execution failed - ";
@@ -121,12 +124,13 @@ public class QueryVoipNumber implements HttpAction {
                     // Step 6: Retrieve Subscription by Search on Identifiers (Fallback Path)
                     log.error("Executing fallback subscription search for linkType: {}", linkType);
 
-                    ArrayList<Subscription> allSubscriptions = (ArrayList<Subscription>) subscriptionRepo.findAll();
+                    List<Subscription> candidateSubscriptions = subscriptionRepo.findByDiscoveredNameContaining(
+                            "ONT".equals(linkType) ? req.getOntSN() : req.getSubscriberName());
                     ArrayList<Subscription> matchedSubs = new ArrayList<>();
 
                     if ("ONT".equals(linkType)) {
                         // Priority 1: ontSN + subtype = VOIP
-                        for (Subscription s : allSubscriptions) {
+                        for (Subscription s : candidateSubscriptions) {
                             String discoveredName = s.getDiscoveredName();
                             String subtype = (String) s.getProperties().getOrDefault("serviceSubType", "");
                             if (discoveredName != null && discoveredName.contains(req.getOntSN()) && "VOIP".equalsIgnoreCase(subtype)) {
@@ -136,7 +140,7 @@ public class QueryVoipNumber implements HttpAction {
 
                         // Priority 2: ontSN + subtype = Voice
                         if (matchedSubs.isEmpty()) {
-                            for (Subscription s : allSubscriptions) {
+                            for (Subscription s : candidateSubscriptions) {
                                 String discoveredName = s.getDiscoveredName();
                                 String subtype = (String) s.getProperties().getOrDefault("serviceSubType", "");
                                 if (discoveredName != null && discoveredName.contains(req.getOntSN()) && "Voice".equalsIgnoreCase(subtype)) {
@@ -146,7 +150,7 @@ public class QueryVoipNumber implements HttpAction {
                         }
                     } else { // CBM
                         // CBM case: subscriberName + subtype = Voice
-                        for (Subscription s : allSubscriptions) {
+                        for (Subscription s : candidateSubscriptions) {
                             String discoveredName = s.getDiscoveredName();
                             String subtype = (String) s.getProperties().getOrDefault("serviceSubType", "");
                             if (discoveredName != null && discoveredName.contains(req.getSubscriberName()) && "Voice".equalsIgnoreCase(subtype)) {
@@ -0,0 +1,47 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+
+import java.util.Map;
+
+/**
+ * EVPN port templates of an OLT, one bit per evpnEthPort&lt;n&gt;Template (n = 2..5) that is not blank.
+ * Read from the OLT entity the caller holds, so a port template the caller just cleared is already seen as empty
+ * before the OLT is saved.
+ */
+public class EvpnPortTemplates {
+
+    public static final int FIRST_PORT = 2;
+    public static final int LAST_PORT = 5;
+    public static final int LAST_CARD_PORT = 4;
+
+    public static String templateKey(int port) {
+        return "evpnEthPort" + port + "Template";
+    }
+
+    /**
+     * True when none of the ports fromPort..toPort carries a template in the OLT's own properties.
+     */
+    public static boolean portsEmpty(LogicalDevice olt, int fromPort, int toPort) {
+        int mask = maskOf(olt);
+        for (int port = Math.max(FIRST_PORT, fromPort); port <= Math.min(LAST_PORT, toPort); port++) {
+            if ((mask & bit(port)) != 0) return false;
+        }
+        return true;
+    }
+
+    private static int maskOf(LogicalDevice olt) {
+        Map<String, Object> props = olt.getProperties();
+        if (props == null) return 0;
+        int mask = 0;
+        for (int port = FIRST_PORT; port <= LAST_PORT; port++) {
+            Object template = props.get(templateKey(port));
+            if (template != null && !template.toString().trim().isEmpty()) mask |= bit(port);
+        }
+        return mask;
+    }
+
+    private static int bit(int port) {
+        return 1 << (port - FIRST_PORT);
+    }
+}
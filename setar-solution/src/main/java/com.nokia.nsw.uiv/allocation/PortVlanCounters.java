@@ -0,0 +1,215 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.repository.IndexedLookupEngine;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Number of "&lt;ontSN&gt;_P&lt;port&gt;_SINGLETAGGED..." VLAN interfaces per ONT port, used for the data port status
+ * of QueryCPEDevice. Counters are built at startup and follow the LogicalInterface write events, keyed by localName
+ * so a renamed interface moves between ports. Writes that cannot be mapped mark the counters stale and the next
+ * read rebuilds them.
+ * {@link #verify()} recomputes the counters from the graph every setar.counters.port-vlan.verify-interval-ms,
+ * logs every port whose held count differs, publishes the number of drifting ports as
+ * setar.counters.port-vlan.drift and replaces the counters with the recomputed ones.
+ * Rebuilds and verifications read the graph without holding the counters' monitor, so writes and reads on request
+ * threads are not held up by the scan; writes seen while a scan runs are recorded and replayed onto the new
+ * counters before they are swapped in.
+ */
+@Component
+@Slf4j
+public class PortVlanCounters {
+
+    private static final String MARKER = "_SINGLETAGGED";
+    private static final String DRIFT_GAUGE = "setar.counters.port-vlan.drift";
+
+    private static class Counts {
+        private final Map<String, Integer> counts = new HashMap<>();
+        private final Map<String, String> portsByLocalName = new HashMap<>();
+    }
+
+    private final IndexedLookupEngine lookup;
+    private final AtomicInteger drift;
+    /** serialises scans; never taken while holding the counters' monitor */
+    private final Object scanLock = new Object();
+    private Counts held = new Counts();
+    private boolean scanning;
+    private boolean unmappedDuringScan;
+    private final List<RepositoryWriteEvent> writesDuringScan = new ArrayList<>();
+    private volatile boolean stale = true;
+
+    @Value("${setar.counters.port-vlan.verify-enabled:true}")
+    private boolean verifyEnabled;
+
+    public PortVlanCounters(IndexedLookupEngine lookup, MeterRegistry meterRegistry) {
+        this.lookup = lookup;
+        this.drift = meterRegistry.gauge(DRIFT_GAUGE, new AtomicInteger());
+    }
+
+    /**
+     * VLAN interfaces on the given ONT port.
+     */
+    public int count(String ontSN, String port) {
+        if (stale) {
+            synchronized (scanLock) {
+                if (stale) rebuild();
+            }
+        }
+        synchronized (this) {
+            return held.counts.getOrDefault(ontSN + "_P" + port, 0);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (scanLock) {
+            long start = System.currentTimeMillis();
+            Counts fresh = scan();
+            synchronized (this) {
+                swapIn(fresh);
+            }
+            log.info("Port VLAN counters built for {} ports in {} ms", fresh.counts.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Recompute the counters from the graph and report the ports whose held count drifted.
+     * Returns the drifting ports with their held and recomputed counts.
+     */
+    @Scheduled(initialDelayString = "${setar.counters.port-vlan.verify-interval-ms:3600000}",
+            fixedDelayString = "${setar.counters.port-vlan.verify-interval-ms:3600000}")
+    public Map<String, int[]> verify() {
+        Map<String, int[]> drifted = new TreeMap<>();
+        if (!verifyEnabled || stale) return drifted;
+        synchronized (scanLock) {
+            Counts recomputed = scan();
+            synchronized (this) {
+                replay(recomputed);
+                Set<String> ports = new HashSet<>(held.counts.keySet());
+                ports.addAll(recomputed.counts.keySet());
+                for (String port : ports) {
+                    int heldCount = held.counts.getOrDefault(port, 0);
+                    int actual = recomputed.counts.getOrDefault(port, 0);
+                    if (heldCount != actual) {
+                        drifted.put(port, new int[]{heldCount, actual});
+                        log.warn("Port VLAN counter drift on {}: held {}, graph {}", port, heldCount, actual);
+                    }
+                }
+                swapIn(recomputed);
+            }
+            drift.set(drifted.size());
+            log.info("Port VLAN counters verified for {} ports, {} drifted", recomputed.counts.size(), drifted.size());
+        }
+        return drifted;
+    }
+
+    @EventListener
+    public synchronized void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(LogicalInterface.class)) return;
+        if (scanning) writesDuringScan.add(event);
+        if (!apply(held, event)) stale = true;
+    }
+
+    /**
+     * Apply one write to the counters; false when the write cannot be mapped to an interface.
+     */
+    private static boolean apply(Counts into, RepositoryWriteEvent event) {
+        LogicalInterface vlanInterface = event.getEntity(LogicalInterface.class);
+        switch (event.getOperation()) {
+            case SAVED:
+                if (vlanInterface == null) return true;
+                decrement(into, into.portsByLocalName.remove(keyOf(vlanInterface)));
+                add(into, vlanInterface);
+                return true;
+            case DELETED:
+                if (vlanInterface == null) return true;
+                decrement(into, into.portsByLocalName.remove(keyOf(vlanInterface)));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read the interfaces from the graph without holding the monitor; writes arriving meanwhile are recorded.
+     */
+    private Counts scan() {
+        synchronized (this) {
+            scanning = true;
+            unmappedDuringScan = false;
+            writesDuringScan.clear();
+        }
+        Counts fresh = new Counts();
+        try {
+            Filter singleTagged = new Filter(IndexedLookupEngine.DISCOVERED_NAME, ComparisonOperator.CONTAINING, MARKER);
+            try (Stream<LogicalInterface> interfaces = lookup.stream(LogicalInterface.class, singleTagged, 0)) {
+                interfaces.forEach(vlanInterface -> add(fresh, vlanInterface));
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                scanning = false;
+                writesDuringScan.clear();
+            }
+            throw e;
+        }
+        return fresh;
+    }
+
+    /**
+     * Replays the writes recorded during the scan; both are idempotent per interface, so a write the scan
+     * already saw is counted once.
+     */
+    private void replay(Counts fresh) {
+        for (RepositoryWriteEvent event : writesDuringScan) {
+            if (!apply(fresh, event)) unmappedDuringScan = true;
+        }
+        writesDuringScan.clear();
+    }
+
+    private void swapIn(Counts fresh) {
+        replay(fresh);
+        held = fresh;
+        scanning = false;
+        stale = unmappedDuringScan;
+    }
+
+    private static void add(Counts into, LogicalInterface vlanInterface) {
+        String port = portOf(vlanInterface.getDiscoveredName());
+        if (port == null) return;
+        into.counts.merge(port, 1, Integer::sum);
+        into.portsByLocalName.put(keyOf(vlanInterface), port);
+    }
+
+    private static void decrement(Counts from, String port) {
+        if (port == null) return;
+        from.counts.computeIfPresent(port, (p, count) -> count > 1 ? count - 1 : null);
+    }
+    private static String keyOf(LogicalInterface vlanInterface) {
+        return vlanInterface.getLocalName() != null ? vlanInterface.getLocalName() : vlanInterface.getDiscoveredName();
+    }
+
+    /**
+     * "&lt;ontSN&gt;_P&lt;port&gt;" of a SINGLETAGGED interface name, or null for any other name.
+     */
+    private static String portOf(String name) {
+        if (name == null) return null;
+        int marker = name.indexOf(MARKER);
+        if (marker < 0) return null;
+        int portSep = name.lastIndexOf("_P", marker);
+        if (portSep <= 0 || portSep + 2 >= marker) return null;
+        return name.substring(0, marker);
+    }
+}
@@ -0,0 +1,208 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import com.nokia.nsw.uiv.repository.IndexedLookupEngine;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvents;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the POTS line state of a device: potsPort&lt;n&gt;Number on the ONT and voipPort&lt;n&gt; on the CPE.
+ * Every change runs under striped in-process locks keyed by device name, taken in stripe order when a change
+ * covers both the ONT and the CPE, and is written with one conditional
+ * Cypher update that only applies when the stored value is still the expected one. A second order (on this or
+ * another instance) that booked the line in between makes the update miss and the call return false instead of
+ * overwriting the booking.
+ * Successful updates are applied to the passed entity and announced as a LogicalDevice save so caches drop the
+ * device. Callers that also changed other properties of the device store them with {@link #saveOtherProperties},
+ * never with a full save, which would write back the line values they read before booking.
+ * Lock waits, contended acquisitions and compare-and-set results are published as setar.allocation.pots.*.
+ */
+@Component
+@Slf4j
+public class PotsLineAllocator {
+
+    public static final String AVAILABLE = "Available";
+    private static final String LOCK_WAIT_TIMER = "setar.allocation.pots.lock-wait";
+    private static final String CONTENTION_COUNTER = "setar.allocation.pots.contention";
+    private static final String CAS_COUNTER = "setar.allocation.pots.cas";
+
+    private final Session session;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock[] stripes;
+
+    public PotsLineAllocator(Session session, IndexedLookupEngine lookup, RepositoryWriteEvents events,
+                             MeterRegistry meterRegistry,
+                             @Value("${setar.allocation.pots.lock-stripes:64}") int lockStripes) {
+        this.session = session;
+        this.lookup = lookup;
+        this.events = events;
+        this.meterRegistry = meterRegistry;
+        this.stripes = new ReentrantLock[Math.max(1, lockStripes)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public static String ontLineKey(int line) {
+        return "potsPort" + line + "Number";
+    }
+
+    public static String cpePortKey(int line) {
+        return "voipPort" + line;
+    }
+
+    /**
+     * Book the ONT line for the number and mirror it on the CPE port. The ONT line must be free (or already hold
+     * this number) and the CPE port free or Available; if the CPE update misses, the ONT booking is undone.
+     * A null ONT books the CPE port only, for an ONT the caller has yet to create with the line set.
+     */
+    public boolean allocate(LogicalDevice ont, LogicalDevice cpe, int line, String number) {
+        List<ReentrantLock> locks = lockFor(ont == null ? null : ont.getDiscoveredName(),
+                cpe == null ? null : cpe.getDiscoveredName());
+        try {
+            if (ont != null && !compareAndSet(ont, ontLineKey(line), Arrays.asList("", number), number)) {
+                return false;
+            }
+            if (cpe != null && !compareAndSet(cpe, cpePortKey(line), Arrays.asList("", AVAILABLE, number), number)) {
+                if (ont != null) compareAndSet(ont, ontLineKey(line), Collections.singletonList(number), "");
+                return false;
+            }
+            return true;
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    /**
+     * Free the ONT line if it still holds the number the caller read.
+     */
+    public boolean release(LogicalDevice ont, int line, String bookedNumber) {
+        List<ReentrantLock> locks = lockFor(ont.getDiscoveredName());
+        try {
+            return compareAndSet(ont, ontLineKey(line), Collections.singletonList(nullToEmpty(bookedNumber)), "");
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    /**
+     * Set the CPE port back to Available if it still holds the value the caller read.
+     */
+    public boolean releaseCpePort(LogicalDevice cpe, int line, String bookedValue) {
+        List<ReentrantLock> locks = lockFor(cpe.getDiscoveredName());
+        try {
+            return compareAndSet(cpe, cpePortKey(line), Collections.singletonList(nullToEmpty(bookedValue)), AVAILABLE);
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    /**
+     * Store the device's properties except the POTS line keys with one targeted SET, so a line booked by another
+     * order since this entity was read is left as it is.
+     */
+    public void saveOtherProperties(LogicalDevice device) {
+        if (device == null || device.getProperties() == null) return;
+        Map<String, Object> values = new HashMap<>();
+        device.getProperties().forEach((key, value) -> {
+            if (!isLineKey(key) && (value instanceof String || value instanceof Number || value instanceof Boolean)) {
+                values.put(lookup.propertyField(key), value);
+            }
+        });
+        if (values.isEmpty()) return;
+        String cypher = String.format("MATCH (n:`%s` {%s: $name}) SET n += $values",
+                lookup.labelOf(LogicalDevice.class), IndexedLookupEngine.DISCOVERED_NAME);
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", device.getDiscoveredName());
+        params.put("values", values);
+        session.query(cypher, params);
+        events.saved(LogicalDevice.class, device);
+    }
+
+    private static boolean isLineKey(String key) {
+        return key != null && (key.matches("potsPort\\d+Number") || key.matches("voipPort\\d+"));
+    }
+
+    /**
+     * One conditional update: the property is set only when its stored value (missing counts as "") is one of
+     * the expected values.
+     */
+    private boolean compareAndSet(LogicalDevice device, String key, Collection<String> expected, String value) {
+        String cypher = String.format(
+                "MATCH (n:`%s` {%s: $name}) WHERE coalesce(n.`%s`, '') IN $expected SET n.`%s` = $value RETURN count(n) AS updated",
+                lookup.labelOf(LogicalDevice.class), IndexedLookupEngine.DISCOVERED_NAME,
+                lookup.propertyField(key), lookup.propertyField(key));
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", device.getDiscoveredName());
+        params.put("expected", new ArrayList<>(expected));
+        params.put("value", value);
+        long updated = 0;
+        Iterable<Map<String, Object>> rows = session.query(cypher, params);
+        for (Map<String, Object> row : rows) {
+            Object count = row.get("updated");
+            if (count instanceof Number) updated = ((Number) count).longValue();
+        }
+        if (updated == 0) {
+            meterRegistry.counter(CAS_COUNTER, "result", "conflict").increment();
+            log.error("POTS update of {} on {} rejected, stored value is no longer one of {}", key,
+                    device.getDiscoveredName(), expected);
+            return false;
+        }
+        meterRegistry.counter(CAS_COUNTER, "result", "ok").increment();
+        if (device.getProperties() == null) {
+            device.setProperties(new HashMap<>());
+        }
+        device.getProperties().put(key, value);
+        events.saved(LogicalDevice.class, device);
+        return true;
+    }
+
+    /**
+     * Lock the stripes of the named devices (null names are skipped) in ascending stripe order, each stripe once,
+     * so two changes covering the same devices never wait on each other in opposite order.
+     */
+    private List<ReentrantLock> lockFor(String... deviceNames) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String deviceName : deviceNames) {
+            if (deviceName != null) indexes.add(Math.floorMod(deviceName.hashCode(), stripes.length));
+        }
+        List<ReentrantLock> locks = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            locks.add(lock(stripes[index]));
+        }
+        return locks;
+    }
+
+    private static void unlock(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private ReentrantLock lock(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            Timer.builder(LOCK_WAIT_TIMER).register(meterRegistry).record(0, TimeUnit.NANOSECONDS);
+            return lock;
+        }
+        meterRegistry.counter(CONTENTION_COUNTER).increment();
+        long start = System.nanoTime();
+        lock.lock();
+        Timer.builder(LOCK_WAIT_TIMER).register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return lock;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,280 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.repository.IndexedLookupEngine;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.session.Session;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Occupancy of the "&lt;ontSN&gt;_P&lt;port&gt;_SINGLETAGGED_&lt;n&gt;" interfaces, one 8-bit mask per (ONT, port) for
+ * n = 2..9. Slots 2..8 carry EVPN VLANs; an interface in slot 9 means the port is full.
+ * Built at startup from the SINGLETAGGED interfaces and kept current from {@link RepositoryWriteEvent}s, keyed by
+ * localName so a rename (ONT replacement in ModifySPR) moves the slot. Writes that cannot be mapped mark the
+ * allocator stale and the next call rebuilds it.
+ * The masks are per instance and only a hint: a claim is confirmed against the store before the caller saves, and
+ * {@link #occupiedInStore(String, String)} reads the port's interfaces from the store for flows that delete them.
+ * Both also correct the mask of that port. Rebuilds read the graph without holding the allocator's monitor; writes
+ * arriving meanwhile are replayed onto the new masks before they are swapped in.
+ */
+@Component
+@Slf4j
+public class SingleTaggedSlotAllocator {
+
+    public static final int FIRST_SLOT = 2;
+    public static final int LAST_VLAN_SLOT = 8;
+    public static final int FULL_SLOT = 9;
+    private static final String MARKER = "_SINGLETAGGED_";
+
+    private static class Slots {
+        private final Map<String, Integer> masks = new HashMap<>();
+        private final Map<String, String> namesByLocalName = new HashMap<>();
+    }
+
+    private final Session session;
+    private final IndexedLookupEngine lookup;
+    /** serialises rebuilds; never taken while holding the allocator's monitor */
+    private final Object scanLock = new Object();
+    private Slots held = new Slots();
+    private boolean scanning;
+    private boolean unmappedDuringScan;
+    private final List<RepositoryWriteEvent> writesDuringScan = new ArrayList<>();
+    private volatile boolean stale = true;
+
+    public SingleTaggedSlotAllocator(Session session, IndexedLookupEngine lookup) {
+        this.session = session;
+        this.lookup = lookup;
+    }
+
+    public static String interfaceName(String ontSN, String port, int slot) {
+        return portKey(ontSN, port) + MARKER + slot;
+    }
+
+    /**
+     * Lowest slot in 2..9 without an interface; empty when all eight are taken.
+     */
+    public OptionalInt firstFree(String ontSN, String port) {
+        int mask = mask(ontSN, port);
+        for (int slot = FIRST_SLOT; slot <= FULL_SLOT; slot++) {
+            if ((mask & bit(slot)) == 0) return OptionalInt.of(slot);
+        }
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Lowest VLAN slot in 2..8 that has an interface; empty when the port carries none.
+     */
+    public OptionalInt firstOccupied(String ontSN, String port) {
+        int mask = mask(ontSN, port);
+        for (int slot = FIRST_SLOT; slot <= LAST_VLAN_SLOT; slot++) {
+            if ((mask & bit(slot)) != 0) return OptionalInt.of(slot);
+        }
+        return OptionalInt.empty();
+    }
+
+    public boolean isOccupied(String ontSN, String port, int slot) {
+        return (mask(ontSN, port) & bit(slot)) != 0;
+    }
+
+    private int mask(String ontSN, String port) {
+        ensureBuilt();
+        synchronized (this) {
+            return held.masks.getOrDefault(portKey(ontSN, port), 0);
+        }
+    }
+
+    /**
+     * Atomically take the slot if it is free here and has no interface in the store. The create flow calls this
+     * before saving the interface and {@link #release(String, String, int)} if the save does not happen.
+     * A slot found in the store stays marked occupied.
+     */
+    public boolean claim(String ontSN, String port, int slot) {
+        if (slot < FIRST_SLOT || slot > FULL_SLOT) return false;
+        ensureBuilt();
+        String key = portKey(ontSN, port);
+        synchronized (this) {
+            int mask = held.masks.getOrDefault(key, 0);
+            if ((mask & bit(slot)) != 0) return false;
+            held.masks.put(key, mask | bit(slot));
+        }
+        if (existsInStore(interfaceName(ontSN, port, slot))) {
+            log.warn("SINGLETAGGED slot {} on {} exists in the store but not in the allocator", slot, key);
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void release(String ontSN, String port, int slot) {
+        if (slot < FIRST_SLOT || slot > FULL_SLOT) return;
+        clear(held, portKey(ontSN, port), slot);
+    }
+
+    /**
+     * Slots 2..9 of the port that have an interface in the store, in ascending order, read with one query on the
+     * discoveredName index. The port's mask is replaced with what was found.
+     */
+    public List<Integer> occupiedInStore(String ontSN, String port) {
+        String key = portKey(ontSN, port);
+        Iterable<Map<String, Object>> rows = session.query(
+                String.format("MATCH (n:`%s`) WHERE n.%s STARTS WITH $prefix RETURN n.%s AS name",
+                        lookup.labelOf(LogicalInterface.class), IndexedLookupEngine.DISCOVERED_NAME,
+                        IndexedLookupEngine.DISCOVERED_NAME),
+                Collections.singletonMap("prefix", key + MARKER));
+        TreeSet<Integer> slots = new TreeSet<>();
+        for (Map<String, Object> row : rows) {
+            Object name = row.get("name");
+            int slot = name == null ? -1 : slotOf(name.toString());
+            if (slot >= 0 && name.toString().length() == key.length() + MARKER.length() + 1) slots.add(slot);
+        }
+        int mask = 0;
+        for (int slot : slots) mask |= bit(slot);
+        synchronized (this) {
+            if (mask == 0) {
+                held.masks.remove(key);
+            } else {
+                held.masks.put(key, mask);
+            }
+        }
+        return new ArrayList<>(slots);
+    }
+
+    private boolean existsInStore(String name) {
+        Iterable<Map<String, Object>> rows = session.query(
+                String.format("MATCH (n:`%s` {%s: $name}) RETURN count(n) AS found",
+                        lookup.labelOf(LogicalInterface.class), IndexedLookupEngine.DISCOVERED_NAME),
+                Collections.singletonMap("name", name));
+        for (Map<String, Object> row : rows) {
+            Object found = row.get("found");
+            if (found instanceof Number) return ((Number) found).longValue() > 0;
+        }
+        return false;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (scanLock) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                scanning = true;
+                unmappedDuringScan = false;
+                writesDuringScan.clear();
+            }
+            Slots fresh = new Slots();
+            try {
+                Filter singleTagged = new Filter(IndexedLookupEngine.DISCOVERED_NAME, ComparisonOperator.CONTAINING, MARKER);
+                try (Stream<LogicalInterface> interfaces = lookup.stream(LogicalInterface.class, singleTagged, 0)) {
+                    interfaces.forEach(vlanInterface -> occupy(fresh, vlanInterface));
+                }
+            } finally {
+                synchronized (this) {
+                    scanning = false;
+                    // writes seen during the scan are idempotent per interface, replaying one the scan saw is harmless
+                    for (RepositoryWriteEvent event : writesDuringScan) {
+                        if (!apply(fresh, event)) unmappedDuringScan = true;
+                    }
+                    writesDuringScan.clear();
+                }
+            }
+            synchronized (this) {
+                held = fresh;
+                stale = unmappedDuringScan;
+            }
+            log.info("SINGLETAGGED slot allocator built with {} interfaces on {} ports in {} ms",
+                    fresh.namesByLocalName.size(), fresh.masks.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    @EventListener
+    public synchronized void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(LogicalInterface.class)) return;
+        if (scanning) writesDuringScan.add(event);
+        if (!apply(held, event)) stale = true;
+    }
+
+    /**
+     * Apply one write to the slots; false when the write cannot be mapped to an interface.
+     */
+    private static boolean apply(Slots slots, RepositoryWriteEvent event) {
+        LogicalInterface vlanInterface = event.getEntity(LogicalInterface.class);
+        switch (event.getOperation()) {
+            case SAVED:
+                if (vlanInterface == null) return true;
+                vacate(slots, vlanInterface);
+                occupy(slots, vlanInterface);
+                return true;
+            case DELETED:
+                if (vlanInterface == null) return true;
+                vacate(slots, vlanInterface);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void ensureBuilt() {
+        if (stale) {
+            synchronized (scanLock) {
+                if (stale) rebuild();
+            }
+        }
+    }
+
+    private static void occupy(Slots slots, LogicalInterface vlanInterface) {
+        String name = vlanInterface.getDiscoveredName();
+        int slot = slotOf(name);
+        if (slot < 0) return;
+        String key = name.substring(0, name.length() - MARKER.length() - 1);
+        slots.masks.merge(key, bit(slot), (a, b) -> a | b);
+        slots.namesByLocalName.put(keyOf(vlanInterface), name);
+    }
+
+    private static void vacate(Slots slots, LogicalInterface vlanInterface) {
+        String previous = slots.namesByLocalName.remove(keyOf(vlanInterface));
+        String name = previous != null ? previous : vlanInterface.getDiscoveredName();
+        int slot = slotOf(name);
+        if (slot < 0) return;
+        clear(slots, name.substring(0, name.length() - MARKER.length() - 1), slot);
+    }
+
+    private static void clear(Slots slots, String key, int slot) {
+        Integer mask = slots.masks.get(key);
+        if (mask == null) return;
+        int remaining = mask & ~bit(slot);
+        if (remaining == 0) {
+            slots.masks.remove(key);
+        } else {
+            slots.masks.put(key, remaining);
+        }
+    }
+
+    private static String keyOf(LogicalInterface vlanInterface) {
+        return vlanInterface.getLocalName() != null ? vlanInterface.getLocalName() : vlanInterface.getDiscoveredName();
+    }
+
+    private static String portKey(String ontSN, String port) {
+        return ontSN + "_P" + port;
+    }
+
+    private static int bit(int slot) {
+        return 1 << (slot - FIRST_SLOT);
+    }
+
+    /**
+     * Slot number of a SINGLETAGGED interface name, or -1 for any other name.
+     */
+    private static int slotOf(String name) {
+        if (name == null || name.length() <= MARKER.length() + 1) return -1;
+        char last = name.charAt(name.length() - 1);
+        if (last < '0' + FIRST_SLOT || last > '0' + FULL_SLOT) return -1;
+        if (!name.startsWith(MARKER, name.length() - MARKER.length() - 1)) return -1;
+        return last - '0';
+    }
+}
@@ -0,0 +1,223 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.repository.IndexedLookupEngine;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent;
+import com.nokia.nsw.uiv.utils.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * VLAN ID occupancy per MENM, one 4096-bit bitmap each, built from the "&lt;menm&gt;_&lt;vlan&gt;" LogicalInterface
+ * names at startup and kept current from {@link RepositoryWriteEvent}s.
+ * {@link #reserve(String, int, int)} hands out the lowest VLAN that is neither used nor reserved and holds it for
+ * setar.allocation.vlan.reservation-ttl-seconds, so two concurrent orders on the same MENM never get the same ID.
+ * The reservation ends when the create flow saves the VLAN interface, which marks the ID used, or when it expires.
+ * The chosen ID is confirmed with one existence query against the store before it is returned, which also covers
+ * interfaces created by another instance.
+ */
+@Component
+@Slf4j
+public class VlanAllocator {
+
+    public static final int VLAN_SPACE = 4096;
+    private static final String COUNTER = "setar.allocation.vlan";
+
+    private static class MenmVlans {
+        private final BitSet used = new BitSet(VLAN_SPACE);
+        private final Map<Integer, Long> reservedUntil = new HashMap<>();
+    }
+
+    private final Session session;
+    private final IndexedLookupEngine lookup;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MenmVlans> byMenm = new ConcurrentHashMap<>();
+    private final long reservationTtlMillis;
+    private volatile boolean stale = true;
+
+    public VlanAllocator(Session session, IndexedLookupEngine lookup, MeterRegistry meterRegistry,
+                         @Value("${setar.allocation.vlan.reservation-ttl-seconds:120}") long reservationTtlSeconds) {
+        this.session = session;
+        this.lookup = lookup;
+        this.meterRegistry = meterRegistry;
+        this.reservationTtlMillis = reservationTtlSeconds * 1000;
+    }
+
+    /**
+     * Reserve the lowest VLAN ID in [rangeStart, rangeEnd) that is neither used nor reserved on the MENM; empty
+     * when the range is exhausted. The range is clipped to 0..4095.
+     */
+    public OptionalInt reserve(String menm, int rangeStart, int rangeEnd) {
+        ensureBuilt();
+        int from = Math.max(0, rangeStart);
+        int to = Math.min(VLAN_SPACE, rangeEnd);
+        MenmVlans vlans = byMenm.computeIfAbsent(menm, m -> new MenmVlans());
+        long now = System.currentTimeMillis();
+        synchronized (vlans) {
+            vlans.reservedUntil.values().removeIf(until -> until <= now);
+            int vlan = vlans.used.nextClearBit(from);
+            while (vlan < to) {
+                if (vlans.reservedUntil.containsKey(vlan)) {
+                    vlan = vlans.used.nextClearBit(vlan + 1);
+                    continue;
+                }
+                if (existsInStore(menm + Constants.UNDER_SCORE + vlan)) {
+                    log.warn("VLAN {} on {} exists in the store but not in the allocator, marking it used", vlan, menm);
+                    vlans.used.set(vlan);
+                    count("drift");
+                    vlan = vlans.used.nextClearBit(vlan + 1);
+                    continue;
+                }
+                vlans.reservedUntil.put(vlan, now + reservationTtlMillis);
+                count("reserved");
+                return OptionalInt.of(vlan);
+            }
+        }
+        count("exhausted");
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Give back a reservation that will not be used (the order failed after reserving).
+     */
+    public void release(String menm, int vlan) {
+        MenmVlans vlans = byMenm.get(menm);
+        if (vlans == null) return;
+        synchronized (vlans) {
+            vlans.reservedUntil.remove(vlan);
+        }
+    }
+
+    /**
+     * Direct existence query on the discoveredName index, not through the repository read path and its caches.
+     */
+    private boolean existsInStore(String name) {
+        Iterable<Map<String, Object>> rows = session.query(
+                String.format("MATCH (n:`%s` {%s: $name}) RETURN count(n) AS found",
+                        lookup.labelOf(LogicalInterface.class), IndexedLookupEngine.DISCOVERED_NAME),
+                Collections.singletonMap("name", name));
+        for (Map<String, Object> row : rows) {
+            Object found = row.get("found");
+            if (found instanceof Number) return ((Number) found).longValue() > 0;
+        }
+        return false;
+    }
+
+    public boolean isUsed(String menm, int vlan) {
+        ensureBuilt();
+        MenmVlans vlans = byMenm.get(menm);
+        if (vlans == null) return false;
+        synchronized (vlans) {
+            return vlans.used.get(vlan);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<String, BitSet> rebuilt = new HashMap<>();
+        int names = 0;
+        try {
+            Iterable<Map<String, Object>> rows = session.query(
+                    String.format("MATCH (n:`%s`) RETURN n.%s AS name", lookup.labelOf(LogicalInterface.class),
+                            IndexedLookupEngine.DISCOVERED_NAME),
+                    Collections.emptyMap());
+            for (Map<String, Object> row : rows) {
+                Object name = row.get("name");
+                VlanName parsed = name == null ? null : VlanName.parse(name.toString());
+                if (parsed != null) {
+                    rebuilt.computeIfAbsent(parsed.menm, m -> new BitSet()).set(parsed.vlan);
+                    names++;
+                }
+            }
+        } catch (Exception e) {
+            // every reserve still confirms its pick against the store, the next one retries the build
+            log.warn("Could not build VLAN allocator: {}", e.getMessage());
+            return;
+        }
+        for (Map.Entry<String, BitSet> entry : rebuilt.entrySet()) {
+            byMenm.computeIfAbsent(entry.getKey(), m -> new MenmVlans());
+        }
+        for (Map.Entry<String, MenmVlans> entry : byMenm.entrySet()) {
+            MenmVlans vlans = entry.getValue();
+            synchronized (vlans) {
+                vlans.used.clear();
+                BitSet used = rebuilt.get(entry.getKey());
+                if (used != null) vlans.used.or(used);
+            }
+        }
+        stale = false;
+        log.info("VLAN allocator built with {} VLANs on {} MENMs in {} ms", names, rebuilt.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public synchronized void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(LogicalInterface.class)) return;
+        switch (event.getOperation()) {
+            case SAVED:
+            case DELETED:
+                LogicalInterface vlanInterface = event.getEntity(LogicalInterface.class);
+                VlanName parsed = vlanInterface == null ? null : VlanName.parse(vlanInterface.getDiscoveredName());
+                if (parsed == null) return;
+                MenmVlans vlans = byMenm.computeIfAbsent(parsed.menm, m -> new MenmVlans());
+                synchronized (vlans) {
+                    if (event.getOperation() == RepositoryWriteEvent.Operation.SAVED) {
+                        vlans.used.set(parsed.vlan);
+                        vlans.reservedUntil.remove(parsed.vlan);
+                    } else {
+                        vlans.used.clear(parsed.vlan);
+                    }
+                }
+                break;
+            default:
+                stale = true;
+        }
+    }
+
+    private void ensureBuilt() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) rebuild();
+            }
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter(COUNTER, "result", result).increment();
+    }
+
+    /**
+     * "&lt;menm&gt;_&lt;vlan&gt;" with a numeric VLAN in 0..4095; any other interface name is not a VLAN.
+     */
+    private static class VlanName {
+        private final String menm;
+        private final int vlan;
+
+        private VlanName(String menm, int vlan) {
+            this.menm = menm;
+            this.vlan = vlan;
+        }
+
+        private static VlanName parse(String name) {
+            if (name == null) return null;
+            int underscore = name.lastIndexOf(Constants.UNDER_SCORE);
+            if (underscore <= 0 || underscore == name.length() - 1 || name.length() - underscore > 5) return null;
+            int vlan = 0;
+            for (int i = underscore + 1; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c < '0' || c > '9') return null;
+                vlan = vlan * 10 + (c - '0');
+            }
+            return vlan < VLAN_SPACE ? new VlanName(name.substring(0, underscore), vlan) : null;
+        }
+    }
+}
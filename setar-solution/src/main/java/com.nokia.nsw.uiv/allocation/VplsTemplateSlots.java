@@ -0,0 +1,145 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.repository.IndexedLookupEngine;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.stream.Stream;
+
+/**
+ * VPLS template indices in use per ONT. A VLAN interface with configuredVplsTemplate "&lt;base&gt; &lt;n&gt;" and
+ * linkedOnt set occupies index n (2..22) of that base on that ONT; the used indices are one bitset per (ONT, base).
+ * Built at startup from the LogicalInterface label and kept current from {@link RepositoryWriteEvent}s, keyed by
+ * localName. Writes that cannot be mapped mark the slots stale and the next call rebuilds them.
+ */
+@Component
+@Slf4j
+public class VplsTemplateSlots {
+
+    public static final int FIRST_INDEX = 2;
+    public static final int LAST_INDEX = 22;
+    private static final String TEMPLATE_PROPERTY = "configuredVplsTemplate";
+    private static final String ONT_PROPERTY = "linkedOnt";
+
+    private static class Slot {
+        private final String ont;
+        private final String base;
+        private final int index;
+
+        private Slot(String ont, String base, int index) {
+            this.ont = ont;
+            this.base = base;
+            this.index = index;
+        }
+
+        private String key() {
+            return ont + "|" + base + "|" + index;
+        }
+    }
+
+    private final IndexedLookupEngine lookup;
+    private final Map<String, Map<String, BitSet>> usedByOnt = new HashMap<>();
+    private final Map<String, Slot> slotsByLocalName = new HashMap<>();
+    private final Map<String, Integer> holders = new HashMap<>();
+    private volatile boolean stale = true;
+
+    public VplsTemplateSlots(IndexedLookupEngine lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Lowest index in 2..22 whose "&lt;base&gt; &lt;index&gt;" template is not used on the ONT; empty when all are used.
+     */
+    public synchronized OptionalInt firstFree(String ontName, String base) {
+        ensureBuilt();
+        BitSet used = usedByOnt.getOrDefault(ontName, new HashMap<>()).get(base);
+        int index = used == null ? FIRST_INDEX : used.nextClearBit(FIRST_INDEX);
+        return index <= LAST_INDEX ? OptionalInt.of(index) : OptionalInt.empty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        usedByOnt.clear();
+        slotsByLocalName.clear();
+        holders.clear();
+        try (Stream<LogicalInterface> interfaces = lookup.stream(LogicalInterface.class, null, 0)) {
+            interfaces.forEach(this::occupy);
+        }
+        stale = false;
+        log.info("VPLS template slots built with {} templates on {} ONTs in {} ms", slotsByLocalName.size(),
+                usedByOnt.size(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public synchronized void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(LogicalInterface.class)) return;
+        LogicalInterface vlanInterface = event.getEntity(LogicalInterface.class);
+        switch (event.getOperation()) {
+            case SAVED:
+                if (vlanInterface == null) return;
+                vacate(vlanInterface);
+                occupy(vlanInterface);
+                break;
+            case DELETED:
+                if (vlanInterface == null) return;
+                vacate(vlanInterface);
+                break;
+            default:
+                stale = true;
+        }
+    }
+
+    private void ensureBuilt() {
+        if (stale) rebuild();
+    }
+
+    private void occupy(LogicalInterface vlanInterface) {
+        Map<String, Object> props = vlanInterface.getProperties();
+        if (props == null || props.get(TEMPLATE_PROPERTY) == null || props.get(ONT_PROPERTY) == null) return;
+        String template = props.get(TEMPLATE_PROPERTY).toString();
+        int space = template.lastIndexOf(' ');
+        if (space <= 0) return;
+        int index;
+        try {
+            index = Integer.parseInt(template.substring(space + 1));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (index < FIRST_INDEX || index > LAST_INDEX) return;
+        Slot slot = new Slot(props.get(ONT_PROPERTY).toString(), template.substring(0, space), index);
+        usedByOnt.computeIfAbsent(slot.ont, o -> new HashMap<>())
+                .computeIfAbsent(slot.base, b -> new BitSet(LAST_INDEX + 1))
+                .set(slot.index);
+        slotsByLocalName.put(keyOf(vlanInterface), slot);
+        holders.merge(slot.key(), 1, Integer::sum);
+    }
+
+    /**
+     * Two VLANs can carry the same template on one ONT, so the bit is cleared only when no other interface holds it.
+     */
+    private void vacate(LogicalInterface vlanInterface) {
+        Slot slot = slotsByLocalName.remove(keyOf(vlanInterface));
+        if (slot == null) return;
+        if (holders.merge(slot.key(), -1, Integer::sum) > 0) return;
+        holders.remove(slot.key());
+        Map<String, BitSet> bases = usedByOnt.get(slot.ont);
+        BitSet used = bases == null ? null : bases.get(slot.base);
+        if (used == null) return;
+        used.clear(slot.index);
+        if (used.isEmpty()) bases.remove(slot.base);
+        if (bases.isEmpty()) usedByOnt.remove(slot.ont);
+    }
+
+    private static String keyOf(LogicalInterface vlanInterface) {
+        return vlanInterface.getLocalName() != null ? vlanInterface.getLocalName() : vlanInterface.getDiscoveredName();
+    }
+}
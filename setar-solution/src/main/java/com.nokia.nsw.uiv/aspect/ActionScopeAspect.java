@@ -0,0 +1,32 @@
+package com.nokia.nsw.uiv.aspect;
+
+import com.nokia.nsw.uiv.repository.RequestIdentityMap;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens the per-request repository identity map around every HttpAction.doPost and clears it when the
+ * action returns or throws.
+ */
+@Aspect
+@Component
+public class ActionScopeAspect {
+
+    private final RequestIdentityMap identityMap;
+
+    public ActionScopeAspect(RequestIdentityMap identityMap) {
+        this.identityMap = identityMap;
+    }
+
+    @Around("execution(* com.nokia.nsw.uiv.framework.action.HttpAction+.doPost(..))")
+    public Object aroundDoPost(ProceedingJoinPoint joinPoint) throws Throwable {
+        identityMap.open(joinPoint.getTarget().getClass().getSimpleName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            identityMap.close();
+        }
+    }
+}
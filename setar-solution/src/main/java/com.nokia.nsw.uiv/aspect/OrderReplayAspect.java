@@ -0,0 +1,35 @@
+package com.nokia.nsw.uiv.aspect;
+
+import com.nokia.nsw.uiv.framework.action.ActionContext;
+import com.nokia.nsw.uiv.replay.IdempotentOrder;
+import com.nokia.nsw.uiv.replay.OrderReplayCache;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes the doPost of {@link IdempotentOrder} actions through the {@link OrderReplayCache}. Runs outermost so a
+ * replayed order neither takes the subscriber lock nor opens a repository scope.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OrderReplayAspect {
+
+    private final OrderReplayCache replayCache;
+
+    public OrderReplayAspect(OrderReplayCache replayCache) {
+        this.replayCache = replayCache;
+    }
+
+    @Around("execution(* com.nokia.nsw.uiv.framework.action.HttpAction+.doPost(..)) && @within(idempotent)")
+    public Object aroundDoPost(ProceedingJoinPoint joinPoint, IdempotentOrder idempotent) throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        String orderId = RequestProperty.read(args, idempotent.value());
+        Object request = args.length > 0 && args[0] instanceof ActionContext ? ((ActionContext) args[0]).getObject() : null;
+        return replayCache.execute(joinPoint.getTarget().getClass().getSimpleName(), orderId, request, joinPoint::proceed);
+    }
+}
@@ -0,0 +1,34 @@
+package com.nokia.nsw.uiv.aspect;
+
+import com.nokia.nsw.uiv.coalesce.CoalescedRead;
+import com.nokia.nsw.uiv.coalesce.RequestCoalescer;
+import com.nokia.nsw.uiv.framework.action.ActionContext;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes the doPost of {@link CoalescedRead} actions through the {@link RequestCoalescer}. Runs outermost so the
+ * callers that join an execution do not open a repository scope of their own.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestCoalescingAspect {
+
+    private final RequestCoalescer coalescer;
+
+    public RequestCoalescingAspect(RequestCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    @Around("execution(* com.nokia.nsw.uiv.framework.action.HttpAction+.doPost(..)) && @within(coalesced)")
+    public Object aroundDoPost(ProceedingJoinPoint joinPoint, CoalescedRead coalesced) throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        Object request = args.length > 0 && args[0] instanceof ActionContext ? ((ActionContext) args[0]).getObject() : null;
+        return coalescer.execute(joinPoint.getTarget().getClass().getSimpleName(), request, joinPoint::proceed);
+    }
+}
@@ -0,0 +1,26 @@
+package com.nokia.nsw.uiv.aspect;
+
+import com.nokia.nsw.uiv.framework.action.ActionContext;
+import org.springframework.beans.BeanWrapperImpl;
+
+/**
+ * Reads a named property of the request object carried by the ActionContext passed to doPost.
+ */
+final class RequestProperty {
+
+    private RequestProperty() {
+    }
+
+    /**
+     * Trimmed string value of the property, or null when the request has no such property or it is blank.
+     */
+    static String read(Object[] doPostArgs, String property) {
+        if (doPostArgs.length == 0 || !(doPostArgs[0] instanceof ActionContext)) return null;
+        Object request = ((ActionContext) doPostArgs[0]).getObject();
+        if (request == null) return null;
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(request);
+        if (!wrapper.isReadableProperty(property)) return null;
+        Object value = wrapper.getPropertyValue(property);
+        return value == null || value.toString().trim().isEmpty() ? null : value.toString().trim();
+    }
+}
@@ -0,0 +1,33 @@
+package com.nokia.nsw.uiv.aspect;
+
+import com.nokia.nsw.uiv.lock.SubscriberLocked;
+import com.nokia.nsw.uiv.lock.SubscriberLocks;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serializes the doPost of {@link SubscriberLocked} actions per subscriber name taken from the request.
+ */
+@Aspect
+@Component
+public class SubscriberLockAspect {
+
+    private final SubscriberLocks subscriberLocks;
+
+    public SubscriberLockAspect(SubscriberLocks subscriberLocks) {
+        this.subscriberLocks = subscriberLocks;
+    }
+
+    @Around("execution(* com.nokia.nsw.uiv.framework.action.HttpAction+.doPost(..)) && @within(locked)")
+    public Object aroundDoPost(ProceedingJoinPoint joinPoint, SubscriberLocked locked) throws Throwable {
+        String subscriberName = RequestProperty.read(joinPoint.getArgs(), locked.value());
+        if (subscriberName == null) {
+            return joinPoint.proceed();
+        }
+        try (SubscriberLocks.Held held = subscriberLocks.lock(subscriberName)) {
+            return joinPoint.proceed();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.nokia.nsw.uiv.coalesce;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opts a read-only action into {@link RequestCoalescer}: concurrent doPost calls with the same request share one
+ * execution. Only for actions that do not write, the shared response is handed to every caller.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CoalescedRead {
+}
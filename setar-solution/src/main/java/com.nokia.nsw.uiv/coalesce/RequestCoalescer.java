@@ -0,0 +1,93 @@
+package com.nokia.nsw.uiv.coalesce;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Single-flight execution of identical concurrent read requests. The key is the action plus the request
+ * serialized with sorted properties and without null fields, so payloads that differ only in field order or
+ * omitted optionals coalesce. While one call for a key runs, later calls wait for it and get its response (or
+ * exception); nothing is kept once it finishes, so a call arriving afterwards always executes.
+ * Executions are counted as setar.coalesce.executed{action}, calls served by another execution as
+ * setar.coalesce.saved{action}.
+ */
+@Component
+@Slf4j
+public class RequestCoalescer {
+
+    private static final String EXECUTED_COUNTER = "setar.coalesce.executed";
+    private static final String SAVED_COUNTER = "setar.coalesce.saved";
+
+    @FunctionalInterface
+    public interface Execution {
+        Object proceed() throws Throwable;
+    }
+
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+
+    public RequestCoalescer(MeterRegistry meterRegistry,
+                            @Value("${setar.coalesce.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    public Object execute(String action, Object request, Execution execution) throws Throwable {
+        String key = enabled ? keyOf(action, request) : null;
+        if (key == null) {
+            return execution.proceed();
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            meterRegistry.counter(SAVED_COUNTER, "action", action).increment();
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+        meterRegistry.counter(EXECUTED_COUNTER, "action", action).increment();
+        try {
+            Object response = execution.proceed();
+            mine.complete(response);
+            return response;
+        } catch (Throwable t) {
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Canonical key of the request, or null when it cannot be serialized (the call then runs on its own).
+     */
+    private String keyOf(String action, Object request) {
+        if (request == null) return null;
+        try {
+            return action + "|" + request.getClass().getName() + "|" + canonicalMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            log.warn("Request of {} cannot be canonicalized, executing without coalescing: {}", action, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.nokia.nsw.uiv.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Port layout of each CPE model, read once from setar.cpe.catalog.* at startup.
+ * An entry is "&lt;model&gt;=&lt;pots&gt;:&lt;eth&gt;:&lt;firstVlanPort&gt;:&lt;vlansPerPort&gt;": the number of POTS
+ * ports, the number of ETH ports, the first ETH port that carries VLAN interfaces and how many it carries.
+ * ONT models without an entry use setar.cpe.catalog.default-ont; other CPE types get their POTS ports only.
+ */
+@Component
+@Slf4j
+public class CpeModelCatalog {
+
+    public static final class Layout {
+        private final int potsPorts;
+        private final int ethPorts;
+        private final int firstVlanPort;
+        private final int vlansPerPort;
+
+        private Layout(int potsPorts, int ethPorts, int firstVlanPort, int vlansPerPort) {
+            this.potsPorts = potsPorts;
+            this.ethPorts = ethPorts;
+            this.firstVlanPort = firstVlanPort;
+            this.vlansPerPort = vlansPerPort;
+        }
+
+        public int getPotsPorts() {
+            return potsPorts;
+        }
+
+        public int getEthPorts() {
+            return ethPorts;
+        }
+
+        /**
+         * VLAN interfaces created under ETH_&lt;port&gt;.
+         */
+        public int vlansOn(int port) {
+            return port >= firstVlanPort ? vlansPerPort : 0;
+        }
+
+        private Layout withoutEth() {
+            return new Layout(potsPorts, 0, firstVlanPort, vlansPerPort);
+        }
+
+        private static Layout parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Expected <pots>:<eth>:<firstVlanPort>:<vlansPerPort>, got " + spec);
+            }
+            return new Layout(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                    Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim()));
+        }
+    }
+
+    private final Map<String, Layout> byModel;
+    private final Layout defaultOnt;
+    private final Layout otherTypes;
+
+    public CpeModelCatalog(@Value("${setar.cpe.catalog.models:XS-250WX-A=2:5:3:7,XS-250X-A=2:5:3:7}") String models,
+                           @Value("${setar.cpe.catalog.default-ont:2:4:3:7}") String defaultOnt) {
+        Map<String, Layout> parsed = new HashMap<>();
+        for (String entry : models.split(",")) {
+            if (entry.trim().isEmpty()) continue;
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected <model>=<layout> in setar.cpe.catalog.models, got " + entry);
+            }
+            parsed.put(entry.substring(0, eq).trim().toUpperCase(Locale.ROOT), Layout.parse(entry.substring(eq + 1)));
+        }
+        this.byModel = Collections.unmodifiableMap(parsed);
+        this.defaultOnt = Layout.parse(defaultOnt);
+        this.otherTypes = this.defaultOnt.withoutEth();
+        log.info("CPE model catalog loaded with {} models", byModel.size());
+    }
+
+    public Layout layoutOf(String cpeType, String cpeModel) {
+        if (!"ONT".equalsIgnoreCase(cpeType)) {
+            return otherTypes;
+        }
+        Layout layout = cpeModel == null ? null : byModel.get(cpeModel.toUpperCase(Locale.ROOT));
+        return layout != null ? layout : defaultOnt;
+    }
+}
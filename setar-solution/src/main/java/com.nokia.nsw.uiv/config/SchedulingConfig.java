@@ -0,0 +1,12 @@
+package com.nokia.nsw.uiv.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the background verification jobs of the in-memory counters and allocators.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,64 @@
+package com.nokia.nsw.uiv.flags;
+
+import com.nokia.nsw.uiv.request.QueryFlagsRequest;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * The request attributes rule guards may test. Subscriber and serviceId values are reduced to what the guards
+ * look at (presence, ontSN class), so two requests with the same facts always match the same rules and share
+ * one compiled plan.
+ */
+@Getter
+@EqualsAndHashCode
+public final class FlagFacts {
+
+    private final String productType;
+    private final String productSubtype;
+    private final String actionType;
+    /** ontSN is blank or "NA" */
+    private final boolean ontUnknown;
+    /** ontSN contains "ALCL" */
+    private final boolean ontAlcl;
+    /** service link implied by the ontSN prefix: ONT, SRX or NA */
+    private final String ontLink;
+    private final boolean serviceId;
+
+    private FlagFacts(String productType, String productSubtype, String actionType,
+                      boolean ontUnknown, boolean ontAlcl, String ontLink, boolean serviceId) {
+        this.productType = productType;
+        this.productSubtype = productSubtype;
+        this.actionType = actionType;
+        this.ontUnknown = ontUnknown;
+        this.ontAlcl = ontAlcl;
+        this.ontLink = ontLink;
+        this.serviceId = serviceId;
+    }
+
+    public static FlagFacts of(QueryFlagsRequest request) {
+        String ontSN = request.getOntSN();
+        return new FlagFacts(request.getProductType(), request.getProductSubtype(), request.getActionType(),
+                ontSN == null || ontSN.trim().isEmpty() || "NA".equalsIgnoreCase(ontSN),
+                ontSN != null && ontSN.contains("ALCL"),
+                ontSN == null ? "NA" : ontSN.startsWith("ALC") ? "ONT" : ontSN.startsWith("CW") ? "SRX" : "NA",
+                request.getServiceId() != null);
+    }
+
+    public boolean productTypeIs(String... values) {
+        return equalsAny(productType, values);
+    }
+
+    public boolean productSubtypeIs(String... values) {
+        return equalsAny(productSubtype, values);
+    }
+
+    public boolean actionTypeIs(String... values) {
+        return equalsAny(actionType, values);
+    }
+
+    private static boolean equalsAny(String value, String... tokens) {
+        if (value == null) return false;
+        for (String t : tokens) if (value.equalsIgnoreCase(t)) return true;
+        return false;
+    }
+}
@@ -0,0 +1,44 @@
+package com.nokia.nsw.uiv.flags;
+
+import com.nokia.nsw.uiv.repository.SubscriberContextLoader.Part;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * One row of a flag rule table: a guard over the request facts, the parts of the subscriber context the rule
+ * reads, and the body that derives its flags. Rules run in table order, so a later rule may refine a flag an
+ * earlier one set.
+ */
+@Getter
+public final class FlagRule {
+
+    @FunctionalInterface
+    public interface Body {
+        void apply(FlagState state) throws Exception;
+    }
+
+    private final String name;
+    private final Predicate<FlagFacts> guard;
+    private final Set<Part> needs;
+    private final Body body;
+
+    private FlagRule(String name, Predicate<FlagFacts> guard, Set<Part> needs, Body body) {
+        this.name = name;
+        this.guard = guard;
+        this.needs = needs;
+        this.body = body;
+    }
+
+    public static FlagRule rule(String name, Predicate<FlagFacts> guard, Body body, Part... needs) {
+        Set<Part> parts = needs.length == 0 ? EnumSet.noneOf(Part.class) : EnumSet.of(needs[0], needs);
+        return new FlagRule(name, guard, Collections.unmodifiableSet(parts), body);
+    }
+
+    public static Predicate<FlagFacts> always() {
+        return facts -> true;
+    }
+}
@@ -0,0 +1,95 @@
+package com.nokia.nsw.uiv.flags;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nokia.nsw.uiv.repository.SubscriberContextLoader;
+import com.nokia.nsw.uiv.repository.SubscriberContextLoader.Part;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates the QueryFlags rule table. The table is read once at startup into an array; for each distinct
+ * {@link FlagFacts} the guards are evaluated once into a plan (the matching rule indexes plus the union of the
+ * context parts they need), kept in a bounded cache. A request then loads only those parts of its subscriber
+ * context and runs only the planned rules, in table order, stopping early if a rule rejects the request.
+ * Plan cache metrics are published as cache.* with cache=flagPlans.
+ */
+@Component
+@Slf4j
+public class FlagRuleEngine {
+
+    private static final String CACHE_NAME = "flagPlans";
+
+    private static final class Plan {
+        private final int[] rules;
+        private final Set<Part> needs;
+
+        private Plan(int[] rules, Set<Part> needs) {
+            this.rules = rules;
+            this.needs = needs;
+        }
+    }
+
+    private final FlagRule[] rules;
+    private final Cache<FlagFacts, Plan> plans;
+    private final SubscriberContextLoader contextLoader;
+
+    public FlagRuleEngine(QueryFlagsRules table, SubscriberContextLoader contextLoader, MeterRegistry meterRegistry,
+                          @Value("${setar.flags.plan-cache.max-entries:1024}") long maxPlans) {
+        this.rules = table.rules().toArray(new FlagRule[0]);
+        this.contextLoader = contextLoader;
+        this.plans = Caffeine.newBuilder()
+                .maximumSize(maxPlans)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, plans, CACHE_NAME);
+        log.error("QueryFlags rule table compiled with {} rules", rules.length);
+    }
+
+    public void evaluate(FlagFacts facts, FlagState state) throws Exception {
+        Plan plan = plans.get(facts, this::compile);
+        state.attach(contextLoader, contextLoader.load(SubscriberContextLoader.scope(state.getSubscriber())
+                .serviceId(state.getServiceID())
+                .ontSN(state.getOntSN())
+                .potsNumber(plan.needs.contains(Part.POTS) ? state.getServiceID() : null)
+                .parts(plan.needs)));
+        for (int index : plan.rules) {
+            rules[index].getBody().apply(state);
+            if (state.isRejected()) {
+                log.error("Trace: rule {} rejected the request: {}", rules[index].getName(), state.getRejection());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Names of the rules the plan for these facts runs, in table order.
+     */
+    List<String> plannedRules(FlagFacts facts) {
+        List<String> names = new ArrayList<>();
+        for (int index : plans.get(facts, this::compile).rules) {
+            names.add(rules[index].getName());
+        }
+        return names;
+    }
+
+    private Plan compile(FlagFacts facts) {
+        List<Integer> matched = new ArrayList<>();
+        Set<Part> needs = EnumSet.noneOf(Part.class);
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].getGuard().test(facts)) {
+                matched.add(i);
+                needs.addAll(rules[i].getNeeds());
+            }
+        }
+        return new Plan(matched.stream().mapToInt(Integer::intValue).toArray(), needs);
+    }
+}
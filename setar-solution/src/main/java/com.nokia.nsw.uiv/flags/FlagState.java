@@ -0,0 +1,72 @@
+package com.nokia.nsw.uiv.flags;
+
+import com.nokia.nsw.uiv.repository.SubscriberContext;
+import com.nokia.nsw.uiv.repository.SubscriberContextLoader;
+import com.nokia.nsw.uiv.request.QueryFlagsRequest;
+import com.nokia.nsw.uiv.utils.Constants;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Working state of one flag evaluation: the request values, the ones rules derive along the way (ontSN, ontPort,
+ * serviceLink), the flags map and the subscriber context. When a rule derives another ontSN, the next
+ * {@link #context()} call loads the context of that ONT.
+ */
+@Getter
+public class FlagState {
+
+    private final String subscriber;
+    private final String productType;
+    private final String productSubtype;
+    private final String actionType;
+    private final String serviceID;
+    private final String subName;
+    private final Map<String, String> flags;
+
+    @Setter
+    private String ontSN;
+    @Setter
+    private String ontPort;
+    @Setter
+    private String serviceLink = "NA";
+
+    /** Message of a rule that rejected the request; evaluation stops and the action answers 400. */
+    private String rejection;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private SubscriberContextLoader loader;
+    @Getter(lombok.AccessLevel.NONE)
+    private SubscriberContext context;
+
+    public FlagState(QueryFlagsRequest request, Map<String, String> flags) {
+        this.subscriber = request.getSubscriberName();
+        this.productType = request.getProductType();
+        this.productSubtype = request.getProductSubtype();
+        this.actionType = request.getActionType();
+        this.serviceID = request.getServiceId();
+        this.subName = subscriber + Constants.UNDER_SCORE + serviceID;
+        this.ontSN = request.getOntSN();
+        this.ontPort = request.getOntPort();
+        this.flags = flags;
+    }
+
+    void attach(SubscriberContextLoader loader, SubscriberContext context) {
+        this.loader = loader;
+        this.context = context;
+    }
+
+    public SubscriberContext context() {
+        context = loader.forOnt(context, ontSN);
+        return context;
+    }
+
+    public void reject(String message) {
+        this.rejection = message;
+    }
+
+    public boolean isRejected() {
+        return rejection != null;
+    }
+}
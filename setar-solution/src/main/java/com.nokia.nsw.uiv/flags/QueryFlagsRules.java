@@ -0,0 +1,1558 @@
+package com.nokia.nsw.uiv.flags;
+
+import com.nokia.nsw.uiv.model.common.party.Customer;
+import com.nokia.nsw.uiv.model.resource.Resource;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.repository.ServiceNameTokenIndex;
+import com.nokia.nsw.uiv.repository.SubscriberContext;
+import com.nokia.nsw.uiv.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static com.nokia.nsw.uiv.flags.FlagRule.always;
+import static com.nokia.nsw.uiv.flags.FlagRule.rule;
+import static com.nokia.nsw.uiv.repository.SubscriberContextLoader.Part.*;
+
+/**
+ * Rule table of the QueryFlags action, in evaluation order. Guards test only request facts; conditions on values
+ * an earlier rule derives (ontSN found through the RFS, serviceLink, ontPort) stay inside the rule bodies, and a
+ * guard stays open whenever such a derived value could make its body apply.
+ */
+@Component
+@Slf4j
+public class QueryFlagsRules {
+
+    @Autowired
+    private ServiceNameTokenIndex serviceNameTokenIndex;
+
+    public List<FlagRule> rules() {
+        Predicate<FlagFacts> rfsDiscovery = f -> (f.productSubtypeIs("Broadband", "Voice", "Cloudstarter", "Bridged")
+                || f.productTypeIs("ENTERPRISE")) && !f.actionTypeIs("Configure") && f.isOntUnknown();
+        Predicate<FlagFacts> fibernet = f -> f.productSubtypeIs("Fibernet", "Broadband", "Voice", "Bridged")
+                || (f.productTypeIs("Broadband") && f.productSubtypeIs("Bridged"));
+        Predicate<FlagFacts> evpnUnconfigure = f -> (containsIgnoreCase(f.getProductType(), "EVPN")
+                || containsIgnoreCase(f.getProductType(), "ENTERPRISE"))
+                && f.actionTypeIs("Unconfigure") && !f.productSubtypeIs("WIFI Maintenance");
+        Predicate<FlagFacts> nonEvpnService = f -> !f.productTypeIs("EVPN", "ENTERPRISE")
+                && (f.getActionType() == null || !f.getActionType().contains("Configure")) && f.isServiceId();
+
+        return Arrays.asList(
+                rule("voip-port-defaults", f -> !f.productTypeIs("VOIP", "Voice"), this::voipPortDefaults),
+                rule("service-id-flag", always(), this::serviceIdFlag),
+                rule("service-link", always(), this::serviceLink),
+                rule("rfs-discovery", rfsDiscovery, this::rfsDiscovery, SERVICES),
+                rule("voip-pots", f -> f.productTypeIs("VOIP") && f.actionTypeIs("Configure") && f.isServiceId(),
+                        this::voipPots, DEVICES, POTS),
+                rule("modify-mac", f -> f.actionTypeIs("Modify") && f.productTypeIs("MOCA", "BridgeMode", "APMNT", "WIFION")
+                        && f.isServiceId(), this::modifyMac, SUBSCRIPTIONS),
+                rule("step6", FlagFacts::isServiceId, this::step6, SUBSCRIPTIONS),
+                rule("account-flags", always(), this::accountFlags, CUSTOMERS, SUBSCRIPTIONS),
+                rule("iptv-unconfigure-count", f -> f.productSubtypeIs("IPTV") && f.actionTypeIs("Unconfigure"),
+                        this::iptvUnconfigureCount, SUBSCRIPTIONS),
+                rule("fibernet-count", fibernet, this::fibernetCount, SUBSCRIPTIONS, SERVICES),
+                rule("fibernet-none", fibernet.negate(), this::fibernetNone),
+                rule("subscription-details", f -> !f.actionTypeIs("Configure"), this::subscriptionDetails,
+                        SUBSCRIPTIONS, DEVICES),
+                rule("subscriber-name", always(), this::subscriberName, CUSTOMERS),
+                // ontSN may still turn into an ALCL serial through RFS discovery or the IPTV subscription
+                rule("ont-templates", f -> !"NA".equals(f.getOntLink()) || f.isOntAlcl() || rfsDiscovery.test(f)
+                                || (f.productSubtypeIs("IPTV") && !f.actionTypeIs("Configure")),
+                        this::ontTemplates, DEVICES, INTERFACES, SERVICES),
+                rule("cbm-templates", f -> f.productTypeIs("CBM"), this::cbmTemplates, SUBSCRIPTIONS, SUBTYPE_PROBE),
+                rule("voip-port-reset", f -> f.productTypeIs("VOIP", "Voice"), this::voipPortReset),
+                rule("iptv-ids", f -> Arrays.asList("AccountTransfer", "MoveOut", "ChangeTechnology", "Unconfigure")
+                                .contains(f.getActionType())
+                                || (f.getActionType() != null && f.getActionType().contains("Modify_CPE")),
+                        this::iptvIds, SUBSCRIPTIONS, DEVICES),
+                rule("evpn-templates", f -> (f.productTypeIs("EVPN", "ENTERPRISE") || f.productSubtypeIs("Cloudstarter", "Bridged"))
+                        && f.actionTypeIs("Configure", "Migrate"), this::evpnTemplates, SUBSCRIPTIONS, DEVICES),
+                rule("ipbh-unconfigure", f -> f.actionTypeIs("UnconfigureIPBH") && f.productSubtypeIs("IPBH") && f.isServiceId(),
+                        this::ipbhUnconfigure, CUSTOMERS, SUBSCRIPTIONS, SERVICES),
+                rule("evpn-unconfigure", evpnUnconfigure, this::evpnUnconfigure, SERVICES, DEVICES),
+                rule("non-evpn-service", evpnUnconfigure.negate().and(nonEvpnService), this::nonEvpnService,
+                        SUBSCRIPTIONS, DEVICES),
+                rule("olt-fallback", evpnUnconfigure.negate().and(nonEvpnService.negate()), this::oltFallback, DEVICES),
+                rule("defaults", always(), this::defaults));
+    }
+
+    private void voipPortDefaults(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        log.error("------------Test Trace # 3---------------");
+        log.error("Trace: Non-voice product -> default VOIP ports to Available");
+        flags.put("SERVICE_VOIP_NUMBER1", "Available");
+        flags.put("SERVICE_VOIP_NUMBER2", "Available");
+    }
+
+    private void serviceIdFlag(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String serviceID = state.getServiceID();
+        String serviceIdFlag = "New";
+
+        if (serviceID != null && !serviceID.trim().isEmpty()) {
+
+            List<ServiceNameTokenIndex.Tokens> rfsList = new ArrayList<>();
+            for (ServiceNameTokenIndex.Tokens rfs :
+                    serviceNameTokenIndex.findByServiceId(Constants.SETAR_KIND_SETAR_RFS, serviceID)) {
+                if (serviceID.equals(rfs.getServiceId())) {
+                    rfsList.add(rfs);
+                }
+            }
+
+            serviceIdFlag = rfsList.isEmpty() ? "New" : "Exist";
+        }
+
+        flags.put("SERVICE_ID_FLAG", serviceIdFlag);
+    }
+
+    private void serviceLink(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String ontSN = state.getOntSN();
+        log.error("------------Test Trace # 4---------------");
+        String serviceLink = "NA";
+        if (ontSN != null) {
+            if (ontSN.startsWith("ALC")) {
+                serviceLink = "ONT";
+                log.error("Trace: ontSN startsWith ALCL -> serviceLink=ONT");
+            } else if (ontSN.startsWith("CW")) {
+                serviceLink = "SRX";
+                log.error("Trace: ontSN startsWith CW -> serviceLink=SRX");
+            } else {
+                log.error("Trace: ontSN pattern not recognized -> serviceLink=NA");
+            }
+        }
+        flags.put("SERVICE_LINK", serviceLink);
+        state.setServiceLink(serviceLink);
+    }
+
+    private void rfsDiscovery(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 5---------------");
+        try {
+            String rfsName = "RFS" + Constants.UNDER_SCORE + subscriber + Constants.UNDER_SCORE  + (serviceID == null ? "" : serviceID);
+            List<ServiceNameTokenIndex.Tokens> rfsServices =
+                    serviceNameTokenIndex.findBySubscriber(Constants.SETAR_KIND_SETAR_RFS, subscriber);
+
+            for (ServiceNameTokenIndex.Tokens rfs : rfsServices) {
+                if (serviceID == null || !serviceID.equalsIgnoreCase(rfs.getServiceId())) {
+                    continue;
+                }
+                if (rfs.getName().equalsIgnoreCase(rfsName)) {
+                    Service rfs1=context.service(rfs.getName()).get();
+                    Subscription subscription=context.subscriptionOfRfs(rfs.getName()).get();
+
+                    if (subscription!= null) {
+
+
+                        String subServiceId = (String) safeProps(subscription.getProperties())
+                                .getOrDefault("serviceID", "");
+
+                        if (serviceID != null && serviceID.equals(subServiceId)) {
+                            Set<LogicalDevice> used = rfs1.getUsedResource().stream().map(r->(LogicalDevice)r).collect(Collectors.toSet());
+                            if (used != null) {
+                                for (Resource res : used) {
+                                    if (res.getDiscoveredName() != null &&
+                                            res.getDiscoveredName().contains("ONT")) {
+                                        Object serial = safeProps(res.getProperties())
+                                                .get("serialNo");
+                                        if (serial != null) {
+                                            String derivedOntSN = serial.toString();
+                                            ontSN = derivedOntSN;
+
+                                            flags.put("ONTSN", derivedOntSN);
+                                            flags.put("SERVICE_SN", derivedOntSN);
+                                            flags.put("SERVICE_LINK", "ONT");
+                                            serviceLink = "ONT";
+
+                                        }
+                                    } else if (res.getDiscoveredName() != null &&
+                                            res.getDiscoveredName().contains("CBM")) {
+
+                                        flags.put("SERVICE_LINK", "Cable_Modem");
+
+                                        Object mac = safeProps(res.getProperties()).get("macAddress");
+                                        if (mac != null) {
+                                            flags.put("SERVICE_SN", mac.toString());   // ✅ REQUIRED
+                                            flags.put("CBM_MAC", mac.toString());      // ✅ REQUIRED
+                                        }
+                                    }
+                                }
+                            }
+                            // 🔧 CBM-only fallback (no ONT resource found)
+
+
+
+                            String effectiveOntSN =
+                                    flags.getOrDefault("ONT", ontSN);
+
+                            String bridgeService =
+                                    deriveBridgeServiceForSubscriberRfs(
+                                            context,
+                                            rfsServices,
+                                            effectiveOntSN,
+                                            subscriber
+                                    );
+
+                            flags.put("BRIDGE_SERVICE",
+                                    bridgeService == null ? "NA" : bridgeService);
+                            break;
+
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("RFS discovery best-effort failed: {}", e.getMessage());
+        }
+        state.setOntSN(ontSN);
+        state.setServiceLink(serviceLink);
+    }
+
+    private void voipPots(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String serviceID = state.getServiceID();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 6---------------");
+        log.error("Trace: VOIP Configure flow - checking voip device mapping");
+        String voipDeviceName = subscriber + Constants.UNDER_SCORE  + serviceID;
+        Optional<LogicalDevice> optVoip = context.device(voipDeviceName);
+
+        if (optVoip.isPresent()) {
+            Map<String, Object> p = safeProps(optVoip.get().getProperties());
+            String pots1 = (String) p.getOrDefault("potsPort1Number", "");
+            String pots2 = (String) p.getOrDefault("potsPort2Number", "");
+            if (serviceID.equals(pots1)) {
+                flags.put("VOICE_POTS_PORT", "1");
+                log.error("Trace: VOIP pots mapped on port1");
+            } else if (serviceID.equals(pots2)) {
+                flags.put("VOICE_POTS_PORT", "2");
+                log.error("Trace: VOIP pots mapped on port2");
+            }
+        } else {
+            log.error("Trace: VOIP device not found by GDN - checking devices carrying the number");
+            context.devices(d -> {
+                Map<String, Object> p = safeProps(d.getProperties());
+                return serviceID.equals(p.getOrDefault("potsPort1Number", ""))
+                        || serviceID.equals(p.getOrDefault("potsPort2Number", ""));
+            }).stream().findFirst().ifPresent(d -> flags.put("VOICE_POTS_PORT",
+                    serviceID.equals(safeProps(d.getProperties()).getOrDefault("potsPort1Number", "")) ? "1" : "2"));
+        }
+    }
+
+    private void modifyMac(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subName = state.getSubName();
+        SubscriberContext context = state.context();
+        log.error("Trace: Modify MAC assignment, searching subscription {}", subName);
+
+        context.subscription(subName)
+                .ifPresent(sub -> {
+                    Map<String, Object> p = safeProps(sub.getProperties());
+                    Object mac = p.get("serviceMac");
+
+                    if (mac != null && !mac.toString().isEmpty()) {
+                        flags.put("CBM_MAC", mac.toString());
+                        log.error("Trace: CBM_MAC set from subscription: {}", mac);
+                    }
+                });
+    }
+
+    private void step6(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String productSubtype = state.getProductSubtype();
+        String actionType = state.getActionType();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        SubscriberContext context = state.context();
+        log.error("Trace: Step-6 flags routine invoked");
+
+        Map<String, String> step6Result =
+                executeStep6Flags(
+                        context,
+                        ontSN,
+                        serviceID,
+                        subscriber,
+                        actionType,
+                        productSubtype
+                );
+
+        if (!step6Result.isEmpty()) {
+            flags.put("ACCOUNT_EXIST",
+                    step6Result.getOrDefault("ACCOUNT_EXIST", flags.get("ACCOUNT_EXIST")));
+
+            flags.put("SERVICE_FLAG",
+                    step6Result.getOrDefault("SERVICE_FLAG", flags.get("SERVICE_FLAG")));
+
+            flags.put("CBM_ACCOUNT_EXIST",
+                    step6Result.getOrDefault("CBM_ACCOUNT_EXIST", flags.get("CBM_ACCOUNT_EXIST")));
+
+            if (step6Result.containsKey("SIMA_CUST_ID")) {
+                flags.put("SIMA_CUST_ID", step6Result.get("SIMA_CUST_ID"));
+            }
+        }
+    }
+
+    private void accountFlags(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String actionType = state.getActionType();
+        String subName = state.getSubName();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 7---------------");
+
+        List<Subscription> subsForCustomer = context.subscriptionsContaining(subscriber);
+        // ================= MULTIPLE MATCHING SUBSCRIBERS LOGIC =================
+        List<Customer> matchingSubscribers = context.customersContaining(subscriber);
+
+        if (matchingSubscribers.size() > 1) {
+
+            log.error("Trace: Multiple matching subscribers found for {}", subscriber);
+
+            // Initial values as per spec
+            flags.put("SERVICE_FLAG", "Exist");
+            flags.put("ACCOUNT_EXIST", "New");
+            flags.put("CBM_ACCOUNT_EXIST", "New");
+
+            boolean cbmFound = false;
+
+            // List subscriptions whose name contains subscriber
+            for (Subscription s : subsForCustomer) {
+
+                Map<String, Object> sp = safeProps(s.getProperties());
+                Object link = sp.get("serviceLink");
+
+                if ("Cable_Modem".equalsIgnoreCase(String.valueOf(link))) {
+                    cbmFound = true;
+                    break;
+                }
+            }
+
+            if (cbmFound) {
+                flags.put("CBM_ACCOUNT_EXIST", "Exist");
+                log.error("Trace: Cable_Modem subscription found → CBM_ACCOUNT_EXIST=Exist");
+            } else {
+                flags.put("ACCOUNT_EXIST", "Exist");
+                log.error("Trace: No Cable_Modem subscription → ACCOUNT_EXIST=Exist");
+            }
+        }
+
+
+        if (Arrays.asList("Unconfigure", "MoveOut",
+                        "ChangeTechnology", "AccountTransfer")
+                .contains(actionType)) {
+
+            if (subsForCustomer.isEmpty()) {
+                flags.put("SERVICE_FLAG", "New");
+                flags.put("ACCOUNT_EXIST", "New");
+                flags.put("CBM_ACCOUNT_EXIST", "New");
+
+            } else if (subsForCustomer.size() == 1) {
+                flags.put("SERVICE_FLAG", "New");
+                flags.put("ACCOUNT_EXIST", "New");
+
+                Object link =
+                        safeProps(subsForCustomer.get(0).getProperties())
+                                .get("serviceLink");
+
+                if ("Cable_Modem".equalsIgnoreCase(String.valueOf(link))) {
+                    flags.put("CBM_ACCOUNT_EXIST", "New");
+                }
+
+            } else {
+                flags.put("SERVICE_FLAG", "Exist");
+                flags.put("ACCOUNT_EXIST", "Exist");
+
+                int cbmCount = 0;
+                Set<String> macSet = new HashSet<>();
+
+                for (Subscription s : subsForCustomer) {
+                    Map<String, Object> p = safeProps(s.getProperties());
+                    if ("Cable_Modem".equalsIgnoreCase(
+                            (String) p.get("serviceLink"))) {
+
+                        cbmCount++;
+                        Object mac = p.get("serviceMac");
+                        if (mac != null) macSet.add(mac.toString());
+                    }
+                }
+
+                if (Arrays.asList("ChangeTechnology", "AccountTransfer")
+                        .contains(actionType)) {
+                    flags.put("CBM_ACCOUNT_EXIST",
+                            macSet.size() > 1 ? "Exist" : "New");
+                } else {
+                    flags.put("CBM_ACCOUNT_EXIST",
+                            cbmCount > 1 ? "Exist" : "New");
+                }
+            }
+
+        } else if ("Configure".equalsIgnoreCase(actionType)
+                && ontSN != null && ontSN.contains("ALCL")) {
+
+            String subscriberWithOnt =
+                    subscriber + Constants.UNDER_SCORE + ontSN;
+
+            boolean exists =
+                    context
+                            .customer(subscriberWithOnt)
+                            .isPresent();
+
+            flags.put("SERVICE_FLAG", exists ? "Exist" : "New");
+            flags.put("ACCOUNT_EXIST", exists ? "Exist" : "New");
+
+        } else if ("Migrate".equalsIgnoreCase(actionType)
+                && ontSN != null && ontSN.contains("ALCL")) {
+
+            flags.put("SERVICE_FLAG", "New");
+            flags.put("ACCOUNT_EXIST", "New");
+
+            for (Subscription s : subsForCustomer) {
+                if (s.getDiscoveredName() != null &&
+                        s.getDiscoveredName().contains(ontSN)) {
+
+                    flags.put("SERVICE_FLAG", "Exist");
+
+                    if (subName.equalsIgnoreCase(
+                            s.getDiscoveredName())) {
+                        flags.put("ACCOUNT_EXIST", "Exist");
+                    }
+
+                    Object sima =
+                            safeProps(s.getProperties())
+                                    .get("subscriberIDForCableModem");
+                    if (sima != null && !sima.toString().isEmpty()) {
+                        flags.put("SIMA_CUST_ID", sima.toString());
+                    }
+                }
+            }
+
+        } else {
+            boolean subscriberExists =
+                    context
+                            .customer(subscriber)
+                            .isPresent();
+
+            flags.put("SERVICE_FLAG",
+                    subscriberExists ? "Exist" : "New");
+            flags.put("ACCOUNT_EXIST",
+                    subscriberExists ? "Exist" : "New");
+
+            boolean anyCbm = subsForCustomer.stream().anyMatch(s -> {
+                Object l =
+                        safeProps(s.getProperties()).get("serviceLink");
+                return l != null &&
+                        l.toString().contains("Cable_Modem");
+            });
+
+            flags.put("CBM_ACCOUNT_EXIST",
+                    anyCbm ? "Exist" : "New");
+        }
+    }
+
+    private void iptvUnconfigureCount(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String productSubtype = state.getProductSubtype();
+        String actionType = state.getActionType();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 8---------------");
+        if (ontSN != null && !"".equals(ontSN) && equalsIgnoreCase(productSubtype, "IPTV") && equalsIgnoreCase(actionType, "Unconfigure")) {
+            log.error("Trace: IPTV Unconfigure path - searching subscription");
+            String subGdn = subscriber + Constants.UNDER_SCORE  + (serviceID == null ? "" : serviceID);
+            Optional<Subscription> optSub = context.subscription(subGdn);
+            String ontSNO = "NA";
+            if (optSub.isPresent()) {
+                Subscription s = optSub.get();
+                Map<String, Object> p = safeProps(s.getProperties());
+                Object sSN = p.get("serviceSN");
+                if (sSN != null) {
+                    if ("ONT".equalsIgnoreCase(serviceLink) || "SRX".equalsIgnoreCase(serviceLink)) {
+                        ontSNO = sSN.toString();
+                    } else if ("Cable_Modem".equalsIgnoreCase(serviceLink)) {
+                        ontSNO = p.getOrDefault("macAddress", "").toString();
+                    }
+                } else {
+                    ontSNO = ontSN;
+                }
+            } else {
+                ontSNO = ontSN;
+            }
+            if (!"NA".equalsIgnoreCase(ontSNO) && ontSNO != null && !"".equals(ontSNO)) {
+                final String iptvSN = ontSNO;
+                long iptvCount = context.subscriptions(s -> {
+                    Map<String, Object> p = safeProps(s.getProperties());
+                    return "IPTV".equalsIgnoreCase((String) p.getOrDefault("serviceSubType", ""))
+                            && (iptvSN.equals(p.getOrDefault("serviceSN", "")) || iptvSN.equals(p.getOrDefault("macAddress", "")));
+                }).size();
+                flags.put("IPTV_COUNT", String.valueOf(iptvCount));
+                log.error("Trace: IPTV count for ontSNO=" + ontSNO + " is " + iptvCount);
+            }
+        }
+    }
+
+    private void fibernetCount(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String productType = state.getProductType();
+        String productSubtype = state.getProductSubtype();
+        String actionType = state.getActionType();
+        String ontSN = state.getOntSN();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 9---------------");
+
+        List<String> subscount = new ArrayList<>();
+
+        boolean eligible =
+                equalsAnyIgnoreCase(productSubtype,
+                        "Fibernet", "Broadband", "Voice", "Bridged")
+                        || (equalsIgnoreCase(productType, "Broadband")
+                        && equalsIgnoreCase(productSubtype, "Bridged"));
+
+        if (eligible) {
+
+            boolean ontBasedSearch =
+                    ontSN != null && ontSN.contains("ALCL");
+
+            // 🔁 Re-derive Bridge Service ID on these records
+            String bridgeService = "NA";
+            if (ontBasedSearch) {
+                List<ServiceNameTokenIndex.Tokens> rfsServices =
+                        serviceNameTokenIndex.findByOnt(Constants.SETAR_KIND_SETAR_RFS, ontSN);
+                bridgeService =
+                        deriveBridgeServiceForSubscriberRfs(
+                                context,
+                                rfsServices,
+                                ontSN,
+                                subscriber
+                        );
+            }
+
+            final String searchToken = ontBasedSearch ? ontSN : subscriber;
+            for (Subscription s : context.subscriptionsContaining(searchToken)) {
+                String name = s.getDiscoveredName();
+
+                Map<String, Object> sp = safeProps(s.getProperties());
+                if (name.endsWith(ontSN)
+                        && equalsAnyIgnoreCase(productType,
+                        "Fibernet", "Broadband")) {
+                    subscount.add(name);
+                }
+
+                if (ontBasedSearch
+                        && bridgeService != null
+                        && !"NA".equalsIgnoreCase(bridgeService)
+                        && actionType != null
+                        && actionType.contains("Modify_CPE")) {
+
+                    if ("Bridged".equalsIgnoreCase(
+                            (String) sp.getOrDefault("serviceSubType", ""))
+                            && name.contains(ontSN)) {
+
+                        String qos =
+                                (String) sp.getOrDefault(
+                                        "evpnQosSessionProfile", "");
+
+                        if (qos != null && !qos.isEmpty()) {
+                            flags.put("QOS_PROFILE_BRIDGE", qos);
+                            log.error("Trace: QOS_PROFILE_BRIDGE set to {}", qos);
+                        }
+                    }
+                }
+            }
+        }
+
+        flags.put("FIBERNET_COUNT",
+                subscount.isEmpty()
+                        ? "0"
+                        : String.valueOf(subscount.size()));
+
+        log.error("Trace: Fibernet count = {}",
+                flags.get("FIBERNET_COUNT"));
+
+        log.error("Trace: Fibernet count = " + flags.get("FIBERNET_COUNT"));
+    }
+
+    private void fibernetNone(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        log.error("------------Test Trace # 9---------------");
+        flags.put("FIBERNET_COUNT", "0");
+        log.error("Trace: Fibernet count = " + flags.get("FIBERNET_COUNT"));
+    }
+
+    private void subscriptionDetails(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String productSubtype = state.getProductSubtype();
+        String actionType = state.getActionType();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 10---------------");
+
+        if (equalsIgnoreCase(productSubtype, "IPTV")
+                && !equalsIgnoreCase(actionType, "Configure")
+                && subscriber != null
+                && serviceID != null) {
+
+            String subscriptionToSearch =
+                    subscriber + Constants.UNDER_SCORE + serviceID;
+
+            log.error("Trace: IPTV subscription lookup: {}", subscriptionToSearch);
+
+            Optional<Subscription> optFound =
+                    context.subscription(subscriptionToSearch);
+
+            if (optFound.isPresent()) {
+
+                Subscription found = optFound.get();
+                Map<String, Object> p = safeProps(found.getProperties());
+
+                Object link  = p.get("serviceLink");
+                Object sSN   = p.get("serviceSN");
+                Object sMAC  = p.get("serviceMac");
+                Object qos   = p.get("veipQosSessionProfile");
+                Object kenan = p.get("kenanSubscriberId");
+
+                if (link != null) {
+                    flags.put("SERVICE_LINK", link.toString());
+                }
+
+                if (sSN != null) {
+                    flags.put("SERVICE_SN", sSN.toString());
+                }
+
+                if (sMAC != null) {
+                    flags.put("SERVICE_MAC", sMAC.toString());
+                    flags.put("CBM_MAC", sMAC.toString()); // ✅ REQUIRED
+                }
+
+                if (qos != null) {
+                    flags.put("QOS_PROFILE", qos.toString());
+                }
+
+                if (kenan != null) {
+                    flags.put("KENAN_UIDNO", kenan.toString());
+                }
+
+                // ✅ ontSN fallback logic (CRITICAL)
+                if ("NA".equalsIgnoreCase(ontSN)
+                        && sSN != null
+                        && !sSN.toString().isEmpty()) {
+
+                    ontSN = sSN.toString();
+                    log.error("Trace: ontSN derived from serviceSN = {}", ontSN);
+                }
+            }
+        }
+
+        else if (!equalsIgnoreCase(actionType, "Configure")) {
+            String subscriptionToSearch;
+            if (ontSN != null && ontSN.contains("ALCL")) {
+                subscriptionToSearch = subscriber + Constants.UNDER_SCORE  + (serviceID == null ? "" : serviceID) + Constants.UNDER_SCORE  + ontSN;
+            } else {
+                subscriptionToSearch = subscriber + Constants.UNDER_SCORE  + (serviceID == null ? "" : serviceID);
+            }
+            log.error("Trace: Searching subscription by DN: " + subscriptionToSearch);
+            Optional<Subscription> optFound = context.subscription(subscriptionToSearch);
+            if (optFound.isPresent()) {
+                Subscription found = optFound.get();
+                Map<String, Object> p = safeProps(found.getProperties());
+                Object link = p.get("serviceLink");
+                Object sSN = p.get("serviceSN");
+                Object sMAC = p.get("serviceMac");
+                Object qos = p.get("qosProfile");
+                Object kenan = p.get("billingId");
+
+                if (link != null) flags.put("SERVICE_LINK", link.toString());
+                if (sSN != null) flags.put("SERVICE_SN", sSN.toString());
+                if (sMAC != null) flags.put("SERVICE_MAC", sMAC.toString());
+                if (qos != null) flags.put("QOS_PROFILE", qos.toString());
+                if (kenan != null) flags.put("KENAN_UIDNO", kenan.toString());
+
+                if ("Cable_Modem".equalsIgnoreCase(String.valueOf(link))) {
+                    String cbmName = "CBM" + Constants.UNDER_SCORE +(sMAC == null ? "" : sMAC.toString());
+                    Optional<LogicalDevice> optCbm = context.device(cbmName);
+                    if (optCbm.isPresent()) {
+                        LogicalDevice cbm = optCbm.get();
+                        Map<String, Object> cbmProps = safeProps(cbm.getProperties());
+                        flags.put("CBM_MAC", (String) cbmProps.getOrDefault("macAddress", ""));
+                        String n1 = (String) cbmProps.getOrDefault("voipPort1", "Available");
+                        String n2 = (String) cbmProps.getOrDefault("voipPort2", "Available");
+                        flags.put("SERVICE_VOIP_NUMBER1", n1 == null ? "" : n1);
+                        flags.put("SERVICE_VOIP_NUMBER2", n2 == null ? "" : n2);
+                        flags.put("ONT_MODEL", (String) cbmProps.getOrDefault("deviceModel", ""));
+                        if (!"Available".equalsIgnoreCase(n1) || !"Available".equalsIgnoreCase(n2)) {
+                            flags.put("SERVICE_TEMPLATE_VOIP", "Exist");
+                        } else {
+                            flags.put("SERVICE_TEMPLATE_VOIP", "New");
+                        }
+                        log.error("Trace: CBM inspected: mac=" + flags.get("CBM_MAC") + " voip1=" + flags.get("SERVICE_VOIP_NUMBER1"));
+                    } else {
+                        String alt = "CBM" +(serviceID == null ? "" : serviceID);
+                        context.device(alt).ifPresent(dev -> {
+                            Map<String, Object> dp = safeProps(dev.getProperties());
+                            flags.put("ONT_MODEL", (String) dp.getOrDefault("deviceModel", ""));
+                        });
+                    }
+                }
+            }
+        }
+        state.setOntSN(ontSN);
+    }
+
+    private void subscriberName(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 11---------------");
+        context.customer(subscriber).ifPresent(cust -> {
+            Map<String, Object> cp = safeProps(cust.getProperties());
+            flags.put("FIRST_NAME", (String) cp.getOrDefault("firstName", ""));
+            flags.put("LAST_NAME", (String) cp.getOrDefault("lastName", ""));
+            log.error("Trace: Subscriber info: " + flags.get("FIRST_NAME") + " " + flags.get("LAST_NAME"));
+        });
+    }
+
+    private void ontTemplates(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String productType = state.getProductType();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        String ontPort = state.getOntPort();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 12---------------");
+        if ("ONT".equalsIgnoreCase(serviceLink) || "SRX".equalsIgnoreCase(serviceLink) || (ontSN != null && ontSN.contains("ALCL"))) {
+            String ontGdn = ontSN == null ? "" :"ONT" + ontSN;
+            if (ontGdn.length() > 100) {
+                state.reject("ONT name too long");
+                return;
+            }
+            Optional<LogicalDevice> optOntDev = context.device(ontGdn);
+            if (optOntDev.isPresent()) {
+                LogicalDevice ontDev = optOntDev.get();
+                Map<String, Object> ontProps = safeProps(ontDev.getProperties());
+                // ================= POTS PORT DERIVATION FROM ONT =================
+                if (equalsAnyIgnoreCase(productType, "VOIP", "Voice")
+                        && serviceID != null) {
+
+                    Object pots1 = ontProps.get("potsPort1Number");
+                    Object pots2 = ontProps.get("potsPort2Number");
+
+                    if (pots1 != null && serviceID.equals(pots1.toString())) {
+                        flags.put("VOICE_POTS_PORT", "1");
+                        log.error("Trace: VOICE_POTS_PORT set to 1 from ONT");
+                    } else if (pots2 != null && serviceID.equals(pots2.toString())) {
+                        flags.put("VOICE_POTS_PORT", "2");
+                        log.error("Trace: VOICE_POTS_PORT set to 2 from ONT");
+                    }
+                }
+
+                // ================= ENTERPRISE: derive ontPort from RFS =================
+                if (equalsIgnoreCase(productType, "ENTERPRISE")
+                        && serviceID != null
+                        && ontSN != null) {
+
+                    log.error("Trace: ENTERPRISE flow - deriving ontPort from RFS");
+
+                    for (ServiceNameTokenIndex.Tokens rfs :
+                            serviceNameTokenIndex.findByServiceId(Constants.SETAR_KIND_SETAR_RFS, serviceID)) {
+
+                        try {
+                            Subscription sub =
+                                    context.subscriptionOfRfs(rfs.getName()).orElse(null);
+
+                            if (sub == null) continue;
+
+                            Map<String, Object> sp = safeProps(sub.getProperties());
+
+                            Object port = sp.get("evpnPort");
+                            if (port != null) {
+                                ontPort = port.toString();
+                                flags.put("SERVICE_ONT_PORT", ontPort);
+                                log.error("Trace: ontPort derived from ENTERPRISE RFS = {}", ontPort);
+                                break;
+                            }
+
+                        } catch (Exception e) {
+                            log.error("Trace: ENTERPRISE ontPort derivation failed", e);
+                        }
+                    }
+                }
+
+                flags.put("ONT_MODEL", (String) ontProps.getOrDefault("deviceModel", ""));
+                flags.put("SERVICE_SN", (String) ontProps.getOrDefault("serialNo", ""));
+                flags.put("SERVICE_MAC", (String) ontProps.getOrDefault("macAddress", ""));
+                log.error("Trace: ONT found: model=" + flags.get("ONT_MODEL") + " sn=" + flags.get("SERVICE_SN"));
+
+                Object parentOltObj = ontProps.get("oltPosition");
+                if (parentOltObj != null) {
+                    String oltDiscoveredName = parentOltObj.toString();
+                    context.device(oltDiscoveredName).ifPresent(olt -> {
+                        Map<String, Object> oltProps = safeProps(olt.getProperties());
+                        flags.put("SERVICE_OLT_POSITION", oltProps.get("oltPosition")!=null?oltProps.get("oltPosition").toString():"");
+                        flags.put("SERVICE_TEMPLATE_ONT", existsString(oltProps.get("ontTemplate")));
+                        flags.put("SERVICE_TEMPLATE_IPTV", existsString(oltProps.get("iptvServiceTemplate")));
+
+                        flags.put("SERVICE_TEMPLATE_VEIP", existsString(oltProps.get("veipServiceTemplate")));
+                        flags.put("SERVICE_TEMPLATE_HSI", existsString(oltProps.get("veipHsiTemplate")));
+                        flags.put("SERVICE_TEMPLATE_VOIP", existsString(oltProps.get("voipServiceTemplate")));
+                        flags.put("SERVICE_TEMPLATE_POTS1", existsString(oltProps.get("voipPots1Template")));
+                        flags.put("SERVICE_TEMPLATE_POTS2", existsString(oltProps.get("voipPots2Template")));
+                        log.error("Trace: OLT templates checked for OLT=" + oltDiscoveredName);
+                    });
+                }
+
+                List<LogicalInterface> vlans = ontPort == null
+                        ? Collections.emptyList()
+                        : context.interfacesContaining(ontSN, "P" + ontPort);
+                for (LogicalInterface vif : vlans) {
+                    Map<String, Object> vp = safeProps(vif.getProperties());
+                    Object tmpl = vp.get("vlanTemplate");
+                    if ("4.3B EVPN SINGLETAGGED VLAN v2".equalsIgnoreCase(String.valueOf(tmpl))) {
+                        flags.put("SERVICE_TEMPLATE_MGMT", "4.3B EVPN SINGLETAGGED VLAN v2");
+                        log.error("Trace: VLAN " + vif.getDiscoveredName() + " uses management template " + vp.get("template"));
+                    }
+                }
+            } else {
+                log.error("Trace: ONT device not found by GDN: " + ontGdn);
+            }
+        }
+        state.setOntPort(ontPort);
+    }
+
+    private void cbmTemplates(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        if ("ONT".equalsIgnoreCase(serviceLink) || "SRX".equalsIgnoreCase(serviceLink) || (ontSN != null && ontSN.contains("ALCL"))) {
+            return;
+        }
+        Set<String> subTypes = new HashSet<>();
+        for (Subscription s : context.subscriptions(
+                sub -> equalsAnyIgnoreCase((String) safeProps(sub.getProperties()).getOrDefault("serviceSubType", ""), "IPTV", "Broadband"))) {
+            subTypes.add(((String) safeProps(s.getProperties()).get("serviceSubType")).toUpperCase());
+        }
+        boolean iptvExists = subTypes.contains("IPTV"), veipExists = subTypes.contains("BROADBAND");
+        flags.put("SERVICE_TEMPLATE_IPTV", iptvExists ? "Exist" : "New");
+        flags.put("SERVICE_TEMPLATE_VEIP", veipExists ? "Exist" : "New");
+        log.error("Trace: CBM path: IPTV exist=" + flags.get("SERVICE_TEMPLATE_IPTV") + " VEIP exist=" + flags.get("SERVICE_TEMPLATE_VEIP"));
+    }
+
+    private void voipPortReset(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String p1 = flags.get("SERVICE_VOIP_NUMBER1");
+        String p2 = flags.get("SERVICE_VOIP_NUMBER2");
+
+        if ("Available".equalsIgnoreCase(p1) || "Available".equalsIgnoreCase(p2)) {
+
+            flags.put("SERVICE_VOIP_NUMBER1", "");
+            flags.put("SERVICE_VOIP_NUMBER2", "");
+
+            log.error("Trace: VOIP/Voice ports reset to null as per spec (Available detected)");
+        }
+    }
+
+    private void iptvIds(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 13---------------");
+        log.error("Trace: IPTV service ID list discovery path");
+
+        List<String> iptvIds = new ArrayList<>();
+
+        if ("ONT".equalsIgnoreCase(serviceLink)) {
+
+            log.error("Trace: IPTV discovery using subscriber + serviceSN (ONT path)");
+
+            final String serviceSN = flags.getOrDefault("SERVICE_SN", ontSN);
+            // must belong to same subscriber
+            Iterator<Subscription> it = context.subscriptionsContaining(subscriber).stream().filter(s -> {
+                Map<String, Object> p = safeProps(s.getProperties());
+                // must be IPTV, matched by serviceSN
+                Object sn = p.get("serviceSN");
+                return "IPTV".equalsIgnoreCase((String) p.getOrDefault("serviceSubType", ""))
+                        && sn != null && !sn.toString().isEmpty()
+                        && sn.toString().equalsIgnoreCase(serviceSN);
+            }).iterator();
+            while (iptvIds.size() < 5 && it.hasNext()) {
+                Object sid = safeProps(it.next().getProperties()).get("serviceID");
+                if (sid != null && !sid.toString().isEmpty()) {
+                    iptvIds.add(sid.toString());
+                    log.error("Trace: IPTV ID added (ONT path) = {}", sid);
+                }
+            }
+        }
+        else {
+            String cbmMac = flags.getOrDefault("CBM_MAC", "");
+
+            if (cbmMac != null && !cbmMac.isEmpty()) {
+
+                Iterator<Subscription> it = context.subscriptions(s -> {
+                    Map<String, Object> p = safeProps(s.getProperties());
+                    return "IPTV".equalsIgnoreCase((String) p.getOrDefault("serviceSubType", ""))
+                            && cbmMac.equals(p.getOrDefault("macAddress", ""));
+                }).iterator();
+                while (iptvIds.size() < 5 && it.hasNext()) {   // limit to 5
+                    Object sid = safeProps(it.next().getProperties()).get("serviceID");
+                    if (sid != null && !sid.toString().isEmpty()) {
+                        iptvIds.add(sid.toString());
+                    }
+                }
+
+                String cbmGdn = "CBM" + Constants.UNDER_SCORE + cbmMac;
+
+                context.device(cbmGdn).ifPresent(cpe -> {
+                    Map<String, Object> cp = safeProps(cpe.getProperties());
+                    flags.put("RESOURCE_MAC_MTA_OLD",
+                            (String) cp.getOrDefault("macAddressMta", ""));
+                    flags.put("RESOURCE_MODEL_MTA_OLD",
+                            (String) cp.getOrDefault("deviceModelMta", ""));
+                });
+            }
+        }
+
+        // ===== STORE INDEXED IPTV IDS =====
+        for (int i = 0; i < 5; i++) {
+            String key = "IPTV_SERVICE_ID" + (i + 1);
+
+            if (i < iptvIds.size()) {
+                flags.put(key, iptvIds.get(i));
+            } else {
+                flags.put(key, "");   // ensure always present
+            }
+        }
+
+        flags.put("IPTV_COUNT", String.valueOf(iptvIds.size()));
+
+        log.error("Trace: IPTV IDs discovered count = " + iptvIds.size());
+    }
+
+    private void evpnTemplates(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String ontSN = state.getOntSN();
+        String ontPort = state.getOntPort();
+        SubscriberContext context = state.context();
+        log.error("------------Test Trace # 14---------------");
+        log.error("Trace: Evaluating template requirements for EVPN/Enterprise/Cloudstarter/Bridged");
+        String oltPos = flags.getOrDefault("SERVICE_OLT_POSITION", "");
+        if (!oltPos.isEmpty()) {
+            String oltPosGdn = Validations.getGlobalName(oltPos);
+            context.device(oltPos).ifPresent(olt -> {
+                Map<String, Object> oltProps = safeProps(olt.getProperties());
+                flags.put("SERVICE_PORT2_EXIST", existsString(oltProps.get("port2Template")));
+                flags.put("SERVICE_PORT3_EXIST", existsString(oltProps.get("port3Template")));
+                flags.put("SERVICE_PORT4_EXIST", existsString(oltProps.get("port4Template")));
+                flags.put("SERVICE_PORT5_EXIST", existsString(oltProps.get("port5Template")));
+                log.error("Trace: OLT port templates checked for OLT=" + oltPos);
+            });
+        }
+        if (ontPort != null) {
+            if ("3".equals(ontPort) || "4".equals(ontPort) || "5".equals(ontPort)) {
+                flags.put("SERVICE_TEMPLATE_PORT", "Exist");
+            } else if ("2".equals(ontPort)) {
+                flags.put("SERVICE_TEMPLATE_PORT", "New");
+            }
+        }
+        // ---------- CASE A : ADD RFS SINGLE CHECK ----------
+        final String rfsOntSn = ontSN;
+        long rfsCountForOnt = serviceNameTokenIndex.findByOnt(Constants.SETAR_KIND_SETAR_RFS, rfsOntSn).size();
+        flags.put("SERVICE_RFS_SINGLE", rfsCountForOnt == 1 ? "YES" : "NO");
+
+// ---------- CASE A : WIFI Maintenance check for port 3/4/5 ----------
+        if (equalsAnyIgnoreCase(ontPort,"3","4","5")) {
+            String wifiFlag;
+
+            wifiFlag = context.subscriptions(s -> {
+                Map<String,Object> sp = safeProps(s.getProperties());
+                return "WIFI Maintenance".equalsIgnoreCase(
+                        (String) sp.getOrDefault("serviceSubType","")) &&
+                        rfsOntSn.equals(sp.getOrDefault("serviceSN","").toString());
+            }).isEmpty() ? "NO" : "YES";
+
+            flags.put("SERVICE_EVPN_WIFIM_FIRST", wifiFlag);
+        }
+
+// ---------- CASE A : CARD TEMPLATE SELECTION ----------
+        if (ontSN != null) {
+
+            String ontGdn = "ONT" + ontSN;
+            Optional<LogicalDevice> optOnt = context.device(ontGdn);
+
+            if (optOnt.isPresent()) {
+
+                Map<String,Object> ontProps = safeProps(optOnt.get().getProperties());
+                Object parentOlt = ontProps.get("oltPosition");
+
+                if (parentOlt != null) {
+
+                    Optional<LogicalDevice> optOlt = context.device(parentOlt.toString());
+
+                    if (optOlt.isPresent()) {
+
+                        Map<String,Object> oltProps = safeProps(optOlt.get().getProperties());
+
+                        String evpnOntPort = (ontPort == null ? "" : ontPort.trim());
+
+                        Object cardTemplate =
+                                "5".equals(evpnOntPort)
+                                        ? oltProps.get("port5Template")
+                                        : oltProps.get("port3Counter");
+
+                        flags.put("SERVICE_TEMPLATE_CARD", existsString(cardTemplate));
+                    }
+                }
+            }
+        }
+    }
+
+    private void ipbhUnconfigure(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("Trace: Case-B UnconfigureIPBH + IPBH triggered");
+
+        try {
+            String rfsName = "RFS" + Constants.UNDER_SCORE + subscriber + Constants.UNDER_SCORE + serviceID;
+
+            Optional<Service> optRfs = context.service(rfsName);
+            if (optRfs.isPresent()) {
+
+                Service rfs = optRfs.get();
+                Set<LogicalDevice> usedRes = rfs.getUsedResource().stream().map(r->(LogicalDevice)r).collect(Collectors.toSet());
+
+                if (usedRes != null) {
+                    for (Resource res : usedRes) {
+                        if (res.getDiscoveredName() != null
+                                && res.getDiscoveredName().contains("ONT")) {
+
+                            Map<String, Object> rp = safeProps(res.getProperties());
+
+                            ontSN = (String) rp.getOrDefault("serialNo", ontSN);
+
+                            flags.put("SERVICE_SN", (String) rp.getOrDefault("serialNo", ""));
+                            flags.put("ONT_MODEL", (String) rp.getOrDefault("deviceModel", ""));
+                            flags.put("SERVICE_LINK", "ONT");
+
+                            break;
+                        }
+                    }
+                }
+
+                // derive subscription
+                String subName1 = subscriber + Constants.UNDER_SCORE + serviceID;
+                context.subscription(subName1).ifPresent(sub -> {
+                    Map<String, Object> sp = safeProps(sub.getProperties());
+                    flags.put("SERVICE_LINK", (String) sp.getOrDefault("serviceLink", ""));
+                    Customer cust = sub.getCustomer();
+                    if (cust != null) {
+                        Map<String,Object> cp = safeProps(cust.getProperties());
+                        flags.put("FIRST_NAME", (String) cp.getOrDefault("subscriberFirstName",""));
+                        flags.put("LAST_NAME", (String) cp.getOrDefault("subscriberLastName",""));
+                    }
+                    });
+            }
+        } catch (Exception e) {
+            log.error("Trace: Case-B failed {}", e.getMessage());
+        }
+        state.setOntSN(ontSN);
+    }
+
+    private void evpnUnconfigure(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String ontSN = state.getOntSN();
+        String serviceLink = state.getServiceLink();
+        SubscriberContext context = state.context();
+        log.error("Trace: Case-C EVPN Unconfigure Non-WIFI triggered");
+
+        try {
+
+            final String finalOntSn = ontSN;
+
+            List<ServiceNameTokenIndex.Tokens> rfsMatched =
+                    serviceNameTokenIndex.findByOnt(Constants.SETAR_KIND_SETAR_RFS, finalOntSn);
+
+            int rfsCount = rfsMatched.size();
+
+            if (rfsCount == 2) {
+
+                log.error("Trace: Case-C ONT has exactly 2 RFS");
+
+                List<Subscription> evpnSubs = new ArrayList<>();
+                List<String> setarSubset = new ArrayList<>();
+
+                // ---- Loop RFS → Resolve → Subscription ----
+                for (ServiceNameTokenIndex.Tokens rfs : rfsMatched) {
+
+                    Subscription sub = context.subscriptionOfRfs(rfs.getName()).orElse(null);
+                    if (sub == null) continue;
+
+                    evpnSubs.add(sub);
+
+                    Map<String, Object> sp = safeProps(sub.getProperties());
+                    String subType = (String) sp.getOrDefault("serviceSubType", "");
+
+                    if ("WIFI Maintenance".equalsIgnoreCase(subType)) {
+                        setarSubset.add(sub.getDiscoveredName());
+                    }
+                }
+
+                // ---- If NO EVPN subscription, just skip remaining ----
+                if (evpnSubs.isEmpty()) {
+                    log.error("Trace: Case-C no EVPN subscription found, skipping Case-C internals");
+                } else {
+
+                    Subscription currentEvpn = evpnSubs.get(0);
+                    Subscription currentEvpn1=evpnSubs.get(1);
+                    Map<String, Object> evpnProps = safeProps(currentEvpn.getProperties());
+                    Map<String, Object> evpnProp = safeProps(currentEvpn.getProperties());
+
+                    String evpnPort = (String) evpnProps.getOrDefault("evpnPort", "");
+                    String tempVlan = (String) evpnProps.getOrDefault("evpnQosSessionProfile", "");
+                    String tempVpls = (String) evpnProps.getOrDefault("evpnTemplateVPLS", "");
+                    String tempCreate = existsString(evpnProps.get("evpnTemplateCreateVLAN"));
+                    String tempVlanId = (String) evpnProps.getOrDefault("evpnVLAN", "");
+
+                    flags.put("SERVICE_ONT_PORT", evpnPort);
+                    flags.put("QOS_PROFILE", tempVlan);
+                    flags.put("SERVICE_TEMPLATE_VPLS", tempVpls);
+                    flags.put("SERVICE_TEMPLATE_CREATE", tempCreate);
+                    flags.put("SERVICE_VLAN_ID", tempVlanId);
+                    flags.put("SERVICE_LINK", (String) evpnProps.getOrDefault("serviceLink", ""));
+
+                    // ---- Resolve ONT ----
+                    String ontGdn = "ONT" + ontSN;
+
+                    context.device(ontGdn).ifPresent(ont -> {
+
+                        Map<String, Object> ontProps = safeProps(ont.getProperties());
+
+                        flags.put("SERVICE_SN", (String) ontProps.getOrDefault("serialNumber", ""));
+                        flags.put("ONT_MODEL", (String) ontProps.getOrDefault("deviceModel", ""));
+
+                        Object parentOltObj = ontProps.get("oltPosition");
+                        if (parentOltObj == null) {
+                            log.error("Trace: Case-C OLT missing");
+                            return;
+                        }
+
+                        context.device(parentOltObj.toString())
+                                .ifPresent(olt -> {
+
+                                    Map<String, Object> oltProps = safeProps(olt.getProperties());
+
+                                    flags.put("SERVICE_OLT_POSITION",
+                                            (String) oltProps.getOrDefault("oltPosition", ""));
+
+                                    // ---- ONT Card Template ----
+                                    Object cardTemplate =
+                                            "5".equals(evpnPort)
+                                                    ? oltProps.get("port5Template")
+                                                    : oltProps.get("port3Counter");
+
+                                    flags.put("SERVICE_TEMPLATE_CARD", existsString(cardTemplate));
+
+                                    // ---- EVPN WiFi Flag ----
+                                    if ("4".equals(evpnPort) && setarSubset.size() == 1) {
+                                        flags.put("SERVICE_EVPN_WIFIM_FIRST", "YES");
+                                    } else {
+                                        flags.put("SERVICE_EVPN_WIFIM_FIRST", "NO");
+                                    }
+
+                                    // ---- ONT Port Template Rule ----
+                                    if ("1".equals(evpnPort)) {
+                                        flags.put("SERVICE_TEMPLATE_PORT1", "New");
+                                    } else {
+                                        flags.put("SERVICE_TEMPLATE_PORT1", "Exist");
+                                    }
+
+                                    // ---- Evaluate OLT Port Templates ----
+                                    flags.put("SERVICE_PORT2_EXIST", existsString(oltProps.get("port2Template")));
+                                    flags.put("SERVICE_PORT3_EXIST", existsString(oltProps.get("port3Template")));
+                                    flags.put("SERVICE_PORT4_EXIST", existsString(oltProps.get("port4Template")));
+
+                                    // ---- Card Template Rule ----
+                                    String p2 = flags.get("SERVICE_PORT2_EXIST");
+                                    String p3 = flags.get("SERVICE_PORT3_EXIST");
+                                    String p4 = flags.get("SERVICE_PORT4_EXIST");
+
+                                    if ("Exist".equals(p2) || "Exist".equals(p3) || "Exist".equals(p4)) {
+                                        flags.put("TEMPLATE_NAME_CARD", "Exist");
+                                    } else {
+                                        flags.put("TEMPLATE_NAME_CARD", "New");
+                                    }
+                                });
+                    });
+                }
+            }
+
+        } catch (Exception e) {
+            log.error("Trace: Case-C failed {}", e.getMessage());
+        }
+    }
+
+    private void nonEvpnService(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String subscriber = state.getSubscriber();
+        String serviceID = state.getServiceID();
+        String ontSN = state.getOntSN();
+        SubscriberContext context = state.context();
+        log.error("Trace: Case-D Non-EVPN Not-Configure triggered");
+
+        try {
+
+            String subName1 = subscriber + "_" + serviceID + "_" + ontSN;
+
+            String finalOntSN = ontSN;
+            context.subscription(subName1).ifPresent(sub -> {
+
+                Map<String, Object> sp = safeProps(sub.getProperties());
+
+                // ---------------- BASIC ASSIGNMENTS ----------------
+                String evpnPort = (String) sp.getOrDefault("evpnPort", "");
+                flags.put("SERVICE_ONT_PORT", evpnPort);
+
+                String vlan = (String) sp.getOrDefault("evpnQosSessionProfile", "");
+                flags.put("QOS_PROFILE", vlan);
+
+                log.error("Trace Case-D: SERVICE_ONT_PORT=" + evpnPort + "  QOS_PROFILE=" + vlan);
+
+                // ---------------- RESOLVE OLT ----------------
+                String ontGdn = "ONT" + finalOntSN;
+
+                context.device(ontGdn).ifPresent(ont -> {
+
+                    Map<String, Object> ontProps = safeProps(ont.getProperties());
+                    Object parentOltObj = ontProps.get("oltPosition");
+
+                    if (parentOltObj == null) {
+                        log.error("Trace Case-D: OLT missing for ONT {}", ontGdn);
+                        return;
+                    }
+
+                    context.device(parentOltObj.toString()).ifPresent(olt -> {
+
+                        Map<String, Object> oltProps = safeProps(olt.getProperties());
+
+                        // ---------------- READ OLT PORT TEMPLATES ----------------
+                        String port2 = existsString(oltProps.get("port2Template"));
+                        String port3 = existsString(oltProps.get("port3Template"));
+                        String port4 = existsString(oltProps.get("port4Template"));
+
+                        flags.put("SERVICE_PORT2_EXIST", port2);
+                        flags.put("SERVICE_PORT3_EXIST", port3);
+                        flags.put("SERVICE_PORT4_EXIST", port4);
+
+                        log.error("Trace Case-D: OLT Templates  P2=" + port2 + " P3=" + port3 + " P4=" + port4);
+
+                        // ---------------- CARD TEMPLATE ----------------
+                        String cardTemplate = existsString(oltProps.get("generalCardServiceTemplate"));
+                        flags.put("SERVICE_TEMPLATE_CARD", cardTemplate);
+
+                        // ---------------- PORT LOGIC ----------------
+                        flags.put("SERVICE_TEMPLATE_PORT", "New");   // Always new per rule
+
+                        switch (evpnPort) {
+
+                            case "4":
+                                flags.put("SERVICE_PORT_EXIST4", "New");
+                                // already set → check others for card decision
+                                break;
+
+                            case "3":
+                                flags.put("SERVICE_PORT_EXIST3", "New");
+                                break;
+
+                            case "2":
+                                flags.put("SERVICE_PORT_EXIST2", "New");
+                                break;
+
+                            default:
+                                log.error("Trace Case-D: Unknown evpnPort {}", evpnPort);
+                        }
+
+                        // ---------------- CARD EVALUATION RULE ----------------
+                        String p2 = flags.get("SERVICE_PORT2_EXIST");
+                        String p3 = flags.get("SERVICE_PORT3_EXIST");
+                        String p4 = flags.get("SERVICE_PORT4_EXIST");
+
+                        if ("Exist".equalsIgnoreCase(p2)
+                                || "Exist".equalsIgnoreCase(p3)
+                                || "Exist".equalsIgnoreCase(p4)) {
+
+                            flags.put("SERVICE_TEMPLATE_CARD", "Exist");
+
+                        } else {
+                            flags.put("SERVICE_TEMPLATE_CARD", "New");
+                        }
+
+                        log.error("Trace Case-D FINAL -> PORT="
+                                + evpnPort
+                                + "  TEMPLATE_PORT=" + flags.get("SERVICE_TEMPLATE_PORT")
+                                + "  CARD=" + flags.get("SERVICE_TEMPLATE_CARD"));
+                    });
+                });
+
+                log.error("Trace: Case-D processing completed");
+            });
+
+        } catch (Exception e) {
+            log.error("Trace: Case-D failed {}", e.getMessage());
+        }
+    }
+
+    private void oltFallback(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        String actionType = state.getActionType();
+        String ontSN = state.getOntSN();
+        SubscriberContext context = state.context();
+        log.error("Trace: Case-E Fallback executed");
+
+        try {
+            if (ontSN != null) {
+
+                String ontGdn = "ONT" + ontSN;
+
+                context.device(ontGdn).ifPresent(ont -> {
+
+                    Map<String, Object> ontProps = safeProps(ont.getProperties());
+                    Object parentOltObj = ontProps.get("oltPosition");
+
+                    if (parentOltObj != null) {
+
+                        String oltGdn = parentOltObj.toString();
+
+                        context.device(oltGdn).ifPresent(olt -> {
+
+                            Map<String, Object> oltProps = safeProps(olt.getProperties());
+
+                            // Card template
+                            flags.put("SERVICE_TEMPLATE_CARD",
+                                    existsString(oltProps.get("voipServiceTemplate")));
+
+                            // Only for Unconfigure case
+                            if ("Unconfigure".equalsIgnoreCase(actionType)) {
+
+                                flags.put("SERVICE_TEMPLATE_VEIP",
+                                        existsString(oltProps.get("veipServiceTemplate")));
+
+                                flags.put("SERVICE_TEMPLATE_HSI",
+                                        existsString(oltProps.get("veipHsiTemplate")));
+
+                                flags.put("SERVICE_TEMPLATE_VOIP",
+                                        existsString(oltProps.get("voipServiceTemplate")));
+
+                                flags.put("SERVICE_TEMPLATE_POTS1",
+                                        existsString(oltProps.get("potsTemplate1")));
+
+                                flags.put("SERVICE_TEMPLATE_POTS2",
+                                        existsString(oltProps.get("potsTemplate2")));
+
+                                flags.put("SERVICE_TEMPLATE_IPTV",
+                                        existsString(oltProps.get("iptvServiceTemplate")));
+                            }
+
+                            log.error("Trace: Case-E fallback OLT template evaluation completed");
+                        });
+                    }
+                });
+            }
+
+        } catch (Exception e) {
+            log.error("Trace: Case-E fallback failed {}", e.getMessage());
+        }
+    }
+
+    private void defaults(FlagState state) throws Exception {
+        Map<String, String> flags = state.getFlags();
+        log.error("------------Test Trace # 15---------------");
+        flags.putIfAbsent("SERVICE_EXIST", "Exist");
+        flags.putIfAbsent("SERVICE_IPTV_EXIST", flags.getOrDefault("SERVICE_TEMPLATE_IPTV", "New"));
+        flags.putIfAbsent("QOS_PROFILE", flags.getOrDefault("QOS_PROFILE", ""));
+    }
+    private Map<String, Object> safeProps(Map<String, Object> p) {
+        return p == null ? new HashMap<>() : p;
+    }
+
+    private boolean equalsIgnoreCase(String a, String b) {
+        return a != null && b != null && a.equalsIgnoreCase(b);
+    }
+
+    private boolean equalsAnyIgnoreCase(String val, String... tokens) {
+        if (val == null) return false;
+        for (String t : tokens) if (t != null && val.equalsIgnoreCase(t)) return true;
+        return false;
+    }
+
+    private boolean containsIgnoreCase(String val, String token) {
+        if (val == null || token == null) return false;
+        return val.toLowerCase().contains(token.toLowerCase());
+    }
+
+    private String existsString(Object o) {
+        if (o == null) return "New";
+        String s = String.valueOf(o);
+        if (s.trim().isEmpty()) return "New";
+        return "Exist";
+    }
+
+    private String deriveBridgeServiceForSubscriberRfs(
+            SubscriberContext context,
+            List<ServiceNameTokenIndex.Tokens> allRfs,
+            String ontSN,
+            String subscriber) {
+
+        String bridgeService = "NA";
+
+        if (allRfs == null || ontSN == null) {
+            return bridgeService;
+        }
+
+        for (ServiceNameTokenIndex.Tokens rfs : allRfs) {
+            try {
+                Subscription sub=context.subscriptionOfRfs(rfs.getName()).get();
+
+                if (sub == null || sub.getDiscoveredName() == null) {
+                    continue;
+                }
+
+                Map<String, Object> sp = safeProps(sub.getProperties());
+
+                if ("Bridged".equalsIgnoreCase(
+                        (String) sp.getOrDefault("serviceSubType", "")) &&
+                        sub.getDiscoveredName().contains(ontSN)) {
+
+                    // 🔥 DO NOT RETURN – last match wins
+                    bridgeService =
+                            (String) sp.getOrDefault("serviceID", "NA");
+                }
+            } catch (Exception ignore) {
+            }
+        }
+        return bridgeService;
+    }
+
+    private Map<String, String> executeStep6Flags(
+                                                  SubscriberContext context,
+                                                  String ontSN,
+                                                  String serviceID,
+                                                  String subscriber,
+                                                  String actionType,
+                                                  String productSubtype) {
+
+        Map<String, String> result = new HashMap<>();
+
+        result.put("ACCOUNT_EXIST", "New");
+        result.put("SERVICE_FLAG", "New");
+        result.put("CBM_ACCOUNT_EXIST", "New");
+
+        List<Subscription> subsForCustomer = context.subscriptionsContaining(subscriber);
+
+        if (Arrays.asList("Unconfigure", "MoveOut",
+                        "ChangeTechnology", "AccountTransfer")
+                .contains(actionType)) {
+
+            int subCount = subsForCustomer.size();
+
+            // ================= CASE 1: NO SUBSCRIPTIONS =================
+            if (subCount == 0) {
+                result.put("ACCOUNT_EXIST", "New");
+                result.put("SERVICE_FLAG", "New");
+                result.put("CBM_ACCOUNT_EXIST", "New");
+                return result;
+            }
+
+            // ================= CASE 2: ONE SUBSCRIPTION =================
+            if (subCount == 1) {
+
+                result.put("ACCOUNT_EXIST", "New");
+                result.put("SERVICE_FLAG", "New");
+
+                Map<String, Object> p =
+                        safeProps(subsForCustomer.get(0).getProperties());
+
+                if ("Cable_Modem".equalsIgnoreCase(
+                        (String) p.get("serviceLink"))) {
+                    result.put("CBM_ACCOUNT_EXIST", "New");
+                }
+
+                Object sima = p.get("simaCustId");
+                if (sima != null && !sima.toString().isEmpty()) {
+                    result.put("SIMA_CUST_ID", sima.toString());
+                }
+
+                return result;
+            }
+
+            // ================= CASE 3: MULTIPLE SUBSCRIPTIONS =================
+            result.put("ACCOUNT_EXIST", "Exist");
+            result.put("SERVICE_FLAG", "Exist");
+
+            int cbmCount = 0;
+            Set<String> macSet = new HashSet<>();
+
+            for (Subscription s : subsForCustomer) {
+                Map<String, Object> p = safeProps(s.getProperties());
+
+                if ("Cable_Modem".equalsIgnoreCase(
+                        (String) p.get("serviceLink"))) {
+
+                    cbmCount++;
+
+                    Object mac = p.get("serviceMac");
+                    if (mac != null && !mac.toString().isEmpty()) {
+                        macSet.add(mac.toString());
+                    }
+                }
+
+                Object sima = p.get("simaCustId");
+                if (sima != null && !sima.toString().isEmpty()) {
+                    result.put("SIMA_CUST_ID", sima.toString());
+                }
+            }
+
+            // ================= EXACT SPEC LOGIC =================
+            if (Arrays.asList("ChangeTechnology", "AccountTransfer")
+                    .contains(actionType)) {
+
+                result.put("CBM_ACCOUNT_EXIST",
+                        macSet.size() > 1 ? "Exist" : "New");
+
+            } else {
+                // Unconfigure OR MoveOut
+                result.put("CBM_ACCOUNT_EXIST",
+                        cbmCount > 1 ? "Exist" : "New");
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,17 @@
+package com.nokia.nsw.uiv.lock;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the action's doPost under the {@link SubscriberLocks} lock of the subscriber named in the request.
+ * The value is the request property holding the subscriber name; requests without one run unlocked.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SubscriberLocked {
+
+    String value() default "subscriberName";
+}
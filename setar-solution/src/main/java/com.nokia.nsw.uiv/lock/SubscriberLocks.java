@@ -0,0 +1,82 @@
+package com.nokia.nsw.uiv.lock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keyed lock striped by subscriber name for the create-or-fetch flows. Orders for the same subscriber hash to the
+ * same of setar.lock.subscriber.stripes reentrant locks and run one after the other; different subscribers only
+ * meet on a stripe collision. Used through {@link SubscriberLocked} on the action or directly:
+ * <pre>
+ *     try (SubscriberLocks.Held held = subscriberLocks.lock(subscriberName)) { ... }
+ * </pre>
+ * The wait for the lock is published as setar.lock.subscriber.wait and the number of threads queued on all
+ * stripes as setar.lock.subscriber.queue-depth.
+ */
+@Component
+@Slf4j
+public class SubscriberLocks {
+
+    private static final String WAIT_TIMER = "setar.lock.subscriber.wait";
+    private static final String QUEUE_GAUGE = "setar.lock.subscriber.queue-depth";
+
+    /**
+     * A held subscriber lock, released by {@link #close()}.
+     */
+    public static final class Held implements AutoCloseable {
+        private final ReentrantLock lock;
+
+        private Held(ReentrantLock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+    }
+
+    private final ReentrantLock[] stripes;
+    private final Timer waitTimer;
+
+    public SubscriberLocks(MeterRegistry meterRegistry,
+                           @Value("${setar.lock.subscriber.stripes:256}") int stripeCount) {
+        this.stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.waitTimer = Timer.builder(WAIT_TIMER).register(meterRegistry);
+        Gauge.builder(QUEUE_GAUGE, this, SubscriberLocks::queueDepth).register(meterRegistry);
+    }
+
+    /**
+     * Block until the subscriber's stripe is held by the current thread. Reentrant, so an action calling another
+     * locked action for the same subscriber does not deadlock.
+     */
+    public Held lock(String subscriberName) throws InterruptedException {
+        ReentrantLock lock = stripes[Math.floorMod(subscriberName.hashCode(), stripes.length)];
+        long start = System.nanoTime();
+        lock.lockInterruptibly();
+        long waited = System.nanoTime() - start;
+        waitTimer.record(waited, TimeUnit.NANOSECONDS);
+        if (waited > TimeUnit.SECONDS.toNanos(1)) {
+            log.warn("Waited {} ms for subscriber lock of {}", TimeUnit.NANOSECONDS.toMillis(waited), subscriberName);
+        }
+        return new Held(lock);
+    }
+
+    private double queueDepth() {
+        int queued = 0;
+        for (ReentrantLock lock : stripes) {
+            queued += lock.getQueueLength();
+        }
+        return queued;
+    }
+}
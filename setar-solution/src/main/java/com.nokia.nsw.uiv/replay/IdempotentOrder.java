@@ -0,0 +1,18 @@
+package com.nokia.nsw.uiv.replay;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the action's doPost idempotent per order through {@link OrderReplayCache}: a retry of the same order
+ * gets the stored response. The value is the request property holding the order id (the requests spell it
+ * fxOrderID or fxOrderId); requests without one always execute.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface IdempotentOrder {
+
+    String value() default "fxOrderID";
+}
@@ -0,0 +1,156 @@
+package com.nokia.nsw.uiv.replay;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Responses of order-driven actions keyed by (action, fxOrderID, payload hash), kept for
+ * setar.replay.window-seconds. The payload hash is a SHA-256 of the request serialized with sorted properties and
+ * without null fields, so only a retry carrying the same payload gets the stored response without running the
+ * action; a request reusing the order id with a different payload runs on its own. A duplicate that arrives while
+ * the first execution is still running waits for it and gets the same response (or exception).
+ * Only responses with a 2xx status are stored; any other response and exceptions are not, so the next retry runs
+ * again. Requests that cannot be serialized always execute.
+ * Outcomes are counted as setar.replay{result=executed|replayed|joined|not-stored}, cache metrics are published
+ * as cache.* with cache=orderReplay.
+ */
+@Component
+@Slf4j
+public class OrderReplayCache {
+
+    private static final String CACHE_NAME = "orderReplay";
+    private static final String COUNTER = "setar.replay";
+
+    @FunctionalInterface
+    public interface Execution {
+        Object proceed() throws Throwable;
+    }
+
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final boolean enabled;
+    private final Cache<String, Object> completed;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public OrderReplayCache(MeterRegistry meterRegistry,
+                            @Value("${setar.replay.enabled:true}") boolean enabled,
+                            @Value("${setar.replay.window-seconds:600}") long windowSeconds,
+                            @Value("${setar.replay.max-entries:10000}") long maxEntries) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(windowSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, CACHE_NAME);
+    }
+
+    public Object execute(String action, String orderId, Object request, Execution execution) throws Throwable {
+        if (!enabled || orderId == null || orderId.trim().isEmpty()) {
+            return execution.proceed();
+        }
+        String payloadHash = payloadHash(action, request);
+        if (payloadHash == null) {
+            count("not-stored");
+            return execution.proceed();
+        }
+        String key = action + "|" + orderId.trim() + "|" + payloadHash;
+        Object stored = completed.getIfPresent(key);
+        if (stored != null) {
+            count("replayed");
+            log.error("Replaying stored {} response for order {}", action, orderId);
+            return stored;
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            count("joined");
+            log.error("Order {} already running in {}, waiting for its response", orderId, action);
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+        try {
+            // the first execution may have finished between the cache check and registering this one
+            stored = completed.getIfPresent(key);
+            if (stored != null) {
+                count("replayed");
+                mine.complete(stored);
+                return stored;
+            }
+            Object response = execution.proceed();
+            if (isStorable(response)) {
+                completed.put(key, response);
+                count("executed");
+            } else {
+                count("not-stored");
+            }
+            mine.complete(response);
+            return response;
+        } catch (Throwable t) {
+            count("not-stored");
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Only responses whose status is 2xx; a response without a status is not stored either.
+     */
+    static boolean isStorable(Object response) {
+        if (response == null) return false;
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(response);
+        if (!wrapper.isReadableProperty("status")) return false;
+        Object status = wrapper.getPropertyValue("status");
+        return status != null && status.toString().trim().matches("2\\d\\d");
+    }
+
+    /**
+     * SHA-256 of the canonical request, or null when it cannot be serialized.
+     */
+    String payloadHash(String action, Object request) {
+        if (request == null) return null;
+        try {
+            byte[] canonical = (request.getClass().getName() + "|" + canonicalMapper.writeValueAsString(request))
+                    .getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            log.warn("Request of {} cannot be canonicalized, executing without replay: {}", action, e.getMessage());
+            return null;
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter(COUNTER, "result", result).increment();
+    }
+}
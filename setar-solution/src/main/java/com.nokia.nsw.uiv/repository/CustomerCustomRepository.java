@@ -5,8 +5,11 @@ import com.nokia.nsw.uiv.model.common.party.Customer;
 import com.nokia.nsw.uiv.model.common.party.CustomerRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Repository
 public interface CustomerCustomRepository extends CustomerRepository {
@@ -14,5 +17,9 @@ public interface CustomerCustomRepository extends CustomerRepository {
     // Add your new method here
     Optional<Customer> findByDiscoveredName(String discoveredName);
     Optional<Customer> findByProperty(String key,String value);
+    List<Customer> findAllByProperty(String key, String value);
+    List<Customer> findAllByDiscoveredNames(Collection<String> discoveredNames);
+    Stream<Customer> stream(Predicate<Customer> predicate, int pageSize);
+    List<Customer> findByDiscoveredNameContaining(String fragment);
 }
 
@@ -10,6 +10,8 @@ import org.springframework.stereotype.Repository;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
@@ -17,56 +19,82 @@ import java.util.stream.StreamSupport;
 public class CustomerCustomRepositoryImpl implements CustomerCustomRepository {
 
     private final CustomerRepository customerRepository;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
+    private final DiscoveredNameNgramIndex nameIndex;
 
-    public CustomerCustomRepositoryImpl(CustomerRepository customerRepository) {
+    public CustomerCustomRepositoryImpl(CustomerRepository customerRepository, IndexedLookupEngine lookup, RepositoryWriteEvents events,
+                                        DiscoveredNameNgramIndex nameIndex) {
         this.customerRepository = customerRepository;
+        this.lookup = lookup;
+        this.events = events;
+        this.nameIndex = nameIndex;
+        lookup.register(Customer.class);
+        nameIndex.register(Customer.class, Customer::getLocalName, Customer::getDiscoveredName);
     }
 
     @Override
     public Optional<Customer> findByDiscoveredName(String discoveredName) {
-        Iterable<Customer> allCustomers = customerRepository.findAll();
-        return StreamSupport.stream(allCustomers.spliterator(), false)
-                .filter(c -> discoveredName.equals(c.getDiscoveredName()))
-                .findFirst();
+        return lookup.findByDiscoveredName(Customer.class, discoveredName,
+                () -> StreamSupport.stream(customerRepository.findAll().spliterator(), false)
+                        .filter(c -> discoveredName.equals(c.getDiscoveredName()))
+                        .findFirst());
     }
 
     @Override
     public Optional<Customer> findByProperty(String key, String value) {
-        Iterable<Customer> allCustomers = customerRepository.findAll();
-        return StreamSupport.stream(allCustomers.spliterator(), false)
-                .filter(c -> c.getProperties().get(key)!=null?c.getProperties().get(key).equals(value):false)
-                .findFirst();
+        return lookup.findByProperty(Customer.class, key, value, customerRepository::findAll, Customer::getProperties);
+    }
+
+    @Override
+    public List<Customer> findAllByProperty(String key, String value) {
+        return lookup.findAllByProperty(Customer.class, key, value, customerRepository::findAll, Customer::getProperties);
+    }
+
+    @Override
+    public List<Customer> findAllByDiscoveredNames(Collection<String> discoveredNames) {
+        return lookup.findAllIn(Customer.class, IndexedLookupEngine.DISCOVERED_NAME, discoveredNames);
+    }
+
+    @Override
+    public Stream<Customer> stream(Predicate<Customer> predicate, int pageSize) {
+        return lookup.stream(Customer.class, predicate, pageSize);
+    }
+
+    @Override
+    public List<Customer> findByDiscoveredNameContaining(String fragment) {
+        return lookup.findAllIn(Customer.class, IndexedLookupEngine.DISCOVERED_NAME, nameIndex.namesContaining(Customer.class, fragment));
     }
 
     // Delegate all standard CRUD methods
     @Override
     public <S extends Customer> S save(S entity) {
-        return customerRepository.save(entity);
+        return events.saved(Customer.class, customerRepository.save(entity));
     }
 
     @Override
     public <S extends Customer> S save(S entity, int depth) {
-        return customerRepository.save(entity, depth);
+        return events.saved(Customer.class, customerRepository.save(entity, depth));
     }
 
     @Override
     public <S extends Customer> Iterable<S> saveAll(Iterable<S> entities) {
-        return customerRepository.saveAll(entities);
+        return events.savedAll(Customer.class, customerRepository.saveAll(entities));
     }
 
     @Override
     public <S extends Customer> Iterable<S> save(Iterable<S> entities, int depth) {
-        return customerRepository.save(entities, depth);
+        return events.savedAll(Customer.class, customerRepository.save(entities, depth));
     }
 
     @Override
     public <S extends Customer> Iterable<S> batchSaveAll(Iterable<S> entities, int depth, String txnId) {
-        return customerRepository.batchSaveAll(entities, depth, txnId);
+        return events.savedAll(Customer.class, customerRepository.batchSaveAll(entities, depth, txnId));
     }
 
     @Override
     public Optional<Customer> findById(String id) {
-        return customerRepository.findById(id);
+        return lookup.findById(Customer.class, id, () -> customerRepository.findById(id));
     }
 
     @Override
@@ -137,11 +165,13 @@ public class CustomerCustomRepositoryImpl implements CustomerCustomRepository {
     @Override
     public void deleteById(String id) {
         customerRepository.deleteById(id);
+        events.deletedById(Customer.class, id);
     }
 
     @Override
     public void delete(Customer entity) {
         customerRepository.delete(entity);
+        events.deleted(Customer.class, entity);
     }
 
     @Override
@@ -153,11 +183,13 @@ public class CustomerCustomRepositoryImpl implements CustomerCustomRepository {
     @Override
     public void deleteAll(Iterable<? extends Customer> entities) {
         customerRepository.deleteAll(entities);
+        events.deletedAll(Customer.class, entities);
     }
 
     @Override
     public void deleteAll() {
         customerRepository.deleteAll();
+        events.cleared(Customer.class);
     }
 
 
@@ -0,0 +1,180 @@
+package com.nokia.nsw.uiv.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Trigram index over discoveredName for the types that are searched with contains(...).
+ * A fragment of three or more characters is answered by intersecting the posting lists of its trigrams,
+ * smallest first, and verifying the few surviving names, so the cost follows the result and not the label.
+ * Shorter fragments are checked against the in-memory names only.
+ * Entries are keyed by localName and maintained from {@link RepositoryWriteEvent}s; writes that cannot be
+ * mapped to an entry mark the type stale and the next query rebuilds it.
+ */
+@Component
+@Slf4j
+public class DiscoveredNameNgramIndex {
+
+    private static final int GRAM = 3;
+
+    private static class TypeIndex<T> {
+        private final Class<T> type;
+        private final Function<T, String> localName;
+        private final Function<T, String> discoveredName;
+        private volatile Map<String, String> names = new ConcurrentHashMap<>();
+        private volatile Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+        private volatile boolean stale = true;
+
+        private TypeIndex(Class<T> type, Function<T, String> localName, Function<T, String> discoveredName) {
+            this.type = type;
+            this.localName = localName;
+            this.discoveredName = discoveredName;
+        }
+
+        private String keyOf(T entity) {
+            String key = localName.apply(entity);
+            return key != null ? key : discoveredName.apply(entity);
+        }
+    }
+
+    private final IndexedLookupEngine lookup;
+    private final Map<Class<?>, TypeIndex<?>> indexes = new ConcurrentHashMap<>();
+
+    public DiscoveredNameNgramIndex(IndexedLookupEngine lookup) {
+        this.lookup = lookup;
+    }
+
+    public <T> void register(Class<T> type, Function<T, String> localName, Function<T, String> discoveredName) {
+        indexes.putIfAbsent(type, new TypeIndex<>(type, localName, discoveredName));
+    }
+
+    /**
+     * discoveredNames of the given type containing the fragment (case-sensitive, like String.contains).
+     */
+    public List<String> namesContaining(Class<?> type, String fragment) {
+        TypeIndex<?> index = indexes.get(type);
+        if (index == null) {
+            throw new IllegalStateException("No name index registered for " + type.getSimpleName());
+        }
+        if (fragment == null) return new ArrayList<>();
+        if (index.stale) {
+            synchronized (index) {
+                if (index.stale) rebuild(index);
+            }
+        }
+        Map<String, String> names = index.names;
+        if (fragment.length() < GRAM) {
+            return names.values().stream()
+                    .filter(n -> n.contains(fragment))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<Set<String>> postings = new ArrayList<>();
+        for (String gram : gramsOf(fragment)) {
+            Set<String> keys = index.grams.get(gram);
+            if (keys == null) return new ArrayList<>();
+            postings.add(keys);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        List<String> result = new ArrayList<>();
+        for (String key : postings.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < postings.size() && inAll; i++) {
+                inAll = postings.get(i).contains(key);
+            }
+            String name = inAll ? names.get(key) : null;
+            if (name != null && name.contains(fragment)) {
+                result.add(name);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        for (TypeIndex<?> index : indexes.values()) {
+            synchronized (index) {
+                rebuild(index);
+            }
+        }
+    }
+
+    @EventListener
+    public void onWrite(RepositoryWriteEvent event) {
+        for (TypeIndex<?> index : indexes.values()) {
+            if (event.concerns(index.type)) {
+                synchronized (index) {
+                    apply(index, event);
+                }
+            }
+        }
+    }
+
+    private <T> void apply(TypeIndex<T> index, RepositoryWriteEvent event) {
+        T entity = event.getEntity(index.type);
+        switch (event.getOperation()) {
+            case SAVED:
+                if (entity == null) return;
+                remove(index, index.keyOf(entity));
+                put(index.names, index.grams, index.keyOf(entity), index.discoveredName.apply(entity));
+                break;
+            case DELETED:
+                if (entity == null) return;
+                remove(index, index.keyOf(entity));
+                break;
+            default:
+                index.stale = true;
+        }
+    }
+
+    private <T> void rebuild(TypeIndex<T> index) {
+        long start = System.currentTimeMillis();
+        Map<String, String> names = new ConcurrentHashMap<>();
+        Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+        try (Stream<T> all = lookup.stream(index.type, null, 0)) {
+            all.forEach(e -> put(names, grams, index.keyOf(e), index.discoveredName.apply(e)));
+        }
+        index.names = names;
+        index.grams = grams;
+        index.stale = false;
+        log.info("Name index for {} built with {} names, {} trigrams in {} ms", index.type.getSimpleName(),
+                names.size(), grams.size(), System.currentTimeMillis() - start);
+    }
+
+    private static void put(Map<String, String> names, Map<String, Set<String>> grams, String key, String name) {
+        if (key == null || name == null) return;
+        names.put(key, name);
+        for (String gram : gramsOf(name)) {
+            grams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private static void remove(TypeIndex<?> index, String key) {
+        if (key == null) return;
+        String old = index.names.remove(key);
+        if (old == null) return;
+        for (String gram : gramsOf(old)) {
+            index.grams.computeIfPresent(gram, (g, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static Set<String> gramsOf(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,442 @@
+package com.nokia.nsw.uiv.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.cypher.Filters;
+import org.neo4j.ogm.cypher.query.Pagination;
+import org.neo4j.ogm.cypher.query.SortOrder;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Shared lookup layer for the *CustomRepositoryImpl classes.
+ * Point lookups run as label + property filters against Neo4j, backed by an index per label
+ * created at startup. The old in-memory scan is kept as fallback and can be shadow-executed
+ * to produce a before/after latency report per repository.
+ * Property lookups are index-backed only for the hot keys declared per entity type in
+ * setar.lookup.indexed-properties.{Type}; other keys fall back to a bounded, metered scan.
+ */
+@Component
+@Slf4j
+public class IndexedLookupEngine {
+
+    public static final String DISCOVERED_NAME = "discoveredName";
+    public static final String KIND = "kind";
+
+    private static final String LOOKUP_TIMER = "setar.repository.lookup";
+    private static final String MISMATCH_COUNTER = "setar.repository.lookup.mismatch";
+    private static final String SLOW_COUNTER = "setar.repository.lookup.slow";
+    private static final String TRUNCATED_COUNTER = "setar.repository.lookup.truncated";
+    private static final String STRATEGY_INDEX = "index";
+    private static final String STRATEGY_SCAN = "scan";
+    private static final String STRATEGY_BOUNDED_SCAN = "bounded-scan";
+    private static final String INDEXED_PROPERTIES = "setar.lookup.indexed-properties.";
+
+    private final Session session;
+    private final SessionFactory sessionFactory;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    private final RequestIdentityMap identityMap;
+    private final NegativeLookupCache negativeCache;
+    private final Map<Class<?>, Set<String>> indexedFields = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Set<String>> indexedProperties = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Method> nameGetters = new ConcurrentHashMap<>();
+
+    @Value("${setar.lookup.indexed.enabled:true}")
+    private boolean indexedEnabled;
+
+    @Value("${setar.lookup.shadow-scan.enabled:false}")
+    private boolean shadowScanEnabled;
+
+    @Value("${uiv.db.resourcedepth:1}")
+    private int depth;
+
+    @Value("${setar.lookup.properties-prefix:properties.}")
+    private String propertiesPrefix;
+
+    @Value("${setar.lookup.scan.page-size:500}")
+    private int scanPageSize;
+
+    @Value("${setar.lookup.scan.limit:100000}")
+    private int scanLimit;
+
+    public IndexedLookupEngine(Session session, SessionFactory sessionFactory, MeterRegistry meterRegistry,
+                               Environment environment, RequestIdentityMap identityMap,
+                               NegativeLookupCache negativeCache) {
+        this.session = session;
+        this.sessionFactory = sessionFactory;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.identityMap = identityMap;
+        this.negativeCache = negativeCache;
+    }
+
+    public void register(Class<?> type) {
+        registerIndex(type, DISCOVERED_NAME);
+        negativeCache.register(type);
+        String declared = environment.getProperty(INDEXED_PROPERTIES + type.getSimpleName(), "");
+        Set<String> keys = new LinkedHashSet<>();
+        for (String key : declared.split(",")) {
+            if (!key.trim().isEmpty()) keys.add(key.trim());
+        }
+        indexedProperties.put(type, Collections.unmodifiableSet(keys));
+        for (String key : keys) {
+            registerIndex(type, propertyField(key));
+        }
+    }
+
+    /**
+     * Declare an additional stored field of the label that should be indexed at startup.
+     */
+    public void registerIndex(Class<?> type, String field) {
+        indexedFields.computeIfAbsent(type, t -> ConcurrentHashMap.newKeySet()).add(field);
+    }
+
+    public boolean isIndexedProperty(Class<?> type, String key) {
+        return indexedProperties.getOrDefault(type, Collections.emptySet()).contains(key);
+    }
+
+    public <T> Optional<T> findByDiscoveredName(Class<T> type, String discoveredName, Supplier<Optional<T>> scan) {
+        return identityMap.findByDiscoveredName(type, discoveredName,
+                () -> negativeCache.find(type, discoveredName,
+                        () -> findOne(type, DISCOVERED_NAME, discoveredName, scan)));
+    }
+
+    public <T> Optional<T> findById(Class<T> type, String id, Supplier<Optional<T>> load) {
+        return identityMap.findById(type, id, load);
+    }
+
+    public <T> Optional<T> findOne(Class<T> type, String property, Object value, Supplier<Optional<T>> scan) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        if (!indexedEnabled) {
+            return timed(type, property, STRATEGY_SCAN, scan);
+        }
+        Optional<T> result = timed(type, property, STRATEGY_INDEX,
+                () -> session.loadAll(type, new Filter(property, ComparisonOperator.EQUALS, value), depth)
+                        .stream()
+                        .findFirst());
+        if (shadowScanEnabled) {
+            Optional<T> scanned = timed(type, property, STRATEGY_SCAN, scan);
+            if (scanned.isPresent() != result.isPresent()) {
+                meterRegistry.counter(MISMATCH_COUNTER, "repository", type.getSimpleName(), "property", property).increment();
+                log.warn("Indexed lookup mismatch on {}.{}={} (index found: {}, scan found: {})",
+                        type.getSimpleName(), property, value, result.isPresent(), scanned.isPresent());
+            }
+        }
+        return result;
+    }
+
+    public <T> Optional<T> findByProperty(Class<T> type, String key, Object value,
+                                          Function<Pageable, Page<T>> pages,
+                                          Function<T, Map<String, Object>> properties) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        Predicate<T> matches = e -> properties.apply(e) != null && value.equals(properties.apply(e).get(key));
+        if (indexedEnabled && isIndexedProperty(type, key)) {
+            return findOne(type, propertyField(key), value,
+                    () -> boundedScan(type, key, pages, matches, 1).stream().findFirst());
+        }
+        return boundedScan(type, key, pages, matches, 1).stream().findFirst();
+    }
+
+    public <T> List<T> findAllByProperty(Class<T> type, String key, Object value,
+                                         Function<Pageable, Page<T>> pages,
+                                         Function<T, Map<String, Object>> properties) {
+        if (value == null) {
+            return new ArrayList<>();
+        }
+        if (indexedEnabled && isIndexedProperty(type, key)) {
+            return timed(type, propertyField(key), STRATEGY_INDEX,
+                    () -> new ArrayList<>(session.loadAll(type, new Filter(propertyField(key), ComparisonOperator.EQUALS, value), depth)));
+        }
+        Predicate<T> matches = e -> properties.apply(e) != null && value.equals(properties.apply(e).get(key));
+        return boundedScan(type, key, pages, matches, Integer.MAX_VALUE);
+    }
+
+    public <T> List<T> findAll(Class<T> type, String field, Object value, Supplier<List<T>> scan) {
+        if (value == null) {
+            return new ArrayList<>();
+        }
+        return findAll(type, new Filter(field, ComparisonOperator.EQUALS, value), scan);
+    }
+
+    /**
+     * Load every node of the label matching the filter, or run the scan when indexed lookups are disabled.
+     */
+    public <T> List<T> findAll(Class<T> type, Filter filter, Supplier<List<T>> scan) {
+        if (!indexedEnabled) {
+            return timed(type, filter.getPropertyName(), STRATEGY_SCAN, scan);
+        }
+        return timed(type, filter.getPropertyName(), STRATEGY_INDEX,
+                () -> new ArrayList<>(session.loadAll(type, filter, depth)));
+    }
+
+    /**
+     * Load every node of the label whose field is one of the given values, in one query.
+     */
+    public <T> List<T> findAllIn(Class<T> type, String field, Collection<?> values) {
+        if (values == null || values.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return timed(type, field, STRATEGY_INDEX,
+                () -> new ArrayList<>(session.loadAll(type, new Filter(field, ComparisonOperator.IN, values), depth)));
+    }
+
+    /**
+     * Lazily page through the nodes of the label matching the filter, setar.lookup.scan.page-size at a time.
+     * Only the current page is held by the returned stream. Pages are read by keyset on the discoveredName index
+     * with the graph id as tie-break: each page starts at the last name of the previous one and drops the nodes of
+     * that name already returned, so names shared by several nodes are neither skipped nor returned twice and every
+     * page costs the same. Nodes without a discoveredName are not paged.
+     */
+    public <T> Stream<T> stream(Class<T> type, Filter filter) {
+        return stream(type, filter, depth);
+    }
+
+    /**
+     * Same as {@link #stream(Class, Filter)} with an explicit load depth; a null filter pages the whole label.
+     * Depth 0 is enough for callers that only read the node's own fields.
+     */
+    public <T> Stream<T> stream(Class<T> type, Filter filter, int loadDepth) {
+        return stream(type, filter, loadDepth, scanPageSize);
+    }
+
+    /**
+     * Page through the whole label pageSize nodes at a time and keep the entities matching the predicate.
+     * Replaces findAll() followed by an in-memory filter: only the current page is held, and closing the stream
+     * (try-with-resources) stops further page loads when the caller leaves early.
+     */
+    public <T> Stream<T> stream(Class<T> type, Predicate<? super T> predicate, int pageSize) {
+        return stream(type, null, depth, pageSize).filter(predicate);
+    }
+
+    private <T> Stream<T> stream(Class<T> type, Filter filter, int loadDepth, int pageSize) {
+        String property = filter == null ? "*" : filter.getPropertyName();
+        int size = pageSize > 0 ? pageSize : scanPageSize;
+        class Pages implements Iterator<T> {
+            private String lastName;
+            /** graph ids of the nodes named lastName that were already returned */
+            private final Set<Long> returnedWithLastName = new HashSet<>();
+            private Iterator<T> current = Collections.emptyIterator();
+            private boolean lastPage = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && !lastPage) {
+                    Filters filters = new Filters();
+                    if (filter != null) filters.add(filter);
+                    if (lastName != null) {
+                        filters.and(new Filter(DISCOVERED_NAME, ComparisonOperator.GREATER_THAN_EQUAL, lastName));
+                    }
+                    // the nodes named lastName that were already returned come back first, read past them
+                    int limit = size + returnedWithLastName.size();
+                    List<T> loaded = new ArrayList<>(timed(type, property, filter == null ? STRATEGY_SCAN : STRATEGY_INDEX,
+                            () -> session.loadAll(type, filters, new SortOrder().add(DISCOVERED_NAME),
+                                    new Pagination(0, limit), loadDepth)));
+                    lastPage = loaded.size() < limit;
+                    List<T> page = new ArrayList<>(loaded.size());
+                    for (T entity : loaded) {
+                        String name = discoveredNameOf(entity);
+                        Long id = session.resolveGraphIdFor(entity);
+                        if (name != null && name.equals(lastName) && returnedWithLastName.contains(id)) continue;
+                        if (name == null || !name.equals(lastName)) {
+                            lastName = name;
+                            returnedWithLastName.clear();
+                        }
+                        returnedWithLastName.add(id);
+                        page.add(entity);
+                    }
+                    if (lastName == null) lastPage = true;
+                    current = page.iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+
+            private void close() {
+                lastPage = true;
+                current = Collections.emptyIterator();
+            }
+        }
+        Pages pages = new Pages();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pages::close);
+    }
+
+    private String discoveredNameOf(Object entity) {
+        try {
+            Method getter = nameGetters.computeIfAbsent(entity.getClass(), c -> {
+                try {
+                    return c.getMethod("getDiscoveredName");
+                } catch (NoSuchMethodException e) {
+                    return null;
+                }
+            });
+            Object name = getter == null ? null : getter.invoke(entity);
+            return name == null ? null : name.toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Page through the label at most setar.lookup.scan.limit nodes deep, collecting up to maxResults matches.
+     * Every call is counted as slow so undeclared hot keys show up in the metrics.
+     * A scan that reaches the limit before it has maxResults matches cannot tell the caller the answer is complete;
+     * it is counted, logged and thrown as an IllegalStateException instead of returning partial results.
+     */
+    private <T> List<T> boundedScan(Class<T> type, String key, Function<Pageable, Page<T>> pages,
+                                    Predicate<T> matches, int maxResults) {
+        meterRegistry.counter(SLOW_COUNTER, "repository", type.getSimpleName(), "property", key).increment();
+        log.warn("Unindexed property lookup {}.{}, scanning at most {} nodes", type.getSimpleName(), key, scanLimit);
+        return timed(type, key, STRATEGY_BOUNDED_SCAN, () -> {
+            List<T> found = new ArrayList<>();
+            int scanned = 0;
+            Page<T> page = pages.apply(PageRequest.of(0, scanPageSize));
+            while (true) {
+                for (T entity : page.getContent()) {
+                    if (matches.test(entity)) {
+                        found.add(entity);
+                        if (found.size() >= maxResults) return found;
+                    }
+                }
+                scanned += page.getNumberOfElements();
+                if (!page.hasNext() || scanned >= scanLimit) break;
+                page = pages.apply(page.nextPageable());
+            }
+            if (scanned >= scanLimit && page.hasNext()) {
+                meterRegistry.counter(TRUNCATED_COUNTER, "repository", type.getSimpleName(), "property", key).increment();
+                log.warn("Bounded scan on {}.{} stopped after {} nodes with {} matches", type.getSimpleName(), key,
+                        scanned, found.size());
+                throw new IllegalStateException(String.format(
+                        "Lookup of %s by unindexed property %s scanned the limit of %d nodes without completing; "
+                                + "declare it in %s%s", type.getSimpleName(), key, scanLimit, INDEXED_PROPERTIES,
+                        type.getSimpleName()));
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Node property holding the given @Properties key (setar.lookup.properties-prefix + key).
+     */
+    public String propertyField(String key) {
+        return propertiesPrefix + key;
+    }
+
+    public String labelOf(Class<?> type) {
+        return sessionFactory.metaData().classInfo(type.getName()).neo4jName();
+    }
+
+    public void createIndex(Class<?> type, String property) {
+        String label = labelOf(type);
+        String indexName = ("setar_" + label + "_" + property).replaceAll("[^A-Za-z0-9_]", "_");
+        String cypher = String.format("CREATE INDEX %s IF NOT EXISTS FOR (n:`%s`) ON (n.`%s`)", indexName, label, property);
+        try {
+            session.query(cypher, Collections.emptyMap());
+            log.info("Ensured index {} on :{}({})", indexName, label, property);
+        } catch (Exception e) {
+            log.warn("Could not create index {} on :{}({}): {}", indexName, label, property, e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite stored values of the field that differ from one of the canonical values only in case, so exact,
+     * index-backed lookups on the canonical spelling find them. Scans the label once; returns the nodes changed.
+     */
+    public long normalizeCase(Class<?> type, String field, Collection<String> canonical) {
+        String cypher = String.format("MATCH (n:`%s`) WHERE n.`%s` <> $value AND toLower(n.`%s`) = toLower($value) "
+                + "SET n.`%s` = $value RETURN count(n) AS changed", labelOf(type), field, field, field);
+        long changed = 0;
+        for (String value : canonical) {
+            try {
+                for (Map<String, Object> row : session.query(cypher, Collections.singletonMap("value", value))) {
+                    Object count = row.get("changed");
+                    if (count instanceof Number) changed += ((Number) count).longValue();
+                }
+            } catch (Exception e) {
+                log.warn("Could not normalize {}.{} to {}: {}", type.getSimpleName(), field, value, e.getMessage());
+            }
+        }
+        if (changed > 0) {
+            log.info("Normalized the case of {} {}.{} values", changed, type.getSimpleName(), field);
+        }
+        return changed;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        if (!indexedEnabled) {
+            log.info("Indexed lookups disabled, skipping index creation");
+            return;
+        }
+        for (Map.Entry<Class<?>, Set<String>> entry : indexedFields.entrySet()) {
+            for (String field : entry.getValue()) {
+                createIndex(entry.getKey(), field);
+            }
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void logLatencyReport() {
+        for (Map.Entry<String, String> line : latencyReport().entrySet()) {
+            log.info("Lookup latency {} -> {}", line.getKey(), line.getValue());
+        }
+    }
+
+    /**
+     * Per repository and property: call count and mean/max latency for the index and scan strategies.
+     * With shadow-scan enabled both columns are filled from the same traffic.
+     */
+    public Map<String, String> latencyReport() {
+        Map<String, String> report = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(LOOKUP_TIMER).timers()) {
+            String key = timer.getId().getTag("repository") + "." + timer.getId().getTag("property");
+            String line = String.format("%s: n=%d mean=%.3fms max=%.3fms",
+                    timer.getId().getTag("strategy"), timer.count(),
+                    timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS));
+            report.merge(key, line, (a, b) -> a + ", " + b);
+        }
+        return report;
+    }
+
+    private <R> R timed(Class<?> type, String property, String strategy, Supplier<R> call) {
+        Timer timer = Timer.builder(LOOKUP_TIMER)
+                .tag("repository", type.getSimpleName())
+                .tag("property", property)
+                .tag("strategy", strategy)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        return timer.record(call);
+    }
+}
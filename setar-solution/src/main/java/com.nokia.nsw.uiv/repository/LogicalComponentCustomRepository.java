@@ -5,7 +5,11 @@ import com.nokia.nsw.uiv.model.resource.logical.LogicalComponentRepository;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Repository
 public interface LogicalComponentCustomRepository extends LogicalComponentRepository {
@@ -14,4 +18,8 @@ public interface LogicalComponentCustomRepository extends LogicalComponentReposi
     Optional<LogicalComponent>  findByDiscoveredName(String discoveredName);
 
     Optional<LogicalComponent> findByProperty(String key, String value);
+
+    List<LogicalComponent> findAllByProperty(String key, String value);
+    List<LogicalComponent> findAllByDiscoveredNames(Collection<String> discoveredNames);
+    Stream<LogicalComponent> stream(Predicate<LogicalComponent> predicate, int pageSize);
 }
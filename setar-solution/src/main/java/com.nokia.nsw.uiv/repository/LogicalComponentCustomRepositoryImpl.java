@@ -10,6 +10,8 @@ import org.springframework.stereotype.Repository;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
@@ -17,40 +19,59 @@ import java.util.stream.StreamSupport;
 public class LogicalComponentCustomRepositoryImpl implements LogicalComponentCustomRepository {
 
     private final LogicalComponentRepository repo;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
 
-    public LogicalComponentCustomRepositoryImpl(LogicalComponentRepository repo) {
+    public LogicalComponentCustomRepositoryImpl(LogicalComponentRepository repo, IndexedLookupEngine lookup, RepositoryWriteEvents events) {
         this.repo = repo;
+        this.lookup = lookup;
+        this.events = events;
+        lookup.register(LogicalComponent.class);
     }
 
     // ✅ CUSTOM METHODS
     @Override
     public Optional<LogicalComponent> findByDiscoveredName(String discoveredName) {
-        return StreamSupport.stream(repo.findAll().spliterator(), false)
-                .filter(c -> discoveredName.equals(c.getDiscoveredName()))
-                .findFirst();
+        return lookup.findByDiscoveredName(LogicalComponent.class, discoveredName,
+                () -> StreamSupport.stream(repo.findAll().spliterator(), false)
+                        .filter(c -> discoveredName.equals(c.getDiscoveredName()))
+                        .findFirst());
     }
 
     @Override
     public Optional<LogicalComponent> findByProperty(String key, String value) {
-        return StreamSupport.stream(repo.findAll().spliterator(), false)
-                .filter(c -> value.equals(c.getProperties().get(key)))
-                .findFirst();
+        return lookup.findByProperty(LogicalComponent.class, key, value, repo::findAll, LogicalComponent::getProperties);
+    }
+
+    @Override
+    public List<LogicalComponent> findAllByProperty(String key, String value) {
+        return lookup.findAllByProperty(LogicalComponent.class, key, value, repo::findAll, LogicalComponent::getProperties);
+    }
+
+    @Override
+    public List<LogicalComponent> findAllByDiscoveredNames(Collection<String> discoveredNames) {
+        return lookup.findAllIn(LogicalComponent.class, IndexedLookupEngine.DISCOVERED_NAME, discoveredNames);
+    }
+
+    @Override
+    public Stream<LogicalComponent> stream(Predicate<LogicalComponent> predicate, int pageSize) {
+        return lookup.stream(LogicalComponent.class, predicate, pageSize);
     }
 
     // ✅ SIMPLE CRUD DELEGATION
     @Override
     public <S extends LogicalComponent> S save(S entity) {
-        return repo.save(entity);
+        return events.saved(LogicalComponent.class, repo.save(entity));
     }
 
     @Override
     public <S extends LogicalComponent> Iterable<S> saveAll(Iterable<S> entities) {
-        return repo.saveAll(entities);
+        return events.savedAll(LogicalComponent.class, repo.saveAll(entities));
     }
 
     @Override
     public Optional<LogicalComponent> findById(String id) {
-        return repo.findById(id);
+        return lookup.findById(LogicalComponent.class, id, () -> repo.findById(id));
     }
 
     @Override
@@ -66,26 +87,31 @@ public class LogicalComponentCustomRepositoryImpl implements LogicalComponentCus
     @Override
     public void deleteById(String id) {
         repo.deleteById(id);
+        events.deletedById(LogicalComponent.class, id);
     }
 
     @Override
     public void delete(LogicalComponent entity) {
         repo.delete(entity);
+        events.deleted(LogicalComponent.class, entity);
     }
 
     @Override
     public void deleteAllById(Iterable<? extends String> ids) {
         repo.deleteAllById(ids);
+        events.deletedAllById(LogicalComponent.class, ids);
     }
 
     @Override
     public void deleteAll(Iterable<? extends LogicalComponent> entities) {
         repo.deleteAll(entities);
+        events.deletedAll(LogicalComponent.class, entities);
     }
 
     @Override
     public void deleteAll() {
         repo.deleteAll();
+        events.cleared(LogicalComponent.class);
     }
 
     @Override
@@ -116,12 +142,12 @@ public class LogicalComponentCustomRepositoryImpl implements LogicalComponentCus
     // ✅ DEPTH-BASED METHODS
     @Override
     public <S extends LogicalComponent> S save(S entity, int depth) {
-        return repo.save(entity, depth);
+        return events.saved(LogicalComponent.class, repo.save(entity, depth));
     }
 
     @Override
     public <S extends LogicalComponent> Iterable<S> save(Iterable<S> entities, int depth) {
-        return repo.save(entities, depth);
+        return events.savedAll(LogicalComponent.class, repo.save(entities, depth));
     }
 
     @Override
@@ -157,12 +183,12 @@ public class LogicalComponentCustomRepositoryImpl implements LogicalComponentCus
     // ✅ CONTEXT METHODS (ctx)
     @Override
     public <S extends LogicalComponent> S save(S entity, String ctx) {
-        return repo.save(entity, ctx);
+        return events.saved(LogicalComponent.class, repo.save(entity, ctx));
     }
 
     @Override
     public <S extends LogicalComponent> Iterable<S> saveAll(Iterable<S> entities, String ctx) {
-        return repo.saveAll(entities, ctx);
+        return events.savedAll(LogicalComponent.class, repo.saveAll(entities, ctx));
     }
 
     @Override
@@ -183,31 +209,35 @@ public class LogicalComponentCustomRepositoryImpl implements LogicalComponentCus
     @Override
     public void deleteById(String id, String ctx) {
         repo.deleteById(id, ctx);
+        events.deletedById(LogicalComponent.class, id);
     }
 
     @Override
     public void delete(LogicalComponent entity, String ctx) {
         repo.delete(entity, ctx);
+        events.deleted(LogicalComponent.class, entity);
     }
 
     @Override
     public void deleteAll(Iterable<? extends LogicalComponent> entities, String ctx) {
         repo.deleteAll(entities, ctx);
+        events.deletedAll(LogicalComponent.class, entities);
     }
 
     @Override
     public void deleteAll(String ctx) {
         repo.deleteAll(ctx);
+        events.cleared(LogicalComponent.class);
     }
 
     @Override
     public <S extends LogicalComponent> S save(S entity, int depth, String ctx) {
-        return repo.save(entity, depth, ctx);
+        return events.saved(LogicalComponent.class, repo.save(entity, depth, ctx));
     }
 
     @Override
     public <S extends LogicalComponent> Iterable<S> save(Iterable<S> entities, int depth, String ctx) {
-        return repo.save(entities, depth, ctx);
+        return events.savedAll(LogicalComponent.class, repo.save(entities, depth, ctx));
     }
 
     @Override
@@ -295,11 +325,13 @@ public class LogicalComponentCustomRepositoryImpl implements LogicalComponentCus
     @Override
     public void updateLdn(String old, String newValue, String ctx) {
         repo.updateLdn(old, newValue, ctx);
+        events.ldnUpdated(LogicalComponent.class, old, newValue);
     }
 
     @Override
     public void updateLdn(String old, String newValue, String ctx, String mode) {
         repo.updateLdn(old, newValue, ctx, mode);
+        events.ldnUpdated(LogicalComponent.class, old, newValue);
     }
 
     @Override
@@ -340,12 +372,12 @@ public class LogicalComponentCustomRepositoryImpl implements LogicalComponentCus
     // ✅ Batch Save
     @Override
     public <S extends LogicalComponent> S batchSave(S s, int d, String ctx) {
-        return repo.batchSave(s, d, ctx);
+        return events.saved(LogicalComponent.class, repo.batchSave(s, d, ctx));
     }
 
     @Override
     public <S extends LogicalComponent> Iterable<S> batchSaveAll(Iterable<S> it, int d, String ctx) {
-        return repo.batchSaveAll(it, d, ctx);
+        return events.savedAll(LogicalComponent.class, repo.batchSaveAll(it, d, ctx));
     }
 
     // ✅ Spring Example API
@@ -0,0 +1,299 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Shared read-through cache for LogicalDevice lookups by discoveredName (ONT, OLT and the other devices every
+ * action resolves). Bounded by setar.cache.logical-device.max-size and expired after
+ * setar.cache.logical-device.ttl-seconds. Only found devices are cached.
+ * The cache holds a private snapshot of each device and hands every caller its own deep copy (properties,
+ * relationship sets and every related entity reachable from it), so a caller changing the device or a related
+ * entity in place and failing before save does not leak the change to other requests. A load that started before
+ * a write touching the devices is not cached.
+ * Invalidation is synchronous: every save/delete through the custom repositories publishes a
+ * {@link RepositoryWriteEvent} on the writing thread before the call returns. A renamed device is dropped under
+ * its previous name as well, tracked per localName. A write to another entity drops the cached devices that hold
+ * it in a relationship and the devices it references, so relationship sets are not served stale until the TTL.
+ * Hit/miss/eviction metrics are published as cache.* meters with cache=logicalDevice.
+ */
+@Component
+@Slf4j
+public class LogicalDeviceCache {
+
+    private static final String CACHE_NAME = "logicalDevice";
+
+    private final boolean enabled;
+    private final Cache<String, LogicalDevice> cache;
+    private final Map<String, String> namesByLocalName = new ConcurrentHashMap<>();
+    /** "Type:name" of each entity related to a cached device -> names of those devices */
+    private final Map<String, Set<String>> devicesByRelated = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Method[]> nameGetters = new ConcurrentHashMap<>();
+    private long generation;
+
+    public LogicalDeviceCache(MeterRegistry meterRegistry,
+                              @Value("${setar.cache.logical-device.enabled:true}") boolean enabled,
+                              @Value("${setar.cache.logical-device.max-size:10000}") long maxSize,
+                              @Value("${setar.cache.logical-device.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .removalListener((String name, LogicalDevice device, RemovalCause cause) -> {
+                    if (device == null) return;
+                    if (device.getLocalName() != null) {
+                        namesByLocalName.remove(device.getLocalName(), name);
+                    }
+                    // runs without the cache's monitor; relink if the name was cached again meanwhile
+                    unlinkRelated(name, device);
+                    LogicalDevice current = this.cache.asMap().get(name);
+                    if (current != null) linkRelated(name, current);
+                })
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public Optional<LogicalDevice> get(String discoveredName, Supplier<Optional<LogicalDevice>> loader) {
+        if (!enabled || discoveredName == null) {
+            return loader.get();
+        }
+        LogicalDevice cached = cache.getIfPresent(discoveredName);
+        if (cached != null) {
+            LogicalDevice copy = copy(cached);
+            if (copy != null) {
+                return Optional.of(copy);
+            }
+        }
+        long seen;
+        synchronized (this) {
+            seen = generation;
+        }
+        Optional<LogicalDevice> loaded = loader.get();
+        loaded.ifPresent(device -> store(discoveredName, device, seen));
+        return loaded;
+    }
+
+    private synchronized void store(String discoveredName, LogicalDevice device, long seen) {
+        // a write during the load may have changed the device after it was read
+        if (generation != seen) return;
+        LogicalDevice snapshot = copy(device);
+        if (snapshot == null) return;
+        cache.put(discoveredName, snapshot);
+        linkRelated(discoveredName, snapshot);
+        if (device.getLocalName() != null) {
+            namesByLocalName.put(device.getLocalName(), discoveredName);
+        }
+    }
+
+    @EventListener
+    public synchronized void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(LogicalDevice.class)) {
+            onRelatedWrite(event);
+            return;
+        }
+        generation++;
+        switch (event.getOperation()) {
+            case SAVED:
+            case DELETED:
+                LogicalDevice device = event.getEntity(LogicalDevice.class);
+                if (device != null) {
+                    invalidate(device);
+                }
+                break;
+            default:
+                log.debug("Clearing LogicalDevice cache after {} on {}", event.getOperation(), event.getType().getSimpleName());
+                cache.invalidateAll();
+        }
+    }
+
+    /**
+     * A write to another entity changes the relationship sets of the devices holding it and of the devices it
+     * points to; writes without an entity drop every device related to an entity of that type.
+     */
+    private void onRelatedWrite(RepositoryWriteEvent event) {
+        Set<String> names = new HashSet<>();
+        Object entity = event.getEntity();
+        if (entity != null && (event.getOperation() == RepositoryWriteEvent.Operation.SAVED
+                || event.getOperation() == RepositoryWriteEvent.Operation.DELETED)) {
+            String key = relatedKey(entity);
+            if (key != null) names.addAll(devicesByRelated.getOrDefault(key, Collections.emptySet()));
+            for (LogicalDevice device : referencedDevices(entity)) {
+                if (device.getDiscoveredName() != null) names.add(device.getDiscoveredName());
+                if (device.getLocalName() != null && namesByLocalName.get(device.getLocalName()) != null) {
+                    names.add(namesByLocalName.get(device.getLocalName()));
+                }
+            }
+        } else {
+            String prefix = event.getType().getSimpleName() + ":";
+            for (Map.Entry<String, Set<String>> related : devicesByRelated.entrySet()) {
+                if (related.getKey().startsWith(prefix)) names.addAll(related.getValue());
+            }
+        }
+        if (names.isEmpty()) return;
+        generation++;
+        log.debug("Dropping {} cached LogicalDevices after {} on {}", names.size(), event.getOperation(),
+                event.getType().getSimpleName());
+        cache.invalidateAll(names);
+    }
+
+    private void invalidate(LogicalDevice device) {
+        if (device.getDiscoveredName() != null) {
+            cache.invalidate(device.getDiscoveredName());
+        }
+        if (device.getLocalName() != null) {
+            String previousName = namesByLocalName.remove(device.getLocalName());
+            if (previousName != null) {
+                cache.invalidate(previousName);
+            }
+        }
+    }
+
+    private void linkRelated(String name, LogicalDevice device) {
+        for (Object related : relatedOf(device)) {
+            String key = relatedKey(related);
+            if (key != null) devicesByRelated.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(name);
+        }
+    }
+
+    private void unlinkRelated(String name, LogicalDevice device) {
+        for (Object related : relatedOf(device)) {
+            String key = relatedKey(related);
+            if (key == null) continue;
+            devicesByRelated.computeIfPresent(key, (k, names) -> {
+                names.remove(name);
+                return names.isEmpty() ? null : names;
+            });
+        }
+    }
+
+    /**
+     * Entities held directly by the device's fields and relationship collections.
+     */
+    private static List<Object> relatedOf(Object entity) {
+        List<Object> related = new ArrayList<>();
+        for (Class<?> c = entity.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) continue;
+                try {
+                    field.setAccessible(true);
+                    Object value = field.get(entity);
+                    if (value instanceof Collection) {
+                        for (Object element : (Collection<?>) value) {
+                            if (isEntity(element)) related.add(element);
+                        }
+                    } else if (isEntity(value)) {
+                        related.add(value);
+                    }
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    log.debug("Cannot read {}.{}: {}", c.getSimpleName(), field.getName(), e.getMessage());
+                }
+            }
+        }
+        return related;
+    }
+
+    private static List<LogicalDevice> referencedDevices(Object entity) {
+        List<LogicalDevice> devices = new ArrayList<>();
+        for (Object related : relatedOf(entity)) {
+            if (related instanceof LogicalDevice) devices.add((LogicalDevice) related);
+        }
+        return devices;
+    }
+
+    /**
+     * "Type:localName" of an entity, or "Type:discoveredName" when it has no localName; the type is the one write
+     * events are published for.
+     */
+    private static String relatedKey(Object entity) {
+        Method[] getters = nameGetters.computeIfAbsent(entity.getClass(), c -> {
+            try {
+                return new Method[]{c.getMethod("getLocalName"), c.getMethod("getDiscoveredName")};
+            } catch (NoSuchMethodException e) {
+                return new Method[0];
+            }
+        });
+        if (getters.length == 0) return null;
+        try {
+            Object name = getters[0].invoke(entity);
+            if (name == null) name = getters[1].invoke(entity);
+            return name == null ? null : entity.getClass().getSimpleName() + ":" + name;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deep copy of the device: its properties, its relationship collections and every entity reachable from it
+     * are its own, so edits through ont.getUsedResource() or any other related entity do not reach the snapshot.
+     * Shared references inside the graph stay shared within the copy. Returns null if the entity cannot be
+     * copied, in which case the device is not cached.
+     */
+    static LogicalDevice copy(LogicalDevice device) {
+        try {
+            return (LogicalDevice) copy(device, new IdentityHashMap<>());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("LogicalDevice {} cannot be copied, not caching it: {}", device.getDiscoveredName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static Object copy(Object source, Map<Object, Object> copies) throws ReflectiveOperationException {
+        Object done = copies.get(source);
+        if (done != null) return done;
+        Constructor<?> constructor = source.getClass().getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Object target = constructor.newInstance();
+        copies.put(source, target);
+        for (Class<?> c = source.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) continue;
+                field.setAccessible(true);
+                field.set(target, copyValue(field.get(source), copies));
+            }
+        }
+        return target;
+    }
+
+    private static Object copyValue(Object value, Map<Object, Object> copies) throws ReflectiveOperationException {
+        if (value instanceof Map) {
+            Map<Object, Object> target = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                target.put(entry.getKey(), copyValue(entry.getValue(), copies));
+            }
+            return target;
+        }
+        if (value instanceof Collection) {
+            Collection<Object> target = value instanceof List ? new ArrayList<>() : new LinkedHashSet<>();
+            for (Object element : (Collection<?>) value) {
+                target.add(copyValue(element, copies));
+            }
+            return target;
+        }
+        if (isEntity(value)) {
+            return copy(value, copies);
+        }
+        return value;
+    }
+
+    private static boolean isEntity(Object value) {
+        return value != null && !(value instanceof Enum) && value.getClass().getName().startsWith("com.nokia.");
+    }
+}
@@ -7,7 +7,11 @@ import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalDeviceRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Repository
 public interface LogicalDeviceCustomRepository extends LogicalDeviceRepository {
@@ -15,5 +19,8 @@ public interface LogicalDeviceCustomRepository extends LogicalDeviceRepository {
     // Add your new method here
     Optional<LogicalDevice> findByDiscoveredName(String discoveredName);
     Optional<LogicalDevice> findByProperty(String key,String value);
+    List<LogicalDevice> findAllByProperty(String key, String value);
+    List<LogicalDevice> findAllByDiscoveredNames(Collection<String> discoveredNames);
+    Stream<LogicalDevice> stream(Predicate<LogicalDevice> predicate, int pageSize);
 }
 
@@ -10,6 +10,8 @@ import org.springframework.stereotype.Repository;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
@@ -17,37 +19,59 @@ import java.util.stream.StreamSupport;
 public class LogicalDeviceCustomRepositoryImpl implements LogicalDeviceCustomRepository {
 
     private final LogicalDeviceRepository repo;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
+    private final LogicalDeviceCache deviceCache;
 
-    public LogicalDeviceCustomRepositoryImpl(LogicalDeviceRepository repo) {
+    public LogicalDeviceCustomRepositoryImpl(LogicalDeviceRepository repo, IndexedLookupEngine lookup, RepositoryWriteEvents events,
+                                             LogicalDeviceCache deviceCache) {
         this.repo = repo;
+        this.lookup = lookup;
+        this.events = events;
+        this.deviceCache = deviceCache;
+        lookup.register(LogicalDevice.class);
     }
 
     // ✅ CUSTOM METHODS
     @Override
     public Optional<LogicalDevice> findByDiscoveredName(String discoveredName) {
-        return StreamSupport.stream(repo.findAll().spliterator(), false)
-                .filter(d -> discoveredName.equals(d.getDiscoveredName()))
-                .findFirst();
+        return deviceCache.get(discoveredName, () -> lookup.findByDiscoveredName(LogicalDevice.class, discoveredName,
+                () -> StreamSupport.stream(repo.findAll().spliterator(), false)
+                        .filter(d -> discoveredName.equals(d.getDiscoveredName()))
+                        .findFirst()));
     }
 
     @Override
     public Optional<LogicalDevice> findByProperty(String key, String value) {
-        return StreamSupport.stream(repo.findAll().spliterator(), false)
-                .filter(d -> value.equals(d.getProperties().get(key)))
-                .findFirst();
+        return lookup.findByProperty(LogicalDevice.class, key, value, repo::findAll, LogicalDevice::getProperties);
+    }
+
+    @Override
+    public List<LogicalDevice> findAllByProperty(String key, String value) {
+        return lookup.findAllByProperty(LogicalDevice.class, key, value, repo::findAll, LogicalDevice::getProperties);
+    }
+
+    @Override
+    public List<LogicalDevice> findAllByDiscoveredNames(Collection<String> discoveredNames) {
+        return lookup.findAllIn(LogicalDevice.class, IndexedLookupEngine.DISCOVERED_NAME, discoveredNames);
+    }
+
+    @Override
+    public Stream<LogicalDevice> stream(Predicate<LogicalDevice> predicate, int pageSize) {
+        return lookup.stream(LogicalDevice.class, predicate, pageSize);
     }
 
     // ✅ BASIC CRUD
-    @Override public <S extends LogicalDevice> S save(S entity) { return repo.save(entity); }
-    @Override public <S extends LogicalDevice> Iterable<S> saveAll(Iterable<S> entities) { return repo.saveAll(entities); }
-    @Override public Optional<LogicalDevice> findById(String id) { return repo.findById(id); }
+    @Override public <S extends LogicalDevice> S save(S entity) { return events.saved(LogicalDevice.class, repo.save(entity)); }
+    @Override public <S extends LogicalDevice> Iterable<S> saveAll(Iterable<S> entities) { return events.savedAll(LogicalDevice.class, repo.saveAll(entities)); }
+    @Override public Optional<LogicalDevice> findById(String id) { return lookup.findById(LogicalDevice.class, id, () -> repo.findById(id)); }
     @Override public boolean existsById(String id) { return repo.existsById(id); }
     @Override public long count() { return repo.count(); }
-    @Override public void deleteById(String id) { repo.deleteById(id); }
-    @Override public void delete(LogicalDevice entity) { repo.delete(entity); }
-    @Override public void deleteAllById(Iterable<? extends String> ids) { repo.deleteAllById(ids); }
-    @Override public void deleteAll(Iterable<? extends LogicalDevice> entities) { repo.deleteAll(entities); }
-    @Override public void deleteAll() { repo.deleteAll(); }
+    @Override public void deleteById(String id) { repo.deleteById(id); events.deletedById(LogicalDevice.class, id); }
+    @Override public void delete(LogicalDevice entity) { repo.delete(entity); events.deleted(LogicalDevice.class, entity); }
+    @Override public void deleteAllById(Iterable<? extends String> ids) { repo.deleteAllById(ids); events.deletedAllById(LogicalDevice.class, ids); }
+    @Override public void deleteAll(Iterable<? extends LogicalDevice> entities) { repo.deleteAll(entities); events.deletedAll(LogicalDevice.class, entities); }
+    @Override public void deleteAll() { repo.deleteAll(); events.cleared(LogicalDevice.class); }
 
     @Override public Iterable<LogicalDevice> findAll() { return repo.findAll(); }
     @Override public Iterable<LogicalDevice> findAll(Sort sort) { return repo.findAll(sort); }
@@ -56,8 +80,8 @@ public class LogicalDeviceCustomRepositoryImpl implements LogicalDeviceCustomRep
     @Override public Iterable<LogicalDevice> findAllById(Iterable<String> ids, Sort sort) { return repo.findAllById(ids, sort); }
 
     // ✅ DEPTH-BASED METHODS
-    @Override public <S extends LogicalDevice> S save(S entity, int depth) { return repo.save(entity, depth); }
-    @Override public <S extends LogicalDevice> Iterable<S> save(Iterable<S> entities, int depth) { return repo.save(entities, depth); }
+    @Override public <S extends LogicalDevice> S save(S entity, int depth) { return events.saved(LogicalDevice.class, repo.save(entity, depth)); }
+    @Override public <S extends LogicalDevice> Iterable<S> save(Iterable<S> entities, int depth) { return events.savedAll(LogicalDevice.class, repo.save(entities, depth)); }
     @Override public Optional<LogicalDevice> findById(String id, int depth) { return repo.findById(id, depth); }
     @Override public Iterable<LogicalDevice> findAll(int depth) { return repo.findAll(depth); }
     @Override public Iterable<LogicalDevice> findAllById(Iterable<String> ids, int depth) { return repo.findAllById(ids, depth); }
@@ -66,19 +90,19 @@ public class LogicalDeviceCustomRepositoryImpl implements LogicalDeviceCustomRep
     @Override public Page<LogicalDevice> findAll(Pageable pageable, int depth) { return repo.findAll(pageable, depth); }
 
     // ✅ CONTEXT (ctx)
-    @Override public <S extends LogicalDevice> S save(S entity, String ctx) { return repo.save(entity, ctx); }
-    @Override public <S extends LogicalDevice> Iterable<S> saveAll(Iterable<S> entities, String ctx) { return repo.saveAll(entities, ctx); }
+    @Override public <S extends LogicalDevice> S save(S entity, String ctx) { return events.saved(LogicalDevice.class, repo.save(entity, ctx)); }
+    @Override public <S extends LogicalDevice> Iterable<S> saveAll(Iterable<S> entities, String ctx) { return events.savedAll(LogicalDevice.class, repo.saveAll(entities, ctx)); }
     @Override public Optional<LogicalDevice> findById(String id, String ctx) { return repo.findById(id, ctx); }
     @Override public Optional<LogicalDevice> findById(String id, int depth, String ctx) { return repo.findById(id, depth, ctx); }
     @Override public boolean existsById(String id, String ctx) { return repo.existsById(id, ctx); }
     @Override public long count(String ctx) { return repo.count(ctx); }
-    @Override public void deleteById(String id, String ctx) { repo.deleteById(id, ctx); }
-    @Override public void delete(LogicalDevice entity, String ctx) { repo.delete(entity, ctx); }
-    @Override public void deleteAll(Iterable<? extends LogicalDevice> entities, String ctx) { repo.deleteAll(entities, ctx); }
-    @Override public void deleteAll(String ctx) { repo.deleteAll(ctx); }
+    @Override public void deleteById(String id, String ctx) { repo.deleteById(id, ctx); events.deletedById(LogicalDevice.class, id); }
+    @Override public void delete(LogicalDevice entity, String ctx) { repo.delete(entity, ctx); events.deleted(LogicalDevice.class, entity); }
+    @Override public void deleteAll(Iterable<? extends LogicalDevice> entities, String ctx) { repo.deleteAll(entities, ctx); events.deletedAll(LogicalDevice.class, entities); }
+    @Override public void deleteAll(String ctx) { repo.deleteAll(ctx); events.cleared(LogicalDevice.class); }
 
-    @Override public <S extends LogicalDevice> S save(S entity, int depth, String ctx) { return repo.save(entity, depth, ctx); }
-    @Override public <S extends LogicalDevice> Iterable<S> save(Iterable<S> entities, int depth, String ctx) { return repo.save(entities, depth, ctx); }
+    @Override public <S extends LogicalDevice> S save(S entity, int depth, String ctx) { return events.saved(LogicalDevice.class, repo.save(entity, depth, ctx)); }
+    @Override public <S extends LogicalDevice> Iterable<S> save(Iterable<S> entities, int depth, String ctx) { return events.savedAll(LogicalDevice.class, repo.save(entities, depth, ctx)); }
 
     @Override public Iterable<LogicalDevice> findAll(String ctx) { return repo.findAll(ctx); }
     @Override public Iterable<LogicalDevice> findAll(int depth, String ctx) { return repo.findAll(depth, ctx); }
@@ -102,8 +126,8 @@ public class LogicalDeviceCustomRepositoryImpl implements LogicalDeviceCustomRep
         repo.uivUpdateAssociationProperties(from, to, rel, props);
     }
 
-    @Override public void updateLdn(String old, String newValue, String ctx) { repo.updateLdn(old, newValue, ctx); }
-    @Override public void updateLdn(String old, String newValue, String ctx, String mode) { repo.updateLdn(old, newValue, ctx, mode); }
+    @Override public void updateLdn(String old, String newValue, String ctx) { repo.updateLdn(old, newValue, ctx); events.ldnUpdated(LogicalDevice.class, old, newValue); }
+    @Override public void updateLdn(String old, String newValue, String ctx, String mode) { repo.updateLdn(old, newValue, ctx, mode); events.ldnUpdated(LogicalDevice.class, old, newValue); }
 
     @Override public List<String> uivFindRelationExists(String a, String b, String c, String d, String e, String f) {
         return repo.uivFindRelationExists(a, b, c, d, e, f);
@@ -121,8 +145,8 @@ public class LogicalDeviceCustomRepositoryImpl implements LogicalDeviceCustomRep
     @Override public boolean uivFindById(String a, String b, String c, boolean d, String e) { return repo.uivFindById(a, b, c, d, e); }
 
     // ✅ Batch Save
-    @Override public <S extends LogicalDevice> S batchSave(S s, int d, String ctx) { return repo.batchSave(s, d, ctx); }
-    @Override public <S extends LogicalDevice> Iterable<S> batchSaveAll(Iterable<S> it, int d, String ctx) { return repo.batchSaveAll(it, d, ctx); }
+    @Override public <S extends LogicalDevice> S batchSave(S s, int d, String ctx) { return events.saved(LogicalDevice.class, repo.batchSave(s, d, ctx)); }
+    @Override public <S extends LogicalDevice> Iterable<S> batchSaveAll(Iterable<S> it, int d, String ctx) { return events.savedAll(LogicalDevice.class, repo.batchSaveAll(it, d, ctx)); }
 
     // ✅ SPRING Example API
     @Override public <S extends LogicalDevice> Optional<S> findOne(Example<S> example) { return repo.findOne(example); }
@@ -5,7 +5,11 @@ import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
 import com.nokia.nsw.uiv.model.resource.logical.LogicalInterfaceRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Repository
 public interface LogicalInterfaceCustomRepository extends LogicalInterfaceRepository {
@@ -14,4 +18,8 @@ public interface LogicalInterfaceCustomRepository extends LogicalInterfaceReposi
     Optional<LogicalInterface>  findByDiscoveredName(String discoveredName);
 
     Optional<LogicalInterface>  findByProperty(String key, String value);
+
+    List<LogicalInterface> findAllByProperty(String key, String value);
+    List<LogicalInterface> findAllByDiscoveredNames(Collection<String> discoveredNames);
+    Stream<LogicalInterface> stream(Predicate<LogicalInterface> predicate, int pageSize);
 }
@@ -13,6 +13,8 @@ import org.springframework.stereotype.Repository;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
@@ -20,42 +22,59 @@ import java.util.stream.StreamSupport;
 public class LogicalInterfaceCustomRepositoryImpl implements LogicalInterfaceCustomRepository {
 
     private final LogicalInterfaceRepository logicalInterfaceRepository;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
 
-    public LogicalInterfaceCustomRepositoryImpl(LogicalInterfaceRepository logicalInterfaceRepository) {
+    public LogicalInterfaceCustomRepositoryImpl(LogicalInterfaceRepository logicalInterfaceRepository, IndexedLookupEngine lookup, RepositoryWriteEvents events) {
         this.logicalInterfaceRepository = logicalInterfaceRepository;
+        this.lookup = lookup;
+        this.events = events;
+        lookup.register(LogicalInterface.class);
     }
 
     // ✅ Custom finder methods
     @Override
     public Optional<LogicalInterface> findByDiscoveredName(String discoveredName) {
-        Iterable<LogicalInterface> allInterfaces = logicalInterfaceRepository.findAll();
-        return StreamSupport.stream(allInterfaces.spliterator(), false)
-                .filter(i -> discoveredName.equals(i.getDiscoveredName()))
-                .findFirst();
+        return lookup.findByDiscoveredName(LogicalInterface.class, discoveredName,
+                () -> StreamSupport.stream(logicalInterfaceRepository.findAll().spliterator(), false)
+                        .filter(i -> discoveredName.equals(i.getDiscoveredName()))
+                        .findFirst());
     }
 
     @Override
     public Optional<LogicalInterface> findByProperty(String key, String value) {
-        Iterable<LogicalInterface> allInterfaces = logicalInterfaceRepository.findAll();
-        return StreamSupport.stream(allInterfaces.spliterator(), false)
-                .filter(i -> i.getProperties().get(key) != null ? i.getProperties().get(key).equals(value) : false)
-                .findFirst();
+        return lookup.findByProperty(LogicalInterface.class, key, value, logicalInterfaceRepository::findAll, LogicalInterface::getProperties);
+    }
+
+    @Override
+    public List<LogicalInterface> findAllByProperty(String key, String value) {
+        return lookup.findAllByProperty(LogicalInterface.class, key, value, logicalInterfaceRepository::findAll, LogicalInterface::getProperties);
+    }
+
+    @Override
+    public List<LogicalInterface> findAllByDiscoveredNames(Collection<String> discoveredNames) {
+        return lookup.findAllIn(LogicalInterface.class, IndexedLookupEngine.DISCOVERED_NAME, discoveredNames);
+    }
+
+    @Override
+    public Stream<LogicalInterface> stream(Predicate<LogicalInterface> predicate, int pageSize) {
+        return lookup.stream(LogicalInterface.class, predicate, pageSize);
     }
 
     // ✅ Delegate CRUD operations
     @Override
     public <S extends LogicalInterface> S save(S entity) {
-        return logicalInterfaceRepository.save(entity);
+        return events.saved(LogicalInterface.class, logicalInterfaceRepository.save(entity));
     }
 
     @Override
     public <S extends LogicalInterface> Iterable<S> saveAll(Iterable<S> entities) {
-        return logicalInterfaceRepository.saveAll(entities);
+        return events.savedAll(LogicalInterface.class, logicalInterfaceRepository.saveAll(entities));
     }
 
     @Override
     public Optional<LogicalInterface> findById(String id) {
-        return logicalInterfaceRepository.findById(id);
+        return lookup.findById(LogicalInterface.class, id, () -> logicalInterfaceRepository.findById(id));
     }
 
     @Override
@@ -71,11 +90,13 @@ public class LogicalInterfaceCustomRepositoryImpl implements LogicalInterfaceCus
     @Override
     public void deleteById(String id) {
         logicalInterfaceRepository.deleteById(id);
+        events.deletedById(LogicalInterface.class, id);
     }
 
     @Override
     public void delete(LogicalInterface entity) {
         logicalInterfaceRepository.delete(entity);
+        events.deleted(LogicalInterface.class, entity);
     }
 
     @Override
@@ -86,11 +107,13 @@ public class LogicalInterfaceCustomRepositoryImpl implements LogicalInterfaceCus
     @Override
     public void deleteAll(Iterable<? extends LogicalInterface> entities) {
         logicalInterfaceRepository.deleteAll(entities);
+        events.deletedAll(LogicalInterface.class, entities);
     }
 
     @Override
     public void deleteAll() {
         logicalInterfaceRepository.deleteAll();
+        events.cleared(LogicalInterface.class);
     }
 
     @Override
@@ -111,7 +134,7 @@ public class LogicalInterfaceCustomRepositoryImpl implements LogicalInterfaceCus
     // ✅ Extended methods (delegate or placeholders)
     @Override
     public <S extends LogicalInterface> S save(S entity, int depth) {
-        return logicalInterfaceRepository.save(entity, depth);
+        return events.saved(LogicalInterface.class, logicalInterfaceRepository.save(entity, depth));
     }
 
     @Override
@@ -0,0 +1,203 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.model.common.party.Customer;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import com.nokia.nsw.uiv.model.service.Product;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.session.Session;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Resolves the subscriber / subscription / product / CFS / RFS / device names of one service in a single
+ * round trip instead of one findByDiscoveredName per entity.
+ * The names are matched per label in one Cypher union and returned with their direct relationships, so the
+ * entities come back at the same depth the repositories load them. If the union query fails the bundle is
+ * resolved with one findAllByDiscoveredNames per repository instead; only a syntax or unsupported-feature error
+ * switches the union off for the following calls, any other failure affects that call alone.
+ * Resolved entities are also placed in the request identity map, so later findByDiscoveredName calls in the
+ * same action reuse them.
+ */
+@Component
+@Slf4j
+public class NameBundleResolver {
+
+    private final Session session;
+    private final IndexedLookupEngine lookup;
+    private final RequestIdentityMap identityMap;
+    private final CustomerCustomRepository customerRepository;
+    private final SubscriptionCustomRepository subscriptionRepository;
+    private final ProductCustomRepository productRepository;
+    private final ServiceCustomRepository serviceRepository;
+    private final LogicalDeviceCustomRepository deviceRepository;
+
+    private volatile boolean unionSupported = true;
+
+    public NameBundleResolver(Session session, IndexedLookupEngine lookup, RequestIdentityMap identityMap,
+                              CustomerCustomRepository customerRepository,
+                              SubscriptionCustomRepository subscriptionRepository,
+                              ProductCustomRepository productRepository,
+                              ServiceCustomRepository serviceRepository,
+                              LogicalDeviceCustomRepository deviceRepository) {
+        this.session = session;
+        this.lookup = lookup;
+        this.identityMap = identityMap;
+        this.customerRepository = customerRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.productRepository = productRepository;
+        this.serviceRepository = serviceRepository;
+        this.deviceRepository = deviceRepository;
+    }
+
+    /**
+     * Names to resolve; every role is optional.
+     */
+    public static class Names {
+        private String subscriber;
+        private String subscription;
+        private String product;
+        private String cfs;
+        private String rfs;
+        private final Set<String> devices = new LinkedHashSet<>();
+
+        public Names subscriber(String name) { this.subscriber = name; return this; }
+        public Names subscription(String name) { this.subscription = name; return this; }
+        public Names product(String name) { this.product = name; return this; }
+        public Names cfs(String name) { this.cfs = name; return this; }
+        public Names rfs(String name) { this.rfs = name; return this; }
+        public Names device(String name) { if (name != null) this.devices.add(name); return this; }
+    }
+
+    /**
+     * Typed result of {@link #resolve(Names)}; a role that was not requested or not found is empty.
+     */
+    public static class Bundle {
+        private final Names names;
+        private final Map<String, Customer> customers = new HashMap<>();
+        private final Map<String, Subscription> subscriptions = new HashMap<>();
+        private final Map<String, Product> products = new HashMap<>();
+        private final Map<String, Service> services = new HashMap<>();
+        private final Map<String, LogicalDevice> devices = new HashMap<>();
+
+        private Bundle(Names names) {
+            this.names = names;
+        }
+
+        public Optional<Customer> getSubscriber() { return find(customers, names.subscriber); }
+        public Optional<Subscription> getSubscription() { return find(subscriptions, names.subscription); }
+        public Optional<Product> getProduct() { return find(products, names.product); }
+        public Optional<Service> getCfs() { return find(services, names.cfs); }
+        public Optional<Service> getRfs() { return find(services, names.rfs); }
+        public Optional<LogicalDevice> getDevice(String name) { return find(devices, name); }
+
+        private static <T> Optional<T> find(Map<String, T> byName, String name) {
+            return name == null ? Optional.empty() : Optional.ofNullable(byName.get(name));
+        }
+    }
+
+    public static Names names() {
+        return new Names();
+    }
+
+    public Bundle resolve(Names names) {
+        Bundle bundle = new Bundle(names);
+        Map<Class<?>, Set<String>> byType = new LinkedHashMap<>();
+        add(byType, Customer.class, names.subscriber);
+        add(byType, Subscription.class, names.subscription);
+        add(byType, Product.class, names.product);
+        add(byType, Service.class, names.cfs);
+        add(byType, Service.class, names.rfs);
+        for (String device : names.devices) {
+            add(byType, LogicalDevice.class, device);
+        }
+        if (byType.isEmpty()) {
+            return bundle;
+        }
+        boolean resolved = false;
+        if (unionSupported) {
+            try {
+                resolveInOneQuery(byType, bundle);
+                resolved = true;
+            } catch (Exception e) {
+                if (UnsupportedQueryErrors.isUnsupported(e)) {
+                    unionSupported = false;
+                    log.warn("Bundle union query not supported, falling back to per-repository batches: {}", e.getMessage());
+                } else {
+                    log.warn("Bundle union query failed, resolving this bundle per repository: {}", e.getMessage());
+                }
+            }
+        }
+        if (!resolved) {
+            resolvePerRepository(byType, bundle);
+        }
+        remember(bundle);
+        return bundle;
+    }
+
+    private void resolveInOneQuery(Map<Class<?>, Set<String>> byType, Bundle bundle) {
+        StringBuilder union = new StringBuilder();
+        Map<String, Object> params = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<Class<?>, Set<String>> entry : byType.entrySet()) {
+            if (i > 0) union.append(" UNION ");
+            union.append(String.format("MATCH (n:`%s`) WHERE n.%s IN $names%d RETURN n",
+                    lookup.labelOf(entry.getKey()), IndexedLookupEngine.DISCOVERED_NAME, i));
+            params.put("names" + i, new ArrayList<>(entry.getValue()));
+            i++;
+        }
+        String cypher = "CALL { " + union + " } OPTIONAL MATCH p = (n)-[]-() RETURN n, collect(p) AS paths";
+        Iterable<Map<String, Object>> rows = session.query(cypher, params);
+        for (Map<String, Object> row : rows) {
+            place(bundle, row.get("n"));
+        }
+    }
+
+    private void resolvePerRepository(Map<Class<?>, Set<String>> byType, Bundle bundle) {
+        resolve(byType, Customer.class, customerRepository::findAllByDiscoveredNames, bundle);
+        resolve(byType, Subscription.class, subscriptionRepository::findAllByDiscoveredNames, bundle);
+        resolve(byType, Product.class, productRepository::findAllByDiscoveredNames, bundle);
+        resolve(byType, Service.class, serviceRepository::findAllByDiscoveredNames, bundle);
+        resolve(byType, LogicalDevice.class, deviceRepository::findAllByDiscoveredNames, bundle);
+    }
+
+    private <T> void resolve(Map<Class<?>, Set<String>> byType, Class<T> type,
+                             Function<Collection<String>, List<T>> finder, Bundle bundle) {
+        Set<String> wanted = byType.get(type);
+        if (wanted == null) return;
+        for (T entity : finder.apply(wanted)) {
+            place(bundle, entity);
+        }
+    }
+
+    private void place(Bundle bundle, Object entity) {
+        if (entity instanceof Customer) {
+            bundle.customers.put(((Customer) entity).getDiscoveredName(), (Customer) entity);
+        } else if (entity instanceof Subscription) {
+            bundle.subscriptions.put(((Subscription) entity).getDiscoveredName(), (Subscription) entity);
+        } else if (entity instanceof Product) {
+            bundle.products.put(((Product) entity).getDiscoveredName(), (Product) entity);
+        } else if (entity instanceof Service) {
+            bundle.services.put(((Service) entity).getDiscoveredName(), (Service) entity);
+        } else if (entity instanceof LogicalDevice) {
+            bundle.devices.put(((LogicalDevice) entity).getDiscoveredName(), (LogicalDevice) entity);
+        }
+    }
+
+    private void remember(Bundle bundle) {
+        bundle.customers.forEach((name, e) -> identityMap.remember(Customer.class, name, e));
+        bundle.subscriptions.forEach((name, e) -> identityMap.remember(Subscription.class, name, e));
+        bundle.products.forEach((name, e) -> identityMap.remember(Product.class, name, e));
+        bundle.services.forEach((name, e) -> identityMap.remember(Service.class, name, e));
+        bundle.devices.forEach((name, e) -> identityMap.remember(LogicalDevice.class, name, e));
+    }
+
+    private static void add(Map<Class<?>, Set<String>> byType, Class<?> type, String name) {
+        if (name != null) {
+            byType.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(name);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.nokia.nsw.uiv.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bloom filter of discoveredNames per entity type, used to make findByDiscoveredName cheaper for names that do
+ * not exist yet, which is what create flows mostly look up.
+ * A name the filter rules out is answered "absent" without touching the store.
+ * The filter is loaded at startup from the label and every save through the custom repositories adds the saved
+ * name synchronously, so names written by this instance are never missed. Names created by another instance or
+ * outside the repositories are picked up by a rebuild every setar.lookup.negative-cache.refresh-interval-ms; until
+ * then they can be reported absent. Rebuilds run on the scheduler, never on a request thread, and the current
+ * filter keeps answering until the new one is published. A filter that outgrew its sizing keeps answering too
+ * (it only reports more false positives) and is rebuilt larger on the next run.
+ * Deletes leave the name in the filter, which only costs a false positive. Until a filter is loaded, lookups go
+ * to the store.
+ */
+@Component
+@Slf4j
+public class NegativeLookupCache {
+
+    private static final String COUNTER = "setar.repository.negative-cache";
+    private static final String FPP_GAUGE = "setar.repository.negative-cache.false-positive-rate";
+
+    private final Session session;
+    private final SessionFactory sessionFactory;
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, TypeFilter> filters = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Method> nameGetters = new ConcurrentHashMap<>();
+
+    @Value("${setar.lookup.negative-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${setar.lookup.negative-cache.expected-names:1000000}")
+    private int expectedNames;
+
+    @Value("${setar.lookup.negative-cache.fpp:0.01}")
+    private double fpp;
+
+    private volatile boolean ready;
+
+    private static class TypeFilter {
+        private volatile BloomFilter filter;
+        private boolean loading;
+        private final Set<String> savedWhileLoading = new HashSet<>();
+        private final AtomicLong absent = new AtomicLong();
+        private final AtomicLong falsePositives = new AtomicLong();
+    }
+
+    public NegativeLookupCache(Session session, SessionFactory sessionFactory, MeterRegistry meterRegistry) {
+        this.session = session;
+        this.sessionFactory = sessionFactory;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void register(Class<?> type) {
+        filters.computeIfAbsent(type, t -> {
+            TypeFilter typeFilter = new TypeFilter();
+            Gauge.builder(FPP_GAUGE, typeFilter, NegativeLookupCache::falsePositiveRate)
+                    .tag("repository", t.getSimpleName())
+                    .register(meterRegistry);
+            return typeFilter;
+        });
+    }
+
+    public <T> Optional<T> find(Class<T> type, String discoveredName, Supplier<Optional<T>> loader) {
+        TypeFilter typeFilter = filters.get(type);
+        if (!enabled || typeFilter == null || discoveredName == null) {
+            return loader.get();
+        }
+        BloomFilter filter = typeFilter.filter;
+        if (filter == null) {
+            return loader.get();
+        }
+        if (!filter.mightContain(discoveredName)) {
+            typeFilter.absent.incrementAndGet();
+            count(type, "absent");
+            return Optional.empty();
+        }
+        Optional<T> loaded = loader.get();
+        if (!loaded.isPresent()) {
+            typeFilter.falsePositives.incrementAndGet();
+            count(type, "false-positive");
+        } else {
+            count(type, "present");
+        }
+        return loaded;
+    }
+
+    /**
+     * Share of lookups for absent names that the filter could not rule out.
+     */
+    public double falsePositiveRate(Class<?> type) {
+        TypeFilter typeFilter = filters.get(type);
+        return typeFilter == null ? 0d : falsePositiveRate(typeFilter);
+    }
+
+    private static double falsePositiveRate(TypeFilter typeFilter) {
+        long fp = typeFilter.falsePositives.get();
+        long total = fp + typeFilter.absent.get();
+        return total == 0 ? 0d : (double) fp / total;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        if (!enabled) return;
+        ready = true;
+        for (Map.Entry<Class<?>, TypeFilter> entry : filters.entrySet()) {
+            load(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Rebuild every filter from its label, picking up names created by other instances and resizing saturated
+     * filters; each filter keeps answering until its replacement is published.
+     */
+    @Scheduled(initialDelayString = "${setar.lookup.negative-cache.refresh-interval-ms:300000}",
+            fixedDelayString = "${setar.lookup.negative-cache.refresh-interval-ms:300000}")
+    public void refresh() {
+        if (!enabled || !ready) return;
+        for (Map.Entry<Class<?>, TypeFilter> entry : filters.entrySet()) {
+            load(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @EventListener
+    public void onWrite(RepositoryWriteEvent event) {
+        if (event.getOperation() != RepositoryWriteEvent.Operation.SAVED || event.getEntity() == null) return;
+        String name = discoveredNameOf(event.getEntity());
+        if (name == null) return;
+        for (Map.Entry<Class<?>, TypeFilter> entry : filters.entrySet()) {
+            if (!event.concerns(entry.getKey())) continue;
+            TypeFilter typeFilter = entry.getValue();
+            synchronized (typeFilter) {
+                if (typeFilter.loading) typeFilter.savedWhileLoading.add(name);
+                BloomFilter filter = typeFilter.filter;
+                if (filter == null) continue;
+                filter.put(name);
+                if (filter.isSaturated() && filter.inserted.get() == filter.capacity + 1) {
+                    log.info("Negative cache for {} outgrew its sizing, resizing on the next refresh",
+                            entry.getKey().getSimpleName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Names saved while the label is being read are kept aside and added before the filter is published,
+     * so no write can fall between the snapshot and the first "absent" answer. A failed load keeps the current
+     * filter.
+     */
+    private void load(Class<?> type, TypeFilter typeFilter) {
+        synchronized (typeFilter) {
+            if (typeFilter.loading) return;
+            typeFilter.loading = true;
+            typeFilter.savedWhileLoading.clear();
+        }
+        long start = System.currentTimeMillis();
+        BloomFilter filter = null;
+        try {
+            String label = sessionFactory.metaData().classInfo(type.getName()).neo4jName();
+            List<String> names = new ArrayList<>();
+            Iterable<Map<String, Object>> rows = session.query(
+                    String.format("MATCH (n:`%s`) RETURN n.%s AS name", label, IndexedLookupEngine.DISCOVERED_NAME),
+                    Collections.emptyMap());
+            for (Map<String, Object> row : rows) {
+                Object name = row.get("name");
+                if (name != null) names.add(name.toString());
+            }
+            filter = new BloomFilter(Math.max(expectedNames, names.size() * 2L), fpp);
+            names.forEach(filter::put);
+            log.info("Negative cache for {} loaded with {} names in {} ms", type.getSimpleName(), names.size(),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Could not load negative cache for {}: {}", type.getSimpleName(), e.getMessage());
+        } finally {
+            synchronized (typeFilter) {
+                if (filter != null) {
+                    typeFilter.savedWhileLoading.forEach(filter::put);
+                    typeFilter.filter = filter;
+                }
+                typeFilter.savedWhileLoading.clear();
+                typeFilter.loading = false;
+            }
+        }
+    }
+
+    private String discoveredNameOf(Object entity) {
+        try {
+            Method getter = nameGetters.computeIfAbsent(entity.getClass(), c -> {
+                try {
+                    return c.getMethod("getDiscoveredName");
+                } catch (NoSuchMethodException e) {
+                    return null;
+                }
+            });
+            Object name = getter == null ? null : getter.invoke(entity);
+            return name == null ? null : name.toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void count(Class<?> type, String result) {
+        meterRegistry.counter(COUNTER, "repository", type.getSimpleName(), "result", result).increment();
+    }
+
+    /**
+     * Plain bit-array Bloom filter with double hashing, sized for the expected names and false-positive rate.
+     */
+    static class BloomFilter {
+        private final BitSet bits;
+        private final int size;
+        private final int hashes;
+        private final long capacity;
+        private final AtomicLong inserted = new AtomicLong();
+
+        BloomFilter(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.size = (int) Math.min(Integer.MAX_VALUE - 8, Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+            this.hashes = Math.max(1, (int) Math.round((double) size / capacity * Math.log(2)));
+            this.bits = new BitSet(size);
+        }
+
+        synchronized void put(String value) {
+            long hash = hash64(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                bits.set(index(h1 + i * h2));
+            }
+            inserted.incrementAndGet();
+        }
+
+        synchronized boolean mightContain(String value) {
+            long hash = hash64(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                if (!bits.get(index(h1 + i * h2))) return false;
+            }
+            return true;
+        }
+
+        boolean isSaturated() {
+            return inserted.get() > capacity;
+        }
+
+        private int index(int combined) {
+            return (combined & Integer.MAX_VALUE) % size;
+        }
+
+        private static long hash64(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -7,7 +7,11 @@ import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.ServiceRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductCustomRepository extends ProductRepository {
@@ -16,4 +20,8 @@ public interface ProductCustomRepository extends ProductRepository {
     Optional<Product> findByDiscoveredName(String discoveredName);
 
     Optional<Product> findByProperty(String key, String value);
+
+    List<Product> findAllByProperty(String key, String value);
+    List<Product> findAllByDiscoveredNames(Collection<String> discoveredNames);
+    Stream<Product> stream(Predicate<Product> predicate, int pageSize);
 }
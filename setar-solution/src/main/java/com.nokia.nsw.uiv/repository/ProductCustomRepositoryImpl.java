@@ -13,6 +13,8 @@ import org.springframework.stereotype.Repository;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
@@ -20,42 +22,59 @@ import java.util.stream.StreamSupport;
 public class ProductCustomRepositoryImpl implements ProductCustomRepository {
 
     private final ProductRepository productRepository;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
 
-    public ProductCustomRepositoryImpl(ProductRepository productRepository) {
+    public ProductCustomRepositoryImpl(ProductRepository productRepository, IndexedLookupEngine lookup, RepositoryWriteEvents events) {
         this.productRepository = productRepository;
+        this.lookup = lookup;
+        this.events = events;
+        lookup.register(Product.class);
     }
 
     // ✅ Custom finder methods
     @Override
     public Optional<Product> findByDiscoveredName(String discoveredName) {
-        Iterable<Product> allProducts = productRepository.findAll();
-        return StreamSupport.stream(allProducts.spliterator(), false)
-                .filter(p -> discoveredName.equals(p.getDiscoveredName()))
-                .findFirst();
+        return lookup.findByDiscoveredName(Product.class, discoveredName,
+                () -> StreamSupport.stream(productRepository.findAll().spliterator(), false)
+                        .filter(p -> discoveredName.equals(p.getDiscoveredName()))
+                        .findFirst());
     }
 
     @Override
     public Optional<Product> findByProperty(String key, String value) {
-        Iterable<Product> allProducts = productRepository.findAll();
-        return StreamSupport.stream(allProducts.spliterator(), false)
-                .filter(p -> p.getProperties() != null && value.equals(p.getProperties().get(key)))
-                .findFirst();
+        return lookup.findByProperty(Product.class, key, value, productRepository::findAll, Product::getProperties);
+    }
+
+    @Override
+    public List<Product> findAllByProperty(String key, String value) {
+        return lookup.findAllByProperty(Product.class, key, value, productRepository::findAll, Product::getProperties);
+    }
+
+    @Override
+    public List<Product> findAllByDiscoveredNames(Collection<String> discoveredNames) {
+        return lookup.findAllIn(Product.class, IndexedLookupEngine.DISCOVERED_NAME, discoveredNames);
+    }
+
+    @Override
+    public Stream<Product> stream(Predicate<Product> predicate, int pageSize) {
+        return lookup.stream(Product.class, predicate, pageSize);
     }
 
     // ✅ Delegate CRUD operations
     @Override
     public <S extends Product> S save(S entity) {
-        return productRepository.save(entity);
+        return events.saved(Product.class, productRepository.save(entity));
     }
 
     @Override
     public <S extends Product> Iterable<S> saveAll(Iterable<S> entities) {
-        return productRepository.saveAll(entities);
+        return events.savedAll(Product.class, productRepository.saveAll(entities));
     }
 
     @Override
     public Optional<Product> findById(String id) {
-        return productRepository.findById(id);
+        return lookup.findById(Product.class, id, () -> productRepository.findById(id));
     }
 
     @Override
@@ -71,11 +90,13 @@ public class ProductCustomRepositoryImpl implements ProductCustomRepository {
     @Override
     public void deleteById(String id) {
         productRepository.deleteById(id);
+        events.deletedById(Product.class, id);
     }
 
     @Override
     public void delete(Product entity) {
         productRepository.delete(entity);
+        events.deleted(Product.class, entity);
     }
 
     @Override
@@ -86,11 +107,13 @@ public class ProductCustomRepositoryImpl implements ProductCustomRepository {
     @Override
     public void deleteAll(Iterable<? extends Product> entities) {
         productRepository.deleteAll(entities);
+        events.deletedAll(Product.class, entities);
     }
 
     @Override
     public void deleteAll() {
         productRepository.deleteAll();
+        events.cleared(Product.class);
     }
 
     @Override
@@ -111,7 +134,7 @@ public class ProductCustomRepositoryImpl implements ProductCustomRepository {
     // ✅ Extended methods (delegate or placeholders)
     @Override
     public <S extends Product> S save(S entity, int depth) {
-        return productRepository.save(entity, depth);
+        return events.saved(Product.class, productRepository.save(entity, depth));
     }
 
     @Override
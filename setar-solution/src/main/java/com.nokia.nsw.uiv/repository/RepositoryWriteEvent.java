@@ -0,0 +1,37 @@
+package com.nokia.nsw.uiv.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published synchronously by the custom repositories after every write they delegate to the store.
+ * Listeners that keep derived structures (indexes, caches, allocators) subscribe with @EventListener.
+ */
+@Getter
+@AllArgsConstructor
+public class RepositoryWriteEvent {
+
+    public enum Operation {
+        SAVED,
+        DELETED,
+        DELETED_BY_ID,
+        CLEARED,
+        LDN_UPDATED
+    }
+
+    private final Class<?> type;
+    private final Operation operation;
+    private final Object entity;
+    private final String id;
+    private final String oldLdn;
+    private final String newLdn;
+
+    public boolean concerns(Class<?> candidate) {
+        return candidate.isAssignableFrom(type) || type.isAssignableFrom(candidate);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getEntity(Class<T> as) {
+        return as.isInstance(entity) ? (T) entity : null;
+    }
+}
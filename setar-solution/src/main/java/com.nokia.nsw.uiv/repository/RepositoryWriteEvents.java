@@ -0,0 +1,68 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent.Operation;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Helper used by the *CustomRepositoryImpl classes to announce writes after they reached the store.
+ */
+@Component
+public class RepositoryWriteEvents {
+
+    private final ApplicationEventPublisher publisher;
+
+    public RepositoryWriteEvents(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    public <S> S saved(Class<?> type, S entity) {
+        if (entity != null) {
+            publisher.publishEvent(new RepositoryWriteEvent(type, Operation.SAVED, entity, null, null, null));
+        }
+        return entity;
+    }
+
+    public <S> Iterable<S> savedAll(Class<?> type, Iterable<S> entities) {
+        if (entities != null) {
+            for (S entity : entities) {
+                saved(type, entity);
+            }
+        }
+        return entities;
+    }
+
+    public void deleted(Class<?> type, Object entity) {
+        if (entity != null) {
+            publisher.publishEvent(new RepositoryWriteEvent(type, Operation.DELETED, entity, null, null, null));
+        }
+    }
+
+    public void deletedAll(Class<?> type, Iterable<?> entities) {
+        if (entities != null) {
+            for (Object entity : entities) {
+                deleted(type, entity);
+            }
+        }
+    }
+
+    public void deletedById(Class<?> type, String id) {
+        publisher.publishEvent(new RepositoryWriteEvent(type, Operation.DELETED_BY_ID, null, id, null, null));
+    }
+
+    public void deletedAllById(Class<?> type, Iterable<? extends String> ids) {
+        if (ids != null) {
+            for (String id : ids) {
+                deletedById(type, id);
+            }
+        }
+    }
+
+    public void cleared(Class<?> type) {
+        publisher.publishEvent(new RepositoryWriteEvent(type, Operation.CLEARED, null, null, null, null));
+    }
+
+    public void ldnUpdated(Class<?> type, String oldLdn, String newLdn) {
+        publisher.publishEvent(new RepositoryWriteEvent(type, Operation.LDN_UPDATED, null, null, oldLdn, newLdn));
+    }
+}
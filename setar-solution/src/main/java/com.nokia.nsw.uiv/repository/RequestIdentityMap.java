@@ -0,0 +1,120 @@
+package com.nokia.nsw.uiv.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * First-level cache for repository reads inside one HttpAction.doPost.
+ * While a scope is open on the current thread, repeat reads by id or discoveredName return the instance
+ * loaded the first time. Any write through the custom repositories empties the scope, since saving one entity
+ * can change the relationships of entities of other types, so a read after a write always goes back to the store. Outside a scope every call goes straight through.
+ */
+@Component
+@Slf4j
+public class RequestIdentityMap {
+
+    private static final String HITS_SUMMARY = "setar.request.identity-map.hits";
+    private static final String MISSES_SUMMARY = "setar.request.identity-map.misses";
+
+    private static class Scope {
+        private final String action;
+        private final Map<Class<?>, Map<String, Object>> entries = new HashMap<>();
+        private int depth = 1;
+        private long hits;
+        private long misses;
+
+        private Scope(String action) {
+            this.action = action;
+        }
+    }
+
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+    private final MeterRegistry meterRegistry;
+
+    public RequestIdentityMap(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Open a scope for the action on the current thread. Nested opens (an action calling another one)
+     * join the outer scope.
+     */
+    public void open(String action) {
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.depth++;
+            return;
+        }
+        current.set(new Scope(action));
+    }
+
+    /**
+     * Close the scope opened by {@link #open(String)} and record its hit/miss counts per action.
+     */
+    public void close() {
+        Scope scope = current.get();
+        if (scope == null) return;
+        if (--scope.depth > 0) return;
+        current.remove();
+        summary(HITS_SUMMARY, scope.action).record(scope.hits);
+        summary(MISSES_SUMMARY, scope.action).record(scope.misses);
+        log.debug("Identity map for {}: {} hits, {} misses", scope.action, scope.hits, scope.misses);
+    }
+
+    public <T> Optional<T> findByDiscoveredName(Class<T> type, String discoveredName, Supplier<Optional<T>> loader) {
+        return find(type, "name:" + discoveredName, loader);
+    }
+
+    public <T> Optional<T> findById(Class<T> type, String id, Supplier<Optional<T>> loader) {
+        return find(type, "id:" + id, loader);
+    }
+
+    /**
+     * Seed the open scope with an entity loaded outside findByDiscoveredName (bulk resolution).
+     */
+    public <T> void remember(Class<T> type, String discoveredName, T entity) {
+        Scope scope = current.get();
+        if (scope == null || discoveredName == null || entity == null) return;
+        scope.entries.computeIfAbsent(type, t -> new HashMap<>()).putIfAbsent("name:" + discoveredName, entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> find(Class<T> type, String key, Supplier<Optional<T>> loader) {
+        Scope scope = current.get();
+        if (scope == null) {
+            return loader.get();
+        }
+        Map<String, Object> entries = scope.entries.computeIfAbsent(type, t -> new HashMap<>());
+        Object cached = entries.get(key);
+        if (cached != null) {
+            scope.hits++;
+            return Optional.of((T) cached);
+        }
+        scope.misses++;
+        Optional<T> loaded = loader.get();
+        loaded.ifPresent(entity -> entries.put(key, entity));
+        return loaded;
+    }
+
+    @EventListener
+    public void onWrite(RepositoryWriteEvent event) {
+        Scope scope = current.get();
+        if (scope == null) return;
+        // a write of one type changes the relationships held by entities of other types as well
+        scope.entries.clear();
+    }
+
+    private DistributionSummary summary(String name, String action) {
+        return DistributionSummary.builder(name)
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+}
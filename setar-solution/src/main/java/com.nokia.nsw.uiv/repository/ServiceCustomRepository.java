@@ -4,7 +4,11 @@ import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.ServiceRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Repository
 public interface ServiceCustomRepository extends ServiceRepository {
@@ -13,4 +17,13 @@ public interface ServiceCustomRepository extends ServiceRepository {
     Optional<Service> findByDiscoveredName(String discoveredName);
 
     Optional<Service> findByProperty(String key, String value);
+
+    List<Service> findAllByProperty(String key, String value);
+    List<Service> findAllByDiscoveredNames(Collection<String> discoveredNames);
+    Stream<Service> stream(Predicate<Service> predicate, int pageSize);
+
+    // Kind-scoped finders, the kind predicate is evaluated by the store
+    List<Service> findAllByKind(String kind);
+
+    Stream<Service> streamByKind(String kind);
 }
@@ -3,7 +3,12 @@ package com.nokia.nsw.uiv.repository;
 import com.nokia.nsw.uiv.datatype.Neo4jDomainObject;
 import com.nokia.nsw.uiv.model.service.Service;
 import com.nokia.nsw.uiv.model.service.ServiceRepository;
+import com.nokia.nsw.uiv.utils.Constants;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,10 +16,16 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.query.FluentQuery;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
@@ -22,43 +33,110 @@ import java.util.stream.StreamSupport;
 public class ServiceCustomRepositoryImpl
         implements ServiceCustomRepository {
 
+    private static final List<String> KINDS = Arrays.asList(
+            Constants.SETAR_KIND_SETAR_CFS, Constants.SETAR_KIND_SETAR_RFS, Constants.SETAR_KIND_SETAR_PRODUCT);
+
     private final ServiceRepository repo;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
 
-    public ServiceCustomRepositoryImpl(ServiceRepository repo) {
+    public ServiceCustomRepositoryImpl(ServiceRepository repo, IndexedLookupEngine lookup, RepositoryWriteEvents events) {
         this.repo = repo;
+        this.lookup = lookup;
+        this.events = events;
+        lookup.register(Service.class);
+        lookup.registerIndex(Service.class, IndexedLookupEngine.KIND);
     }
 
     // ********** CUSTOM METHODS (DO NOT CHANGE) **********
 
     @Override
     public Optional<Service> findByDiscoveredName(String discoveredName) {
-        return StreamSupport.stream(repo.findAll().spliterator(), false)
-                .filter(s -> discoveredName.equals(s.getDiscoveredName()))
-                .findFirst();
+        return lookup.findByDiscoveredName(Service.class, discoveredName,
+                () -> StreamSupport.stream(repo.findAll().spliterator(), false)
+                        .filter(s -> discoveredName.equals(s.getDiscoveredName()))
+                        .findFirst());
     }
 
     @Override
     public Optional<Service> findByProperty(String key, String value) {
-        return StreamSupport.stream(repo.findAll().spliterator(), false)
-                .filter(s -> value.equals(s.getProperties().get(key)))
-                .findFirst();
+        return lookup.findByProperty(Service.class, key, value, repo::findAll, Service::getProperties);
+    }
+
+    @Override
+    public List<Service> findAllByProperty(String key, String value) {
+        return lookup.findAllByProperty(Service.class, key, value, repo::findAll, Service::getProperties);
+    }
+
+    @Override
+    public List<Service> findAllByDiscoveredNames(Collection<String> discoveredNames) {
+        return lookup.findAllIn(Service.class, IndexedLookupEngine.DISCOVERED_NAME, discoveredNames);
+    }
+
+    @Override
+    public Stream<Service> stream(Predicate<Service> predicate, int pageSize) {
+        return lookup.stream(Service.class, predicate, pageSize);
+    }
+
+    @Override
+    public List<Service> findAllByKind(String kind) {
+        if (kind == null) return new ArrayList<>();
+        return lookup.findAll(Service.class, kindFilter(kind),
+                () -> StreamSupport.stream(repo.findAll().spliterator(), false)
+                        .filter(s -> kind.equalsIgnoreCase(s.getKind()))
+                        .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Stream<Service> streamByKind(String kind) {
+        if (kind == null) return Stream.empty();
+        return lookup.stream(Service.class, kindFilter(kind));
+    }
+
+    // kinds are matched ignoring case, as the scans these finders replaced did: stored kinds are written in the
+    // canonical spelling, so the index answers an exact match on it
+    private static Filter kindFilter(String kind) {
+        return new Filter(IndexedLookupEngine.KIND, ComparisonOperator.EQUALS, canonicalKind(kind));
+    }
+
+    private static String canonicalKind(String kind) {
+        if (kind == null) return null;
+        for (String canonical : KINDS) {
+            if (canonical.equalsIgnoreCase(kind)) return canonical;
+        }
+        return kind;
+    }
+
+    private static <S extends Service> S normalized(S entity) {
+        if (entity != null) entity.setKind(canonicalKind(entity.getKind()));
+        return entity;
+    }
+
+    private static <S extends Service> Iterable<S> normalizedAll(Iterable<S> entities) {
+        if (entities != null) entities.forEach(ServiceCustomRepositoryImpl::normalized);
+        return entities;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void normalizeStoredKinds() {
+        lookup.normalizeCase(Service.class, IndexedLookupEngine.KIND, KINDS);
     }
 
     // ********** BASIC CRUD **********
 
     @Override
     public <S extends Service> S save(S entity) {
-        return repo.save(entity);
+        return events.saved(Service.class, repo.save(normalized(entity)));
     }
 
     @Override
     public <S extends Service> Iterable<S> saveAll(Iterable<S> entities) {
-        return repo.saveAll(entities);
+        return events.savedAll(Service.class, repo.saveAll(normalizedAll(entities)));
     }
 
     @Override
     public Optional<Service> findById(String id) {
-        return repo.findById(id);
+        return lookup.findById(Service.class, id, () -> repo.findById(id));
     }
 
     @Override
@@ -74,26 +152,31 @@ public class ServiceCustomRepositoryImpl
     @Override
     public void deleteById(String id) {
         repo.deleteById(id);
+        events.deletedById(Service.class, id);
     }
 
     @Override
     public void delete(Service entity) {
         repo.delete(entity);
+        events.deleted(Service.class, entity);
     }
 
     @Override
     public void deleteAllById(Iterable<? extends String> ids) {
         repo.deleteAllById(ids);
+        events.deletedAllById(Service.class, ids);
     }
 
     @Override
     public void deleteAll(Iterable<? extends Service> entities) {
         repo.deleteAll(entities);
+        events.deletedAll(Service.class, entities);
     }
 
     @Override
     public void deleteAll() {
         repo.deleteAll();
+        events.cleared(Service.class);
     }
 
     @Override
@@ -130,12 +213,12 @@ public class ServiceCustomRepositoryImpl
 
     @Override
     public <S extends Service> S save(S entity, int depth) {
-        return repo.save(entity, depth);
+        return events.saved(Service.class, repo.save(normalized(entity), depth));
     }
 
     @Override
     public <S extends Service> Iterable<S> save(Iterable<S> entities, int depth) {
-        return repo.save(entities, depth);
+        return events.savedAll(Service.class, repo.save(normalizedAll(entities), depth));
     }
 
     @Override
@@ -167,12 +250,12 @@ public class ServiceCustomRepositoryImpl
 
     @Override
     public <S extends Service> S save(S entity, String ctx) {
-        return repo.save(entity, ctx);
+        return events.saved(Service.class, repo.save(normalized(entity), ctx));
     }
 
     @Override
     public <S extends Service> Iterable<S> saveAll(Iterable<S> entities, String ctx) {
-        return repo.saveAll(entities, ctx);
+        return events.savedAll(Service.class, repo.saveAll(normalizedAll(entities), ctx));
     }
 
     @Override
@@ -193,31 +276,35 @@ public class ServiceCustomRepositoryImpl
     @Override
     public void deleteById(String id, String ctx) {
         repo.deleteById(id, ctx);
+        events.deletedById(Service.class, id);
     }
 
     @Override
     public void delete(Service entity, String ctx) {
         repo.delete(entity, ctx);
+        events.deleted(Service.class, entity);
     }
 
     @Override
     public void deleteAll(Iterable<? extends Service> entities, String ctx) {
         repo.deleteAll(entities, ctx);
+        events.deletedAll(Service.class, entities);
     }
 
     @Override
     public void deleteAll(String ctx) {
         repo.deleteAll(ctx);
+        events.cleared(Service.class);
     }
 
     @Override
     public <S extends Service> S save(S s, int depth, String ctx) {
-        return repo.save(s, depth, ctx);
+        return events.saved(Service.class, repo.save(normalized(s), depth, ctx));
     }
 
     @Override
     public <S extends Service> Iterable<S> save(Iterable<S> entities, int depth, String ctx) {
-        return repo.save(entities, depth, ctx);
+        return events.savedAll(Service.class, repo.save(normalizedAll(entities), depth, ctx));
     }
 
     @Override
@@ -319,11 +406,13 @@ public class ServiceCustomRepositoryImpl
     @Override
     public void updateLdn(String old, String newVal, String ctx) {
         repo.updateLdn(old, newVal, ctx);
+        events.ldnUpdated(Service.class, old, newVal);
     }
 
     @Override
     public void updateLdn(String old, String newVal, String ctx, String mode) {
         repo.updateLdn(old, newVal, ctx, mode);
+        events.ldnUpdated(Service.class, old, newVal);
     }
 
     @Override
@@ -358,13 +447,13 @@ public class ServiceCustomRepositoryImpl
 
     @Override
     public <S extends Service> S batchSave(S s, int depth, String ctx) {
-        return repo.batchSave(s, depth, ctx);
+        return events.saved(Service.class, repo.batchSave(s, depth, ctx));
     }
 
     @Override
     public <S extends Service> Iterable<S> batchSaveAll(
             Iterable<S> iterable, int depth, String ctx) {
-        return repo.batchSaveAll(iterable, depth, ctx);
+        return events.savedAll(Service.class, repo.batchSaveAll(iterable, depth, ctx));
     }
 
     // ********** SPRING DATA EXAMPLE API **********
@@ -0,0 +1,308 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.model.service.Product;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.utils.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reverse index from serviceID to the Subscription, Product, CFS and RFS nodes that carry it:
+ * Subscription {subscriber}_{serviceId}[_{ontSN}] (or its serviceID property), Product {subscriber}_{subtype}_{serviceId}
+ * and [RFS_|CFS_]{subscriber}_{serviceId}[_{ontSN}].
+ * Each node is also filed under its composite "{subscriber}_{serviceId}" form, the one QueryService and
+ * ModifyServiceId accept. Entries are keyed by localName so a rename moves the node to its new serviceID instead
+ * of leaving the old one behind. The index is built at startup and kept current from {@link RepositoryWriteEvent}s;
+ * writes it cannot map to an entry mark it stale and the next query rebuilds it.
+ */
+@Component
+@Slf4j
+public class ServiceIdIndex {
+
+    @Getter
+    @AllArgsConstructor
+    static class Entry {
+        private final String kind;
+        private final String name;
+        private final String serviceId;
+        private final String composite;
+    }
+
+    private static class State {
+        private final Map<String, Entry> byKey = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> byServiceId = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> byComposite = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Nodes of one serviceID, loaded with one findAllByDiscoveredNames per repository.
+     * Names are sorted so callers walk the members in a stable order.
+     */
+    @Getter
+    public static class Group {
+        private final String serviceId;
+        private final List<Subscription> subscriptions;
+        private final List<Product> products;
+        private final List<Service> cfs;
+        private final List<Service> rfs;
+
+        private Group(String serviceId, List<Subscription> subscriptions, List<Product> products,
+                      List<Service> cfs, List<Service> rfs) {
+            this.serviceId = serviceId;
+            this.subscriptions = subscriptions;
+            this.products = products;
+            this.cfs = cfs;
+            this.rfs = rfs;
+        }
+
+        public boolean isEmpty() {
+            return subscriptions.isEmpty() && products.isEmpty() && cfs.isEmpty() && rfs.isEmpty();
+        }
+
+        public Optional<Subscription> findSubscription(String name) {
+            return find(subscriptions, Subscription::getDiscoveredName, name);
+        }
+
+        public Optional<Product> findProduct(String name) {
+            return find(products, Product::getDiscoveredName, name);
+        }
+
+        public Optional<Service> findService(String name) {
+            Optional<Service> found = find(cfs, Service::getDiscoveredName, name);
+            return found.isPresent() ? found : find(rfs, Service::getDiscoveredName, name);
+        }
+
+        private static <T> Optional<T> find(List<T> members, Function<T, String> nameOf, String name) {
+            if (name == null) return Optional.empty();
+            return members.stream().filter(m -> name.equals(nameOf.apply(m))).findFirst();
+        }
+    }
+
+    private final IndexedLookupEngine lookup;
+    private final SubscriptionCustomRepository subscriptionRepository;
+    private final ProductCustomRepository productRepository;
+    private final ServiceCustomRepository serviceRepository;
+    private volatile State state = new State();
+    private volatile boolean stale = true;
+
+    public ServiceIdIndex(IndexedLookupEngine lookup,
+                          SubscriptionCustomRepository subscriptionRepository,
+                          ProductCustomRepository productRepository,
+                          ServiceCustomRepository serviceRepository) {
+        this.lookup = lookup;
+        this.subscriptionRepository = subscriptionRepository;
+        this.productRepository = productRepository;
+        this.serviceRepository = serviceRepository;
+    }
+
+    /**
+     * Names of the nodes of one kind carrying the serviceID, matched case-insensitively. A value containing an
+     * underscore is taken as "{subscriber}_{serviceId}"; otherwise it is compared with the bare serviceID.
+     */
+    public List<String> findNames(String kind, String serviceId) {
+        if (serviceId == null) return new ArrayList<>();
+        State s = current();
+        Map<String, Set<String>> map = serviceId.contains(Constants.UNDER_SCORE) ? s.byComposite : s.byServiceId;
+        return map.getOrDefault(serviceId.toUpperCase(Locale.ROOT), Collections.emptySet()).stream()
+                .map(s.byKey::get)
+                .filter(e -> e != null && e.getKind().equalsIgnoreCase(kind))
+                .map(Entry::getName)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Load every Subscription, Product, CFS and RFS of the serviceID; the work is proportional to the matches.
+     */
+    public Group load(String serviceId) {
+        List<String> subscriptionNames = findNames(Constants.SETAR_KIND_SETAR_SUBSCRIPTION, serviceId);
+        List<String> productNames = findNames(Constants.SETAR_KIND_SETAR_PRODUCT, serviceId);
+        List<String> cfsNames = findNames(Constants.SETAR_KIND_SETAR_CFS, serviceId);
+        List<String> rfsNames = findNames(Constants.SETAR_KIND_SETAR_RFS, serviceId);
+
+        Set<String> serviceNames = new LinkedHashSet<>(cfsNames);
+        serviceNames.addAll(rfsNames);
+        Map<String, Service> services = serviceNames.isEmpty() ? new HashMap<>()
+                : serviceRepository.findAllByDiscoveredNames(serviceNames).stream()
+                .collect(Collectors.toMap(Service::getDiscoveredName, Function.identity(), (a, b) -> a));
+
+        return new Group(serviceId,
+                loadAll(subscriptionNames, subscriptionRepository::findAllByDiscoveredNames, Subscription::getDiscoveredName),
+                loadAll(productNames, productRepository::findAllByDiscoveredNames, Product::getDiscoveredName),
+                ordered(cfsNames, services),
+                ordered(rfsNames, services));
+    }
+
+    private static <T> List<T> loadAll(List<String> names, Function<Collection<String>, List<T>> finder,
+                                       Function<T, String> nameOf) {
+        if (names.isEmpty()) return new ArrayList<>();
+        Map<String, T> loaded = finder.apply(names).stream()
+                .collect(Collectors.toMap(nameOf, Function.identity(), (a, b) -> a));
+        return ordered(names, loaded);
+    }
+
+    private static <T> List<T> ordered(List<String> names, Map<String, T> loaded) {
+        return names.stream().map(loaded::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        State fresh = new State();
+        for (String kind : Arrays.asList(Constants.SETAR_KIND_SETAR_RFS, Constants.SETAR_KIND_SETAR_CFS)) {
+            // the rebuild reads the whole label anyway, so match the kind as entryOf does, ignoring case
+            Filter ofKind = new Filter(IndexedLookupEngine.KIND, ComparisonOperator.EQUALS, kind);
+            ofKind.ignoreCase();
+            try (Stream<Service> services = lookup.stream(Service.class, ofKind, 0)) {
+                services.forEach(s -> put(fresh, entryOf(s)));
+            }
+        }
+        try (Stream<Subscription> subscriptions = lookup.stream(Subscription.class, null, 0)) {
+            subscriptions.forEach(s -> put(fresh, entryOf(s)));
+        }
+        try (Stream<Product> products = lookup.stream(Product.class, null, 0)) {
+            products.forEach(p -> put(fresh, entryOf(p)));
+        }
+        state = fresh;
+        stale = false;
+        log.info("ServiceId index built with {} entries in {} ms", fresh.byKey.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public synchronized void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(Service.class) && !event.concerns(Subscription.class) && !event.concerns(Product.class)) {
+            return;
+        }
+        switch (event.getOperation()) {
+            case SAVED:
+                String key = keyOf(event.getEntity());
+                remove(state, key);
+                put(state, entryOf(event.getEntity()));
+                break;
+            case DELETED:
+                remove(state, keyOf(event.getEntity()));
+                break;
+            default:
+                stale = true;
+        }
+    }
+
+    private State current() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) rebuild();
+            }
+        }
+        return state;
+    }
+
+    private static void put(State s, Map.Entry<String, Entry> keyed) {
+        if (keyed == null || keyed.getKey() == null) return;
+        String key = keyed.getKey();
+        Entry entry = keyed.getValue();
+        s.byKey.put(key, entry);
+        link(s.byServiceId, entry.getServiceId(), key);
+        link(s.byComposite, entry.getComposite(), key);
+    }
+
+    private static void remove(State s, String key) {
+        if (key == null) return;
+        Entry old = s.byKey.remove(key);
+        if (old == null) return;
+        unlink(s.byServiceId, old.getServiceId(), key);
+        unlink(s.byComposite, old.getComposite(), key);
+    }
+
+    /**
+     * Where each kind keeps its serviceID; returns null for nodes that do not carry one. Service kinds are
+     * matched ignoring case and filed under the canonical spelling.
+     */
+    static Map.Entry<String, Entry> entryOf(Object entity) {
+        if (entity instanceof Product) {
+            Product product = (Product) entity;
+            String name = product.getDiscoveredName();
+            String[] parts = name == null ? new String[0] : name.split(Constants.UNDER_SCORE, -1);
+            if (parts.length < 3) return null;
+            return keyed(product.getLocalName(), new Entry(Constants.SETAR_KIND_SETAR_PRODUCT, name, parts[2],
+                    parts[0] + Constants.UNDER_SCORE + parts[2]));
+        }
+        if (entity instanceof Service) {
+            Service service = (Service) entity;
+            String kind;
+            if (Constants.SETAR_KIND_SETAR_RFS.equalsIgnoreCase(service.getKind())) {
+                kind = Constants.SETAR_KIND_SETAR_RFS;
+            } else if (Constants.SETAR_KIND_SETAR_CFS.equalsIgnoreCase(service.getKind())) {
+                kind = Constants.SETAR_KIND_SETAR_CFS;
+            } else {
+                return null;
+            }
+            ServiceNameTokenIndex.Tokens tokens = ServiceNameTokenIndex.parse(kind, service.getDiscoveredName());
+            if (tokens == null) return null;
+            return keyed(service.getLocalName(), new Entry(kind, service.getDiscoveredName(), tokens.getServiceId(),
+                    between(service.getDiscoveredName())));
+        }
+        if (entity instanceof Subscription) {
+            Subscription subscription = (Subscription) entity;
+            String name = subscription.getDiscoveredName();
+            String[] parts = name == null ? new String[0] : name.split(Constants.UNDER_SCORE, -1);
+            if (parts.length < 2) return null;
+            Object property = subscription.getProperties() == null ? null : subscription.getProperties().get("serviceID");
+            String serviceId = property != null && !property.toString().isEmpty() ? property.toString() : parts[1];
+            return keyed(subscription.getLocalName(), new Entry(Constants.SETAR_KIND_SETAR_SUBSCRIPTION, name, serviceId,
+                    parts[0] + Constants.UNDER_SCORE + serviceId));
+        }
+        return null;
+    }
+
+    /**
+     * The composite serviceID of a CFS/RFS is everything between the first and last underscore of its name,
+     * the same comparison QueryService and ModifyServiceId applied when they scanned the CFS names.
+     */
+    private static String between(String name) {
+        int first = name.indexOf(Constants.UNDER_SCORE);
+        int last = name.lastIndexOf(Constants.UNDER_SCORE);
+        return first >= 0 && last > first ? name.substring(first + 1, last) : null;
+    }
+
+    private static String keyOf(Object entity) {
+        if (entity instanceof Product) return keyOf(((Product) entity).getLocalName(), ((Product) entity).getDiscoveredName());
+        if (entity instanceof Service) return keyOf(((Service) entity).getLocalName(), ((Service) entity).getDiscoveredName());
+        if (entity instanceof Subscription) return keyOf(((Subscription) entity).getLocalName(), ((Subscription) entity).getDiscoveredName());
+        return null;
+    }
+
+    private static Map.Entry<String, Entry> keyed(String localName, Entry entry) {
+        return new AbstractMap.SimpleImmutableEntry<>(keyOf(localName, entry.getName()), entry);
+    }
+
+    private static void link(Map<String, Set<String>> map, String token, String key) {
+        if (token == null) return;
+        map.computeIfAbsent(token.toUpperCase(Locale.ROOT), k -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private static void unlink(Map<String, Set<String>> map, String token, String key) {
+        if (token == null) return;
+        map.computeIfPresent(token.toUpperCase(Locale.ROOT), (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static String keyOf(String localName, String discoveredName) {
+        return localName != null ? localName : discoveredName;
+    }
+}
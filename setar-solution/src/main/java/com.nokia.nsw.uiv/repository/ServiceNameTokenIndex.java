@@ -0,0 +1,230 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.utils.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index over the structured names of RFS, CFS and Subscription nodes:
+ * [RFS_|CFS_]{subscriber}_{serviceId}[_{ontSN}].
+ * Names are parsed once when the entity is written, so "all RFS of subscriber X", "everything with serviceId Y"
+ * and "everything on ONT Z" are answered in O(result) instead of splitting every name of the label.
+ * Entries are keyed by localName, which survives the discoveredName renames done by ModifyServiceId.
+ * The index is built at startup and kept current from {@link RepositoryWriteEvent}s; writes it cannot map to
+ * an entry (deleteById, deleteAll, updateLdn) mark it stale and the next query rebuilds it.
+ */
+@Component
+@Slf4j
+public class ServiceNameTokenIndex {
+
+    private static final String RFS_PREFIX = "RFS" + Constants.UNDER_SCORE;
+    private static final String CFS_PREFIX = "CFS" + Constants.UNDER_SCORE;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Tokens {
+        private final String kind;
+        private final String name;
+        private final String subscriber;
+        private final String serviceId;
+        private final String ontSN;
+    }
+
+    private static class State {
+        private final Map<String, Tokens> byKey = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> bySubscriber = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> byServiceId = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> byOnt = new ConcurrentHashMap<>();
+    }
+
+    private final IndexedLookupEngine lookup;
+    private volatile State state = new State();
+    private volatile boolean stale = true;
+
+    public ServiceNameTokenIndex(IndexedLookupEngine lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Split a name into its tokens, the same positions the actions used to read after split("_").
+     * Returns null for names that do not follow the convention.
+     */
+    public static Tokens parse(String kind, String name) {
+        if (name == null) return null;
+        String body = name;
+        if (body.startsWith(RFS_PREFIX) || body.startsWith(CFS_PREFIX)) {
+            body = body.substring(RFS_PREFIX.length());
+        }
+        String[] parts = body.split(Constants.UNDER_SCORE, -1);
+        if (parts.length < 2) return null;
+        return new Tokens(kind, name, parts[0], parts[1], parts.length > 2 ? parts[2] : null);
+    }
+
+    public List<Tokens> findBySubscriber(String kind, String subscriber) {
+        return query(s -> s.bySubscriber, kind, subscriber);
+    }
+
+    public List<Tokens> findByServiceId(String kind, String serviceId) {
+        return query(s -> s.byServiceId, kind, serviceId);
+    }
+
+    public List<Tokens> findByOnt(String kind, String ontSN) {
+        return query(s -> s.byOnt, kind, ontSN);
+    }
+
+    /**
+     * serviceId as QueryService/ModifyServiceId accept it: either the bare serviceId token, or
+     * "{subscriber}_{serviceId}" compared with everything between the first and last underscore of the name.
+     */
+    public List<Tokens> findByServiceIdOrComposite(String kind, String serviceId) {
+        if (serviceId == null) return new ArrayList<>();
+        if (!serviceId.contains(Constants.UNDER_SCORE)) {
+            return findByServiceId(kind, serviceId);
+        }
+        String subscriber = serviceId.substring(0, serviceId.indexOf(Constants.UNDER_SCORE));
+        return findBySubscriber(kind, subscriber).stream()
+                .filter(t -> {
+                    String name = t.getName();
+                    int first = name.indexOf(Constants.UNDER_SCORE);
+                    int last = name.lastIndexOf(Constants.UNDER_SCORE);
+                    return first >= 0 && last > first && name.substring(first + 1, last).equalsIgnoreCase(serviceId);
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tokens are matched case-insensitively; callers needing an exact match compare the returned tokens.
+     */
+    private List<Tokens> query(Function<State, Map<String, Set<String>>> tokenMap, String kind, String token) {
+        if (token == null) return new ArrayList<>();
+        State s = current();
+        return tokenMap.apply(s).getOrDefault(key(kind, token), Collections.emptySet()).stream()
+                .map(s.byKey::get)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparing(Tokens::getName))
+                .collect(Collectors.toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        State fresh = new State();
+        for (String kind : Arrays.asList(Constants.SETAR_KIND_SETAR_RFS, Constants.SETAR_KIND_SETAR_CFS)) {
+            try (Stream<Service> services = lookup.stream(Service.class,
+                    new Filter(IndexedLookupEngine.KIND, ComparisonOperator.EQUALS, kind), 0)) {
+                services.forEach(s -> put(fresh, keyOf(s.getLocalName(), s.getDiscoveredName()), kind, s.getDiscoveredName()));
+            }
+        }
+        try (Stream<Subscription> subscriptions = lookup.stream(Subscription.class, null, 0)) {
+            subscriptions.forEach(s -> put(fresh, keyOf(s.getLocalName(), s.getDiscoveredName()),
+                    Constants.SETAR_KIND_SETAR_SUBSCRIPTION, s.getDiscoveredName()));
+        }
+        state = fresh;
+        stale = false;
+        log.info("Service name token index built with {} entries in {} ms", fresh.byKey.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public synchronized void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(Service.class) && !event.concerns(Subscription.class)) return;
+        switch (event.getOperation()) {
+            case SAVED:
+                index(event.getEntity());
+                break;
+            case DELETED:
+                unindex(event.getEntity());
+                break;
+            default:
+                stale = true;
+        }
+    }
+
+    private State current() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) rebuild();
+            }
+        }
+        return state;
+    }
+
+    private void index(Object entity) {
+        if (entity instanceof Service) {
+            Service service = (Service) entity;
+            String key = keyOf(service.getLocalName(), service.getDiscoveredName());
+            remove(state, key);
+            if (Constants.SETAR_KIND_SETAR_RFS.equals(service.getKind()) || Constants.SETAR_KIND_SETAR_CFS.equals(service.getKind())) {
+                put(state, key, service.getKind(), service.getDiscoveredName());
+            }
+        } else if (entity instanceof Subscription) {
+            Subscription subscription = (Subscription) entity;
+            String key = keyOf(subscription.getLocalName(), subscription.getDiscoveredName());
+            remove(state, key);
+            put(state, key, Constants.SETAR_KIND_SETAR_SUBSCRIPTION, subscription.getDiscoveredName());
+        }
+    }
+
+    private void unindex(Object entity) {
+        if (entity instanceof Service) {
+            remove(state, keyOf(((Service) entity).getLocalName(), ((Service) entity).getDiscoveredName()));
+        } else if (entity instanceof Subscription) {
+            remove(state, keyOf(((Subscription) entity).getLocalName(), ((Subscription) entity).getDiscoveredName()));
+        }
+    }
+
+    private static void put(State s, String key, String kind, String name) {
+        Tokens tokens = parse(kind, name);
+        if (key == null || tokens == null) return;
+        s.byKey.put(key, tokens);
+        link(s.bySubscriber, key(kind, tokens.getSubscriber()), key);
+        link(s.byServiceId, key(kind, tokens.getServiceId()), key);
+        if (tokens.getOntSN() != null) {
+            link(s.byOnt, key(kind, tokens.getOntSN()), key);
+        }
+    }
+
+    private static void remove(State s, String key) {
+        if (key == null) return;
+        Tokens old = s.byKey.remove(key);
+        if (old == null) return;
+        unlink(s.bySubscriber, key(old.getKind(), old.getSubscriber()), key);
+        unlink(s.byServiceId, key(old.getKind(), old.getServiceId()), key);
+        if (old.getOntSN() != null) {
+            unlink(s.byOnt, key(old.getKind(), old.getOntSN()), key);
+        }
+    }
+
+    private static void link(Map<String, Set<String>> map, String tokenKey, String key) {
+        map.computeIfAbsent(tokenKey, k -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private static void unlink(Map<String, Set<String>> map, String tokenKey, String key) {
+        map.computeIfPresent(tokenKey, (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static String keyOf(String localName, String discoveredName) {
+        return localName != null ? localName : discoveredName;
+    }
+
+    private static String key(String kind, String token) {
+        return kind + "|" + token.toUpperCase(Locale.ROOT);
+    }
+}
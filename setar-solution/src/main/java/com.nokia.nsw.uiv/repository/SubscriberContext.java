@@ -0,0 +1,167 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.model.common.party.Customer;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.model.service.Product;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.utils.Constants;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only view of the Customer / Subscription / Product / CFS / RFS / ONT / OLT / VLAN subgraph around one
+ * subscriber, serviceId and ontSN, as loaded by {@link SubscriberContextLoader}.
+ * Every lookup is answered from the loaded entities; nothing here goes back to the store. Lists are ordered by
+ * discoveredName, the order the repository streams return.
+ */
+public final class SubscriberContext {
+
+    @Getter
+    private final String subscriber;
+    @Getter
+    private final String serviceId;
+    @Getter
+    private final String ontSN;
+    @Getter
+    private final String potsNumber;
+    @Getter
+    private final Set<SubscriberContextLoader.Part> parts;
+
+    private final Map<String, Customer> customers;
+    private final Map<String, Subscription> subscriptions;
+    private final Map<String, Product> products;
+    private final Map<String, Service> services;
+    private final Map<String, LogicalDevice> devices;
+    private final Map<String, LogicalInterface> interfaces;
+
+    SubscriberContext(SubscriberContextLoader.Scope scope,
+                      Map<String, Customer> customers,
+                      Map<String, Subscription> subscriptions,
+                      Map<String, Product> products,
+                      Map<String, Service> services,
+                      Map<String, LogicalDevice> devices,
+                      Map<String, LogicalInterface> interfaces) {
+        this.subscriber = scope.getSubscriber();
+        this.serviceId = scope.getServiceId();
+        this.ontSN = scope.getOntSN();
+        this.potsNumber = scope.getPotsNumber();
+        this.parts = Collections.unmodifiableSet(EnumSet.copyOf(scope.getParts()));
+        this.customers = Collections.unmodifiableMap(new TreeMap<>(customers));
+        this.subscriptions = Collections.unmodifiableMap(new TreeMap<>(subscriptions));
+        this.products = Collections.unmodifiableMap(new TreeMap<>(products));
+        this.services = Collections.unmodifiableMap(new TreeMap<>(services));
+        this.devices = Collections.unmodifiableMap(new TreeMap<>(devices));
+        this.interfaces = Collections.unmodifiableMap(new TreeMap<>(interfaces));
+    }
+
+    public Optional<Customer> customer(String name) {
+        return find(customers, name);
+    }
+
+    public List<Customer> customersContaining(String fragment) {
+        return containing(customers, fragment);
+    }
+
+    public Optional<Subscription> subscription(String name) {
+        return find(subscriptions, name);
+    }
+
+    public List<Subscription> subscriptionsContaining(String fragment) {
+        return containing(subscriptions, fragment);
+    }
+
+    /**
+     * Loaded subscriptions matching the predicate. Besides the ones named after the subscriber or the ONT this
+     * covers the subscriptions whose serviceSN / macAddress is the ontSN or an SN / MAC of the subscriber's own
+     * subscriptions, and the first IPTV and first Broadband subscription of the store.
+     */
+    public List<Subscription> subscriptions(Predicate<Subscription> predicate) {
+        return subscriptions.values().stream().filter(predicate).collect(Collectors.toList());
+    }
+
+    public Optional<Service> service(String name) {
+        return find(services, name);
+    }
+
+    public Optional<LogicalDevice> device(String name) {
+        return find(devices, name);
+    }
+
+    public List<LogicalDevice> devices(Predicate<LogicalDevice> predicate) {
+        return devices.values().stream().filter(predicate).collect(Collectors.toList());
+    }
+
+    /**
+     * The ONT device "ONT" + ontSN, if it is part of the context.
+     */
+    public Optional<LogicalDevice> ont(String ontSN) {
+        return ontSN == null ? Optional.empty() : device("ONT" + ontSN);
+    }
+
+    public Optional<LogicalDevice> ont() {
+        return ont(ontSN);
+    }
+
+    /**
+     * Parent OLT of the given ONT, following its oltPosition property.
+     */
+    public Optional<LogicalDevice> oltOf(LogicalDevice ont) {
+        Object position = ont == null || ont.getProperties() == null ? null : ont.getProperties().get("oltPosition");
+        return position == null ? Optional.empty() : device(position.toString());
+    }
+
+    public Optional<LogicalDevice> olt() {
+        return ont().flatMap(this::oltOf);
+    }
+
+    /**
+     * VLAN interfaces of the context's ONT whose name contains every token (e.g. "P" + ontPort).
+     */
+    public List<LogicalInterface> interfacesContaining(String... tokens) {
+        return interfaces.values().stream()
+                .filter(vif -> {
+                    String name = vif.getDiscoveredName();
+                    if (name == null) return false;
+                    for (String token : tokens) {
+                        if (token != null && !name.contains(token)) return false;
+                    }
+                    return true;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Subscription reached from an RFS through RFS -> CFS (usedService) -> Product (usingService) -> Subscription.
+     */
+    public Optional<Subscription> subscriptionOfRfs(String rfsName) {
+        Service rfs = services.get(rfsName);
+        if (rfs == null || rfs.getUsedService() == null) return Optional.empty();
+        Service cfs = rfs.getUsedService().stream().findFirst().orElse(null);
+        if (cfs == null) return Optional.empty();
+        cfs = services.getOrDefault(cfs.getDiscoveredName(), cfs);
+        if (cfs.getUsingService() == null) return Optional.empty();
+        Optional<Product> product = cfs.getUsingService().stream()
+                .filter(ser -> Constants.SETAR_KIND_SETAR_PRODUCT.equalsIgnoreCase(ser.getKind()))
+                .findFirst()
+                .map(ser -> products.get(ser.getDiscoveredName()));
+        if (!product.isPresent() || product.get().getSubscription() == null) return Optional.empty();
+        return product.get().getSubscription().stream().findFirst();
+    }
+
+    private static <T> Optional<T> find(Map<String, T> byName, String name) {
+        return name == null ? Optional.empty() : Optional.ofNullable(byName.get(name));
+    }
+
+    private static <T> List<T> containing(Map<String, T> byName, String fragment) {
+        if (fragment == null) return new ArrayList<>();
+        return byName.entrySet().stream()
+                .filter(e -> e.getKey().contains(fragment))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,388 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.model.common.party.Customer;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.model.service.Product;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.utils.Constants;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.session.Session;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Loads the {@link SubscriberContext} of one subscriber / serviceId / ontSN in a single round trip.
+ * The subscriber's customers and subscriptions are named from the in-memory trigram index and its RFS from the
+ * {@link ServiceNameTokenIndex}; one Cypher union then returns them together with the CFS and products behind
+ * the RFS, the ONT and its OLT, the subscriber's CBM devices, the ONT's VLAN interfaces and the subscriptions
+ * keyed by the same SN / MAC, each with its direct relationships. Callers that only read part of the graph
+ * name the {@link Part}s they need and the other branches are left out of the query. If the union query fails
+ * the context is loaded with one batch per repository instead; only a syntax or unsupported-feature error switches
+ * the union off for the following loads.
+ * Loaded entities are also placed in the request identity map.
+ */
+@Component
+@Slf4j
+public class SubscriberContextLoader {
+
+    private final Session session;
+    private final IndexedLookupEngine lookup;
+    private final RequestIdentityMap identityMap;
+    private final DiscoveredNameNgramIndex nameIndex;
+    private final ServiceNameTokenIndex serviceNameTokenIndex;
+    private final CustomerCustomRepository customerRepository;
+    private final SubscriptionCustomRepository subscriptionRepository;
+    private final ProductCustomRepository productRepository;
+    private final ServiceCustomRepository serviceRepository;
+    private final LogicalDeviceCustomRepository deviceRepository;
+    private final LogicalInterfaceCustomRepository interfaceRepository;
+
+    private volatile boolean unionSupported = true;
+
+    public SubscriberContextLoader(Session session, IndexedLookupEngine lookup, RequestIdentityMap identityMap,
+                                   DiscoveredNameNgramIndex nameIndex, ServiceNameTokenIndex serviceNameTokenIndex,
+                                   CustomerCustomRepository customerRepository,
+                                   SubscriptionCustomRepository subscriptionRepository,
+                                   ProductCustomRepository productRepository,
+                                   ServiceCustomRepository serviceRepository,
+                                   LogicalDeviceCustomRepository deviceRepository,
+                                   LogicalInterfaceCustomRepository interfaceRepository) {
+        this.session = session;
+        this.lookup = lookup;
+        this.identityMap = identityMap;
+        this.nameIndex = nameIndex;
+        this.serviceNameTokenIndex = serviceNameTokenIndex;
+        this.customerRepository = customerRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.productRepository = productRepository;
+        this.serviceRepository = serviceRepository;
+        this.deviceRepository = deviceRepository;
+        this.interfaceRepository = interfaceRepository;
+    }
+
+    /**
+     * Parts of the subgraph a caller can ask for.
+     */
+    public enum Part {
+        /** customers whose name contains the subscriber */
+        CUSTOMERS,
+        /** subscriptions named after the subscriber or the ONT, and the ones sharing their SN / MAC */
+        SUBSCRIPTIONS,
+        /** the first IPTV and the first Broadband subscription of the store */
+        SUBTYPE_PROBE,
+        /** the subscriber's / serviceId's / ONT's RFS with their CFS and products */
+        SERVICES,
+        /** the ONT, its OLT, the voice device and the subscriber's CBM devices */
+        DEVICES,
+        /** the VLAN interfaces of the ONT */
+        INTERFACES,
+        /** the first device carrying the potsNumber on one of its POTS ports */
+        POTS
+    }
+
+    /**
+     * What to load; serviceId, ontSN and potsNumber are optional, parts default to all of them.
+     */
+    @Getter
+    public static class Scope {
+        private final String subscriber;
+        private String serviceId;
+        private String ontSN;
+        private String potsNumber;
+        private Set<Part> parts = EnumSet.allOf(Part.class);
+
+        private Scope(String subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        public Scope serviceId(String serviceId) { this.serviceId = serviceId; return this; }
+        public Scope ontSN(String ontSN) { this.ontSN = ontSN; return this; }
+        /** Also load the first device carrying this number on potsPort1Number / potsPort2Number. */
+        public Scope potsNumber(String number) { this.potsNumber = number; return this; }
+        public Scope parts(Set<Part> parts) { this.parts = parts.isEmpty() ? EnumSet.noneOf(Part.class) : EnumSet.copyOf(parts); return this; }
+
+        private boolean wants(Part part) {
+            return parts.contains(part);
+        }
+
+        private boolean hasOnt() {
+            return ontSN != null && !ontSN.trim().isEmpty() && !"NA".equalsIgnoreCase(ontSN);
+        }
+    }
+
+    private static class Loaded {
+        private final Map<String, Customer> customers = new HashMap<>();
+        private final Map<String, Subscription> subscriptions = new HashMap<>();
+        private final Map<String, Product> products = new HashMap<>();
+        private final Map<String, Service> services = new HashMap<>();
+        private final Map<String, LogicalDevice> devices = new HashMap<>();
+        private final Map<String, LogicalInterface> interfaces = new HashMap<>();
+    }
+
+    public static Scope scope(String subscriber) {
+        return new Scope(subscriber);
+    }
+
+    public SubscriberContext load(Scope scope) {
+        Loaded loaded = new Loaded();
+        if (scope.subscriber != null && !scope.parts.isEmpty()) {
+            Set<String> customers = new LinkedHashSet<>();
+            if (scope.wants(Part.CUSTOMERS)) {
+                customers.addAll(nameIndex.namesContaining(Customer.class, scope.subscriber));
+            }
+            Set<String> subscriptions = new LinkedHashSet<>();
+            if (scope.wants(Part.SUBSCRIPTIONS) || scope.wants(Part.DEVICES)) {
+                subscriptions.addAll(nameIndex.namesContaining(Subscription.class, scope.subscriber));
+                if (scope.hasOnt()) {
+                    subscriptions.addAll(nameIndex.namesContaining(Subscription.class, scope.ontSN));
+                }
+            }
+            Set<String> rfs = scope.wants(Part.SERVICES) ? rfsNames(scope) : Collections.emptySet();
+            Set<String> devices = scope.wants(Part.DEVICES) ? deviceNames(scope) : Collections.emptySet();
+            boolean resolved = false;
+            if (unionSupported) {
+                try {
+                    loadInOneQuery(scope, customers, subscriptions, rfs, devices, loaded);
+                    resolved = true;
+                } catch (Exception e) {
+                    if (UnsupportedQueryErrors.isUnsupported(e)) {
+                        unionSupported = false;
+                        log.warn("Subscriber context union query not supported, falling back to per-repository batches: {}", e.getMessage());
+                    } else {
+                        log.warn("Subscriber context union query failed, loading this context per repository: {}", e.getMessage());
+                    }
+                }
+            }
+            if (!resolved) {
+                loadPerRepository(scope, customers, subscriptions, rfs, devices, loaded);
+            }
+            remember(loaded);
+        }
+        return new SubscriberContext(scope, loaded.customers, loaded.subscriptions, loaded.products,
+                loaded.services, loaded.devices, loaded.interfaces);
+    }
+
+    /**
+     * The same context for another ontSN (derived mid-flow from an RFS or a subscription); the context itself is
+     * returned when the ontSN did not change.
+     */
+    public SubscriberContext forOnt(SubscriberContext context, String ontSN) {
+        if (Objects.equals(context.getOntSN(), ontSN)) {
+            return context;
+        }
+        return load(scope(context.getSubscriber())
+                .serviceId(context.getServiceId())
+                .ontSN(ontSN)
+                .potsNumber(context.getPotsNumber())
+                .parts(context.getParts()));
+    }
+
+    private Set<String> rfsNames(Scope scope) {
+        Set<String> names = new LinkedHashSet<>();
+        serviceNameTokenIndex.findBySubscriber(Constants.SETAR_KIND_SETAR_RFS, scope.subscriber).forEach(t -> names.add(t.getName()));
+        serviceNameTokenIndex.findByServiceId(Constants.SETAR_KIND_SETAR_RFS, scope.serviceId).forEach(t -> names.add(t.getName()));
+        if (scope.hasOnt()) {
+            serviceNameTokenIndex.findByOnt(Constants.SETAR_KIND_SETAR_RFS, scope.ontSN).forEach(t -> names.add(t.getName()));
+        }
+        return names;
+    }
+
+    private Set<String> deviceNames(Scope scope) {
+        Set<String> names = new LinkedHashSet<>();
+        if (scope.hasOnt()) names.add("ONT" + scope.ontSN);
+        if (scope.serviceId != null) {
+            names.add(scope.subscriber + Constants.UNDER_SCORE + scope.serviceId);
+            names.add("CBM" + scope.serviceId);
+        }
+        return names;
+    }
+
+    private void loadInOneQuery(Scope scope, Set<String> customers, Set<String> subscriptions, Set<String> rfs,
+                                Set<String> devices, Loaded loaded) {
+        String c = lookup.labelOf(Customer.class);
+        String s = lookup.labelOf(Subscription.class);
+        String p = lookup.labelOf(Product.class);
+        String v = lookup.labelOf(Service.class);
+        String d = lookup.labelOf(LogicalDevice.class);
+        String i = lookup.labelOf(LogicalInterface.class);
+        String name = IndexedLookupEngine.DISCOVERED_NAME;
+
+        List<String> branches = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        params.put("customers", new ArrayList<>(customers));
+        params.put("subscriptions", new ArrayList<>(subscriptions));
+        params.put("rfs", new ArrayList<>(rfs));
+        params.put("devices", new ArrayList<>(devices));
+        params.put("keys", scope.hasOnt() ? Collections.singletonList(scope.ontSN) : Collections.emptyList());
+
+        if (scope.wants(Part.CUSTOMERS)) {
+            branches.add(String.format("MATCH (n:`%s`) WHERE n.%s IN $customers RETURN n", c, name));
+        }
+        if (scope.wants(Part.SUBSCRIPTIONS)) {
+            branches.add(String.format("MATCH (n:`%s`) WHERE n.%s IN $subscriptions RETURN n", s, name));
+            // subscriptions sharing an SN / MAC with the ONT or with the subscriber's own subscriptions
+            branches.add(String.format("MATCH (x:`%1$s`) WHERE x.%2$s IN $subscriptions"
+                            + " WITH $keys + collect(x.%3$s) + collect(x.%4$s) + collect(x.%5$s) AS keys"
+                            + " MATCH (n:`%1$s`) WHERE n.%3$s IN keys OR n.%5$s IN keys RETURN n",
+                    s, name, prop("serviceSN"), prop("serviceMac"), prop("macAddress")));
+        }
+        if (scope.wants(Part.SUBTYPE_PROBE)) {
+            for (String subType : new String[]{"iptv", "broadband"}) {
+                branches.add(String.format("MATCH (n:`%s`) WHERE toLower(n.%s) = '%s' RETURN n LIMIT 1",
+                        s, prop("serviceSubType"), subType));
+            }
+        }
+        if (scope.wants(Part.SERVICES)) {
+            branches.add(String.format("MATCH (n:`%s`) WHERE n.%s IN $rfs RETURN n", v, name));
+            branches.add(String.format("MATCH (r:`%1$s`) WHERE r.%2$s IN $rfs MATCH (r)--(n:`%1$s`) RETURN n", v, name));
+            branches.add(String.format("MATCH (r:`%1$s`) WHERE r.%2$s IN $rfs MATCH (r)--(:`%1$s`)--(n:`%3$s`) RETURN n", v, name, p));
+        }
+        if (scope.wants(Part.DEVICES)) {
+            branches.add(String.format("MATCH (n:`%s`) WHERE n.%s IN $devices RETURN n", d, name));
+            branches.add(String.format("MATCH (x:`%1$s`) WHERE x.%2$s IN $subscriptions AND x.%3$s IS NOT NULL"
+                            + " MATCH (n:`%4$s`) WHERE n.%2$s = 'CBM%5$s' + x.%3$s RETURN n",
+                    s, name, prop("serviceMac"), d, Constants.UNDER_SCORE));
+        }
+        if (scope.hasOnt() && scope.wants(Part.DEVICES)) {
+            params.put("ont", "ONT" + scope.ontSN);
+            branches.add(String.format("MATCH (o:`%1$s`) WHERE o.%2$s = $ont MATCH (n:`%1$s`) WHERE n.%2$s = o.%3$s RETURN n",
+                    d, name, prop("oltPosition")));
+            // the OLT's own oltPosition, which the EVPN flags look up again
+            branches.add(String.format("MATCH (o:`%1$s`) WHERE o.%2$s = $ont MATCH (t:`%1$s`) WHERE t.%2$s = o.%3$s"
+                            + " MATCH (n:`%1$s`) WHERE n.%2$s = t.%3$s RETURN n",
+                    d, name, prop("oltPosition")));
+        }
+        if (scope.hasOnt() && scope.wants(Part.INTERFACES)) {
+            params.put("ontSN", scope.ontSN);
+            // VLAN interfaces are named {ontSN}_..., a prefix the discoveredName index can seek on
+            branches.add(String.format("MATCH (n:`%s`) WHERE n.%s STARTS WITH $ontSN RETURN n", i, name));
+        }
+        if (scope.potsNumber != null && scope.wants(Part.POTS)) {
+            params.put("pots", scope.potsNumber);
+            branches.add(String.format("MATCH (n:`%s`) WHERE n.%s = $pots OR n.%s = $pots RETURN n LIMIT 1",
+                    d, prop("potsPort1Number"), prop("potsPort2Number")));
+        }
+
+        String cypher = "CALL { " + String.join(" UNION ", branches) + " } OPTIONAL MATCH p = (n)-[]-() RETURN n, collect(p) AS paths";
+        Iterable<Map<String, Object>> rows = session.query(cypher, params);
+        for (Map<String, Object> row : rows) {
+            place(loaded, row.get("n"));
+        }
+    }
+
+    private void loadPerRepository(Scope scope, Set<String> customers, Set<String> subscriptions, Set<String> rfs,
+                                   Set<String> devices, Loaded loaded) {
+        customerRepository.findAllByDiscoveredNames(customers).forEach(e -> place(loaded, e));
+
+        List<Subscription> named = subscriptionRepository.findAllByDiscoveredNames(subscriptions);
+        Set<String> keys = new LinkedHashSet<>();
+        if (scope.hasOnt()) keys.add(scope.ontSN);
+        Set<String> cbms = new LinkedHashSet<>();
+        for (Subscription sub : named) {
+            Map<String, Object> props = sub.getProperties() == null ? Collections.emptyMap() : sub.getProperties();
+            for (String key : new String[]{"serviceSN", "serviceMac", "macAddress"}) {
+                if (props.get(key) != null) keys.add(props.get(key).toString());
+            }
+            if (props.get("serviceMac") != null) cbms.add("CBM" + Constants.UNDER_SCORE + props.get("serviceMac"));
+        }
+        if (scope.wants(Part.SUBSCRIPTIONS)) {
+            named.forEach(e -> place(loaded, e));
+            lookup.findAllIn(Subscription.class, lookup.propertyField("serviceSN"), keys).forEach(e -> place(loaded, e));
+            lookup.findAllIn(Subscription.class, lookup.propertyField("macAddress"), keys).forEach(e -> place(loaded, e));
+        }
+        if (scope.wants(Part.SUBTYPE_PROBE)) {
+            for (String subType : new String[]{"IPTV", "Broadband"}) {
+                try (Stream<Subscription> first = subscriptionRepository.stream(sub -> sub.getProperties() != null
+                        && subType.equalsIgnoreCase(String.valueOf(sub.getProperties().get("serviceSubType"))), Constants.STREAM_PAGE_SIZE)) {
+                    first.findFirst().ifPresent(e -> place(loaded, e));
+                }
+            }
+        }
+
+        serviceRepository.findAllByDiscoveredNames(rfs).forEach(e -> place(loaded, e));
+        Set<String> cfs = new LinkedHashSet<>();
+        for (String rfsName : rfs) {
+            Service loadedRfs = loaded.services.get(rfsName);
+            if (loadedRfs != null && loadedRfs.getUsedService() != null) {
+                loadedRfs.getUsedService().forEach(ser -> cfs.add(ser.getDiscoveredName()));
+            }
+        }
+        serviceRepository.findAllByDiscoveredNames(cfs).forEach(e -> place(loaded, e));
+        Set<String> products = new LinkedHashSet<>();
+        for (String cfsName : cfs) {
+            Service loadedCfs = loaded.services.get(cfsName);
+            if (loadedCfs != null && loadedCfs.getUsingService() != null) {
+                loadedCfs.getUsingService().stream()
+                        .filter(ser -> Constants.SETAR_KIND_SETAR_PRODUCT.equalsIgnoreCase(ser.getKind()))
+                        .forEach(ser -> products.add(ser.getDiscoveredName()));
+            }
+        }
+        productRepository.findAllByDiscoveredNames(products).forEach(e -> place(loaded, e));
+
+        if (scope.wants(Part.DEVICES)) {
+            Set<String> deviceNames = new LinkedHashSet<>(devices);
+            deviceNames.addAll(cbms);
+            deviceRepository.findAllByDiscoveredNames(deviceNames).forEach(e -> place(loaded, e));
+            LogicalDevice ont = scope.hasOnt() ? loaded.devices.get("ONT" + scope.ontSN) : null;
+            Object olt = ont == null || ont.getProperties() == null ? null : ont.getProperties().get("oltPosition");
+            for (int hop = 0; hop < 2 && olt != null; hop++) {
+                LogicalDevice parent = deviceRepository.findByDiscoveredName(olt.toString()).orElse(null);
+                place(loaded, parent);
+                olt = parent == null || parent.getProperties() == null ? null : parent.getProperties().get("oltPosition");
+            }
+        }
+        if (scope.hasOnt() && scope.wants(Part.INTERFACES)) {
+            try (Stream<LogicalInterface> vlans = interfaceRepository.stream(vif -> vif.getDiscoveredName() != null
+                    && vif.getDiscoveredName().startsWith(scope.ontSN), Constants.STREAM_PAGE_SIZE)) {
+                vlans.forEach(e -> place(loaded, e));
+            }
+        }
+        if (scope.potsNumber != null && scope.wants(Part.POTS)) {
+            List<LogicalDevice> pots = lookup.findAllIn(LogicalDevice.class, lookup.propertyField("potsPort1Number"),
+                    Collections.singleton(scope.potsNumber));
+            if (pots.isEmpty()) {
+                pots = lookup.findAllIn(LogicalDevice.class, lookup.propertyField("potsPort2Number"),
+                        Collections.singleton(scope.potsNumber));
+            }
+            pots.stream().findFirst().ifPresent(e -> place(loaded, e));
+        }
+    }
+
+    private void place(Loaded loaded, Object entity) {
+        if (entity instanceof Customer) {
+            put(loaded.customers, ((Customer) entity).getDiscoveredName(), (Customer) entity);
+        } else if (entity instanceof Subscription) {
+            put(loaded.subscriptions, ((Subscription) entity).getDiscoveredName(), (Subscription) entity);
+        } else if (entity instanceof Product) {
+            put(loaded.products, ((Product) entity).getDiscoveredName(), (Product) entity);
+        } else if (entity instanceof Service) {
+            put(loaded.services, ((Service) entity).getDiscoveredName(), (Service) entity);
+        } else if (entity instanceof LogicalDevice) {
+            put(loaded.devices, ((LogicalDevice) entity).getDiscoveredName(), (LogicalDevice) entity);
+        } else if (entity instanceof LogicalInterface) {
+            put(loaded.interfaces, ((LogicalInterface) entity).getDiscoveredName(), (LogicalInterface) entity);
+        }
+    }
+
+    private static <T> void put(Map<String, T> byName, String name, T entity) {
+        if (name != null) byName.put(name, entity);
+    }
+
+    private void remember(Loaded loaded) {
+        loaded.customers.forEach((name, e) -> identityMap.remember(Customer.class, name, e));
+        loaded.subscriptions.forEach((name, e) -> identityMap.remember(Subscription.class, name, e));
+        loaded.products.forEach((name, e) -> identityMap.remember(Product.class, name, e));
+        loaded.services.forEach((name, e) -> identityMap.remember(Service.class, name, e));
+        loaded.devices.forEach((name, e) -> identityMap.remember(LogicalDevice.class, name, e));
+        loaded.interfaces.forEach((name, e) -> identityMap.remember(LogicalInterface.class, name, e));
+    }
+
+    private String prop(String key) {
+        return "`" + lookup.propertyField(key) + "`";
+    }
+}
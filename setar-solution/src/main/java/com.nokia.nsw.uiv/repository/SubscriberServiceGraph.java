@@ -0,0 +1,355 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.model.common.party.Customer;
+import com.nokia.nsw.uiv.model.resource.Resource;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import com.nokia.nsw.uiv.model.service.Product;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.utils.Constants;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.ogm.session.Session;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Walks the services of one subscriber (from its Customer nodes) or of one ONT along the model relationships:
+ * Customer - Subscription - Product -(usedService)- CFS -(usingService)- RFS -(usedResource)- ONT - OLT.
+ * The walk is one Cypher union anchored on the start node, so its cost follows the number of services hanging
+ * off that node rather than the number of services in the store. Every entity comes back with its direct
+ * relationships; RFS resources (AP / STB) and the OLT are read from those. Kinds are compared case-insensitively
+ * in both walks. If the union query fails the same walk is done hop by hop with one findAllByDiscoveredNames per
+ * hop; only a syntax or unsupported-feature error switches the union off for the following walks.
+ * Loaded entities are also placed in the request identity map.
+ */
+@Component
+@Slf4j
+public class SubscriberServiceGraph {
+
+    private final Session session;
+    private final IndexedLookupEngine lookup;
+    private final RequestIdentityMap identityMap;
+    private final DiscoveredNameNgramIndex nameIndex;
+    private final CustomerCustomRepository customerRepository;
+    private final SubscriptionCustomRepository subscriptionRepository;
+    private final ProductCustomRepository productRepository;
+    private final ServiceCustomRepository serviceRepository;
+    private final LogicalDeviceCustomRepository deviceRepository;
+
+    private volatile boolean unionSupported = true;
+
+    public SubscriberServiceGraph(Session session, IndexedLookupEngine lookup, RequestIdentityMap identityMap,
+                                  DiscoveredNameNgramIndex nameIndex,
+                                  CustomerCustomRepository customerRepository,
+                                  SubscriptionCustomRepository subscriptionRepository,
+                                  ProductCustomRepository productRepository,
+                                  ServiceCustomRepository serviceRepository,
+                                  LogicalDeviceCustomRepository deviceRepository) {
+        this.session = session;
+        this.lookup = lookup;
+        this.identityMap = identityMap;
+        this.nameIndex = nameIndex;
+        this.customerRepository = customerRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.productRepository = productRepository;
+        this.serviceRepository = serviceRepository;
+        this.deviceRepository = deviceRepository;
+    }
+
+    /**
+     * One RFS with the entities reached from it; everything but the RFS may be null.
+     */
+    @Getter
+    public static class ServiceChain {
+        private final Service rfs;
+        private final Service cfs;
+        private final Product product;
+        private final Subscription subscription;
+        private final Customer customer;
+        private final LogicalDevice ont;
+        private final LogicalDevice olt;
+
+        private ServiceChain(Service rfs, Service cfs, Product product, Subscription subscription,
+                             Customer customer, LogicalDevice ont, LogicalDevice olt) {
+            this.rfs = rfs;
+            this.cfs = cfs;
+            this.product = product;
+            this.subscription = subscription;
+            this.customer = customer;
+            this.ont = ont;
+            this.olt = olt;
+        }
+
+        /** Devices the RFS uses whose name starts with the prefix (AP, STB, ...). */
+        public List<Resource> resources(String prefix) {
+            if (rfs.getUsedResource() == null) return new ArrayList<>();
+            return rfs.getUsedResource().stream()
+                    .filter(r -> r.getDiscoveredName() != null && r.getDiscoveredName().startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+
+        /** Products attached to the subscription (the service product and its components), ordered by name. */
+        public List<Service> products() {
+            if (subscription == null || subscription.getService() == null) return new ArrayList<>();
+            return ofKind(subscription.getService(), Constants.SETAR_KIND_SETAR_PRODUCT).stream()
+                    .filter(p -> p.getDiscoveredName() != null)
+                    .sorted(Comparator.comparing(Service::getDiscoveredName))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static class Loaded {
+        private final Map<String, Customer> customers = new HashMap<>();
+        private final Map<String, Subscription> subscriptions = new HashMap<>();
+        private final Map<String, Product> products = new HashMap<>();
+        private final Map<String, Service> services = new HashMap<>();
+        private final Map<String, LogicalDevice> devices = new HashMap<>();
+    }
+
+    /**
+     * Services of the subscriber, starting from the Customer nodes named after it (the plain account number
+     * and the per-ONT subscriber_ontSN customers), ordered by RFS name.
+     */
+    public List<ServiceChain> fromCustomer(String subscriber) {
+        if (subscriber == null || subscriber.trim().isEmpty()) return new ArrayList<>();
+        Set<String> customers = nameIndex.namesContaining(Customer.class, subscriber).stream()
+                .filter(name -> name.equals(subscriber) || name.startsWith(subscriber + Constants.UNDER_SCORE))
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (customers.isEmpty()) return new ArrayList<>();
+        Loaded loaded = new Loaded();
+        boolean resolved = false;
+        if (unionSupported) {
+            try {
+                walkInOneQuery(customerWalk(), "anchors", new ArrayList<>(customers), loaded);
+                resolved = true;
+            } catch (Exception e) {
+                onUnionFailure(e);
+            }
+        }
+        if (!resolved) {
+            walkFromCustomers(customers, loaded);
+        }
+        return chains(loaded);
+    }
+
+    /**
+     * Services whose RFS uses the ONT of this serial number, ordered by RFS name.
+     */
+    public List<ServiceChain> fromOnt(String ontSN) {
+        if (ontSN == null || ontSN.trim().isEmpty()) return new ArrayList<>();
+        Loaded loaded = new Loaded();
+        boolean resolved = false;
+        if (unionSupported) {
+            try {
+                walkInOneQuery(ontWalk(), "anchors", Collections.singletonList("ONT" + ontSN), loaded);
+                resolved = true;
+            } catch (Exception e) {
+                onUnionFailure(e);
+            }
+        }
+        if (!resolved) {
+            walkFromOnt("ONT" + ontSN, loaded);
+        }
+        return chains(loaded);
+    }
+
+    private List<String> customerWalk() {
+        String c = lookup.labelOf(Customer.class);
+        String s = lookup.labelOf(Subscription.class);
+        String p = lookup.labelOf(Product.class);
+        String v = lookup.labelOf(Service.class);
+        String d = lookup.labelOf(LogicalDevice.class);
+        String anchor = String.format("MATCH (a:`%s`) WHERE a.%s IN $anchors ", c, IndexedLookupEngine.DISCOVERED_NAME);
+        List<String> branches = new ArrayList<>();
+        branches.add("MATCH (n:`" + c + "`) WHERE n." + IndexedLookupEngine.DISCOVERED_NAME + " IN $anchors RETURN n");
+        branches.add(anchor + String.format("MATCH (a)--(n:`%s`) RETURN n", s));
+        branches.add(anchor + String.format("MATCH (a)--(:`%s`)--(n:`%s`) RETURN n", s, p));
+        branches.add(anchor + String.format("MATCH (a)--(:`%s`)--(:`%s`)--(n:`%s`) WHERE toLower(n.%s) = toLower($cfsKind) RETURN n",
+                s, p, v, IndexedLookupEngine.KIND));
+        branches.add(anchor + String.format("MATCH (a)--(:`%s`)--(:`%s`)--(:`%s`)--(n:`%s`) WHERE toLower(n.%s) = toLower($rfsKind) RETURN n",
+                s, p, v, v, IndexedLookupEngine.KIND));
+        branches.add(anchor + String.format("MATCH (a)--(:`%s`)--(:`%s`)--(:`%s`)--(r:`%s`)--(n:`%s`)"
+                        + " WHERE toLower(r.%s) = toLower($rfsKind) AND toLower(n.%s) = toLower($ontKind) RETURN n",
+                s, p, v, v, d, IndexedLookupEngine.KIND, IndexedLookupEngine.KIND));
+        return branches;
+    }
+
+    private List<String> ontWalk() {
+        String c = lookup.labelOf(Customer.class);
+        String s = lookup.labelOf(Subscription.class);
+        String p = lookup.labelOf(Product.class);
+        String v = lookup.labelOf(Service.class);
+        String d = lookup.labelOf(LogicalDevice.class);
+        String anchor = String.format("MATCH (a:`%s`) WHERE a.%s IN $anchors ", d, IndexedLookupEngine.DISCOVERED_NAME);
+        String kind = IndexedLookupEngine.KIND;
+        List<String> branches = new ArrayList<>();
+        branches.add("MATCH (n:`" + d + "`) WHERE n." + IndexedLookupEngine.DISCOVERED_NAME + " IN $anchors RETURN n");
+        branches.add(anchor + String.format("MATCH (a)--(n:`%s`) WHERE toLower(n.%s) = toLower($rfsKind) RETURN n", v, kind));
+        branches.add(anchor + String.format("MATCH (a)--(r:`%s`)--(n:`%s`) WHERE toLower(r.%s) = toLower($rfsKind) AND toLower(n.%s) = toLower($cfsKind) RETURN n",
+                v, v, kind, kind));
+        branches.add(anchor + String.format("MATCH (a)--(r:`%s`)--(f:`%s`)--(n:`%s`) WHERE toLower(r.%s) = toLower($rfsKind) AND toLower(f.%s) = toLower($cfsKind) RETURN n",
+                v, v, p, kind, kind));
+        branches.add(anchor + String.format("MATCH (a)--(r:`%s`)--(f:`%s`)--(:`%s`)--(n:`%s`) WHERE toLower(r.%s) = toLower($rfsKind) AND toLower(f.%s) = toLower($cfsKind) RETURN n",
+                v, v, p, s, kind, kind));
+        branches.add(anchor + String.format("MATCH (a)--(r:`%s`)--(f:`%s`)--(:`%s`)--(:`%s`)--(n:`%s`) WHERE toLower(r.%s) = toLower($rfsKind) AND toLower(f.%s) = toLower($cfsKind) RETURN n",
+                v, v, p, s, c, kind, kind));
+        return branches;
+    }
+
+    private void walkInOneQuery(List<String> branches, String anchorParam, List<String> anchors, Loaded loaded) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(anchorParam, anchors);
+        params.put("cfsKind", Constants.SETAR_KIND_SETAR_CFS);
+        params.put("rfsKind", Constants.SETAR_KIND_SETAR_RFS);
+        params.put("ontKind", Constants.SETAR_KIND_ONT_DEVICE);
+        String cypher = "CALL { " + String.join(" UNION ", branches) + " } OPTIONAL MATCH p = (n)-[]-() RETURN n, collect(p) AS paths";
+        Iterable<Map<String, Object>> rows = session.query(cypher, params);
+        for (Map<String, Object> row : rows) {
+            place(loaded, row.get("n"));
+        }
+        remember(loaded);
+    }
+
+    private void walkFromCustomers(Set<String> customers, Loaded loaded) {
+        List<Customer> anchors = customerRepository.findAllByDiscoveredNames(customers);
+        anchors.forEach(e -> place(loaded, e));
+        List<Subscription> subs = hop(anchors, Customer::getSubscription, subscriptionRepository::findAllByDiscoveredNames, loaded);
+        List<Product> products = hop(subs, sub -> ofKind(sub.getService(), Constants.SETAR_KIND_SETAR_PRODUCT),
+                productRepository::findAllByDiscoveredNames, loaded);
+        List<Service> cfs = hop(products, prod -> ofKind(prod.getUsedService(), Constants.SETAR_KIND_SETAR_CFS),
+                serviceRepository::findAllByDiscoveredNames, loaded);
+        List<Service> rfs = hop(cfs, ser -> ofKind(ser.getUsingService(), Constants.SETAR_KIND_SETAR_RFS),
+                serviceRepository::findAllByDiscoveredNames, loaded);
+        hop(rfs, ser -> ofKind(ser.getUsedResource(), Constants.SETAR_KIND_ONT_DEVICE),
+                deviceRepository::findAllByDiscoveredNames, loaded);
+        remember(loaded);
+    }
+
+    private void walkFromOnt(String ontName, Loaded loaded) {
+        List<LogicalDevice> anchors = deviceRepository.findAllByDiscoveredNames(Collections.singleton(ontName));
+        anchors.forEach(e -> place(loaded, e));
+        List<Service> rfs = hop(anchors, ont -> ofKind(ont.getUsingService(), Constants.SETAR_KIND_SETAR_RFS),
+                serviceRepository::findAllByDiscoveredNames, loaded);
+        List<Service> cfs = hop(rfs, ser -> ofKind(ser.getUsedService(), Constants.SETAR_KIND_SETAR_CFS),
+                serviceRepository::findAllByDiscoveredNames, loaded);
+        List<Product> products = hop(cfs, ser -> ofKind(ser.getUsingService(), Constants.SETAR_KIND_SETAR_PRODUCT),
+                productRepository::findAllByDiscoveredNames, loaded);
+        List<Subscription> subs = hop(products, Product::getSubscription, subscriptionRepository::findAllByDiscoveredNames, loaded);
+        hop(subs, sub -> sub.getCustomer() == null ? null : Collections.singleton(sub.getCustomer()),
+                customerRepository::findAllByDiscoveredNames, loaded);
+        remember(loaded);
+    }
+
+    /** Loads the neighbours of one hop in a single batch. */
+    private <F, T> List<T> hop(List<F> from, Function<F, Collection<?>> neighbours,
+                               Function<Collection<String>, List<T>> finder, Loaded loaded) {
+        Set<String> names = new TreeSet<>();
+        for (F entity : from) {
+            Collection<?> next = neighbours.apply(entity);
+            if (next == null) continue;
+            for (Object n : next) {
+                String name = nameOf(n);
+                if (name != null) names.add(name);
+            }
+        }
+        if (names.isEmpty()) return new ArrayList<>();
+        List<T> found = finder.apply(names);
+        found.forEach(e -> place(loaded, e));
+        return found;
+    }
+
+    private List<ServiceChain> chains(Loaded loaded) {
+        List<ServiceChain> chains = new ArrayList<>();
+        new TreeMap<>(loaded.services).values().stream()
+                .filter(ser -> Constants.SETAR_KIND_SETAR_RFS.equalsIgnoreCase(ser.getKind()))
+                .forEach(rfs -> chains.add(chain(rfs, loaded)));
+        return chains;
+    }
+
+    private ServiceChain chain(Service rfs, Loaded loaded) {
+        Service cfs = first(ofKind(rfs.getUsedService(), Constants.SETAR_KIND_SETAR_CFS), loaded.services);
+        Product product = cfs == null ? null : first(ofKind(cfs.getUsingService(), Constants.SETAR_KIND_SETAR_PRODUCT), loaded.products);
+        Subscription subscription = product == null ? null : first(product.getSubscription(), loaded.subscriptions);
+        Customer customer = subscription == null || subscription.getCustomer() == null ? null
+                : loaded.customers.getOrDefault(subscription.getCustomer().getDiscoveredName(), subscription.getCustomer());
+        LogicalDevice ont = first(ofKind(rfs.getUsedResource(), Constants.SETAR_KIND_ONT_DEVICE), loaded.devices);
+        LogicalDevice olt = null;
+        if (ont != null && ont.getUsedResource() != null) {
+            olt = ont.getUsedResource().stream().map(res -> (LogicalDevice) res).findFirst().orElse(null);
+        }
+        return new ServiceChain(rfs, cfs, product, subscription, customer, ont, olt);
+    }
+
+    /** The loaded copy of the first related entity, or the related entity itself when it was not loaded. */
+    @SuppressWarnings("unchecked")
+    private static <T> T first(Collection<?> related, Map<String, T> byName) {
+        if (related == null) return null;
+        for (Object e : related) {
+            String name = nameOf(e);
+            if (name == null) continue;
+            T loaded = byName.get(name);
+            return loaded != null ? loaded : (T) e;
+        }
+        return null;
+    }
+
+    private static <T> List<T> ofKind(Collection<T> related, String kind) {
+        if (related == null) return new ArrayList<>();
+        List<T> matching = new ArrayList<>();
+        for (T e : related) {
+            if (e instanceof Resource && kind.equalsIgnoreCase(((Resource) e).getKind())) matching.add(e);
+            else if (e instanceof Service && kind.equalsIgnoreCase(((Service) e).getKind())) matching.add(e);
+        }
+        return matching;
+    }
+
+    private static String nameOf(Object entity) {
+        if (entity instanceof Customer) return ((Customer) entity).getDiscoveredName();
+        if (entity instanceof Subscription) return ((Subscription) entity).getDiscoveredName();
+        if (entity instanceof Service) return ((Service) entity).getDiscoveredName();
+        if (entity instanceof Resource) return ((Resource) entity).getDiscoveredName();
+        return null;
+    }
+
+    private void place(Loaded loaded, Object entity) {
+        if (entity instanceof Customer) {
+            put(loaded.customers, ((Customer) entity).getDiscoveredName(), (Customer) entity);
+        } else if (entity instanceof Subscription) {
+            put(loaded.subscriptions, ((Subscription) entity).getDiscoveredName(), (Subscription) entity);
+        } else if (entity instanceof Product) {
+            put(loaded.products, ((Product) entity).getDiscoveredName(), (Product) entity);
+        } else if (entity instanceof Service) {
+            put(loaded.services, ((Service) entity).getDiscoveredName(), (Service) entity);
+        } else if (entity instanceof LogicalDevice) {
+            put(loaded.devices, ((LogicalDevice) entity).getDiscoveredName(), (LogicalDevice) entity);
+        }
+    }
+
+    private static <T> void put(Map<String, T> byName, String name, T entity) {
+        if (name != null) byName.put(name, entity);
+    }
+
+    private void remember(Loaded loaded) {
+        loaded.customers.forEach((name, e) -> identityMap.remember(Customer.class, name, e));
+        loaded.subscriptions.forEach((name, e) -> identityMap.remember(Subscription.class, name, e));
+        loaded.products.forEach((name, e) -> identityMap.remember(Product.class, name, e));
+        loaded.services.forEach((name, e) -> identityMap.remember(Service.class, name, e));
+        loaded.devices.forEach((name, e) -> identityMap.remember(LogicalDevice.class, name, e));
+    }
+
+    /**
+     * Switches the union walk off only when the store cannot run it; any other failure affects that walk alone.
+     */
+    private void onUnionFailure(Exception e) {
+        if (UnsupportedQueryErrors.isUnsupported(e)) {
+            unionSupported = false;
+            log.warn("Service graph union query not supported, falling back to per-repository hops: {}", e.getMessage());
+        } else {
+            log.warn("Service graph union query failed, walking this request per repository: {}", e.getMessage());
+        }
+    }
+}
@@ -4,9 +4,17 @@ import com.nokia.nsw.uiv.model.service.Subscription;
 import com.nokia.nsw.uiv.model.service.SubscriptionRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 @Repository
 public interface SubscriptionCustomRepository extends SubscriptionRepository {
     Optional<Subscription> findByDiscoveredName(String discoveredName);
     Optional<Subscription> findByProperty(String key, String value);
+    List<Subscription> findAllByProperty(String key, String value);
+    List<Subscription> findAllByDiscoveredNames(Collection<String> discoveredNames);
+    Stream<Subscription> stream(Predicate<Subscription> predicate, int pageSize);
+    List<Subscription> findByDiscoveredNameContaining(String fragment);
 }
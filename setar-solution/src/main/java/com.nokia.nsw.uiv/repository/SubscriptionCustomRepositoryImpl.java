@@ -10,7 +10,9 @@ import org.springframework.stereotype.Repository;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Repository
@@ -18,54 +20,78 @@ import java.util.stream.StreamSupport;
 public class SubscriptionCustomRepositoryImpl implements SubscriptionCustomRepository {
 
     private final SubscriptionRepository subscriptionRepository;
+    private final IndexedLookupEngine lookup;
+    private final RepositoryWriteEvents events;
+    private final DiscoveredNameNgramIndex nameIndex;
 
-    public SubscriptionCustomRepositoryImpl(SubscriptionRepository subscriptionRepository) {
+    public SubscriptionCustomRepositoryImpl(SubscriptionRepository subscriptionRepository, IndexedLookupEngine lookup, RepositoryWriteEvents events,
+                                            DiscoveredNameNgramIndex nameIndex) {
         this.subscriptionRepository = subscriptionRepository;
+        this.lookup = lookup;
+        this.events = events;
+        this.nameIndex = nameIndex;
+        lookup.register(Subscription.class);
+        nameIndex.register(Subscription.class, Subscription::getLocalName, Subscription::getDiscoveredName);
     }
 
     // ✅ Custom finders
     @Override
     public Optional<Subscription> findByDiscoveredName(String discoveredName) {
-        Iterable<Subscription> allSubscriptions = subscriptionRepository.findAll();
-        return StreamSupport.stream(allSubscriptions.spliterator(), false)
-                .filter(s -> discoveredName.equals(s.getDiscoveredName()))
-                .findFirst();
+        return lookup.findByDiscoveredName(Subscription.class, discoveredName,
+                () -> StreamSupport.stream(subscriptionRepository.findAll().spliterator(), false)
+                        .filter(s -> discoveredName.equals(s.getDiscoveredName()))
+                        .findFirst());
     }
 
     @Override
     public Optional<Subscription> findByProperty(String key, String value) {
-        Iterable<Subscription> allSubscriptions = subscriptionRepository.findAll();
-        return StreamSupport.stream(allSubscriptions.spliterator(), false)
-                .filter(s -> s.getProperties() != null &&
-                        s.getProperties().get(key) != null &&
-                        s.getProperties().get(key).equals(value))
-                .findFirst();
+        return lookup.findByProperty(Subscription.class, key, value, subscriptionRepository::findAll, Subscription::getProperties);
+    }
+
+    @Override
+    public List<Subscription> findAllByProperty(String key, String value) {
+        return lookup.findAllByProperty(Subscription.class, key, value, subscriptionRepository::findAll, Subscription::getProperties);
+    }
+
+    @Override
+    public List<Subscription> findAllByDiscoveredNames(Collection<String> discoveredNames) {
+        return lookup.findAllIn(Subscription.class, IndexedLookupEngine.DISCOVERED_NAME, discoveredNames);
+    }
+
+    @Override
+    public Stream<Subscription> stream(Predicate<Subscription> predicate, int pageSize) {
+        return lookup.stream(Subscription.class, predicate, pageSize);
+    }
+
+    @Override
+    public List<Subscription> findByDiscoveredNameContaining(String fragment) {
+        return lookup.findAllIn(Subscription.class, IndexedLookupEngine.DISCOVERED_NAME, nameIndex.namesContaining(Subscription.class, fragment));
     }
 
     // ✅ CRUD Delegations
     @Override
     public <S extends Subscription> S save(S entity) {
-        return subscriptionRepository.save(entity);
+        return events.saved(Subscription.class, subscriptionRepository.save(entity));
     }
 
     @Override
     public <S extends Subscription> S save(S entity, int depth) {
-        return subscriptionRepository.save(entity, depth);
+        return events.saved(Subscription.class, subscriptionRepository.save(entity, depth));
     }
 
     @Override
     public <S extends Subscription> Iterable<S> saveAll(Iterable<S> entities) {
-        return subscriptionRepository.saveAll(entities);
+        return events.savedAll(Subscription.class, subscriptionRepository.saveAll(entities));
     }
 
     @Override
     public <S extends Subscription> Iterable<S> save(Iterable<S> entities, int depth) {
-        return subscriptionRepository.save(entities, depth);
+        return events.savedAll(Subscription.class, subscriptionRepository.save(entities, depth));
     }
 
     @Override
     public Optional<Subscription> findById(String id) {
-        return subscriptionRepository.findById(id);
+        return lookup.findById(Subscription.class, id, () -> subscriptionRepository.findById(id));
     }
 
     @Override
@@ -136,11 +162,13 @@ public class SubscriptionCustomRepositoryImpl implements SubscriptionCustomRepos
     @Override
     public void deleteById(String id) {
         subscriptionRepository.deleteById(id);
+        events.deletedById(Subscription.class, id);
     }
 
     @Override
     public void delete(Subscription entity) {
         subscriptionRepository.delete(entity);
+        events.deleted(Subscription.class, entity);
     }
 
     @Override
@@ -151,11 +179,13 @@ public class SubscriptionCustomRepositoryImpl implements SubscriptionCustomRepos
     @Override
     public void deleteAll(Iterable<? extends Subscription> entities) {
         subscriptionRepository.deleteAll(entities);
+        events.deletedAll(Subscription.class, entities);
     }
 
     @Override
     public void deleteAll() {
         subscriptionRepository.deleteAll();
+        events.cleared(Subscription.class);
     }
 
     // ✅ Extended Repository (multi-context)
@@ -0,0 +1,34 @@
+package com.nokia.nsw.uiv.repository;
+
+/**
+ * Tells a store that cannot run a query (Cypher syntax error, unknown procedure or clause) apart from a query
+ * that failed for any other reason, such as a timeout, a dropped connection or a transient error. Only the first
+ * kind justifies switching a query shape off for the lifetime of the instance.
+ */
+final class UnsupportedQueryErrors {
+
+    private static final String[] MARKERS = {
+            "Neo.ClientError.Statement.SyntaxError",
+            "Neo.ClientError.Procedure.ProcedureNotFound",
+            "Invalid input",
+            "not supported",
+            "Unsupported"
+    };
+
+    private UnsupportedQueryErrors() {
+    }
+
+    /**
+     * True when the exception or one of its causes reports a syntax error or an unsupported feature.
+     */
+    static boolean isUnsupported(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            String message = t.getMessage();
+            if (message == null) continue;
+            for (String marker : MARKERS) {
+                if (message.contains(marker)) return true;
+            }
+        }
+        return false;
+    }
+}
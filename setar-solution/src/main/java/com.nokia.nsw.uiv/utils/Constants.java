@@ -92,4 +92,7 @@ public class Constants {
     public static final String CFS = "CFS";
     public static final String RFS = "RFS";
     public static final String CBM = "CBM";
+
+    //Repository paging
+    public static final int STREAM_PAGE_SIZE = 500;
 }
@@ -0,0 +1,523 @@
+package com.nokia.nsw.uiv.view;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nokia.nsw.uiv.model.common.party.Customer;
+import com.nokia.nsw.uiv.model.resource.Resource;
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import com.nokia.nsw.uiv.model.service.Product;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.repository.LogicalDeviceCustomRepository;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent;
+import com.nokia.nsw.uiv.repository.SubscriberServiceGraph;
+import com.nokia.nsw.uiv.utils.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-ONT summary of the services QueryAllServicesByCPE returns: the flat Broadband_n_ / Voice_n_ /
+ * Enterprise_n_ / IPTV_n_ fields and the BB / VOICE / ENT / IPTV counts, built once from the
+ * {@link SubscriberServiceGraph} walk of the ONT and then served from memory.
+ * Every entry remembers the entities it was built from (ONT, OLT, RFS, CFS, product, subscription, customer,
+ * STB / AP devices). A {@link RepositoryWriteEvent} for one of them, or for an RFS / ONT that gains a link,
+ * drops the entries of the ONTs concerned, so the next read rebuilds them after the create, modify or delete
+ * that changed them. Writes that cannot be mapped to entities drop every entry. A build is only kept if no write
+ * during it touched one of its own sources, so writes to other ONTs' entities do not stop it from being cached.
+ * Nothing here holds a monitor: the reverse index is concurrent, so the removal listener never waits on a thread
+ * that is inside the cache.
+ * {@link #verify(String)} rebuilds one ONT's entry from the graph and reports whether the held one differed;
+ * {@link #verify()} does so for every held entry each setar.view.ont-services.verify-interval-ms and publishes
+ * the number of drifting ONTs as setar.view.ont-services.drift. Cache metrics are published as cache.* with
+ * cache=ontServices.
+ */
+@Component
+@Slf4j
+public class OntServicesView {
+
+    private static final String CACHE_NAME = "ontServices";
+    private static final String DRIFT_GAUGE = "setar.view.ont-services.drift";
+    private static final String ONT_PREFIX = "ONT";
+
+    /**
+     * The summary of one ONT; linkedRfs is 0 when no RFS is linked to it.
+     */
+    @Getter
+    public static class Entry {
+        private final String ontSN;
+        private final Map<String, Object> services;
+        private final int bbCount;
+        private final int voiceCount;
+        private final int entCount;
+        private final int iptvCount;
+        private final int linkedRfs;
+        private final Set<String> sources;
+
+        private Entry(String ontSN, Map<String, Object> services, int bbCount, int voiceCount, int entCount,
+                      int iptvCount, int linkedRfs, Set<String> sources) {
+            this.ontSN = ontSN;
+            this.services = Collections.unmodifiableMap(services);
+            this.bbCount = bbCount;
+            this.voiceCount = voiceCount;
+            this.entCount = entCount;
+            this.iptvCount = iptvCount;
+            this.linkedRfs = linkedRfs;
+            this.sources = Collections.unmodifiableSet(sources);
+        }
+
+        public boolean hasServices() {
+            return linkedRfs > 0;
+        }
+
+        /** The response map: the service fields followed by the four counts. */
+        public Map<String, Object> toOutput() {
+            Map<String, Object> output = new LinkedHashMap<>(services);
+            output.put("BB_COUNT", String.valueOf(bbCount));
+            output.put("VOICE_COUNT", String.valueOf(voiceCount));
+            output.put("ENT_COUNT", String.valueOf(entCount));
+            output.put("IPTV_COUNT", String.valueOf(iptvCount));
+            return output;
+        }
+    }
+
+    /**
+     * A build in progress and the entity names written since it started.
+     */
+    private static class Build {
+        private final Set<String> written = ConcurrentHashMap.newKeySet();
+        private volatile boolean everything;
+
+        private boolean touched(Entry entry) {
+            if (everything) return true;
+            for (String source : entry.getSources()) {
+                if (written.contains(source)) return true;
+            }
+            return false;
+        }
+    }
+
+    private final SubscriberServiceGraph serviceGraph;
+    private final LogicalDeviceCustomRepository logicalDeviceRepo;
+    private final Cache<String, Entry> entries;
+    /** entity name -> ONTs whose entry was built from it */
+    private final Map<String, Set<String>> ontsBySource = new ConcurrentHashMap<>();
+    private final Set<Build> building = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger drift;
+
+    @Value("${setar.view.ont-services.verify-enabled:true}")
+    private boolean verifyEnabled;
+
+    public OntServicesView(SubscriberServiceGraph serviceGraph, LogicalDeviceCustomRepository logicalDeviceRepo,
+                           MeterRegistry meterRegistry,
+                           @Value("${setar.view.ont-services.max-entries:50000}") long maxEntries) {
+        this.serviceGraph = serviceGraph;
+        this.logicalDeviceRepo = logicalDeviceRepo;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .executor(Runnable::run)
+                .removalListener((String ontSN, Entry entry, RemovalCause cause) -> unlink(ontSN, entry))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, CACHE_NAME);
+        this.drift = meterRegistry.gauge(DRIFT_GAUGE, new AtomicInteger());
+    }
+
+    /**
+     * The summary of the ONT, or empty when no ONT of this serial number exists.
+     */
+    public Optional<Entry> get(String ontSN) {
+        Entry held = entries.getIfPresent(ontSN);
+        if (held != null) {
+            return Optional.of(held);
+        }
+        Build running = new Build();
+        building.add(running);
+        try {
+            Optional<Entry> built = build(ontSN);
+            built.ifPresent(entry -> store(entry, running));
+            return built;
+        } finally {
+            building.remove(running);
+        }
+    }
+
+    /**
+     * Rebuild the ONT's entry from the graph, replace the held one and report whether it differed.
+     */
+    public boolean verify(String ontSN) {
+        Entry held = entries.getIfPresent(ontSN);
+        Build running = new Build();
+        building.add(running);
+        try {
+            Optional<Entry> built = build(ontSN);
+            boolean drifted = held != null && !(built.isPresent() && sameContent(held, built.get()));
+            if (drifted) {
+                log.warn("ONT services view drift on {}: held {} fields, graph {}", ontSN, held.getServices().size(),
+                        built.map(e -> e.getServices().size()).orElse(0));
+            }
+            entries.invalidate(ontSN);
+            built.ifPresent(entry -> store(entry, running));
+            return drifted;
+        } finally {
+            building.remove(running);
+        }
+    }
+
+    /**
+     * Verify every held entry; returns the ONTs whose entry drifted from the graph.
+     */
+    @Scheduled(initialDelayString = "${setar.view.ont-services.verify-interval-ms:3600000}",
+            fixedDelayString = "${setar.view.ont-services.verify-interval-ms:3600000}")
+    public Set<String> verify() {
+        Set<String> drifted = new TreeSet<>();
+        if (!verifyEnabled) return drifted;
+        for (String ontSN : new ArrayList<>(entries.asMap().keySet())) {
+            if (verify(ontSN)) drifted.add(ontSN);
+        }
+        drift.set(drifted.size());
+        log.info("ONT services view verified for {} ONTs, {} drifted", entries.estimatedSize(), drifted.size());
+        return drifted;
+    }
+
+    @EventListener
+    public void onWrite(RepositoryWriteEvent event) {
+        if (!event.concerns(Service.class) && !event.concerns(Subscription.class) && !event.concerns(Customer.class)
+                && !event.concerns(LogicalDevice.class)) return;
+        Object entity = event.getEntity();
+        if (entity == null || (event.getOperation() != RepositoryWriteEvent.Operation.SAVED
+                && event.getOperation() != RepositoryWriteEvent.Operation.DELETED)) {
+            for (Build running : building) running.everything = true;
+            entries.invalidateAll();
+            return;
+        }
+        Set<String> names = new HashSet<>(namesOf(entity));
+        // an RFS (re)linked to an ONT changes that ONT's services
+        if (entity instanceof Service && ((Service) entity).getUsedResource() != null) {
+            for (Resource res : ((Service) entity).getUsedResource()) {
+                if (Constants.SETAR_KIND_ONT_DEVICE.equalsIgnoreCase(res.getKind()) && res.getDiscoveredName() != null
+                        && res.getDiscoveredName().startsWith(ONT_PREFIX)) {
+                    names.add(res.getDiscoveredName());
+                }
+            }
+        }
+        for (Build running : building) running.written.addAll(names);
+        Set<String> onts = new HashSet<>();
+        for (String name : names) {
+            onts.addAll(ontsBySource.getOrDefault(name, Collections.emptySet()));
+            if (name.startsWith(ONT_PREFIX)) onts.add(name.substring(ONT_PREFIX.length()));
+        }
+        entries.invalidateAll(onts);
+    }
+
+    private void store(Entry entry, Build running) {
+        // link before publishing so a write after the put finds the entry, then drop it again if a write during
+        // the build touched one of its sources
+        for (String source : entry.getSources()) {
+            ontsBySource.computeIfAbsent(source, k -> ConcurrentHashMap.newKeySet()).add(entry.getOntSN());
+        }
+        entries.put(entry.getOntSN(), entry);
+        if (running.touched(entry)) {
+            entries.asMap().remove(entry.getOntSN(), entry);
+        }
+    }
+
+    private void unlink(String ontSN, Entry entry) {
+        if (entry == null) return;
+        for (String source : entry.getSources()) {
+            ontsBySource.computeIfPresent(source, (k, onts) -> {
+                onts.remove(ontSN);
+                return onts.isEmpty() ? null : onts;
+            });
+        }
+        // the ONT may have been stored again meanwhile; keep its sources linked
+        Entry current = entries.asMap().get(ontSN);
+        if (current != null) {
+            for (String source : current.getSources()) {
+                ontsBySource.computeIfAbsent(source, k -> ConcurrentHashMap.newKeySet()).add(ontSN);
+            }
+        }
+    }
+
+    private static boolean sameContent(Entry a, Entry b) {
+        return a.getServices().equals(b.getServices()) && a.getBbCount() == b.getBbCount()
+                && a.getVoiceCount() == b.getVoiceCount() && a.getEntCount() == b.getEntCount()
+                && a.getIptvCount() == b.getIptvCount() && a.getLinkedRfs() == b.getLinkedRfs();
+    }
+
+    private Optional<Entry> build(String ontSN) {
+        String ontName = ONT_PREFIX + ontSN;
+        Optional<LogicalDevice> ontOpt = logicalDeviceRepo.findByDiscoveredName(ontName);
+        if (!ontOpt.isPresent()) {
+            return Optional.empty();
+        }
+        Set<String> sources = new HashSet<>();
+        sources.add(ontName);
+
+        int bbCount = 0, voiceCount = 0, entCount = 0, iptvCount = 0;
+        Map<String, Object> output = new LinkedHashMap<>();
+        List<SubscriberServiceGraph.ServiceChain> chains = serviceGraph.fromOnt(ontSN);
+        for (SubscriberServiceGraph.ServiceChain chain : chains) {
+            Service rfs = chain.getRfs();
+            Product product = chain.getProduct();
+            LogicalDevice ont = chain.getOnt() != null ? chain.getOnt() : ontOpt.get();
+            LogicalDevice olt = chain.getOlt();
+            Subscription subscription = chain.getSubscription();
+            Customer customer = product == null ? null : product.getCustomer();
+            addSource(sources, rfs, chain.getCfs(), product, subscription, customer, olt);
+            if (rfs.getUsedResource() != null) rfs.getUsedResource().forEach(res -> addSource(sources, res));
+            if (subscription != null && subscription.getService() != null) subscription.getService().forEach(s -> addSource(sources, s));
+            if (product == null || product.getProperties() == null) {
+                log.warn("No product reachable from RFS {} on {}", rfs.getDiscoveredName(), ontName);
+                continue;
+            }
+
+            String rfsType = String.valueOf(product.getProperties().get("productType"));
+            switch (rfsType) {
+                case "Broadband":
+                case "Fiber":
+                    bbCount++;
+                    populateBroadband(output, "Broadband_" + bbCount + "_", rfs, subscription, customer, olt, ont);
+                    break;
+
+                case "Voice":
+                case "VoIP":
+                    voiceCount++;
+                    populateVoice(output, "Voice_" + voiceCount + "_", rfs, subscription, customer, olt, ont);
+                    break;
+
+                case "Enterprise":
+                case "EVPN":
+                    entCount++;
+                    populateEnterprise(output, "Enterprise_" + entCount + "_", rfs, subscription, customer, olt, ont);
+                    break;
+
+                case "IPTV":
+                    iptvCount++;
+                    populateIptv(output, "IPTV_" + iptvCount + "_", rfs, subscription, customer, olt, ont);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return Optional.of(new Entry(ontSN, output, bbCount, voiceCount, entCount, iptvCount, chains.size(), sources));
+    }
+
+    private static void addSource(Set<String> sources, Object... entities) {
+        for (Object entity : entities) {
+            if (entity != null) sources.addAll(namesOf(entity));
+        }
+    }
+
+    /** discoveredName and localName of the entity, the keys its write events can be matched on. */
+    private static List<String> namesOf(Object entity) {
+        List<String> names = new ArrayList<>(2);
+        if (entity instanceof Customer) {
+            add(names, ((Customer) entity).getDiscoveredName(), ((Customer) entity).getLocalName());
+        } else if (entity instanceof Subscription) {
+            add(names, ((Subscription) entity).getDiscoveredName(), ((Subscription) entity).getLocalName());
+        } else if (entity instanceof Service) {
+            add(names, ((Service) entity).getDiscoveredName(), ((Service) entity).getLocalName());
+        } else if (entity instanceof Resource) {
+            add(names, ((Resource) entity).getDiscoveredName(), ((Resource) entity).getLocalName());
+        }
+        return names;
+    }
+
+    private static void add(List<String> names, String... values) {
+        for (String value : values) {
+            if (value != null && !names.contains(value)) names.add(value);
+        }
+    }
+
+    // --- Broadband / Fiber ---
+    private void populateBroadband(Map<String, Object> out, String prefix, Service rfs,
+                                   Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
+        Map<String, Object> subProps = sub != null && sub.getProperties() != null ? sub.getProperties() : Collections.emptyMap();
+        putIfNotNull(out, prefix + "SERVICE_ID", subProps.get("serviceID"));
+        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", subProps.get("serviceSubType"));
+        out.put(prefix + "SERVICE_TYPE", "Broadband");
+        putIfNotNull(out, prefix + "QOS_PROFILE", subProps.get("veipQosSessionProfile"));
+        putIfNotNull(out, prefix + "KENAN_SUBS_ID", subProps.get("kenanSubscriberId"));
+
+        populateSubscriberDetails(out, prefix, cust);
+        Map<String, Object> custProps = cust != null && cust.getProperties() != null ? cust.getProperties() : Collections.emptyMap();
+        putIfNotNull(out, prefix + "Email", custProps.get("email"));
+        putIfNotNull(out, prefix + "Email_Password", custProps.get("emailPassword"));
+
+        // Templates from OLT
+        if (olt != null && ont != null) {
+            Map<String, Object> ontProps = ont.getProperties();
+            Map<String, Object> oltProps = olt.getProperties();
+            putIfNotNull(out, prefix + "ONT_TEMPLATE", ontProps.get("ontTemplate"));
+            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_VEIP", oltProps.get("veipServiceTemplate"));
+            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_HSI", oltProps.get("veipHsiTemplate"));
+        }
+    }
+
+    // --- Voice / VoIP ---
+    private void populateVoice(Map<String, Object> out, String prefix, Service rfs,
+                               Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
+        Map<String, Object> subProps = sub != null ? sub.getProperties() : Collections.emptyMap();
+        putIfNotNull(out, prefix + "SERVICE_ID", subProps.get("serviceID"));
+        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", subProps.get("serviceSubType"));
+        out.put(prefix + "SERVICE_TYPE", "Voice");
+        putIfNotNull(out, prefix + "CUSTOMER_ID", subProps.get("simaCustId"));
+        putIfNotNull(out, prefix + "SIMA_SUBS_ID", subProps.get("simaSubsId"));
+        putIfNotNull(out, prefix + "SIMA_ENDPOINT_ID", subProps.get("simaEndpointId"));
+        putIfNotNull(out, prefix + "VOIP_NUMBER_1", subProps.get("voipNumber1"));
+        putIfNotNull(out, prefix + "VOIP_CODE_1", subProps.get("voipServiceCode"));
+        putIfNotNull(out, prefix + "QOS_PROFILE", subProps.get("voipPackage"));
+
+        populateSubscriberDetails(out, prefix, cust);
+
+        // Templates from OLT
+        if (olt != null) {
+            Map<String, Object> oltProps = olt.getProperties();
+            putIfNotNull(out, prefix + "ONT_TEMPLATE", oltProps.get("ontTemplate"));
+            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_VOIP", oltProps.get("voipServiceTemplate"));
+            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_POTS1", oltProps.get("voipPots1Template"));
+            putIfNotNull(out, prefix + "SERVICE_TEMPLATE_POTS2", oltProps.get("voipPots2Template"));
+        }
+    }
+
+    // --- Enterprise / EVPN ---
+    private void populateEnterprise(Map<String, Object> out, String prefix, Service rfs,
+                                    Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
+        Map<String, Object> subProps = sub != null ? sub.getProperties() : Collections.emptyMap();
+
+        putIfNotNull(out, prefix + "SERVICE_ID", subProps.get("serviceID"));
+        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", subProps.get("serviceSubType"));
+        out.put(prefix + "SERVICE_TYPE", "Enterprise");
+        putIfNotNull(out, prefix + "QOS_PROFILE", subProps.get("evpnQosSessionProfile"));
+        putIfNotNull(out, prefix + "KENAN_SUBS_ID", subProps.get("kenanSubscriberId"));
+        putIfNotNull(out, prefix + "PORT", subProps.get("evpnPort"));
+        putIfNotNull(out, prefix + "VLAN", subProps.get("evpnVLAN"));
+
+        // EVPN templates from RFS properties
+        putIfNotNull(out, prefix + "TEMPLATE_NAME_VLAN", subProps.get("evpnTemplateVLAN"));
+        putIfNotNull(out, prefix + "TEMPLATE_NAME_VLAN_CREATE", subProps.get("evpnTemplateCreateVLAN"));
+        putIfNotNull(out, prefix + "TEMPLATE_NAME_VPLS", subProps.get("evpnTemplateVPLS"));
+
+        populateSubscriberDetails(out, prefix, cust);
+
+        // OLT templates
+        if (olt != null) {
+            Map<String, Object> ontProps = ont.getProperties();
+            Map<String, Object> oltProps = olt.getProperties();
+            putIfNotNull(out, prefix + "ONT_TEMPLATE", oltProps.get("ontTemplate"));
+            putIfNotNull(out, prefix + "TEMPLATE_NAME_CARD", oltProps.get("evpnOntCardTemplate"));
+            putIfNotNull(out, prefix + "TEMPLATE_NAME_PORT", ontProps.get("evpnEthPortTemplate"));
+            putIfNotNull(out, prefix + "TEMPLATE_NAME_PORT_CREATE", ontProps.get("createTemplate"));
+        }
+    }
+
+    // --- IPTV ---
+    private void populateIptv(Map<String, Object> out, String prefix, Service rfs,
+                              Subscription sub, Customer cust, LogicalDevice olt, LogicalDevice ont) {
+        Map<String, Object> subProps = sub != null ? sub.getProperties() : Collections.emptyMap();
+
+        putIfNotNull(out, prefix + "SERVICE_ID", subProps.get("serviceID"));
+        putIfNotNull(out, prefix + "SERVICE_SUBTYPE", subProps.get("serviceSubType"));
+        out.put(prefix + "SERVICE_TYPE", "IPTV");
+        putIfNotNull(out, prefix + "QOS_PROFILE", subProps.get("iptvQosSessionProfile"));
+        putIfNotNull(out, prefix + "KENAN_SUBS_ID", subProps.get("kenanSubscriberId"));
+        putIfNotNull(out, prefix + "CUSTOMER_GROUP_ID", subProps.get("customerGroupId"));
+
+        populateSubscriberDetails(out, prefix, cust);
+
+        // VLAN from ONT
+        if (ont != null) {
+            putIfNotNull(out, prefix + "VLAN", ont.getProperties().get("iptvVlan"));
+        }
+
+        // Templates from OLT
+        if (olt != null) {
+            Map<String, Object> oltProps = olt.getProperties();
+            putIfNotNull(out, prefix + "TEMPLATE_NAME_IPTV", oltProps.get("veipIptvTemplate"));
+            putIfNotNull(out, prefix + "TEMPLATE_NAME_IGMP", oltProps.get("igmpTemplate"));
+        }
+
+        // Process STB and AP devices linked to RFS
+        int stbIndex = 1;
+        int apIndex = 1;
+        Set<Resource> usedResources = rfs.getUsedResource();
+        if (usedResources != null) {
+            for (Resource res : usedResources) {
+                if (res instanceof LogicalDevice) {
+                    LogicalDevice device = (LogicalDevice) res;
+                    String kind = device.getKind();
+                    Map<String, Object> devProps = device.getProperties() != null ? device.getProperties()
+                            : Collections.emptyMap();
+
+                    if (Constants.SETAR_KIND_STB_AP_CM_DEVICE.equalsIgnoreCase(kind)) {
+                        String deviceType = (String) devProps.get("deviceType");
+                        if ("STB".equalsIgnoreCase(deviceType)) {
+                            populateDevice(out, prefix + "STB_", stbIndex++, devProps);
+                        } else if ("AP".equalsIgnoreCase(deviceType)) {
+                            populateDevice(out, prefix + "AP_", apIndex++, devProps);
+                        }
+                    }
+                }
+            }
+        }
+
+        // IPTV catalog items of the subscription's products
+        int prodIndex = 1;
+        if (sub != null && sub.getService() != null) {
+            for (Service product : sub.getService()) {
+                Map<String, Object> props = product.getProperties();
+                if (props == null) {
+                    continue;
+                }
+                Object prodName = props.get("catalogItemName");
+                Object prodVariant = props.get("catalogItemVersion");
+                putIfNotNull(out, prefix + "PROD_NAME_" + prodIndex, prodName == null ? null : prodName.toString());
+                putIfNotNull(out, prefix + "PROD_VARIANT_" + prodIndex, prodVariant == null ? null : prodVariant.toString());
+                prodIndex++;
+            }
+        }
+    }
+
+    private void populateDevice(Map<String, Object> out, String pre, int index, Map<String, Object> devProps) {
+        putIfNotNull(out, pre + "SN_" + index, devProps.get("serialNo"));
+        putIfNotNull(out, pre + "MAC_" + index, devProps.get("macAddress"));
+        putIfNotNull(out, pre + "MODEL_" + index, devProps.get("deviceModel"));
+        putIfNotNull(out, pre + "MANUFACTURER_" + index, devProps.get("manufacturer"));
+        putIfNotNull(out, pre + "GID_" + index, devProps.get("customerGroupId"));
+        putIfNotNull(out, pre + "MDLSBTYPE_" + index, devProps.get("modelSubType"));
+        putIfNotNull(out, pre + "PKEY_" + index, devProps.get("preSharedKey"));
+    }
+
+    // --- Subscriber Details ---
+    private void populateSubscriberDetails(Map<String, Object> out, String prefix, Customer cust) {
+        if (cust == null)
+            return;
+        Map<String, Object> custProps = cust.getProperties() != null ? cust.getProperties() : Collections.emptyMap();
+        putIfNotNull(out, prefix + "HHID", custProps.get("houseHoldId"));
+        putIfNotNull(out, prefix + "ACCOUNT_NUMBER", custProps.get("accountNumber"));
+        putIfNotNull(out, prefix + "FIRST_NAME", custProps.get("subscriberFirstName"));
+        putIfNotNull(out, prefix + "LAST_NAME", custProps.get("subscriberLastName"));
+        putIfNotNull(out, prefix + "COMPANY_NAME", custProps.get("companyName"));
+        putIfNotNull(out, prefix + "CONTACT_PHONE", custProps.get("contactPhoneNumber"));
+        putIfNotNull(out, prefix + "SUBS_ADDRESS", custProps.get("subscriberAddress"));
+    }
+
+    private void putIfNotNull(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        } else {
+            map.put(key, "");
+        }
+    }
+}
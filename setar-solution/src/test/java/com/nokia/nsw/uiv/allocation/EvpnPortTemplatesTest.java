@@ -0,0 +1,68 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalDevice;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link EvpnPortTemplates#portsEmpty(LogicalDevice, int, int)}, the check DeleteSPR runs on the OLT before it
+ * clears the EVPN card template.
+ */
+public class EvpnPortTemplatesTest {
+
+    @Test
+    public void oltWithoutPropertiesHasNoTemplates() {
+        assertTrue(EvpnPortTemplates.portsEmpty(new LogicalDevice(), EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_PORT));
+    }
+
+    @Test
+    public void cardPortInUse() {
+        LogicalDevice olt = olt("evpnEthPort3Template", "EVPN-T3");
+        assertFalse(EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_CARD_PORT));
+        assertFalse(EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_PORT));
+        assertTrue(EvpnPortTemplates.portsEmpty(olt, 5, 5));
+    }
+
+    @Test
+    public void port5CountsOnlyForTheFullRange() {
+        LogicalDevice olt = olt("evpnEthPort5Template", "EVPN-T5");
+        assertTrue(EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_CARD_PORT));
+        assertFalse(EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_PORT));
+    }
+
+    @Test
+    public void blankTemplatesAreEmpty() {
+        LogicalDevice olt = olt("evpnEthPort2Template", "", "evpnEthPort4Template", "  ");
+        assertTrue(EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_PORT));
+    }
+
+    @Test
+    public void clearedPortIsSeenOnTheSameEntity() {
+        LogicalDevice olt = olt("evpnEthPort2Template", "EVPN-T2", "evpnEthPort4Template", "EVPN-T4");
+        olt.getProperties().put("evpnEthPort4Template", "");
+        assertFalse(EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_CARD_PORT));
+        olt.getProperties().put("evpnEthPort2Template", "");
+        assertTrue(EvpnPortTemplates.portsEmpty(olt, EvpnPortTemplates.FIRST_PORT, EvpnPortTemplates.LAST_CARD_PORT));
+    }
+
+    @Test
+    public void rangeIsClippedToPorts2To5() {
+        assertTrue(EvpnPortTemplates.portsEmpty(olt("evpnEthPort1Template", "T1", "evpnEthPort6Template", "T6"), 0, 9));
+        assertFalse(EvpnPortTemplates.portsEmpty(olt("evpnEthPort5Template", "T5"), 0, 9));
+    }
+
+    private static LogicalDevice olt(String... keyValues) {
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            properties.put(keyValues[i], keyValues[i + 1]);
+        }
+        LogicalDevice olt = new LogicalDevice();
+        olt.setDiscoveredName("OLT-1");
+        olt.setProperties(properties);
+        return olt;
+    }
+}
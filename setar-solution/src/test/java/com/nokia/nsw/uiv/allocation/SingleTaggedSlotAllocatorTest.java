@@ -0,0 +1,163 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.repository.IndexedLookupEngine;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The per-port slot masks of {@link SingleTaggedSlotAllocator}, built from a scan, kept current from write events
+ * and corrected from the store. The scan and the store are both backed by {@link #stored}.
+ */
+public class SingleTaggedSlotAllocatorTest {
+
+    private static final String ONT = "ALCL01";
+
+    private final Set<String> stored = new HashSet<>();
+    private IndexedLookupEngine lookup;
+    private SingleTaggedSlotAllocator allocator;
+
+    @Before
+    public void setUp() {
+        Session session = mock(Session.class);
+        lookup = mock(IndexedLookupEngine.class);
+        when(lookup.labelOf(LogicalInterface.class)).thenReturn("LogicalInterface");
+        when(lookup.stream(eq(LogicalInterface.class), any(Filter.class), eq(0))).thenAnswer(invocation ->
+                stored.stream().filter(name -> name.contains("_SINGLETAGGED_")).map(name -> vlanInterface(name, name)));
+        when(session.query(anyString(), anyMap())).thenAnswer(invocation -> {
+            Map<String, ?> params = invocation.getArgument(1);
+            if (params.containsKey("name")) {
+                return result(Collections.singletonList(
+                        Collections.<String, Object>singletonMap("found", stored.contains(params.get("name")) ? 1L : 0L)));
+            }
+            String prefix = (String) params.get("prefix");
+            return result(stored.stream().filter(name -> name.startsWith(prefix))
+                    .map(name -> Collections.<String, Object>singletonMap("name", name))
+                    .collect(Collectors.toList()));
+        });
+        allocator = new SingleTaggedSlotAllocator(session, lookup);
+    }
+
+    @Test
+    public void scanMarksTheSlotsOfEachPort() {
+        stored.add(SingleTaggedSlotAllocator.interfaceName(ONT, "2", 2));
+        stored.add(SingleTaggedSlotAllocator.interfaceName(ONT, "2", 3));
+        stored.add(SingleTaggedSlotAllocator.interfaceName(ONT, "3", 5));
+        assertEquals(OptionalInt.of(4), allocator.firstFree(ONT, "2"));
+        assertEquals(OptionalInt.of(2), allocator.firstOccupied(ONT, "2"));
+        assertEquals(OptionalInt.of(2), allocator.firstFree(ONT, "3"));
+        assertEquals(OptionalInt.of(5), allocator.firstOccupied(ONT, "3"));
+        assertEquals(OptionalInt.empty(), allocator.firstOccupied(ONT, "4"));
+    }
+
+    @Test
+    public void slotIsClaimedOnce() {
+        assertTrue(allocator.claim(ONT, "2", 2));
+        assertFalse(allocator.claim(ONT, "2", 2));
+        assertTrue(allocator.isOccupied(ONT, "2", 2));
+        assertFalse(allocator.claim(ONT, "2", 1));
+        assertFalse(allocator.claim(ONT, "2", 10));
+    }
+
+    @Test
+    public void claimFoundInTheStoreIsRejectedAndStaysOccupied() {
+        allocator.firstFree(ONT, "2");
+        stored.add(SingleTaggedSlotAllocator.interfaceName(ONT, "2", 2));
+        assertFalse(allocator.claim(ONT, "2", 2));
+        assertTrue(allocator.isOccupied(ONT, "2", 2));
+        assertEquals(OptionalInt.of(3), allocator.firstFree(ONT, "2"));
+    }
+
+    @Test
+    public void releaseFreesTheSlot() {
+        allocator.claim(ONT, "2", 2);
+        allocator.claim(ONT, "2", 3);
+        allocator.release(ONT, "2", 2);
+        assertEquals(OptionalInt.of(2), allocator.firstFree(ONT, "2"));
+        assertEquals(OptionalInt.of(3), allocator.firstOccupied(ONT, "2"));
+    }
+
+    @Test
+    public void fullPortHasNoFreeSlot() {
+        for (int slot = SingleTaggedSlotAllocator.FIRST_SLOT; slot <= SingleTaggedSlotAllocator.FULL_SLOT; slot++) {
+            assertTrue(allocator.claim(ONT, "2", slot));
+        }
+        assertEquals(OptionalInt.empty(), allocator.firstFree(ONT, "2"));
+    }
+
+    @Test
+    public void writesMoveTheMasks() {
+        allocator.firstFree(ONT, "2");
+        LogicalInterface saved = vlanInterface("L1", SingleTaggedSlotAllocator.interfaceName(ONT, "2", 4));
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.SAVED, saved));
+        assertTrue(allocator.isOccupied(ONT, "2", 4));
+
+        // ONT replacement renames the interface under the same localName
+        LogicalInterface renamed = vlanInterface("L1", SingleTaggedSlotAllocator.interfaceName("ALCL02", "2", 4));
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.SAVED, renamed));
+        assertFalse(allocator.isOccupied(ONT, "2", 4));
+        assertTrue(allocator.isOccupied("ALCL02", "2", 4));
+
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.DELETED, renamed));
+        assertFalse(allocator.isOccupied("ALCL02", "2", 4));
+    }
+
+    @Test
+    public void otherInterfacesAreIgnored() {
+        allocator.firstFree(ONT, "2");
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.SAVED, vlanInterface("L2", "MENM1_100")));
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.SAVED, vlanInterface("L3", ONT + "_P2_SINGLETAGGED_1")));
+        assertEquals(OptionalInt.empty(), allocator.firstOccupied(ONT, "2"));
+        verify(lookup, times(1)).stream(eq(LogicalInterface.class), any(Filter.class), eq(0));
+    }
+
+    @Test
+    public void occupiedInStoreReplacesTheMask() {
+        allocator.claim(ONT, "2", 2);
+        stored.add(SingleTaggedSlotAllocator.interfaceName(ONT, "2", 5));
+        stored.add(SingleTaggedSlotAllocator.interfaceName(ONT, "2", 3));
+        stored.add(ONT + "_P2_SINGLETAGGED_23");
+        assertEquals(Arrays.asList(3, 5), allocator.occupiedInStore(ONT, "2"));
+        assertFalse(allocator.isOccupied(ONT, "2", 2));
+        assertTrue(allocator.isOccupied(ONT, "2", 3));
+        assertTrue(allocator.isOccupied(ONT, "2", 5));
+    }
+
+    @Test
+    public void unmappedWriteRebuildsOnNextCall() {
+        allocator.firstFree(ONT, "2");
+        stored.add(SingleTaggedSlotAllocator.interfaceName(ONT, "2", 2));
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.CLEARED, null));
+        assertTrue(allocator.isOccupied(ONT, "2", 2));
+        verify(lookup, times(2)).stream(eq(LogicalInterface.class), any(Filter.class), eq(0));
+    }
+
+    private static LogicalInterface vlanInterface(String localName, String name) {
+        LogicalInterface vlanInterface = new LogicalInterface();
+        vlanInterface.setLocalName(localName);
+        vlanInterface.setDiscoveredName(name);
+        return vlanInterface;
+    }
+
+    private static RepositoryWriteEvent event(RepositoryWriteEvent.Operation operation, LogicalInterface entity) {
+        return new RepositoryWriteEvent(LogicalInterface.class, operation, entity, null, null, null);
+    }
+
+    private static Result result(List<Map<String, Object>> rows) {
+        Result result = mock(Result.class);
+        when(result.iterator()).thenAnswer(invocation -> rows.iterator());
+        when(result.queryResults()).thenReturn(rows);
+        return result;
+    }
+}
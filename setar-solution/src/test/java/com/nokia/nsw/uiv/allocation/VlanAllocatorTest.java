@@ -0,0 +1,161 @@
+package com.nokia.nsw.uiv.allocation;
+
+import com.nokia.nsw.uiv.model.resource.logical.LogicalInterface;
+import com.nokia.nsw.uiv.repository.IndexedLookupEngine;
+import com.nokia.nsw.uiv.repository.RepositoryWriteEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The per-MENM VLAN bitmaps and reservations of {@link VlanAllocator}. The build query and the existence check are
+ * both backed by {@link #stored}.
+ */
+public class VlanAllocatorTest {
+
+    private final Set<String> stored = new HashSet<>(Arrays.asList(
+            "MENM1_100", "MENM1_101", "MENM1_103", "MENM2_100", "MENM1_4096", "MENM1_abc", "ALCL01_P2_SINGLETAGGED"));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Session session;
+    private IndexedLookupEngine lookup;
+    private VlanAllocator allocator;
+
+    @Before
+    public void setUp() {
+        session = mock(Session.class);
+        lookup = mock(IndexedLookupEngine.class);
+        when(lookup.labelOf(LogicalInterface.class)).thenReturn("LogicalInterface");
+        when(session.query(anyString(), anyMap())).thenAnswer(invocation -> {
+            Map<String, ?> params = invocation.getArgument(1);
+            if (params.containsKey("name")) {
+                return result(Collections.singletonList(
+                        Collections.<String, Object>singletonMap("found", stored.contains(params.get("name")) ? 1L : 0L)));
+            }
+            return result(stored.stream()
+                    .map(name -> Collections.<String, Object>singletonMap("name", name))
+                    .collect(Collectors.toList()));
+        });
+        allocator = new VlanAllocator(session, lookup, meterRegistry, 120);
+    }
+
+    @Test
+    public void buildReadsOnlyVlanNames() {
+        assertTrue(allocator.isUsed("MENM1", 100));
+        assertTrue(allocator.isUsed("MENM1", 103));
+        assertFalse(allocator.isUsed("MENM1", 102));
+        assertTrue(allocator.isUsed("MENM2", 100));
+        assertFalse(allocator.isUsed("MENM3", 100));
+    }
+
+    @Test
+    public void lowestFreeVlanInRange() {
+        assertEquals(OptionalInt.of(102), allocator.reserve("MENM1", 100, 200));
+        assertEquals(OptionalInt.of(101), allocator.reserve("MENM2", 100, 200));
+        assertEquals(OptionalInt.of(0), allocator.reserve("MENM3", -5, 10));
+    }
+
+    @Test
+    public void exhaustedRange() {
+        assertEquals(OptionalInt.empty(), allocator.reserve("MENM1", 100, 102));
+        assertEquals(OptionalInt.of(4095), allocator.reserve("MENM1", 4095, 5000));
+        assertEquals(1.0, meterRegistry.counter("setar.allocation.vlan", "result", "exhausted").count(), 0.0);
+    }
+
+    @Test
+    public void twoCallersGetDifferentIds() {
+        assertEquals(OptionalInt.of(102), allocator.reserve("MENM1", 100, 200));
+        assertEquals(OptionalInt.of(104), allocator.reserve("MENM1", 100, 200));
+        assertEquals(OptionalInt.of(101), allocator.reserve("MENM2", 100, 200));
+    }
+
+    @Test
+    public void concurrentCallersGetDifferentIds() throws Exception {
+        allocator.isUsed("MENM1", 100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<OptionalInt>> picks = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                picks.add(pool.submit(() -> {
+                    start.await();
+                    return allocator.reserve("MENM1", 100, 200);
+                }));
+            }
+            start.countDown();
+            Set<Integer> vlans = new HashSet<>();
+            for (Future<OptionalInt> pick : picks) {
+                assertTrue(vlans.add(pick.get(10, TimeUnit.SECONDS).getAsInt()));
+            }
+            assertEquals(50, vlans.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void releasedReservationIsHandedOutAgain() {
+        assertEquals(OptionalInt.of(102), allocator.reserve("MENM1", 100, 200));
+        allocator.release("MENM1", 102);
+        assertEquals(OptionalInt.of(102), allocator.reserve("MENM1", 100, 200));
+    }
+
+    @Test
+    public void expiredReservationIsHandedOutAgain() {
+        VlanAllocator shortLived = new VlanAllocator(session, lookup, meterRegistry, 0);
+        assertEquals(OptionalInt.of(102), shortLived.reserve("MENM1", 100, 200));
+        assertEquals(OptionalInt.of(102), shortLived.reserve("MENM1", 100, 200));
+    }
+
+    @Test
+    public void savedInterfaceTurnsTheReservationIntoUse() {
+        assertEquals(OptionalInt.of(102), allocator.reserve("MENM1", 100, 200));
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.SAVED, "MENM1_102"));
+        assertTrue(allocator.isUsed("MENM1", 102));
+        allocator.release("MENM1", 102);
+        assertEquals(OptionalInt.of(104), allocator.reserve("MENM1", 100, 200));
+    }
+
+    @Test
+    public void vlanCreatedElsewhereIsSkippedAndMarked() {
+        allocator.isUsed("MENM1", 100);
+        stored.add("MENM1_102");
+        assertEquals(OptionalInt.of(104), allocator.reserve("MENM1", 100, 200));
+        assertTrue(allocator.isUsed("MENM1", 102));
+        assertEquals(1.0, meterRegistry.counter("setar.allocation.vlan", "result", "drift").count(), 0.0);
+    }
+
+    @Test
+    public void writesUpdateTheBitmap() {
+        allocator.isUsed("MENM1", 100);
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.SAVED, "MENM1_102"));
+        assertTrue(allocator.isUsed("MENM1", 102));
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.DELETED, "MENM1_100"));
+        assertFalse(allocator.isUsed("MENM1", 100));
+        allocator.onWrite(event(RepositoryWriteEvent.Operation.SAVED, "MENM1_abc"));
+        assertEquals(OptionalInt.of(100), allocator.reserve("MENM1", 100, 200));
+        assertEquals(OptionalInt.of(104), allocator.reserve("MENM1", 101, 200));
+    }
+
+    private static RepositoryWriteEvent event(RepositoryWriteEvent.Operation operation, String name) {
+        LogicalInterface vlanInterface = new LogicalInterface();
+        vlanInterface.setDiscoveredName(name);
+        return new RepositoryWriteEvent(LogicalInterface.class, operation, vlanInterface, null, null, null);
+    }
+
+    private static Result result(List<Map<String, Object>> rows) {
+        Result result = mock(Result.class);
+        when(result.iterator()).thenAnswer(invocation -> rows.iterator());
+        when(result.queryResults()).thenReturn(rows);
+        return result;
+    }
+}
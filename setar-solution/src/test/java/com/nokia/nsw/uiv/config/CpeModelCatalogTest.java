@@ -0,0 +1,59 @@
+package com.nokia.nsw.uiv.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parsing of the setar.cpe.catalog.* layouts and the layout chosen per CPE type and model.
+ */
+public class CpeModelCatalogTest {
+
+    private final CpeModelCatalog catalog = new CpeModelCatalog("XS-250WX-A=2:5:3:7, xs-100=1:2:2:3,", "2:4:3:7");
+
+    @Test
+    public void modelLayoutIsParsed() {
+        CpeModelCatalog.Layout layout = catalog.layoutOf("ONT", "XS-250WX-A");
+        assertEquals(2, layout.getPotsPorts());
+        assertEquals(5, layout.getEthPorts());
+        assertEquals(0, layout.vlansOn(2));
+        assertEquals(7, layout.vlansOn(3));
+        assertEquals(7, layout.vlansOn(5));
+    }
+
+    @Test
+    public void modelsMatchIgnoringCase() {
+        CpeModelCatalog.Layout layout = catalog.layoutOf("ont", "Xs-100");
+        assertEquals(1, layout.getPotsPorts());
+        assertEquals(2, layout.getEthPorts());
+        assertEquals(3, layout.vlansOn(2));
+    }
+
+    @Test
+    public void unknownOntModelsUseTheDefault() {
+        assertEquals(4, catalog.layoutOf("ONT", "XS-999").getEthPorts());
+        assertEquals(4, catalog.layoutOf("ONT", null).getEthPorts());
+    }
+
+    @Test
+    public void otherCpeTypesGetPotsPortsOnly() {
+        CpeModelCatalog.Layout layout = catalog.layoutOf("CBM", "XS-250WX-A");
+        assertEquals(2, layout.getPotsPorts());
+        assertEquals(0, layout.getEthPorts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void layoutNeedsFourFields() {
+        new CpeModelCatalog("XS-250WX-A=2:5:3", "2:4:3:7");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void layoutFieldsAreNumbers() {
+        new CpeModelCatalog("XS-250WX-A=2:5:3:7", "2:four:3:7");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void entryNeedsAModel() {
+        new CpeModelCatalog("2:5:3:7", "2:4:3:7");
+    }
+}
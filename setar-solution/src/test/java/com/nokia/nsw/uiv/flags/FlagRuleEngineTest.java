@@ -0,0 +1,149 @@
+package com.nokia.nsw.uiv.flags;
+
+import com.nokia.nsw.uiv.repository.ServiceNameTokenIndex;
+import com.nokia.nsw.uiv.repository.SubscriberContext;
+import com.nokia.nsw.uiv.repository.SubscriberContextLoader;
+import com.nokia.nsw.uiv.request.QueryFlagsRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * QueryFlags rule table against the outputs the single-pass QueryFlags produced for the same requests on a store
+ * without any data for the subscriber: which rules a request runs and the flags the rules add to an empty flags
+ * map (the action's initial values are left out). Rows without expected flags only check the plan.
+ */
+@RunWith(Parameterized.class)
+public class FlagRuleEngineTest {
+
+    private static final String LONG_ONT = "ALCL" + String.join("", Collections.nCopies(97, "X"));
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> rows() {
+        return Arrays.asList(new Object[][]{
+                {"fibernet configure on ONT",
+                        request("SUB1", "Broadband", "Fibernet", "Configure", "ALCL0000AAAA", "2", null),
+                        Arrays.asList("voip-port-defaults", "service-id-flag", "service-link", "account-flags",
+                                "fibernet-count", "subscriber-name", "ont-templates", "olt-fallback", "defaults"),
+                        flags("SERVICE_VOIP_NUMBER1", "Available", "SERVICE_VOIP_NUMBER2", "Available",
+                                "SERVICE_ID_FLAG", "New", "SERVICE_LINK", "ONT",
+                                "SERVICE_FLAG", "New", "ACCOUNT_EXIST", "New", "FIBERNET_COUNT", "0",
+                                "SERVICE_EXIST", "Exist", "SERVICE_IPTV_EXIST", "New", "QOS_PROFILE", ""),
+                        null},
+                {"voice configure on SRX",
+                        request("SUB2", "VOIP", "Voice", "Configure", "CW12345", "1", null),
+                        Arrays.asList("service-id-flag", "service-link", "account-flags", "fibernet-count",
+                                "subscriber-name", "ont-templates", "voip-port-reset", "olt-fallback", "defaults"),
+                        flags("SERVICE_ID_FLAG", "New", "SERVICE_LINK", "SRX",
+                                "SERVICE_FLAG", "New", "ACCOUNT_EXIST", "New", "CBM_ACCOUNT_EXIST", "New",
+                                "FIBERNET_COUNT", "0",
+                                "SERVICE_EXIST", "Exist", "SERVICE_IPTV_EXIST", "New", "QOS_PROFILE", ""),
+                        null},
+                {"iptv unconfigure on cable modem",
+                        request("SUB3", "CBM", "IPTV", "Unconfigure", "NA", "1", null),
+                        Arrays.asList("voip-port-defaults", "service-id-flag", "service-link", "account-flags",
+                                "iptv-unconfigure-count", "fibernet-none", "subscription-details", "subscriber-name",
+                                "ont-templates", "cbm-templates", "iptv-ids", "olt-fallback", "defaults"),
+                        flags("SERVICE_VOIP_NUMBER1", "Available", "SERVICE_VOIP_NUMBER2", "Available",
+                                "SERVICE_ID_FLAG", "New", "SERVICE_LINK", "NA",
+                                "SERVICE_FLAG", "New", "ACCOUNT_EXIST", "New", "CBM_ACCOUNT_EXIST", "New",
+                                "FIBERNET_COUNT", "0",
+                                "SERVICE_TEMPLATE_IPTV", "New", "SERVICE_TEMPLATE_VEIP", "New",
+                                "IPTV_SERVICE_ID1", "", "IPTV_SERVICE_ID2", "", "IPTV_SERVICE_ID3", "",
+                                "IPTV_SERVICE_ID4", "", "IPTV_SERVICE_ID5", "", "IPTV_COUNT", "0",
+                                "SERVICE_EXIST", "Exist", "SERVICE_IPTV_EXIST", "New", "QOS_PROFILE", ""),
+                        null},
+                {"ONT name too long is rejected",
+                        request("SUB4", "Broadband", "Fibernet", "Configure", LONG_ONT, "2", null),
+                        Arrays.asList("voip-port-defaults", "service-id-flag", "service-link", "account-flags",
+                                "fibernet-count", "subscriber-name", "ont-templates", "olt-fallback", "defaults"),
+                        flags("SERVICE_VOIP_NUMBER1", "Available", "SERVICE_VOIP_NUMBER2", "Available",
+                                "SERVICE_ID_FLAG", "New", "SERVICE_LINK", "ONT",
+                                "SERVICE_FLAG", "New", "ACCOUNT_EXIST", "New", "FIBERNET_COUNT", "0"),
+                        "ONT name too long"},
+                {"evpn unconfigure plan",
+                        request("SUB5", "EVPN", "Cloudstarter", "Unconfigure", "ALCL0000BBBB", "3", "SID5"),
+                        Arrays.asList("voip-port-defaults", "service-id-flag", "service-link", "step6", "account-flags",
+                                "fibernet-none", "subscription-details", "subscriber-name", "ont-templates",
+                                "iptv-ids", "evpn-unconfigure", "defaults"),
+                        null, null},
+                {"broadband discovery when the ONT is unknown",
+                        request("SUB6", "Broadband", "Broadband", "Modify_CPE", "NA", "1", "SID6"),
+                        Arrays.asList("voip-port-defaults", "service-id-flag", "service-link", "rfs-discovery", "step6",
+                                "account-flags", "fibernet-count", "subscription-details", "subscriber-name",
+                                "ont-templates", "iptv-ids", "non-evpn-service", "defaults"),
+                        null, null},
+        });
+    }
+
+    private final QueryFlagsRequest request;
+    private final List<String> expectedRules;
+    private final Map<String, String> expectedFlags;
+    private final String expectedRejection;
+    private FlagRuleEngine engine;
+
+    public FlagRuleEngineTest(String name, QueryFlagsRequest request, List<String> expectedRules,
+                              Map<String, String> expectedFlags, String expectedRejection) {
+        this.request = request;
+        this.expectedRules = expectedRules;
+        this.expectedFlags = expectedFlags;
+        this.expectedRejection = expectedRejection;
+    }
+
+    @Before
+    public void setUp() {
+        QueryFlagsRules table = new QueryFlagsRules();
+        ReflectionTestUtils.setField(table, "serviceNameTokenIndex", mock(ServiceNameTokenIndex.class));
+        SubscriberContext empty = new SubscriberContextLoader(null, null, null, null, null, null, null, null, null, null, null)
+                .load(SubscriberContextLoader.scope(null));
+        SubscriberContextLoader contextLoader = mock(SubscriberContextLoader.class);
+        when(contextLoader.load(any())).thenReturn(empty);
+        when(contextLoader.forOnt(any(), any())).thenReturn(empty);
+        engine = new FlagRuleEngine(table, contextLoader, new SimpleMeterRegistry(), 16);
+    }
+
+    @Test
+    public void planMatchesBaselineSections() {
+        assertEquals(expectedRules, engine.plannedRules(FlagFacts.of(request)));
+    }
+
+    @Test
+    public void flagsMatchBaselineOutput() throws Exception {
+        if (expectedFlags == null) return;
+        FlagState state = new FlagState(request, new HashMap<>());
+        engine.evaluate(FlagFacts.of(request), state);
+        assertEquals(expectedRejection, state.getRejection());
+        assertEquals(expectedFlags, state.getFlags());
+    }
+
+    private static QueryFlagsRequest request(String subscriber, String productType, String productSubtype,
+                                             String actionType, String ontSN, String ontPort, String serviceId) {
+        QueryFlagsRequest request = new QueryFlagsRequest();
+        request.setSubscriberName(subscriber);
+        request.setProductType(productType);
+        request.setProductSubtype(productSubtype);
+        request.setActionType(actionType);
+        request.setOntSN(ontSN);
+        request.setOntPort(ontPort);
+        request.setServiceId(serviceId);
+        return request;
+    }
+
+    private static Map<String, String> flags(String... keyValues) {
+        Map<String, String> flags = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            flags.put(keyValues[i], keyValues[i + 1]);
+        }
+        return flags;
+    }
+}
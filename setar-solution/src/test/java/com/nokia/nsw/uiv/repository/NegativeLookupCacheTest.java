@@ -0,0 +1,54 @@
+package com.nokia.nsw.uiv.repository;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The Bloom filter behind {@link NegativeLookupCache}: no false negatives, a false positive rate near the
+ * configured one, and saturation once more names than its capacity were added.
+ */
+public class NegativeLookupCacheTest {
+
+    @Test
+    public void emptyFilterContainsNothing() {
+        NegativeLookupCache.BloomFilter filter = new NegativeLookupCache.BloomFilter(1000, 0.01);
+        assertFalse(filter.mightContain("ONTALCL00000001"));
+        assertFalse(filter.mightContain(""));
+    }
+
+    @Test
+    public void addedNamesAreAlwaysReported() {
+        NegativeLookupCache.BloomFilter filter = new NegativeLookupCache.BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("ONTALCL" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue("ONTALCL" + i, filter.mightContain("ONTALCL" + i));
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysNearTarget() {
+        NegativeLookupCache.BloomFilter filter = new NegativeLookupCache.BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("ONTALCL" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("CBM" + i)) falsePositives++;
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void saturatesPastCapacity() {
+        NegativeLookupCache.BloomFilter filter = new NegativeLookupCache.BloomFilter(10, 0.01);
+        for (int i = 0; i < 10; i++) {
+            filter.put("SUB" + i);
+        }
+        assertFalse(filter.isSaturated());
+        filter.put("SUB10");
+        assertTrue(filter.isSaturated());
+    }
+}
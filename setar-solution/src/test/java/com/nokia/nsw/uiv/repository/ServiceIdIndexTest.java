@@ -0,0 +1,102 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.model.service.Product;
+import com.nokia.nsw.uiv.model.service.Service;
+import com.nokia.nsw.uiv.model.service.Subscription;
+import com.nokia.nsw.uiv.utils.Constants;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Where {@link ServiceIdIndex} reads the serviceID and the composite "{subscriber}_{serviceId}" of each kind of node.
+ */
+public class ServiceIdIndexTest {
+
+    @Test
+    public void productCarriesServiceIdInThirdToken() {
+        Product product = new Product();
+        product.setLocalName("L-PRODUCT");
+        product.setDiscoveredName("SUB1_Broadband_SID9");
+        Map.Entry<String, ServiceIdIndex.Entry> keyed = ServiceIdIndex.entryOf(product);
+        assertEquals("L-PRODUCT", keyed.getKey());
+        assertEquals(Constants.SETAR_KIND_SETAR_PRODUCT, keyed.getValue().getKind());
+        assertEquals("SID9", keyed.getValue().getServiceId());
+        assertEquals("SUB1_SID9", keyed.getValue().getComposite());
+    }
+
+    @Test
+    public void productWithoutServiceIdIsSkipped() {
+        Product product = new Product();
+        product.setDiscoveredName("SUB1_Broadband");
+        assertNull(ServiceIdIndex.entryOf(product));
+    }
+
+    @Test
+    public void rfsCompositeIsBetweenFirstAndLastUnderscore() {
+        Service rfs = service(Constants.SETAR_KIND_SETAR_RFS, "RFS_SUB1_SID9_ALCL01");
+        ServiceIdIndex.Entry entry = ServiceIdIndex.entryOf(rfs).getValue();
+        assertEquals(Constants.SETAR_KIND_SETAR_RFS, entry.getKind());
+        assertEquals("SID9", entry.getServiceId());
+        assertEquals("SUB1_SID9", entry.getComposite());
+    }
+
+    @Test
+    public void cfsWithoutOntKeepsTheScanComparison() {
+        // the CFS scans compared everything between the first and last underscore
+        ServiceIdIndex.Entry entry = ServiceIdIndex.entryOf(service(Constants.SETAR_KIND_SETAR_CFS, "CFS_SUB1_SID9")).getValue();
+        assertEquals("SID9", entry.getServiceId());
+        assertEquals("SUB1", entry.getComposite());
+    }
+
+    @Test
+    public void serviceKindIsMatchedIgnoringCase() {
+        ServiceIdIndex.Entry entry = ServiceIdIndex.entryOf(service("setarrfs", "RFS_SUB1_SID9_ALCL01")).getValue();
+        assertEquals(Constants.SETAR_KIND_SETAR_RFS, entry.getKind());
+        assertEquals("SID9", entry.getServiceId());
+    }
+
+    @Test
+    public void servicesOfOtherKindsAreSkipped() {
+        assertNull(ServiceIdIndex.entryOf(service("SetarOther", "RFS_SUB1_SID9_ALCL01")));
+        assertNull(ServiceIdIndex.entryOf(service(Constants.SETAR_KIND_SETAR_RFS, "RFS_SUB1")));
+    }
+
+    @Test
+    public void subscriptionFallsBackToItsName() {
+        Subscription subscription = new Subscription();
+        subscription.setDiscoveredName("SUB1_SID9_ALCL01");
+        Map.Entry<String, ServiceIdIndex.Entry> keyed = ServiceIdIndex.entryOf(subscription);
+        assertEquals("SUB1_SID9_ALCL01", keyed.getKey());
+        assertEquals(Constants.SETAR_KIND_SETAR_SUBSCRIPTION, keyed.getValue().getKind());
+        assertEquals("SID9", keyed.getValue().getServiceId());
+        assertEquals("SUB1_SID9", keyed.getValue().getComposite());
+    }
+
+    @Test
+    public void subscriptionPrefersItsServiceIdProperty() {
+        Subscription subscription = new Subscription();
+        subscription.setLocalName("L-SUB");
+        subscription.setDiscoveredName("SUB1_SID9_ALCL01");
+        subscription.setProperties(Collections.singletonMap("serviceID", "SID7"));
+        ServiceIdIndex.Entry entry = ServiceIdIndex.entryOf(subscription).getValue();
+        assertEquals("SID7", entry.getServiceId());
+        assertEquals("SUB1_SID7", entry.getComposite());
+    }
+
+    @Test
+    public void otherEntitiesAreSkipped() {
+        assertNull(ServiceIdIndex.entryOf("SUB1_SID9"));
+        assertNull(ServiceIdIndex.entryOf(null));
+    }
+
+    private static Service service(String kind, String name) {
+        Service service = new Service();
+        service.setKind(kind);
+        service.setDiscoveredName(name);
+        return service;
+    }
+}
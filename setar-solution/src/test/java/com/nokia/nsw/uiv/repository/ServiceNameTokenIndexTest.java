@@ -0,0 +1,59 @@
+package com.nokia.nsw.uiv.repository;
+
+import com.nokia.nsw.uiv.utils.Constants;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ServiceNameTokenIndex#parse(String, String)} reads the same positions the actions read after split("_").
+ */
+public class ServiceNameTokenIndexTest {
+
+    @Test
+    public void rfsNameWithOnt() {
+        ServiceNameTokenIndex.Tokens tokens = ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_RFS, "RFS_SUB1_SID1_ALCL01");
+        assertEquals(Constants.SETAR_KIND_SETAR_RFS, tokens.getKind());
+        assertEquals("RFS_SUB1_SID1_ALCL01", tokens.getName());
+        assertEquals("SUB1", tokens.getSubscriber());
+        assertEquals("SID1", tokens.getServiceId());
+        assertEquals("ALCL01", tokens.getOntSN());
+    }
+
+    @Test
+    public void cfsNameWithoutOnt() {
+        ServiceNameTokenIndex.Tokens tokens = ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_CFS, "CFS_SUB1_SID1");
+        assertEquals("SUB1", tokens.getSubscriber());
+        assertEquals("SID1", tokens.getServiceId());
+        assertNull(tokens.getOntSN());
+    }
+
+    @Test
+    public void nameWithoutPrefix() {
+        ServiceNameTokenIndex.Tokens tokens = ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_SUBSCRIPTION, "SUB1_SID1_ALCL01");
+        assertEquals("SUB1", tokens.getSubscriber());
+        assertEquals("SID1", tokens.getServiceId());
+        assertEquals("ALCL01", tokens.getOntSN());
+    }
+
+    @Test
+    public void extraTokensAfterOntAreIgnored() {
+        ServiceNameTokenIndex.Tokens tokens = ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_RFS, "RFS_SUB1_SID1_ALCL01_P2");
+        assertEquals("ALCL01", tokens.getOntSN());
+    }
+
+    @Test
+    public void emptyTokensAreKept() {
+        ServiceNameTokenIndex.Tokens tokens = ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_RFS, "RFS_SUB1__ALCL01");
+        assertEquals("SUB1", tokens.getSubscriber());
+        assertEquals("", tokens.getServiceId());
+        assertEquals("ALCL01", tokens.getOntSN());
+    }
+
+    @Test
+    public void namesOutsideTheConvention() {
+        assertNull(ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_RFS, null));
+        assertNull(ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_RFS, "RFS_SUB1"));
+        assertNull(ServiceNameTokenIndex.parse(Constants.SETAR_KIND_SETAR_RFS, "SUB1"));
+    }
+}